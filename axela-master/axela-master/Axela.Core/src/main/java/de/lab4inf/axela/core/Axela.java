@@ -23,9 +23,15 @@ package de.lab4inf.axela.core;
 
 import static java.lang.String.format;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * An eXtendable Expression Language Abstraction (AXELA).<br>
@@ -43,28 +49,21 @@ public interface Axela {
 	String SOLUTION_IS_A_NULL_POINTER = "solution is a NullPointer!";
 	String NO_IRIS_FOR_PROBLEM_FOUND = "no Iris for problem: %s found";
 	String NO_AXELA_FOUND = "no valid Axela implementation found";
+	String EXECUTOR_IS_A_NULL_POINTER = "executor is a NullPointer!";
+	String TOKEN_IS_A_NULL_POINTER = "token is a NullPointer!";
 
 	/**
 	 * Utility method using the reflection API to look-up an Axela implementation
 	 * via the ServiceLoder mechanism. <br>
 	 * Note: This static method uses a JDK1.8 feature: a static implementation
 	 * within an interface and uses the Reflection API with a JDK1.6 ServiceLoader
-	 * implementation - more in the lectures.
+	 * implementation - more in the lectures. <br>
+	 * The engine found is shared, all callers see the same solver registry.
 	 * 
 	 * @return Axela instance found by reflection
 	 */
 	static Axela getEngine() {
-		ServiceLoader<Axela> loader = ServiceLoader.load(Axela.class);
-		Optional<Axela> maybe = loader.findFirst();
-		if (maybe.isPresent()) {
-			Axela engine = maybe.get();
-			return engine;
-		}
-		throw new IllegalStateException(NO_AXELA_FOUND);
-		// all this can be coded in one (more or less unreadable) line - I don't like
-		// this style of programming...
-		// return ServiceLoader.load(Axela.class).findFirst().orElseThrow(()->new
-		// IllegalStateException(NO_AXELA_FOUND));
+		return EngineLocator.getEngine();
 	}
 
 	/**
@@ -94,6 +93,235 @@ public interface Axela {
 		throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
 	}
 
+	/**
+	 * Solve the problem with the token as current CancellationToken of the
+	 * calling thread. Solvers checking the token stop with a
+	 * SolveCancelledException once it is cancelled or expired.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @param token   to cancel the solve
+	 * @return solution of the problem
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> Solution solve(final Problem problem, final Facts facts,
+			final CancellationToken token) {
+		Objects.requireNonNull(token, TOKEN_IS_A_NULL_POINTER);
+		return token.call(() -> solve(problem, facts));
+	}
+
+	/**
+	 * Solve the problem within the given time, otherwise a
+	 * DeadlineExceededException is thrown.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @param timeout of the solve
+	 * @return solution of the problem
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> Solution solve(final Problem problem, final Facts facts,
+			final Duration timeout) {
+		return solve(problem, facts, CancellationToken.timeout(timeout));
+	}
+
+	/**
+	 * Resolve the solver for the problem and the signature of the given prototype
+	 * facts once and return a handle calling this Iris directly. <br>
+	 * Use this for hot paths solving the same problem many times.
+	 * 
+	 * @param problem   to solve
+	 * @param prototype facts with the signature of all later facts
+	 * @return solver handle bound to the problem
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> BoundSolver<Facts, Solution> bind(final Problem problem,
+			final Facts prototype) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(prototype, FACTS_ARE_A_NULL_POINTER);
+		if (!hasSolverFor(problem, prototype))
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		final Iris<Problem, Facts, Solution> solver = findSolverFor(problem, prototype);
+		return facts -> {
+			Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+			Solution solution = solver.solve(problem, facts);
+			return Objects.requireNonNull(solution, SOLUTION_IS_A_NULL_POINTER);
+		};
+	}
+
+	/**
+	 * Solve a problem with a scalar solution. A DoubleIris returns the solution
+	 * without boxing, the solutions of other solvers have to be numbers.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @return solution of the problem
+	 * @param <Problem> generic problem type to solve
+	 * @param <Facts>   generic fact type
+	 */
+	@SuppressWarnings("unchecked")
+	default <Problem, Facts> double solveAsDouble(final Problem problem, final Facts facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		if (!hasSolverFor(problem, facts))
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		Iris<Problem, Facts, ?> solver = findSolverFor(problem, facts);
+		if (solver instanceof DoubleIris)
+			return ((DoubleIris<Problem, Facts>) solver).solveAsDouble(problem, facts);
+		Object solution = Objects.requireNonNull(solver.solve(problem, facts), SOLUTION_IS_A_NULL_POINTER);
+		return ((Number) solution).doubleValue();
+	}
+
+	/**
+	 * Resolve the solver of a problem with a scalar solution once, see bind and
+	 * solveAsDouble.
+	 * 
+	 * @param problem   to solve
+	 * @param prototype facts with the signature of all later facts
+	 * @return solver handle bound to the problem
+	 * @param <Problem> generic problem type to solve
+	 * @param <Facts>   generic fact type
+	 */
+	@SuppressWarnings("unchecked")
+	default <Problem, Facts> DoubleBoundSolver<Facts> bindDouble(final Problem problem, final Facts prototype) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(prototype, FACTS_ARE_A_NULL_POINTER);
+		if (!hasSolverFor(problem, prototype))
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		final Iris<Problem, Facts, ?> solver = findSolverFor(problem, prototype);
+		if (solver instanceof DoubleIris) {
+			final DoubleIris<Problem, Facts> iris = (DoubleIris<Problem, Facts>) solver;
+			return facts -> iris.solveAsDouble(problem, Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER));
+		}
+		return facts -> {
+			Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+			Object solution = Objects.requireNonNull(solver.solve(problem, facts), SOLUTION_IS_A_NULL_POINTER);
+			return ((Number) solution).doubleValue();
+		};
+	}
+
+	/**
+	 * The executor used by solveAsync and solveAll. This default uses the common
+	 * ForkJoinPool, engines may offer to plug-in another one.
+	 * 
+	 * @return executor for asynchronous solving
+	 */
+	default Executor getExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Solve the problem asynchronously with the executor of this engine.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @return future of the solution
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> CompletableFuture<Solution> solveAsync(final Problem problem,
+			final Facts facts) {
+		return solveAsync(problem, facts, getExecutor());
+	}
+
+	/**
+	 * Solve the problem asynchronously with the given executor.
+	 * 
+	 * @param problem  to solve
+	 * @param facts    to use
+	 * @param executor to run the solver on
+	 * @return future of the solution
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> CompletableFuture<Solution> solveAsync(final Problem problem,
+			final Facts facts, final Executor executor) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		Objects.requireNonNull(executor, EXECUTOR_IS_A_NULL_POINTER);
+		return CompletableFuture.supplyAsync(() -> solve(problem, facts), executor);
+	}
+
+	/**
+	 * Solve the problem for each of the given facts in parallel and wait for all
+	 * solutions. The solutions are returned in the order of the facts, the first
+	 * failing solver throws its exception.
+	 * 
+	 * @param problem to solve
+	 * @param facts   list of facts to use
+	 * @return list of the solutions
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> List<Solution> solveAll(final Problem problem, final List<Facts> facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		List<CompletableFuture<Solution>> futures = new ArrayList<>(facts.size());
+		for (Facts f : facts) {
+			futures.add(solveAsync(problem, f));
+		}
+		List<Solution> solutions = new ArrayList<>(futures.size());
+		try {
+			for (CompletableFuture<Solution> future : futures) {
+				solutions.add(future.join());
+			}
+		} catch (CompletionException e) {
+			for (CompletableFuture<Solution> future : futures) {
+				future.cancel(false);
+			}
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+		return solutions;
+	}
+
+	/**
+	 * Solve the problem for a stream of facts. Subscribe the returned processor
+	 * to the publisher of the facts and the subscriber of the solutions to the
+	 * processor, solutions are emitted in the order of the facts.
+	 * 
+	 * @param problem   to solve
+	 * @param prototype facts with the signature of all facts of the stream
+	 * @return processor of the facts
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> SolveProcessor<Facts, Solution> solveStream(final Problem problem,
+			final Facts prototype) {
+		return solveStream(problem, prototype, SolveProcessor.Options.DEFAULT);
+	}
+
+	/**
+	 * Solve the problem for a stream of facts with the executor of this engine,
+	 * the options set the concurrency, the micro-batch size and the ordering.
+	 * 
+	 * @param problem   to solve
+	 * @param prototype facts with the signature of all facts of the stream
+	 * @param options   of the stream
+	 * @return processor of the facts
+	 * @param <Problem>  generic problem type to solve
+	 * @param <Facts>    generic fact type
+	 * @param <Solution> generic solution type to return
+	 */
+	default <Problem, Facts, Solution> SolveProcessor<Facts, Solution> solveStream(final Problem problem,
+			final Facts prototype, final SolveProcessor.Options options) {
+		BoundSolver<Facts, Solution> solver = bind(problem, prototype);
+		return new SolveProcessor<>(solver, getExecutor(), options);
+	}
+
 	/**
 	 * Register a Iris solver within the Axela engine.
 	 * 
@@ -106,6 +334,22 @@ public interface Axela {
 	 */
 	<P, F, S> void registerSolver(final P problem, final F facts, final Iris<P, F, S> solver);
 
+	/**
+	 * Register a Iris solver created on its first use within the Axela engine.
+	 * This keeps the start-up of plugins with many or expensive solvers cheap.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @param factory of the solver for this problem and fact(s).
+	 * @param <P>     generic problem type to solve
+	 * @param <F>     generic fact type
+	 * @param <S>     generic solution type to return
+	 */
+	default <P, F, S> void registerLazySolver(final P problem, final F facts,
+			final Supplier<? extends Iris<P, F, S>> factory) {
+		registerSolver(problem, facts, new LazyIris<>(factory));
+	}
+
 	/**
 	 * Check if a pre-registered solver for the given problem and fact(s) is
 	 * registered.
@@ -131,6 +375,10 @@ public interface Axela {
 	 */
 	<P, F, S> Iris<P, F, S> findSolverFor(final P p, final F f);
 	
+	/**
+	 * Extension registering solvers within an Axela engine. Plugins with a public
+	 * no-arg constructor are found via the ServiceLoader by Axela.getEngine().
+	 */
 	interface Plugin {
 		default void init(Axela engine) {
 			
@@ -140,4 +388,17 @@ public interface Axela {
 	default void register(Plugin plugin) {
 		plugin.init(this);
 	}
+
+	/**
+	 * Register plugins which are not needed yet, e.g. the ones found via the
+	 * ServiceLoader. This default registers them at once, engines may defer this
+	 * until a problem without registered solver is looked up.
+	 * 
+	 * @param plugins to register
+	 */
+	default void registerLazyPlugins(Iterable<? extends Plugin> plugins) {
+		for (Plugin plugin : plugins) {
+			register(plugin);
+		}
+	}
 }
@@ -0,0 +1,42 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+/**
+ * Solver handle bound to a fixed problem and fact signature.<br>
+ * The Iris solver has been resolved once by Axela.bind, calling this handle
+ * skips the key construction and the registry look-up of Axela.solve.
+ * 
+ * @see de.lab4inf.axela.core.Axela#bind(Object, Object)
+ * @param <Facts>    generic fact type to parameterize the problem
+ * @param <Solution> generic solution type to return
+ */
+@FunctionalInterface
+public interface BoundSolver<Facts, Solution> {
+	/**
+	 * Solve the bound problem using the given facts. The facts must have the
+	 * signature of the prototype used for binding.
+	 * 
+	 * @param facts to use
+	 * @return solution
+	 */
+	Solution solve(Facts facts);
+}
@@ -0,0 +1,221 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Cooperative cancellation of a solve.<br>
+ * A token is cancelled explicitly or expires at its deadline. Long running
+ * solvers check the token frequently and stop with a SolveCancelledException.
+ * A child token is cancelled together with its parent but may be cancelled on
+ * its own, e.g. to stop the sibling tasks of a failed parallel kernel. Nested
+ * solves observe the tokens of all enclosing solves.
+ * 
+ * @see de.lab4inf.axela.core.Axela#solve(Object, Object, CancellationToken)
+ */
+public final class CancellationToken {
+	private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+	private static final Runnable NONE = () -> {
+	};
+
+	private final CancellationToken parent;
+	private final CancellationToken outer;
+	private final boolean timed;
+	private final long deadline;
+	private volatile boolean cancelled;
+	// run by cancel, guarded by this and null until the first one
+	private List<Runnable> actions;
+
+	/**
+	 * A token without deadline, only cancelled explicitly.
+	 */
+	public CancellationToken() {
+		this(null, null, false, 0);
+	}
+
+	private CancellationToken(CancellationToken parent, CancellationToken outer, boolean timed, long deadline) {
+		this.parent = parent;
+		this.outer = outer;
+		this.timed = timed;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @param deadline as System.nanoTime() value
+	 * @return token expiring at the deadline
+	 */
+	public static CancellationToken deadline(long deadline) {
+		return new CancellationToken(null, null, true, deadline);
+	}
+
+	/**
+	 * @param timeout from now on
+	 * @return token expiring after the timeout
+	 */
+	public static CancellationToken timeout(Duration timeout) {
+		Objects.requireNonNull(timeout, "timeout is a NullPointer!");
+		return deadline(System.nanoTime() + timeout.toNanos());
+	}
+
+	/**
+	 * The token of the solve running in the calling thread, within a nested solve
+	 * a token observing also the enclosing ones.
+	 * 
+	 * @return current token or null
+	 */
+	public static CancellationToken current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return token cancelled together with this one
+	 */
+	public CancellationToken child() {
+		return new CancellationToken(this, null, false, 0);
+	}
+
+	/**
+	 * @param deadline as System.nanoTime() value
+	 * @return token cancelled together with this one or at the deadline
+	 */
+	public CancellationToken child(long deadline) {
+		return new CancellationToken(this, null, true, deadline);
+	}
+
+	public void cancel() {
+		List<Runnable> run;
+		synchronized (this) {
+			cancelled = true;
+			run = actions;
+			actions = null;
+		}
+		if (null != run)
+			for (Runnable action : run)
+				action.run();
+	}
+
+	/**
+	 * Run the action once this token or a token it observes is cancelled, at once
+	 * if it is cancelled already. The action may run more than once and should
+	 * be short, e.g. completing a future a thread waits for. Expiring is no
+	 * event, waiting threads bound their wait by {@link #remaining()}.
+	 * 
+	 * @param action to run on cancel
+	 * @return removes the action again, to be run when the wait is over
+	 */
+	public Runnable onCancel(Runnable action) {
+		Objects.requireNonNull(action, "action is a NullPointer!");
+		if (isCancelled()) {
+			action.run();
+			return NONE;
+		}
+		final Runnable own = register(action);
+		final Runnable up = null == parent ? NONE : parent.onCancel(action);
+		final Runnable out = null == outer ? NONE : outer.onCancel(action);
+		return () -> {
+			own.run();
+			up.run();
+			out.run();
+		};
+	}
+
+	private Runnable register(Runnable action) {
+		synchronized (this) {
+			if (!cancelled) {
+				if (null == actions)
+					actions = new ArrayList<>(2);
+				actions.add(action);
+				return () -> {
+					synchronized (this) {
+						if (null != actions)
+							actions.remove(action);
+					}
+				};
+			}
+		}
+		action.run();
+		return NONE;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || (null != parent && parent.isCancelled()) || (null != outer && outer.isCancelled());
+	}
+
+	public boolean isExpired() {
+		return (timed && System.nanoTime() - deadline >= 0) || (null != parent && parent.isExpired())
+				|| (null != outer && outer.isExpired());
+	}
+
+	/**
+	 * @return nanoseconds until the first deadline of this token and the tokens
+	 *         it observes, Long.MAX_VALUE without deadline
+	 */
+	public long remaining() {
+		long remaining = timed ? deadline - System.nanoTime() : Long.MAX_VALUE;
+		if (null != parent)
+			remaining = Math.min(remaining, parent.remaining());
+		if (null != outer)
+			remaining = Math.min(remaining, outer.remaining());
+		return remaining;
+	}
+
+	/**
+	 * Throws if the token is cancelled or expired, to be called by solvers
+	 * frequently.
+	 * 
+	 * @throws SolveCancelledException   if cancelled
+	 * @throws DeadlineExceededException if expired
+	 */
+	public void check() {
+		if (isCancelled())
+			throw new SolveCancelledException("solve cancelled");
+		if (isExpired())
+			throw new DeadlineExceededException("deadline exceeded");
+	}
+
+	/**
+	 * Run the action with this token as the current token of the calling thread.
+	 * Within an enclosing call the current token observes both.
+	 * 
+	 * @param action to run
+	 * @return result of the action
+	 * @param <T> result type
+	 */
+	public <T> T call(Supplier<T> action) {
+		CancellationToken previous = CURRENT.get();
+		CancellationToken scope = null == previous ? this : new CancellationToken(this, previous, false, 0);
+		CURRENT.set(scope);
+		try {
+			scope.check();
+			return action.get();
+		} finally {
+			if (null == previous)
+				CURRENT.remove();
+			else
+				CURRENT.set(previous);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+/**
+ * Thrown by a solver which stopped because the deadline of the solve passed.
+ * 
+ * @see de.lab4inf.axela.core.CancellationToken
+ */
+public class DeadlineExceededException extends SolveCancelledException {
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+}
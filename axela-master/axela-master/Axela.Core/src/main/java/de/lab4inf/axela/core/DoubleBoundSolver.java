@@ -0,0 +1,44 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+/**
+ * Solver handle of a problem with a scalar solution, returned as primitive
+ * double.
+ * 
+ * @see de.lab4inf.axela.core.Axela#bindDouble(Object, Object)
+ * @param <Facts> generic fact type to parameterize the problem
+ */
+@FunctionalInterface
+public interface DoubleBoundSolver<Facts> extends BoundSolver<Facts, Double> {
+	/**
+	 * Solve the bound problem using the given facts.
+	 * 
+	 * @param facts to use
+	 * @return solution
+	 */
+	double solveAsDouble(Facts facts);
+
+	@Override
+	default Double solve(Facts facts) {
+		return solveAsDouble(facts);
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+/**
+ * Iris solver of problems with a scalar solution, returned as primitive
+ * double.<br>
+ * Axela.solveAsDouble and Axela.bindDouble call solveAsDouble directly, so a
+ * hot loop of scalar solves does not box its solutions. Callers of the generic
+ * solve get the boxed solution.
+ * 
+ * @see de.lab4inf.axela.core.Axela#solveAsDouble(Object, Object)
+ * @param <Problem> generic problem type to solve
+ * @param <Facts>   generic fact type to parameterize the problem
+ */
+@FunctionalInterface
+public interface DoubleIris<Problem, Facts> extends Iris<Problem, Facts, Double> {
+	/**
+	 * Solve a problem using the given facts and return the scalar solution.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @return solution
+	 */
+	double solveAsDouble(Problem problem, Facts facts);
+
+	@Override
+	default Double solve(Problem problem, Facts facts) {
+		return solveAsDouble(problem, facts);
+	}
+}
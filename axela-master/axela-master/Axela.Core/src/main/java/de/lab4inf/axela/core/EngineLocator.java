@@ -0,0 +1,70 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package de.lab4inf.axela.core;
+
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+/**
+ * Holder of the shared Axela engine found via the ServiceLoader. Each engine
+ * owns its own solver registry, so all users of Axela.getEngine() have to get
+ * the same instance. The plugins found via the ServiceLoader are handed to the
+ * engine lazily, they are only instantiated once the engine needs them.
+ * 
+ * @see de.lab4inf.axela.core.Axela#getEngine()
+ */
+final class EngineLocator {
+	private static volatile Axela engine;
+
+	private EngineLocator() {
+	}
+
+	/**
+	 * Look-up the Axela implementation once and return it on all later calls.
+	 * 
+	 * @return shared Axela instance
+	 */
+	static Axela getEngine() {
+		if (null == engine)
+			synchronized (EngineLocator.class) {
+				if (null == engine) {
+					engine = load();
+				}
+			}
+		return engine;
+	}
+
+	private static Axela load() {
+		ServiceLoader<Axela> loader = ServiceLoader.load(Axela.class);
+		Optional<Axela> maybe = loader.findFirst();
+		if (maybe.isPresent()) {
+			Axela engine = maybe.get();
+			engine.registerLazyPlugins(ServiceLoader.load(Axela.Plugin.class));
+			return engine;
+		}
+		throw new IllegalStateException(Axela.NO_AXELA_FOUND);
+		// all this can be coded in one (more or less unreadable) line - I don't like
+		// this style of programming...
+		// return ServiceLoader.load(Axela.class).findFirst().orElseThrow(()->new
+		// IllegalStateException(NO_AXELA_FOUND));
+	}
+}
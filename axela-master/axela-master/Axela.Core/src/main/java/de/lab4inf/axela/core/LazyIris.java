@@ -0,0 +1,53 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Iris creating its delegate on the first solve, used by the default
+ * Axela.registerLazySolver.
+ */
+final class LazyIris<P, F, S> implements Iris<P, F, S> {
+	private Supplier<? extends Iris<P, F, S>> factory;
+	private volatile Iris<P, F, S> solver;
+
+	LazyIris(Supplier<? extends Iris<P, F, S>> factory) {
+		this.factory = Objects.requireNonNull(factory, Axela.IRIS_IS_A_NULL_POINTER);
+	}
+
+	@Override
+	public S solve(P problem, F facts) {
+		Iris<P, F, S> s = solver;
+		if (null == s)
+			s = create();
+		return s.solve(problem, facts);
+	}
+
+	private synchronized Iris<P, F, S> create() {
+		if (null == solver) {
+			solver = Objects.requireNonNull(factory.get(), Axela.IRIS_IS_A_NULL_POINTER);
+			factory = null;
+		}
+		return solver;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Thrown by a solver which stopped because its CancellationToken has been
+ * cancelled.
+ * 
+ * @see de.lab4inf.axela.core.CancellationToken
+ */
+public class SolveCancelledException extends CancellationException {
+	private static final long serialVersionUID = 1L;
+
+	public SolveCancelledException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Graph of chained problems whose facts are built from the solutions of
+ * earlier problems.<br>
+ * Executing a node solves all problems it depends on with the executor of the
+ * engine: independent branches run in parallel, a problem starts as soon as
+ * its inputs are solved and an intermediate solution is released once all its
+ * consumers have finished. The first failure cancels the remaining problems.
+ * 
+ * <pre>
+ * SolveGraph graph = new SolveGraph(axela);
+ * Node&lt;double[][]&gt; ab = graph.add("MULT", new FactBase&lt;&gt;(a, b));
+ * Node&lt;double[][]&gt; cd = graph.add("MULT", new FactBase&lt;&gt;(c, d));
+ * Node&lt;double[][]&gt; sum = graph.add("PLUS", ab, cd, FactBase::new);
+ * double[][] solution = graph.solve(sum);
+ * </pre>
+ */
+public final class SolveGraph {
+	private final Axela engine;
+	// nodes in order of creation, the inputs of a node always precede it
+	private final List<Node<?>> nodes = new ArrayList<>();
+
+	/**
+	 * Node of the graph, the handle of one solution.
+	 * 
+	 * @param <S> generic solution type
+	 */
+	public static final class Node<S> {
+		private final SolveGraph graph;
+		private final int index;
+		private final Object problem;
+		private final List<Node<?>> inputs;
+		private final Function<Object[], ?> facts;
+
+		private Node(SolveGraph graph, int index, Object problem, List<Node<?>> inputs,
+				Function<Object[], ?> facts) {
+			this.graph = graph;
+			this.index = index;
+			this.problem = problem;
+			this.inputs = inputs;
+			this.facts = facts;
+		}
+
+		public Object getProblem() {
+			return problem;
+		}
+
+		public List<Node<?>> getInputs() {
+			return inputs;
+		}
+
+		@Override
+		public String toString() {
+			return problem + "#" + index;
+		}
+	}
+
+	public SolveGraph(final Axela engine) {
+		this.engine = Objects.requireNonNull(engine, "engine is a NullPointer!");
+	}
+
+	/**
+	 * Add a problem with given facts.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @return node of the solution
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 */
+	public <P, F, S> Node<S> add(final P problem, final F facts) {
+		Objects.requireNonNull(facts, Axela.FACTS_ARE_A_NULL_POINTER);
+		return add(problem, Collections.emptyList(), solutions -> facts);
+	}
+
+	/**
+	 * Add a problem with facts built from the solution of another node.
+	 * 
+	 * @param problem to solve
+	 * @param input   node of the solution the facts are built from
+	 * @param facts   function building the facts
+	 * @return node of the solution
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 * @param <A> generic solution type of the input
+	 */
+	@SuppressWarnings("unchecked")
+	public <P, F, S, A> Node<S> add(final P problem, final Node<A> input,
+			final Function<? super A, ? extends F> facts) {
+		Objects.requireNonNull(facts, Axela.FACTS_ARE_A_NULL_POINTER);
+		return add(problem, List.of(input), solutions -> facts.apply((A) solutions[0]));
+	}
+
+	/**
+	 * Add a problem with facts built from the solutions of two other nodes, e.g.
+	 * with FactBase::new.
+	 * 
+	 * @param problem to solve
+	 * @param first   node of the first solution the facts are built from
+	 * @param second  node of the second solution the facts are built from
+	 * @param facts   function building the facts
+	 * @return node of the solution
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 * @param <A> generic solution type of the first input
+	 * @param <B> generic solution type of the second input
+	 */
+	@SuppressWarnings("unchecked")
+	public <P, F, S, A, B> Node<S> add(final P problem, final Node<A> first, final Node<B> second,
+			final BiFunction<? super A, ? super B, ? extends F> facts) {
+		Objects.requireNonNull(facts, Axela.FACTS_ARE_A_NULL_POINTER);
+		return add(problem, List.of(first, second), solutions -> facts.apply((A) solutions[0], (B) solutions[1]));
+	}
+
+	/**
+	 * Add a problem with facts built from the solutions of several other nodes,
+	 * which are passed in the order of the inputs.
+	 * 
+	 * @param problem to solve
+	 * @param inputs  nodes of the solutions the facts are built from
+	 * @param facts   function building the facts
+	 * @return node of the solution
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 * @param <A> generic solution type of the inputs
+	 */
+	@SuppressWarnings("unchecked")
+	public <P, F, S, A> Node<S> addAll(final P problem, final List<? extends Node<? extends A>> inputs,
+			final Function<? super List<A>, ? extends F> facts) {
+		Objects.requireNonNull(inputs, "inputs are a NullPointer!");
+		Objects.requireNonNull(facts, Axela.FACTS_ARE_A_NULL_POINTER);
+		return add(problem, List.copyOf(inputs), solutions -> facts.apply((List<A>) Arrays.asList(solutions)));
+	}
+
+	private synchronized <S> Node<S> add(Object problem, List<Node<?>> inputs, Function<Object[], ?> facts) {
+		Objects.requireNonNull(problem, Axela.PROBLEM_IS_A_NULL_POINTER);
+		for (Node<?> input : inputs) {
+			Objects.requireNonNull(input, "input is a NullPointer!");
+			if (this != input.graph)
+				throw new IllegalArgumentException("node of another graph: " + input);
+		}
+		Node<S> node = new Node<>(this, nodes.size(), problem, inputs, facts);
+		nodes.add(node);
+		return node;
+	}
+
+	/**
+	 * Solve the node and all nodes it depends on and wait for the solution.
+	 * 
+	 * @param target node to solve
+	 * @return solution of the node
+	 * @param <S> generic solution type
+	 */
+	public <S> S solve(final Node<S> target) {
+		try {
+			return execute(target).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * Solve the node and all nodes it depends on asynchronously. The problems are
+	 * cancelled together with the token of the calling thread or with the future
+	 * of the solution.
+	 * 
+	 * @param target node to solve
+	 * @return future of the solution
+	 * @param <S> generic solution type
+	 */
+	public <S> CompletableFuture<S> execute(final Node<S> target) {
+		CancellationToken current = CancellationToken.current();
+		return execute(target, null == current ? new CancellationToken() : current.child());
+	}
+
+	/**
+	 * Solve the node and all nodes it depends on asynchronously, cancelled
+	 * together with the given token or with the future of the solution.
+	 * 
+	 * @param target node to solve
+	 * @param token  to cancel the problems
+	 * @return future of the solution
+	 * @param <S> generic solution type
+	 */
+	public <S> CompletableFuture<S> execute(final Node<S> target, final CancellationToken token) {
+		Objects.requireNonNull(target, "target is a NullPointer!");
+		Objects.requireNonNull(token, Axela.TOKEN_IS_A_NULL_POINTER);
+		if (this != target.graph)
+			throw new IllegalArgumentException("node of another graph: " + target);
+		return new Execution<S>(target, token.child()).start();
+	}
+
+	private Node<?> node(int index) {
+		synchronized (this) {
+			return nodes.get(index);
+		}
+	}
+
+	// state of one execution, the solutions are kept until all consumers finished
+	private final class Execution<S> {
+		private final Node<S> target;
+		private final CancellationToken token;
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private final Object[] solutions;
+		private final AtomicInteger[] consumers;
+		private final CompletableFuture<?>[] done;
+
+		Execution(Node<S> target, CancellationToken token) {
+			this.target = target;
+			this.token = token;
+			int n = target.index + 1;
+			solutions = new Object[n];
+			consumers = new AtomicInteger[n];
+			done = new CompletableFuture<?>[n];
+		}
+
+		@SuppressWarnings("unchecked")
+		CompletableFuture<S> start() {
+			// only the nodes the target depends on are solved
+			boolean[] needed = new boolean[done.length];
+			needed[target.index] = true;
+			for (int i = target.index; i >= 0; i--) {
+				if (!needed[i])
+					continue;
+				consumers[i] = new AtomicInteger();
+				for (Node<?> input : node(i).inputs) {
+					needed[input.index] = true;
+				}
+			}
+			for (int i = 0; i <= target.index; i++) {
+				if (needed[i]) {
+					for (Node<?> input : node(i).inputs) {
+						consumers[input.index].incrementAndGet();
+					}
+				}
+			}
+			Executor executor = engine.getExecutor();
+			for (int i = 0; i <= target.index; i++) {
+				if (!needed[i])
+					continue;
+				final Node<?> node = node(i);
+				CompletableFuture<?> ready;
+				if (node.inputs.isEmpty()) {
+					ready = CompletableFuture.completedFuture(null);
+				} else {
+					CompletableFuture<?>[] inputs = new CompletableFuture<?>[node.inputs.size()];
+					for (int j = 0; j < inputs.length; j++) {
+						inputs[j] = done[node.inputs.get(j).index];
+					}
+					ready = CompletableFuture.allOf(inputs);
+				}
+				done[i] = ready.thenRunAsync(() -> solve(node), executor);
+				done[i].whenComplete((v, error) -> {
+					if (null != error)
+						fail(error);
+				});
+			}
+			CompletableFuture<S> result = new CompletableFuture<>();
+			done[target.index].whenComplete((v, error) -> {
+				if (null == error) {
+					result.complete((S) solutions[target.index]);
+				} else {
+					// the first failure of all nodes, not the one reaching the target
+					fail(error);
+					result.completeExceptionally(failure.get());
+				}
+			});
+			result.whenComplete((v, error) -> {
+				if (result.isCancelled())
+					token.cancel();
+			});
+			return result;
+		}
+
+		private void solve(Node<?> node) {
+			try {
+				token.check();
+				Object[] arguments = new Object[node.inputs.size()];
+				for (int j = 0; j < arguments.length; j++) {
+					arguments[j] = solutions[node.inputs.get(j).index];
+				}
+				Object facts = Objects.requireNonNull(node.facts.apply(arguments), Axela.FACTS_ARE_A_NULL_POINTER);
+				Object solution = token.call(() -> engine.solve(node.problem, facts));
+				solutions[node.index] = Objects.requireNonNull(solution, Axela.SOLUTION_IS_A_NULL_POINTER);
+			} finally {
+				release(node);
+			}
+		}
+
+		// drop the solutions of the inputs no other consumer needs anymore
+		private void release(Node<?> node) {
+			for (Node<?> input : node.inputs) {
+				if (0 == consumers[input.index].decrementAndGet())
+					solutions[input.index] = null;
+			}
+		}
+
+		private void fail(Throwable error) {
+			while (error instanceof CompletionException && null != error.getCause()) {
+				error = error.getCause();
+			}
+			if (failure.compareAndSet(null, error))
+				token.cancel();
+		}
+	}
+}
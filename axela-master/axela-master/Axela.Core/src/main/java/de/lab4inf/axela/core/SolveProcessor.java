@@ -0,0 +1,371 @@
+/*
+ * Project: Axela.Core
+ *
+ * Copyright (c) 2020,  Prof. Dr. Nikolaus Wulff
+ * University of Applied Sciences, Muenster, Germany
+ * Lab for computer sciences (Lab4Inf).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package de.lab4inf.axela.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming solve of a bound problem, a Flow.Processor receiving facts and
+ * publishing their solutions.<br>
+ * The facts are solved in micro-batches on the executor, with a bounded number
+ * of batches in flight. A batch is dispatched when it is full or, with the
+ * facts received so far, when no batch is running, so an open stream never
+ * holds back its facts waiting for a full batch. At most concurrency * batchSize facts are requested
+ * from the upstream publisher ahead of the emitted solutions, so a slow
+ * subscriber slows down the publisher of the facts. Solutions are emitted in
+ * the order of the facts unless the options allow any order.<br>
+ * A failing solve or publisher terminates the stream with its exception,
+ * cancelling the subscription of the facts and the running solves.
+ * 
+ * @see de.lab4inf.axela.core.Axela#solveStream(Object, Object, Options)
+ * @param <Facts>    generic fact type to parameterize the problem
+ * @param <Solution> generic solution type to return
+ */
+public final class SolveProcessor<Facts, Solution> implements Flow.Processor<Facts, Solution> {
+
+	/**
+	 * Immutable options of a streaming solve.
+	 */
+	public static final class Options {
+		/** One batch per processor, one fact per batch, in order. */
+		public static final Options DEFAULT = new Options(Runtime.getRuntime().availableProcessors(), 1, true);
+
+		private final int concurrency;
+		private final int batchSize;
+		private final boolean ordered;
+
+		private Options(int concurrency, int batchSize, boolean ordered) {
+			this.concurrency = concurrency;
+			this.batchSize = batchSize;
+			this.ordered = ordered;
+		}
+
+		/**
+		 * @param concurrency maximal number of batches solved at the same time
+		 * @return new options
+		 */
+		public Options withConcurrency(int concurrency) {
+			if (concurrency < 1)
+				throw new IllegalArgumentException("concurrency is not positive");
+			return new Options(concurrency, batchSize, ordered);
+		}
+
+		/**
+		 * @param batchSize maximal number of facts solved by one task
+		 * @return new options
+		 */
+		public Options withBatchSize(int batchSize) {
+			if (batchSize < 1)
+				throw new IllegalArgumentException("batch size is not positive");
+			return new Options(concurrency, batchSize, ordered);
+		}
+
+		/**
+		 * @param ordered false to emit the solutions as soon as they are solved
+		 * @return new options
+		 */
+		public Options withOrdered(boolean ordered) {
+			return new Options(concurrency, batchSize, ordered);
+		}
+
+		public int getConcurrency() {
+			return concurrency;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public boolean isOrdered() {
+			return ordered;
+		}
+	}
+
+	// solutions of one micro-batch, emitted by the drain loop only
+	private final class Batch {
+		final CompletableFuture<List<Solution>> future;
+		final int size;
+		List<Solution> solutions;
+		int next;
+
+		Batch(List<Facts> facts) {
+			size = facts.size();
+			future = CompletableFuture.supplyAsync(() -> token.call(() -> solveAll(facts)), executor);
+			future.whenComplete((s, e) -> {
+				running.decrementAndGet();
+				drain();
+			});
+		}
+	}
+
+	private final BoundSolver<Facts, Solution> solver;
+	private final Executor executor;
+	private final Options options;
+	private final CancellationToken token;
+
+	// state shared with the publisher, the subscriber and the running batches
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super Solution> downstream;
+	private volatile boolean completed;
+	private volatile Throwable upstreamError;
+	private volatile boolean cancelled;
+	private final Queue<Facts> received = new ConcurrentLinkedQueue<>();
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger wip = new AtomicInteger();
+
+	// state of the drain loop, accessed by one thread at a time
+	private final Queue<Facts> pending = new ArrayDeque<>();
+	private final Queue<Batch> inflight = new ArrayDeque<>();
+	private long outstanding;
+	private long unemitted;
+	private long emitted;
+	private boolean terminated;
+
+	/**
+	 * @param solver   bound solver of the problem
+	 * @param executor the batches are solved on
+	 * @param options  of the stream
+	 */
+	public SolveProcessor(final BoundSolver<Facts, Solution> solver, final Executor executor,
+			final Options options) {
+		this.solver = Objects.requireNonNull(solver, "solver is a NullPointer!");
+		this.executor = Objects.requireNonNull(executor, Axela.EXECUTOR_IS_A_NULL_POINTER);
+		this.options = Objects.requireNonNull(options, "options are a NullPointer!");
+		CancellationToken current = CancellationToken.current();
+		this.token = null == current ? new CancellationToken() : current.child();
+	}
+
+	public Options getOptions() {
+		return options;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Solution> subscriber) {
+		Objects.requireNonNull(subscriber, "subscriber is a NullPointer!");
+		synchronized (this) {
+			if (null == downstream) {
+				downstream = subscriber;
+				subscriber.onSubscribe(new Flow.Subscription() {
+					@Override
+					public void request(long n) {
+						if (n <= 0) {
+							upstreamError = new IllegalArgumentException("non-positive request: " + n);
+							cancel();
+							drain();
+							return;
+						}
+						demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+						drain();
+					}
+
+					@Override
+					public void cancel() {
+						SolveProcessor.this.cancel();
+					}
+				});
+				drain();
+				return;
+			}
+		}
+		subscriber.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		subscriber.onError(new IllegalStateException("solutions already subscribed"));
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription, "subscription is a NullPointer!");
+		synchronized (this) {
+			if (null == upstream && !cancelled) {
+				upstream = subscription;
+				drain();
+				return;
+			}
+		}
+		subscription.cancel();
+	}
+
+	@Override
+	public void onNext(Facts facts) {
+		received.add(Objects.requireNonNull(facts, Axela.FACTS_ARE_A_NULL_POINTER));
+		drain();
+	}
+
+	@Override
+	public void onError(Throwable error) {
+		upstreamError = Objects.requireNonNull(error, "error is a NullPointer!");
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		completed = true;
+		drain();
+	}
+
+	private void cancel() {
+		cancelled = true;
+		token.cancel();
+		Flow.Subscription subscription = upstream;
+		if (null != subscription)
+			subscription.cancel();
+	}
+
+	private List<Solution> solveAll(List<Facts> facts) {
+		List<Solution> solutions = new ArrayList<>(facts.size());
+		for (Facts f : facts) {
+			token.check();
+			solutions.add(solver.solve(f));
+		}
+		return solutions;
+	}
+
+	// serializes all signals to the subscriber, re-entrant calls are looped
+	private void drain() {
+		if (0 != wip.getAndIncrement())
+			return;
+		int missed = 1;
+		do {
+			if (!terminated)
+				step();
+			missed = wip.addAndGet(-missed);
+		} while (0 != missed);
+	}
+
+	private void step() {
+		Flow.Subscriber<? super Solution> subscriber = downstream;
+		if (null == subscriber)
+			return;
+		Facts facts;
+		while (null != (facts = received.poll())) {
+			pending.add(facts);
+			outstanding--;
+		}
+		Throwable error = upstreamError;
+		if (null != error) {
+			fail(subscriber, error);
+			return;
+		}
+		if (cancelled) {
+			terminate();
+			return;
+		}
+		// emit the solved facts the subscriber asked for
+		while (emitted < demand.get()) {
+			Batch batch = options.ordered ? inflight.peek() : firstDone();
+			if (null == batch || !batch.future.isDone())
+				break;
+			if (null == batch.solutions) {
+				try {
+					batch.solutions = batch.future.join();
+				} catch (CompletionException e) {
+					fail(subscriber, e.getCause());
+					return;
+				} catch (RuntimeException e) {
+					fail(subscriber, e);
+					return;
+				}
+			}
+			Solution solution = batch.solutions.get(batch.next++);
+			if (batch.next == batch.size)
+				inflight.remove(batch);
+			unemitted--;
+			emitted++;
+			subscriber.onNext(solution);
+			if (cancelled) {
+				terminate();
+				return;
+			}
+		}
+		if (completed && pending.isEmpty() && inflight.isEmpty()) {
+			terminate();
+			subscriber.onComplete();
+			return;
+		}
+		// a partial batch is dispatched if no batch is running, which bounds the
+		// latency of an open stream by the solve of one batch
+		while (!pending.isEmpty() && running.get() < options.concurrency
+				&& (pending.size() >= options.batchSize || 0 == running.get() || 0 == outstanding || completed)) {
+			List<Facts> batch = new ArrayList<>(Math.min(pending.size(), options.batchSize));
+			while (batch.size() < options.batchSize && !pending.isEmpty()) {
+				batch.add(pending.poll());
+			}
+			running.incrementAndGet();
+			unemitted += batch.size();
+			try {
+				inflight.add(new Batch(batch));
+			} catch (RejectedExecutionException e) {
+				fail(subscriber, e);
+				return;
+			}
+		}
+		Flow.Subscription subscription = upstream;
+		long window = (long) options.concurrency * options.batchSize;
+		long buffered = outstanding + pending.size() + unemitted;
+		if (null != subscription && !completed && buffered < window) {
+			outstanding += window - buffered;
+			subscription.request(window - buffered);
+		}
+	}
+
+	private Batch firstDone() {
+		for (Iterator<Batch> it = inflight.iterator(); it.hasNext();) {
+			Batch batch = it.next();
+			if (batch.future.isDone())
+				return batch;
+		}
+		return null;
+	}
+
+	private void fail(Flow.Subscriber<? super Solution> subscriber, Throwable error) {
+		cancel();
+		terminate();
+		subscriber.onError(error);
+	}
+
+	private void terminate() {
+		terminated = true;
+		pending.clear();
+		inflight.clear();
+		received.clear();
+	}
+}
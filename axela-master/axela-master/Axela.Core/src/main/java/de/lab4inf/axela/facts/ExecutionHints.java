@@ -0,0 +1,218 @@
+package de.lab4inf.axela.facts;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import de.lab4inf.axela.core.CancellationToken;
+
+/**
+ * Immutable hints on how a solver should execute a problem, carried along with
+ * the facts. Hints are never part of the identity of the facts, except the
+ * precision and the algorithm which change the solution. Solvers are free to
+ * ignore a hint they can not honor.
+ */
+public final class ExecutionHints {
+
+	/** Precision the solver computes with. */
+	public enum Precision {
+		DOUBLE, FLOAT
+	}
+
+	/**
+	 * Algorithm the solver computes with, solvers without a STRASSEN variant use
+	 * their classical one. Sub-cubic matrix products trade some accuracy for
+	 * speed on large matrices.
+	 */
+	public enum Algorithm {
+		CLASSICAL, STRASSEN
+	}
+
+	/** Parallelism is left to the solver. */
+	public static final int ANY_PARALLELISM = 0;
+	/** Use as many threads as there is work for. */
+	public static final int MAX_PARALLELISM = Integer.MAX_VALUE;
+
+	/** No hints at all, the solver decides. */
+	public static final ExecutionHints DEFAULT = new ExecutionHints(ANY_PARALLELISM, null, Precision.DOUBLE,
+			Algorithm.CLASSICAL, false, 0, null, null);
+
+	private final int parallelism;
+	private final Executor executor;
+	private final Precision precision;
+	private final Algorithm algorithm;
+	private final boolean timed;
+	private final long deadline;
+	private final Object output;
+	private final CancellationToken cancellation;
+
+	private ExecutionHints(int parallelism, Executor executor, Precision precision, Algorithm algorithm, boolean timed,
+			long deadline, Object output, CancellationToken cancellation) {
+		this.parallelism = parallelism;
+		this.executor = executor;
+		this.precision = precision;
+		this.algorithm = algorithm;
+		this.timed = timed;
+		this.deadline = deadline;
+		this.output = output;
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * Hints for a strict single threaded execution.
+	 * 
+	 * @return serial hints
+	 */
+	public static ExecutionHints serial() {
+		return DEFAULT.withParallelism(1);
+	}
+
+	/**
+	 * Hints for a parallel execution using as many threads as there is work for.
+	 * 
+	 * @return parallel hints
+	 */
+	public static ExecutionHints parallel() {
+		return DEFAULT.withParallelism(MAX_PARALLELISM);
+	}
+
+	/**
+	 * @param parallelism maximal number of threads, 0 leaves it to the solver
+	 * @return new hints
+	 */
+	public ExecutionHints withParallelism(int parallelism) {
+		if (parallelism < 0)
+			throw new IllegalArgumentException("parallelism is negative");
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param executor the parallel parts are run on, null for the solver default
+	 * @return new hints
+	 */
+	public ExecutionHints withExecutor(Executor executor) {
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param precision to compute with
+	 * @return new hints
+	 */
+	public ExecutionHints withPrecision(Precision precision) {
+		Objects.requireNonNull(precision, "precision is a Nullpointer!");
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param algorithm to compute with
+	 * @return new hints
+	 */
+	public ExecutionHints withAlgorithm(Algorithm algorithm) {
+		Objects.requireNonNull(algorithm, "algorithm is a Nullpointer!");
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param deadline as System.nanoTime() value
+	 * @return new hints
+	 */
+	public ExecutionHints withDeadline(long deadline) {
+		return new ExecutionHints(parallelism, executor, precision, algorithm, true, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param timeout from now on
+	 * @return new hints with a deadline
+	 */
+	public ExecutionHints withTimeout(Duration timeout) {
+		Objects.requireNonNull(timeout, "timeout is a Nullpointer!");
+		return withDeadline(System.nanoTime() + timeout.toNanos());
+	}
+
+	/**
+	 * The caller reuses the given buffer for the solution. A solver writes into
+	 * it if the shape fits, otherwise a new solution is allocated. Solutions
+	 * written into a reused buffer must not be shared, e.g. by memoization.
+	 * 
+	 * @param output buffer, null to allocate a new solution
+	 * @return new hints
+	 */
+	public ExecutionHints withOutput(Object output) {
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * @param cancellation token to cancel the solve, null for the token of the
+	 *                     calling thread
+	 * @return new hints
+	 */
+	public ExecutionHints withCancellation(CancellationToken cancellation) {
+		return new ExecutionHints(parallelism, executor, precision, algorithm, timed, deadline, output, cancellation);
+	}
+
+	/**
+	 * A new token for one solve, cancelled together with the token of these hints
+	 * or else the current token of the calling thread, and expiring at the
+	 * deadline of these hints. Solvers may cancel it on their own, e.g. if one of
+	 * their parallel tasks fails.
+	 * 
+	 * @return token to check while solving
+	 */
+	public CancellationToken newToken() {
+		CancellationToken parent = null == cancellation ? CancellationToken.current() : cancellation;
+		if (null == parent)
+			return timed ? CancellationToken.deadline(deadline) : new CancellationToken();
+		return timed ? parent.child(deadline) : parent.child();
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public boolean hasDeadline() {
+		return timed;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * @return true if the deadline has passed
+	 */
+	public boolean isExpired() {
+		return timed && System.nanoTime() - deadline >= 0;
+	}
+
+	public CancellationToken getCancellation() {
+		return cancellation;
+	}
+
+	public Object getOutput() {
+		return output;
+	}
+
+	public boolean isOutputReused() {
+		return null != output;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"ExecutionHints[parallelism=%d, precision=%s, algorithm=%s, deadline=%s, executor=%s, output=%s]",
+				parallelism, precision, algorithm, timed ? String.valueOf(deadline) : "none", executor,
+				isOutputReused());
+	}
+}
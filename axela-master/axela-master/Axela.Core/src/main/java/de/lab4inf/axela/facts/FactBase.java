@@ -6,18 +6,27 @@ public class FactBase<F1, F2> {
 
 	private final F1 fact1;
 	private final F2 fact2;
-	private final boolean speedUp;
+	private final ExecutionHints hints;
+	private final int signature;
 
 	public FactBase(F1 fact1, F2 fact2) {
-		this.fact1 = Objects.requireNonNull(fact1, "fact is a Nullpointer!");
-		this.fact2 = Objects.requireNonNull(fact2, "fact is a Nullpointer!");
-		this.speedUp = false;
+		this(fact1, fact2, ExecutionHints.DEFAULT);
 	}
-	
+
+	/**
+	 * @deprecated use the hints {@link ExecutionHints#parallel()} or
+	 *             {@link ExecutionHints#serial()} instead
+	 */
+	@Deprecated
 	public FactBase(F1 fact1, F2 fact2, boolean speedUp) {
+		this(fact1, fact2, speedUp ? ExecutionHints.parallel() : ExecutionHints.DEFAULT);
+	}
+
+	public FactBase(F1 fact1, F2 fact2, ExecutionHints hints) {
 		this.fact1 = Objects.requireNonNull(fact1, "fact is a Nullpointer!");
 		this.fact2 = Objects.requireNonNull(fact2, "fact is a Nullpointer!");
-		this.speedUp = Objects.requireNonNull(speedUp, "fact is a Nullpointer!");
+		this.hints = Objects.requireNonNull(hints, "hints are a Nullpointer!");
+		this.signature = signature(fact1, fact2);
 	}
 
 	public F1 getFact1() {
@@ -28,17 +37,32 @@ public class FactBase<F1, F2> {
 		return this.fact2;
 	}
 	
+	public ExecutionHints getHints() {
+		return this.hints;
+	}
+
+	/**
+	 * @deprecated use {@link #getHints()} instead
+	 * @return true if the hints ask for more than one thread
+	 */
+	@Deprecated
 	public boolean getSpeedUp() {
-		return this.speedUp;
+		return this.hints.getParallelism() > 1;
 	}
 
 	public int getSignature() {
-		return Objects.hash(this.fact1.getClass(), this.fact2.getClass());
+		return this.signature;
+	}
+
+	// same value as Objects.hash(f1.getClass(), f2.getClass()) without varargs array
+	private static int signature(Object f1, Object f2) {
+		return 31 * (31 + f1.getClass().hashCode()) + f2.getClass().hashCode();
 	}
 
+	// content based, arrays are hashed by their elements
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.fact1, this.fact2);
+		return 31 * (31 + FactKey.contentHash(this.fact1)) + FactKey.contentHash(this.fact2);
 	}
 
 	@Override
@@ -50,7 +74,10 @@ public class FactBase<F1, F2> {
 		if (!(obj instanceof FactBase))
 			return false;
 		FactBase<?, ?> other = (FactBase<?, ?>) obj;
-		return this.fact1.equals(other.fact1) && this.fact2.equals(other.fact2);
+		// the precision and the algorithm change the solution, all other hints do not
+		return this.hints.getPrecision() == other.hints.getPrecision()
+				&& this.hints.getAlgorithm() == other.hints.getAlgorithm()
+				&& Objects.deepEquals(this.fact1, other.fact1) && Objects.deepEquals(this.fact2, other.fact2);
 	}
 
 }
@@ -0,0 +1,134 @@
+package de.lab4inf.axela.facts;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Content addressed key of a problem and its facts. Arrays, also nested ones,
+ * are compared by their elements and not by identity. The hash is calculated
+ * once, so the facts must not be changed while the key is in use; keys kept
+ * beyond a call should be a {@link #copy()}.
+ */
+public final class FactKey {
+	private final Object problem;
+	private final Object facts;
+	private final int hash;
+
+	public FactKey(Object problem, Object facts) {
+		this.problem = Objects.requireNonNull(problem, "problem is a NullPointer!");
+		this.facts = Objects.requireNonNull(facts, "facts are a NullPointer!");
+		this.hash = 31 * contentHash(problem) + contentHash(facts);
+	}
+
+	public Object getProblem() {
+		return this.problem;
+	}
+
+	public Object getFacts() {
+		return this.facts;
+	}
+
+	/**
+	 * Key with deep copies of the array facts, also within a FactBase, which the
+	 * caller may change afterwards. Other facts are kept and must not be changed.
+	 * 
+	 * @return key independent of the arrays of the caller
+	 */
+	public FactKey copy() {
+		return new FactKey(copyOf(problem), copyOf(facts));
+	}
+
+	/**
+	 * Deep copy of (nested) arrays, FactBases keep only the hints their equality
+	 * depends on.
+	 * 
+	 * @param o object to copy, may be null
+	 * @return copy of arrays or the object itself
+	 */
+	static Object copyOf(Object o) {
+		if (o instanceof FactBase<?, ?>) {
+			FactBase<?, ?> f = (FactBase<?, ?>) o;
+			ExecutionHints h = f.getHints();
+			return new FactBase<>(copyOf(f.getFact1()), copyOf(f.getFact2()),
+					ExecutionHints.DEFAULT.withPrecision(h.getPrecision()).withAlgorithm(h.getAlgorithm()));
+		}
+		if (o instanceof Object[]) {
+			Object[] a = ((Object[]) o).clone();
+			for (int i = 0; i < a.length; i++)
+				a[i] = copyOf(a[i]);
+			return a;
+		}
+		if (null != o && o.getClass().isArray())
+			return copyOfPrimitives(o);
+		return o;
+	}
+
+	private static Object copyOfPrimitives(Object o) {
+		if (o instanceof double[])
+			return ((double[]) o).clone();
+		if (o instanceof float[])
+			return ((float[]) o).clone();
+		if (o instanceof long[])
+			return ((long[]) o).clone();
+		if (o instanceof int[])
+			return ((int[]) o).clone();
+		if (o instanceof short[])
+			return ((short[]) o).clone();
+		if (o instanceof char[])
+			return ((char[]) o).clone();
+		if (o instanceof byte[])
+			return ((byte[]) o).clone();
+		return ((boolean[]) o).clone();
+	}
+
+	/**
+	 * Hash code of an object using the content of (nested) arrays.
+	 * 
+	 * @param o object to hash, may be null
+	 * @return content based hash code
+	 */
+	static int contentHash(Object o) {
+		if (o instanceof Object[])
+			return Arrays.deepHashCode((Object[]) o);
+		if (o instanceof double[])
+			return Arrays.hashCode((double[]) o);
+		if (o instanceof float[])
+			return Arrays.hashCode((float[]) o);
+		if (o instanceof long[])
+			return Arrays.hashCode((long[]) o);
+		if (o instanceof int[])
+			return Arrays.hashCode((int[]) o);
+		if (o instanceof short[])
+			return Arrays.hashCode((short[]) o);
+		if (o instanceof char[])
+			return Arrays.hashCode((char[]) o);
+		if (o instanceof byte[])
+			return Arrays.hashCode((byte[]) o);
+		if (o instanceof boolean[])
+			return Arrays.hashCode((boolean[]) o);
+		return Objects.hashCode(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (!(obj instanceof FactKey))
+			return false;
+		FactKey other = (FactKey) obj;
+		return this.hash == other.hash && Objects.deepEquals(this.problem, other.problem)
+				&& Objects.deepEquals(this.facts, other.facts);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FactKey[%s, %08x]", this.problem, this.hash);
+	}
+}
@@ -0,0 +1,12 @@
+package de.lab4inf.axela.facts;
+
+/**
+ * Fact or solution estimating its own size, e.g. for the weight bound of a
+ * solution cache.
+ */
+public interface Weighable {
+	/**
+	 * @return estimated bytes of the elements, on or off heap
+	 */
+	long weight();
+}
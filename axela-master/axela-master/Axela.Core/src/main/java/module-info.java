@@ -3,4 +3,5 @@ module Axela.Core {
 	exports de.lab4inf.axela.facts;
 	
 	uses de.lab4inf.axela.core.Axela;
-}
\ No newline at end of file
+	uses de.lab4inf.axela.core.Axela.Plugin;
+}
@@ -0,0 +1,118 @@
+package de.lab4inf.axela.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class CancellationTokenTest {
+
+	@Test
+	void testCancel() {
+		CancellationToken token = new CancellationToken();
+		token.check();
+		assertEquals(false, token.isCancelled());
+		assertEquals(false, token.isExpired());
+		token.cancel();
+		assertEquals(true, token.isCancelled());
+		try {
+			token.check();
+			fail("no exception with cancelled token thrown");
+		} catch (DeadlineExceededException error) {
+			fail("cancelled token is not expired");
+		} catch (SolveCancelledException error) {
+			assertTrue(error.getMessage().contains("cancelled"));
+		}
+	}
+
+	@Test
+	void testDeadline() {
+		assertEquals(false, CancellationToken.timeout(Duration.ofHours(1)).isExpired());
+		CancellationToken token = CancellationToken.deadline(System.nanoTime() - 1);
+		assertEquals(true, token.isExpired());
+		assertEquals(false, token.isCancelled());
+		try {
+			token.check();
+			fail("no exception with expired token thrown");
+		} catch (DeadlineExceededException error) {
+			assertTrue(error.getMessage().contains("deadline exceeded"));
+		}
+	}
+
+	@Test
+	void testChild() {
+		CancellationToken parent = new CancellationToken();
+		CancellationToken child = parent.child();
+		CancellationToken sibling = parent.child(System.nanoTime() - 1);
+		assertEquals(true, sibling.isExpired());
+		assertEquals(false, parent.isExpired());
+		child.cancel();
+		assertEquals(false, parent.isCancelled());
+		parent.cancel();
+		assertEquals(true, sibling.isCancelled());
+	}
+
+	@Test
+	void testOnCancel() {
+		CancellationToken parent = new CancellationToken();
+		CancellationToken child = parent.child();
+		AtomicInteger runs = new AtomicInteger();
+		Runnable unregister = child.onCancel(runs::incrementAndGet);
+		child.onCancel(runs::incrementAndGet).run();
+		// the parent cancels the child and runs its actions
+		parent.cancel();
+		assertEquals(1, runs.get());
+		unregister.run();
+		child.cancel();
+		assertEquals(1, runs.get());
+		// at once on a cancelled token
+		child.onCancel(runs::incrementAndGet);
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	void testRemaining() {
+		assertEquals(Long.MAX_VALUE, new CancellationToken().remaining());
+		CancellationToken parent = CancellationToken.timeout(Duration.ofSeconds(1));
+		long remaining = parent.child(System.nanoTime() + 3_600_000_000_000L).remaining();
+		assertTrue(remaining > 0 && remaining <= 1_000_000_000L, "remaining " + remaining);
+		assertTrue(CancellationToken.deadline(System.nanoTime() - 1).remaining() <= 0);
+	}
+
+	@Test
+	void testCurrent() {
+		CancellationToken outer = new CancellationToken();
+		CancellationToken inner = new CancellationToken();
+		assertNull(CancellationToken.current());
+		String result = outer.call(() -> {
+			assertSame(outer, CancellationToken.current());
+			inner.call(() -> {
+				CancellationToken scope = CancellationToken.current();
+				assertEquals(false, scope.isCancelled());
+				outer.cancel();
+				assertEquals(true, scope.isCancelled());
+				assertEquals(false, inner.isCancelled());
+				return null;
+			});
+			assertSame(outer, CancellationToken.current());
+			return "done";
+		});
+		assertEquals("done", result);
+		assertNull(CancellationToken.current());
+		try {
+			outer.call(() -> {
+				fail("action of a cancelled token called");
+				return null;
+			});
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException error) {
+			assertNull(CancellationToken.current());
+		}
+	}
+}
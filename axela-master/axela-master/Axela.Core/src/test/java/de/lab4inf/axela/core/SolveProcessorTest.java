@@ -0,0 +1,364 @@
+package de.lab4inf.axela.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.SolveProcessor.Options;
+
+class SolveProcessorTest {
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	private final BoundSolver<Integer, Integer> square = x -> x * x;
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testOrdered() throws Exception {
+		BoundSolver<Integer, Integer> slow = x -> {
+			sleep(ThreadLocalRandom.current().nextInt(3));
+			return x * x;
+		};
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(slow, executor,
+				Options.DEFAULT.withConcurrency(4).withBatchSize(3));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		new FactPublisher(100).subscribe(processor);
+		processor.subscribe(solutions);
+		solutions.await();
+		assertNull(solutions.error);
+		assertEquals(IntStream.range(0, 100).map(x -> x * x).boxed().collect(Collectors.toList()), solutions.items);
+	}
+
+	@Test
+	void testUnordered() throws Exception {
+		BoundSolver<Integer, Integer> slow = x -> {
+			sleep(x % 2 == 0 ? 2 : 0);
+			return x * x;
+		};
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(slow, executor,
+				Options.DEFAULT.withConcurrency(4).withOrdered(false));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		new FactPublisher(100).subscribe(processor);
+		processor.subscribe(solutions);
+		solutions.await();
+		assertNull(solutions.error);
+		assertEquals(100, solutions.items.size());
+		assertEquals(IntStream.range(0, 100).map(x -> x * x).boxed().collect(Collectors.toSet()),
+				new HashSet<>(solutions.items));
+	}
+
+	@Test
+	void testBackpressure() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor,
+				Options.DEFAULT.withConcurrency(2).withBatchSize(4));
+		FactPublisher facts = new FactPublisher(1000);
+		Collector<Integer> solutions = new Collector<>(5);
+		facts.subscribe(processor);
+		processor.subscribe(solutions);
+		Thread.sleep(100);
+		assertEquals(5, solutions.items.size());
+		assertTrue(facts.requested.get() <= 5 + 2 * 4, "requested " + facts.requested.get());
+		solutions.subscription.request(Long.MAX_VALUE);
+		solutions.await();
+		assertEquals(1000, solutions.items.size());
+	}
+
+	@Test
+	void testMicroBatches() throws Exception {
+		AtomicInteger tasks = new AtomicInteger();
+		Executor counting = task -> {
+			tasks.incrementAndGet();
+			executor.execute(task);
+		};
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, counting,
+				Options.DEFAULT.withConcurrency(2).withBatchSize(10));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		new FactPublisher(100).subscribe(processor);
+		processor.subscribe(solutions);
+		solutions.await();
+		assertEquals(100, solutions.items.size());
+		assertEquals(10, tasks.get());
+	}
+
+	@Test
+	void testPartialBatch() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor,
+				Options.DEFAULT.withBatchSize(64));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		new FactPublisher(3).subscribe(processor);
+		processor.subscribe(solutions);
+		solutions.await();
+		assertEquals(List.of(0, 1, 4), solutions.items);
+	}
+
+	@Test
+	void testOpenStream() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor,
+				Options.DEFAULT.withBatchSize(8));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(solutions);
+		try (SubmissionPublisher<Integer> facts = new SubmissionPublisher<>()) {
+			facts.subscribe(processor);
+			// a single fact of a stream that is not completed
+			facts.submit(3);
+			awaitItems(solutions, 1);
+			assertEquals(List.of(9), solutions.items);
+		}
+	}
+
+	@Test
+	void testSlowPublisher() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor,
+				Options.DEFAULT.withConcurrency(2).withBatchSize(16));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(solutions);
+		SubmissionPublisher<Integer> facts = new SubmissionPublisher<>();
+		facts.subscribe(processor);
+		// fewer facts than a batch, the publisher is never completed
+		for (int k = 0; k < 10; k++) {
+			facts.submit(k);
+			sleep(5);
+		}
+		awaitItems(solutions, 10);
+		assertEquals(IntStream.range(0, 10).map(x -> x * x).boxed().collect(Collectors.toList()), solutions.items);
+		assertEquals(1, solutions.done.getCount());
+	}
+
+	@Test
+	void testPipeline() throws Exception {
+		SolveProcessor<Integer, Integer> first = new SolveProcessor<>(square, executor, Options.DEFAULT);
+		SolveProcessor<Integer, Integer> second = new SolveProcessor<>(x -> x + 1, executor,
+				Options.DEFAULT.withBatchSize(8));
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		new FactPublisher(50).subscribe(first);
+		first.subscribe(second);
+		second.subscribe(solutions);
+		solutions.await();
+		assertEquals(IntStream.range(0, 50).map(x -> x * x + 1).boxed().collect(Collectors.toList()), solutions.items);
+	}
+
+	@Test
+	void testSolverError() throws Exception {
+		BoundSolver<Integer, Integer> failing = x -> {
+			if (x == 42)
+				throw new IllegalArgumentException("bad facts");
+			return x;
+		};
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(failing, executor, Options.DEFAULT);
+		FactPublisher facts = new FactPublisher(1000);
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		facts.subscribe(processor);
+		processor.subscribe(solutions);
+		solutions.await();
+		assertTrue(solutions.error instanceof IllegalArgumentException, String.valueOf(solutions.error));
+		assertEquals(42, solutions.items.size());
+		assertTrue(facts.cancelled.get(), "facts not cancelled");
+	}
+
+	@Test
+	void testPublisherError() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor, Options.DEFAULT);
+		Collector<Integer> solutions = new Collector<>(Long.MAX_VALUE);
+		processor.subscribe(solutions);
+		processor.onSubscribe(new Flow.Subscription() {
+			@Override
+			public void request(long n) {
+			}
+
+			@Override
+			public void cancel() {
+			}
+		});
+		processor.onError(new IllegalStateException("sensor lost"));
+		solutions.await();
+		assertEquals("sensor lost", solutions.error.getMessage());
+	}
+
+	@Test
+	void testCancel() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor, Options.DEFAULT);
+		FactPublisher facts = new FactPublisher(1000);
+		Collector<Integer> solutions = new Collector<>(3);
+		facts.subscribe(processor);
+		processor.subscribe(solutions);
+		Thread.sleep(50);
+		solutions.subscription.cancel();
+		assertTrue(facts.cancelled.get(), "facts not cancelled");
+		assertEquals(3, solutions.items.size());
+	}
+
+	@Test
+	void testNonPositiveRequest() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor, Options.DEFAULT);
+		Collector<Integer> solutions = new Collector<>(0);
+		processor.subscribe(solutions);
+		solutions.subscription.request(0);
+		solutions.await();
+		assertTrue(solutions.error instanceof IllegalArgumentException, String.valueOf(solutions.error));
+	}
+
+	@Test
+	void testSecondSubscriber() throws Exception {
+		SolveProcessor<Integer, Integer> processor = new SolveProcessor<>(square, executor, Options.DEFAULT);
+		processor.subscribe(new Collector<>(0));
+		Collector<Integer> second = new Collector<>(0);
+		processor.subscribe(second);
+		second.await();
+		assertTrue(second.error instanceof IllegalStateException, String.valueOf(second.error));
+	}
+
+	@Test
+	void testOptions() {
+		try {
+			Options.DEFAULT.withConcurrency(0);
+			fail("no exception with zero concurrency thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("concurrency"), error.getMessage());
+		}
+		try {
+			Options.DEFAULT.withBatchSize(0);
+			fail("no exception with zero batch size thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("batch size"), error.getMessage());
+		}
+		Options options = Options.DEFAULT.withConcurrency(3).withBatchSize(5).withOrdered(false);
+		assertEquals(3, options.getConcurrency());
+		assertEquals(5, options.getBatchSize());
+		assertEquals(false, options.isOrdered());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitItems(Collector<?> collector, int n) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+		while (collector.items.size() < n) {
+			assertTrue(System.nanoTime() < end, "solutions not emitted: " + collector.items);
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * Publisher of the numbers 0..n-1, delivered synchronously on request.
+	 */
+	static class FactPublisher implements Flow.Publisher<Integer> {
+		final Iterator<Integer> facts;
+		final AtomicLong requested = new AtomicLong();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final AtomicBoolean completed = new AtomicBoolean();
+
+		FactPublisher(int n) {
+			facts = IntStream.range(0, n).iterator();
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super Integer> subscriber) {
+			subscriber.onSubscribe(new Subscription(subscriber));
+		}
+
+		class Subscription implements Flow.Subscription {
+			final Flow.Subscriber<? super Integer> subscriber;
+			final AtomicLong demand = new AtomicLong();
+			final AtomicInteger wip = new AtomicInteger();
+
+			Subscription(Flow.Subscriber<? super Integer> subscriber) {
+				this.subscriber = subscriber;
+			}
+
+			@Override
+			public void request(long n) {
+				requested.addAndGet(n);
+				demand.addAndGet(n);
+				if (0 != wip.getAndIncrement())
+					return;
+				do {
+					synchronized (facts) {
+						while (demand.get() > 0 && facts.hasNext() && !cancelled.get()) {
+							demand.decrementAndGet();
+							subscriber.onNext(facts.next());
+						}
+						if (!facts.hasNext() && !cancelled.get() && completed.compareAndSet(false, true))
+							subscriber.onComplete();
+					}
+				} while (0 != wip.decrementAndGet());
+			}
+
+			@Override
+			public void cancel() {
+				cancelled.set(true);
+			}
+		}
+	}
+
+	/**
+	 * Subscriber collecting the solutions, requesting the given number at first.
+	 */
+	static class Collector<T> implements Flow.Subscriber<T> {
+		final List<T> items = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(1);
+		final long initial;
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+
+		Collector(long initial) {
+			this.initial = initial;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initial > 0)
+				subscription.request(initial);
+		}
+
+		@Override
+		public void onNext(T item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+
+		void await() throws InterruptedException {
+			assertTrue(done.await(10, TimeUnit.SECONDS), "stream not terminated");
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package de.lab4inf.axela.facts;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+
+class ExecutionHintsTest {
+
+	@Test
+	void testDefault() {
+		ExecutionHints hints = ExecutionHints.DEFAULT;
+		assertEquals(ExecutionHints.ANY_PARALLELISM, hints.getParallelism());
+		assertNull(hints.getExecutor());
+		assertEquals(Precision.DOUBLE, hints.getPrecision());
+		assertEquals(Algorithm.CLASSICAL, hints.getAlgorithm());
+		assertEquals(false, hints.hasDeadline());
+		assertEquals(false, hints.isExpired());
+		assertEquals(false, hints.isOutputReused());
+	}
+
+	@Test
+	void testWith() {
+		Executor executor = Runnable::run;
+		double[] buffer = new double[3];
+		ExecutionHints hints = ExecutionHints.serial().withExecutor(executor).withPrecision(Precision.FLOAT)
+				.withAlgorithm(Algorithm.STRASSEN).withOutput(buffer);
+		assertEquals(1, hints.getParallelism());
+		assertSame(executor, hints.getExecutor());
+		assertEquals(Precision.FLOAT, hints.getPrecision());
+		assertEquals(Algorithm.STRASSEN, hints.getAlgorithm());
+		assertSame(buffer, hints.getOutput());
+		assertEquals(true, hints.isOutputReused());
+		assertEquals(ExecutionHints.MAX_PARALLELISM, ExecutionHints.parallel().getParallelism());
+		// the defaults are not changed
+		assertEquals(ExecutionHints.ANY_PARALLELISM, ExecutionHints.DEFAULT.getParallelism());
+		assertNull(ExecutionHints.DEFAULT.getOutput());
+	}
+
+	@Test
+	void testDeadline() {
+		ExecutionHints hints = ExecutionHints.DEFAULT.withTimeout(Duration.ofHours(1));
+		assertEquals(true, hints.hasDeadline());
+		assertEquals(false, hints.isExpired());
+		hints = ExecutionHints.DEFAULT.withDeadline(System.nanoTime() - 1);
+		assertEquals(true, hints.isExpired());
+	}
+
+	@Test
+	void testNewToken() {
+		CancellationToken token = new CancellationToken();
+		ExecutionHints hints = ExecutionHints.DEFAULT.withCancellation(token);
+		assertSame(token, hints.getCancellation());
+		CancellationToken solve = hints.newToken();
+		solve.cancel();
+		assertEquals(false, token.isCancelled());
+		CancellationToken other = hints.newToken();
+		token.cancel();
+		assertEquals(true, other.isCancelled());
+		// the deadline of the hints
+		assertEquals(true, ExecutionHints.DEFAULT.withDeadline(System.nanoTime() - 1).newToken().isExpired());
+		// the token of the calling thread
+		CancellationToken outer = new CancellationToken();
+		CancellationToken inner = outer.call(() -> ExecutionHints.DEFAULT.newToken());
+		outer.cancel();
+		assertEquals(true, inner.isCancelled());
+	}
+
+	@Test
+	void testIllegal() {
+		try {
+			ExecutionHints.DEFAULT.withParallelism(-1);
+			fail("no exception with negative parallelism thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("parallelism"));
+		}
+		try {
+			ExecutionHints.DEFAULT.withPrecision(null);
+			fail("no exception with null precision thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains("precision is a Nullpointer!"));
+		}
+	}
+}
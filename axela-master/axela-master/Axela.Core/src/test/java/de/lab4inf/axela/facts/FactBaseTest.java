@@ -10,6 +10,9 @@ import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+
 
 class FactBaseTest {
 	Random rd = new Random();
@@ -66,6 +69,27 @@ class FactBaseTest {
 		assertEquals(false, facts3.getSpeedUp());
 	}
 	
+	@Test
+	void testHints() {
+		Integer one = rd.nextInt(), two = rd.nextInt();
+		ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(3);
+		FactBase<Integer, Integer> facts = new FactBase<>(one, two, hints);
+		assertEquals(hints, facts.getHints());
+		assertEquals(true, facts.getSpeedUp());
+		assertEquals(ExecutionHints.DEFAULT, new FactBase<>(one, two).getHints());
+		assertEquals(facts, new FactBase<>(one, two));
+		FactBase<Integer, Integer> single = new FactBase<>(one, two, hints.withPrecision(Precision.FLOAT));
+		assertEquals(false, facts.equals(single));
+		FactBase<Integer, Integer> strassen = new FactBase<>(one, two, hints.withAlgorithm(Algorithm.STRASSEN));
+		assertEquals(false, facts.equals(strassen));
+		try {
+			new FactBase<>(one, two, (ExecutionHints) null);
+			fail("no exception with null hints thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains("hints are a Nullpointer!"));
+		}
+	}
+
 	@Test
 	void testSignature() {
 		Integer one = rd.nextInt(), two = rd.nextInt();
@@ -134,5 +158,23 @@ class FactBaseTest {
 		assertEquals(facts1.equals("test"), false);
 	}
 
+	@Test
+	void testHashArrays() {
+		double[][] a = { { 1., 2. }, { 3., 4. } };
+		double[][] b = { { 1., 2. }, { 3., 4. } };
+		FactBase<double[][], double[]> facts1 = new FactBase<>(a, new double[] { 5. });
+		FactBase<double[][], double[]> facts2 = new FactBase<>(b, new double[] { 5. });
+		assertEquals(facts1.hashCode(), facts2.hashCode());
+		assertEquals(facts1.equals(facts2), true);
+	}
+
+	@Test
+	void testEqualsArraysFalse() {
+		double[][] a = { { 1., 2. }, { 3., 4. } };
+		double[][] b = { { 1., 2. }, { 3., 5. } };
+		FactBase<double[][], double[][]> facts1 = new FactBase<>(a, a);
+		FactBase<double[][], double[][]> facts2 = new FactBase<>(a, b);
+		assertEquals(facts1.equals(facts2), false);
+	}
 
 }
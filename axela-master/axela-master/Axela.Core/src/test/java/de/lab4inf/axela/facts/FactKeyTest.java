@@ -0,0 +1,74 @@
+package de.lab4inf.axela.facts;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+class FactKeyTest {
+
+	@Test
+	void testNullProblem() {
+		try {
+			new FactKey(null, new double[0]);
+			fail("no exception with NP problem thrown");
+		} catch (NullPointerException error) {
+			assertNotNull(error.getMessage(), "empty exception is meaningless");
+			assertTrue(error.getMessage().contains("problem is a NullPointer!"));
+		}
+	}
+
+	@Test
+	void testScriptKey() {
+		FactKey key1 = new FactKey("Script", new String[] { "1+2", "3*4" });
+		FactKey key2 = new FactKey("Script", new String[] { "1+2", "3*4" });
+		FactKey key3 = new FactKey("Script", new String[] { "1+2", "3*5" });
+		assertEquals(key1.hashCode(), key2.hashCode());
+		assertEquals(key1.equals(key2), true);
+		assertEquals(key1.equals(key3), false);
+	}
+
+	@Test
+	void testFactBaseKey() {
+		double[][] a = { { 1., 2. }, { 3., 4. } };
+		double[][] b = { { 1., 2. }, { 3., 4. } };
+		FactKey key1 = new FactKey("MULT", new FactBase<>(a, a));
+		FactKey key2 = new FactKey("MULT", new FactBase<>(b, b));
+		FactKey key3 = new FactKey("PLUS", new FactBase<>(b, b));
+		assertEquals(key1.hashCode(), key2.hashCode());
+		assertEquals(key1.equals(key2), true);
+		assertEquals(key1.equals(key3), false);
+	}
+
+	@Test
+	void testDifferentArrayTypes() {
+		FactKey key1 = new FactKey("MULT", new double[] { 1. });
+		FactKey key2 = new FactKey("MULT", new float[] { 1.f });
+		assertEquals(key1.equals(key2), false);
+		assertEquals(key1.equals(null), false);
+		assertEquals(key1.equals(key1), true);
+	}
+
+	@Test
+	void testCopy() {
+		double[][] a = { { 1., 2. }, { 3., 4. } };
+		FactKey key = new FactKey("MULT", new FactBase<>(a, new int[] { 5 }, ExecutionHints.parallel()
+				.withPrecision(ExecutionHints.Precision.FLOAT).withOutput(new double[2][2])));
+		FactKey copy = key.copy();
+		assertEquals(key.hashCode(), copy.hashCode());
+		assertEquals(key, copy);
+		FactBase<?, ?> facts = (FactBase<?, ?>) copy.getFacts();
+		assertNotSame(a, facts.getFact1());
+		assertNotSame(a[0], ((double[][]) facts.getFact1())[0]);
+		assertNull(facts.getHints().getOutput(), "output kept by the copy");
+		assertEquals(ExecutionHints.Precision.FLOAT, facts.getHints().getPrecision());
+		// the copy is not affected by changes of the caller
+		a[0][0] = 7.;
+		assertEquals(copy, new FactKey("MULT", new FactBase<>(new double[][] { { 1., 2. }, { 3., 4. } },
+				new int[] { 5 }, ExecutionHints.DEFAULT.withPrecision(ExecutionHints.Precision.FLOAT))));
+	}
+}
@@ -0,0 +1,307 @@
+package de.lab4inf.axela.engine;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.Iris;
+
+/**
+ * Iris routing each call to one of several candidate solvers for the same
+ * problem and fact signature. For each candidate an online cost model
+ * <code>t(size) = fixed + perUnit * size</code> is fitted to the observed
+ * timings, the candidate with the lowest predicted time is chosen. Each
+ * candidate is tried a few times first and every EXPLORE_PERIOD calls a
+ * candidate with old samples is re-measured, if its prediction is not too far
+ * off.
+ * 
+ * @param <P> generic problem type to solve
+ * @param <F> generic fact type
+ * @param <S> generic solution type to return
+ */
+public class AdaptiveIris<P, F, S> implements Iris<P, F, S> {
+	static final int MIN_SAMPLES = 3;
+	static final int EXPLORE_PERIOD = 64;
+	static final double EXPLORE_LIMIT = 2.0;
+	private static final double DECAY = 0.98;
+
+	private final ToDoubleFunction<? super F> size;
+	private final Function<? super F, String> preference;
+	private final List<Candidate> candidates = new CopyOnWriteArrayList<>();
+	private final TreeMap<Integer, long[]> routes = new TreeMap<>();
+	private final AtomicLong calls = new AtomicLong();
+	private final LongSupplier clock;
+
+	/**
+	 * Adaptive solver without caller preference.
+	 * 
+	 * @param size work size of the facts, e.g. number of multiplications
+	 */
+	public AdaptiveIris(ToDoubleFunction<? super F> size) {
+		this(size, f -> null);
+	}
+
+	/**
+	 * Adaptive solver with a caller preference.
+	 * 
+	 * @param size       work size of the facts, e.g. number of multiplications
+	 * @param preference name of the candidate the facts ask for, or null to
+	 *                   choose by cost
+	 */
+	public AdaptiveIris(ToDoubleFunction<? super F> size, Function<? super F, String> preference) {
+		this(size, preference, System::nanoTime);
+	}
+
+	// the clock measuring the candidates can be replaced for tests
+	AdaptiveIris(ToDoubleFunction<? super F> size, Function<? super F, String> preference, LongSupplier clock) {
+		this.size = Objects.requireNonNull(size, "size is a NullPointer!");
+		this.preference = Objects.requireNonNull(preference, "preference is a NullPointer!");
+		this.clock = clock;
+	}
+
+	/**
+	 * Add a named candidate solver.
+	 * 
+	 * @param name   of the candidate
+	 * @param solver the candidate
+	 */
+	public synchronized void addCandidate(String name, Iris<P, F, S> solver) {
+		Objects.requireNonNull(name, "name is a NullPointer!");
+		Objects.requireNonNull(solver, Axela.IRIS_IS_A_NULL_POINTER);
+		for (Candidate c : candidates)
+			if (c.name.equals(name))
+				throw new IllegalStateException(format("candidate %s already registered", name));
+		candidates.add(new Candidate(name, solver));
+		synchronized (routes) {
+			routes.replaceAll((bucket, counts) -> Arrays.copyOf(counts, candidates.size()));
+		}
+	}
+
+	@Override
+	public S solve(P problem, F facts) {
+		List<Candidate> list = candidates;
+		if (list.isEmpty())
+			throw new IllegalStateException(format("no candidate for problem: %s", problem));
+		double work = Math.max(0., size.applyAsDouble(facts));
+		int chosen = choose(list, work, facts);
+		Candidate candidate = list.get(chosen);
+		record(chosen, work);
+		long start = clock.getAsLong();
+		S solution = candidate.solver.solve(problem, facts);
+		candidate.update(work, clock.getAsLong() - start);
+		return solution;
+	}
+
+	private int choose(List<Candidate> list, double work, F facts) {
+		String preferred = preference.apply(facts);
+		if (null != preferred) {
+			for (int i = 0; i < list.size(); i++)
+				if (list.get(i).name.equals(preferred))
+					return i;
+		}
+		long n = calls.incrementAndGet();
+		int best = 0, oldest = 0;
+		double bestCost = Double.MAX_VALUE;
+		for (int i = 0; i < list.size(); i++) {
+			Candidate c = list.get(i);
+			if (c.samples() < MIN_SAMPLES)
+				return i;
+			double cost = c.predict(work);
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = i;
+			}
+			if (c.lastUpdate() < list.get(oldest).lastUpdate())
+				oldest = i;
+		}
+		if (n % EXPLORE_PERIOD == 0 && list.get(oldest).predict(work) <= EXPLORE_LIMIT * bestCost)
+			return oldest;
+		return best;
+	}
+
+	private void record(int chosen, double work) {
+		int bucket = work < 1 ? 0 : 64 - Long.numberOfLeadingZeros((long) work);
+		synchronized (routes) {
+			long[] counts = routes.computeIfAbsent(bucket, b -> new long[candidates.size()]);
+			if (chosen < counts.length)
+				counts[chosen]++;
+		}
+	}
+
+	/**
+	 * Fitted cost models of the candidates.
+	 * 
+	 * @return list of the models
+	 */
+	public List<CostModel> getCostModels() {
+		List<CostModel> models = new ArrayList<>();
+		for (Candidate c : candidates)
+			models.add(c.model());
+		return models;
+	}
+
+	/**
+	 * The routing decisions taken so far, per power of two range of the work
+	 * size.
+	 * 
+	 * @return list of routes
+	 */
+	public List<Route> getRoutes() {
+		List<Route> list = new ArrayList<>();
+		synchronized (routes) {
+			routes.forEach((bucket, counts) -> {
+				for (int i = 0; i < counts.length; i++)
+					if (counts[i] > 0)
+						list.add(new Route(bucket, candidates.get(i).name, counts[i]));
+			});
+		}
+		return list;
+	}
+
+	/**
+	 * Number of calls routed to a candidate for a range of work sizes.
+	 */
+	public static final class Route {
+		private final long minSize;
+		private final long maxSize;
+		private final String candidate;
+		private final long calls;
+
+		Route(int bucket, String candidate, long calls) {
+			this.minSize = 0 == bucket ? 0 : 1L << (bucket - 1);
+			this.maxSize = 0 == bucket ? 0 : (1L << bucket) - 1;
+			this.candidate = candidate;
+			this.calls = calls;
+		}
+
+		public long getMinSize() {
+			return minSize;
+		}
+
+		public long getMaxSize() {
+			return maxSize;
+		}
+
+		public String getCandidate() {
+			return candidate;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		@Override
+		public String toString() {
+			return format("[%d,%d] -> %s (%d calls)", minSize, maxSize, candidate, calls);
+		}
+	}
+
+	/**
+	 * Fitted cost model <code>t(size) = fixed + perUnit * size</code> of a
+	 * candidate in nanoseconds.
+	 */
+	public static final class CostModel {
+		private final String candidate;
+		private final double fixed;
+		private final double perUnit;
+		private final long samples;
+
+		CostModel(String candidate, double fixed, double perUnit, long samples) {
+			this.candidate = candidate;
+			this.fixed = fixed;
+			this.perUnit = perUnit;
+			this.samples = samples;
+		}
+
+		public String getCandidate() {
+			return candidate;
+		}
+
+		public double getFixed() {
+			return fixed;
+		}
+
+		public double getPerUnit() {
+			return perUnit;
+		}
+
+		public long getSamples() {
+			return samples;
+		}
+
+		public double predict(double size) {
+			return fixed + perUnit * size;
+		}
+
+		@Override
+		public String toString() {
+			return format("%s: t = %.0fns + %.3fns * size (%d samples)", candidate, fixed, perUnit, samples);
+		}
+	}
+
+	/**
+	 * A candidate with its exponentially decaying least squares fit.
+	 */
+	private final class Candidate {
+		final String name;
+		final Iris<P, F, S> solver;
+		private double n, sx, sy, sxx, sxy;
+		private long samples, last;
+
+		Candidate(String name, Iris<P, F, S> solver) {
+			this.name = name;
+			this.solver = solver;
+		}
+
+		synchronized void update(double x, long nanos) {
+			n = DECAY * n + 1;
+			sx = DECAY * sx + x;
+			sy = DECAY * sy + nanos;
+			sxx = DECAY * sxx + x * x;
+			sxy = DECAY * sxy + x * nanos;
+			samples++;
+			last = calls.get();
+		}
+
+		synchronized long samples() {
+			return samples;
+		}
+
+		synchronized long lastUpdate() {
+			return last;
+		}
+
+		synchronized double predict(double x) {
+			return model().predict(x);
+		}
+
+		synchronized CostModel model() {
+			if (0 == samples)
+				return new CostModel(name, 0, 0, 0);
+			double mx = sx / n, my = sy / n;
+			double var = sxx / n - mx * mx;
+			double fixed, perUnit;
+			if (var <= 1.E-9 * (mx * mx + 1)) {
+				// all samples at one size: assume proportional cost
+				fixed = 0;
+				perUnit = mx > 0 ? my / mx : 0;
+				if (mx <= 0)
+					fixed = my;
+			} else {
+				perUnit = Math.max(0, (sxy / n - mx * my) / var);
+				fixed = Math.max(0, my - perUnit * mx);
+			}
+			return new CostModel(name, fixed, perUnit, samples);
+		}
+	}
+}
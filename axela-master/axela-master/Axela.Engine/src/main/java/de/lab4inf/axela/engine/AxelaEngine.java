@@ -1,19 +1,31 @@
 package de.lab4inf.axela.engine;
 
 import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.BoundSolver;
+import de.lab4inf.axela.core.DoubleBoundSolver;
 import de.lab4inf.axela.core.Iris;
 import de.lab4inf.axela.facts.FactBase;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
 
 public class AxelaEngine implements Axela {
 
 	public class Key {
 		private final Object problem;
 		private final Object factclass;
+		private final int hash;
 
 		public <P, F> Key(P problem, F facts) {
 			Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
@@ -23,11 +35,13 @@ public class AxelaEngine implements Axela {
 				this.factclass = ((FactBase<?, ?>) facts).getSignature();
 			else
 				this.factclass = facts.getClass();
+			// the key is immutable, calculate the hash only once
+			this.hash = 31 * problem.hashCode() + this.factclass.hashCode();
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hash(this.problem, this.factclass);
+			return this.hash;
 		}
 
 		@Override
@@ -39,24 +53,284 @@ public class AxelaEngine implements Axela {
 			if (this.getClass() != obj.getClass())
 				return false;
 			Key other = (Key) obj;
-			return this.problem.equals(other.problem) && this.factclass.equals(other.factclass);
+			return this.hash == other.hash && this.problem.equals(other.problem)
+					&& this.factclass.equals(other.factclass);
 		}
 	}
 
-	private static HashMap<Key, Iris<?, ?, ?>> registeredIrises = new HashMap<>();
+	// registry of this engine, readers never block, writers are atomic
+	private final ConcurrentMap<Key, SolverEntry<?, ?, ?>> registeredIrises = new ConcurrentHashMap<>();
+	// per solver metrics, exposed via JMX after registerMBean
+	private final EngineMetrics metrics = new EngineMetrics();
+	// solutions of memoized solvers
+	private volatile SolutionCache solutionCache = new SolutionCache(1024, 64L << 20);
+	// executor for solveAsync and solveAll
+	private volatile Executor executor = AxelaExecutors.shared();
+	// optional scheduler all solves are queued to
+	private volatile SolveScheduler scheduler;
+	// optional budget the estimated working sets of the solves are admitted to
+	private volatile MemoryBudget memoryBudget;
+	// classes of the initialized plugins
+	private final Set<Class<?>> plugins = ConcurrentHashMap.newKeySet();
+	// plugins initialized on the first lookup without registered solver
+	private final List<Iterable<? extends Plugin>> lazyPlugins = new ArrayList<>();
+	// set until the deferred plugins are registered, cleared under the lock
+	private volatile boolean hasLazyPlugins;
+	// true while the lock holder initializes the deferred plugins
+	private boolean initializing;
 
-	// Method to register given solver to HashMap
+	@Override
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	// plug-in the executor for asynchronous solving, see AxelaExecutors
+	public void setExecutor(Executor executor) {
+		this.executor = Objects.requireNonNull(executor, EXECUTOR_IS_A_NULL_POINTER);
+	}
+
+	public SolveScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Queue all solves of this engine to the scheduler, also synchronous ones
+	 * which wait for their solution. Solves started by a solver running on a
+	 * worker of the scheduler run inline. Use null to solve on the calling
+	 * thread again.
+	 * 
+	 * @param scheduler to use or null
+	 */
+	public void setScheduler(SolveScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public MemoryBudget getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Admit the solves of all solvers with an estimated footprint to the budget.
+	 * Solves which do not fit wait or are rejected, see MemoryBudget. Use null to
+	 * run them without admission again.
+	 * 
+	 * @param budget to use or null
+	 */
+	public void setMemoryBudget(MemoryBudget budget) {
+		this.memoryBudget = budget;
+	}
+
+	public EngineMetrics getMetrics() {
+		return metrics;
+	}
+
+	public SolutionCache getSolutionCache() {
+		return solutionCache;
+	}
+
+	// replace the cache of all memoized solvers, e.g. with other bounds
+	public void setSolutionCache(SolutionCache cache) {
+		this.solutionCache = Objects.requireNonNull(cache, "cache is a NullPointer!");
+	}
+
+	/**
+	 * Opt-in the registered solver for the problem and fact signature into
+	 * memoization. Only use this for idempotent solvers, the solutions are
+	 * shared between equal facts and must not be modified. Array facts are
+	 * copied into the cache, other facts must not be modified after a solve.
+	 * 
+	 * @param problem to solve
+	 * @param facts   prototype with the fact signature
+	 * @param <P>     generic problem type to solve
+	 * @param <F>     generic fact type
+	 */
+	public <P, F> void memoize(P problem, F facts) {
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		entry.memoize();
+	}
+
+	/**
+	 * Opt-in the registered solver for the problem and fact signature into
+	 * single-flight coalescing: concurrent calls with content-equal facts share
+	 * one computation and all receive its solution. Only use this for idempotent
+	 * solvers, the solution is shared and must not be modified.
+	 * 
+	 * @param problem to solve
+	 * @param facts   prototype with the fact signature
+	 * @param <P>     generic problem type to solve
+	 * @param <F>     generic fact type
+	 */
+	public <P, F> void coalesce(P problem, F facts) {
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		entry.coalesce();
+	}
+
+	/**
+	 * Set the priority class the solves of the registered solver for the problem
+	 * and fact signature are queued with, INTERACTIVE by default.
+	 * 
+	 * @param problem  to solve
+	 * @param facts    prototype with the fact signature
+	 * @param priority of the solves
+	 * @param <P>      generic problem type to solve
+	 * @param <F>      generic fact type
+	 */
+	public <P, F> void prioritize(P problem, F facts, SolveScheduler.Priority priority) {
+		Objects.requireNonNull(priority, "priority is a NullPointer!");
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		entry.setPriority(priority);
+	}
+
+	/**
+	 * Limit the number of concurrent solves of the registered solver for the
+	 * problem and fact signature on the scheduler. Further solves stay queued
+	 * without occupying a worker.
+	 * 
+	 * @param problem to solve
+	 * @param facts   prototype with the fact signature
+	 * @param limit   of concurrent solves
+	 * @param <P>     generic problem type to solve
+	 * @param <F>     generic fact type
+	 */
+	public <P, F> void limit(P problem, F facts, int limit) {
+		Bulkhead bulkhead = new Bulkhead(limit);
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		entry.setBulkhead(bulkhead);
+	}
+
+	/**
+	 * Estimate the working set of the registered solver for the problem and fact
+	 * signature, the bytes the solver allocates for the given facts. Its solves
+	 * reserve the estimate from the memory budget before they run, solutions
+	 * found in the cache are not admitted.
+	 * 
+	 * @param problem   to solve
+	 * @param facts     prototype with the fact signature
+	 * @param footprint estimated bytes of the facts to solve
+	 * @param <P>       generic problem type to solve
+	 * @param <F>       generic fact type
+	 */
+	public <P, F> void estimate(P problem, F facts, ToLongFunction<? super F> footprint) {
+		Objects.requireNonNull(footprint, "footprint is a NullPointer!");
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		entry.setFootprint(footprint);
+	}
+
+	// Method to register given solver to the registry
 	@Override
 	public <P, F, S> void registerSolver(P problem, F facts, Iris<P, F, S> solver) {
 		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
 		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
 		Objects.requireNonNull(solver, IRIS_IS_A_NULL_POINTER);
 
+		register(problem, new SolverEntry<>(this, solver, signatureOf(facts)), facts);
+	}
+
+	/**
+	 * Register a solver created on its first use, findSolverFor creates it as
+	 * well.
+	 */
+	@Override
+	public <P, F, S> void registerLazySolver(P problem, F facts, Supplier<? extends Iris<P, F, S>> factory) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		Objects.requireNonNull(factory, IRIS_IS_A_NULL_POINTER);
+
+		register(problem, new SolverEntry<>(this, factory, signatureOf(facts)), facts);
+	}
+
+	private <P, F, S> void register(P problem, SolverEntry<P, F, S> entry, F facts) {
 		Key hashKey = new Key(problem, facts);
-		if (!hasSolverFor(problem, facts))
-			registeredIrises.put(hashKey, solver);
-		else
+		if (entry != registeredIrises.computeIfAbsent(hashKey, k -> entry))
+			throw new IllegalStateException("iris already registered");
+		entry.setMetrics(metrics.add(String.valueOf(problem), entry.getSignature()));
+	}
+
+	/**
+	 * Initialize the plugin unless a plugin of the same class has already been
+	 * registered with this engine.
+	 */
+	@Override
+	public void register(Plugin plugin) {
+		Objects.requireNonNull(plugin, "plugin is a NullPointer!");
+		if (plugins.add(plugin.getClass()))
+			plugin.init(this);
+	}
+
+	/**
+	 * Defer the plugins until a problem without registered solver is looked up,
+	 * so an engine only pays for the plugins it needs.
+	 */
+	@Override
+	public synchronized void registerLazyPlugins(Iterable<? extends Plugin> plugins) {
+		Objects.requireNonNull(plugins, "plugins are a NullPointer!");
+		lazyPlugins.add(plugins);
+		hasLazyPlugins = true;
+	}
+
+	// registers the deferred plugins once, other threads missing a solver wait
+	// for the registration in progress, re-entrant lookups of their init do not
+	private synchronized void initLazyPlugins() {
+		if (initializing || !hasLazyPlugins)
+			return;
+		initializing = true;
+		try {
+			// plugins may defer further plugins while they are initialized
+			while (!lazyPlugins.isEmpty()) {
+				List<Iterable<? extends Plugin>> pending = new ArrayList<>(lazyPlugins);
+				lazyPlugins.clear();
+				for (Iterable<? extends Plugin> lazy : pending) {
+					for (Plugin plugin : lazy) {
+						register(plugin);
+					}
+				}
+			}
+		} finally {
+			initializing = false;
+			hasLazyPlugins = !lazyPlugins.isEmpty();
+		}
+	}
+
+	/**
+	 * Register one of several candidate solvers for the same problem and fact
+	 * signature. The first candidate registers an AdaptiveIris which routes each
+	 * call to the candidate with the lowest predicted cost for the work size of
+	 * the facts, use findSolverFor to inspect its cost models and routes.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to use
+	 * @param name    of the candidate
+	 * @param solver  candidate solver
+	 * @param size    work size of the facts, only used by the first candidate
+	 * @return the adaptive solver
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 */
+	public synchronized <P, F, S> AdaptiveIris<P, F, S> registerCandidate(P problem, F facts, String name,
+			Iris<P, F, S> solver, ToDoubleFunction<? super F> size) {
+		AdaptiveIris<P, F, S> adaptive;
+		SolverEntry<P, F, S> entry = lookup(problem, facts);
+		if (null == entry) {
+			adaptive = new AdaptiveIris<>(size);
+			registerSolver(problem, facts, adaptive);
+		} else if (entry.getSolver() instanceof AdaptiveIris) {
+			adaptive = (AdaptiveIris<P, F, S>) entry.getSolver();
+		} else {
 			throw new IllegalStateException("iris already registered");
+		}
+		adaptive.addCandidate(name, solver);
+		return adaptive;
 	}
 
 	// Check if solver exists for given problems&facts
@@ -65,23 +339,156 @@ public class AxelaEngine implements Axela {
 		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
 		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
 
-		Key hashKey = new Key(problem, facts);
-		boolean re = registeredIrises.containsKey(hashKey);
-		return re;
+		return null != lookup(problem, facts);
 	}
 
 	// returns iris solver for given problem&facts
-	@SuppressWarnings("unchecked")
 	@Override
 	public <P, F, S> Iris<P, F, S> findSolverFor(P problem, F facts) {
+		SolverEntry<P, F, S> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		return entry.getSolver();
+	}
+
+	// solve with exactly one registry lookup instead of hasSolverFor/findSolverFor
+	@Override
+	public <P, F, S> S solve(P problem, F facts) {
+		SolverEntry<P, F, S> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		S solution = run(entry, problem, facts);
+		return Objects.requireNonNull(solution, SOLUTION_IS_A_NULL_POINTER);
+	}
+
+	/**
+	 * Solve asynchronously, queued to the scheduler with the priority of the
+	 * solver if a scheduler is set, otherwise with the executor of this engine.
+	 * On a worker of the scheduler the solve runs at once like by solve, so
+	 * solveAll of a solver never waits for queued solves it blocks itself.
+	 */
+	@Override
+	public <P, F, S> CompletableFuture<S> solveAsync(P problem, F facts) {
+		SolveScheduler scheduler = this.scheduler;
+		if (null == scheduler)
+			return Axela.super.solveAsync(problem, facts);
+		SolverEntry<P, F, S> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		if (scheduler.isWorker())
+			return inline(entry, problem, facts);
+		return scheduler.submit(entry.getPriority(), entry.getBulkhead(),
+				() -> Objects.requireNonNull(entry.solve(problem, facts), SOLUTION_IS_A_NULL_POINTER));
+	}
+
+	/**
+	 * Solve asynchronously with the given priority class instead of the one of
+	 * the solver, on a worker of the scheduler at once.
+	 * 
+	 * @param problem  to solve
+	 * @param facts    to use
+	 * @param priority of the solve
+	 * @return future of the solution
+	 * @throws IllegalStateException  without scheduler
+	 * @throws SolveRejectedException if the backlog is full
+	 * @param <P> generic problem type to solve
+	 * @param <F> generic fact type
+	 * @param <S> generic solution type to return
+	 */
+	public <P, F, S> CompletableFuture<S> solveAsync(P problem, F facts, SolveScheduler.Priority priority) {
+		Objects.requireNonNull(priority, "priority is a NullPointer!");
+		SolveScheduler scheduler = this.scheduler;
+		if (null == scheduler)
+			throw new IllegalStateException("no scheduler set");
+		SolverEntry<P, F, S> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		if (scheduler.isWorker())
+			return inline(entry, problem, facts);
+		return scheduler.submit(priority, entry.getBulkhead(),
+				() -> Objects.requireNonNull(entry.solve(problem, facts), SOLUTION_IS_A_NULL_POINTER));
+	}
+
+	// a worker joining a queued solve could wait for its own slot
+	private static <P, F, S> CompletableFuture<S> inline(SolverEntry<P, F, S> entry, P problem, F facts) {
+		try {
+			return CompletableFuture
+					.completedFuture(Objects.requireNonNull(entry.solve(problem, facts), SOLUTION_IS_A_NULL_POINTER));
+		} catch (RuntimeException | Error error) {
+			return CompletableFuture.failedFuture(error);
+		}
+	}
+
+	// on the calling thread or queued to the scheduler and waiting for it
+	private <P, F, S> S run(SolverEntry<P, F, S> entry, P problem, F facts) {
+		SolveScheduler scheduler = this.scheduler;
+		if (null == scheduler || scheduler.isWorker())
+			return entry.solve(problem, facts);
+		return SolveScheduler.join(
+				scheduler.submit(entry.getPriority(), entry.getBulkhead(), () -> entry.solve(problem, facts)));
+	}
+
+	// bound handles use the registry entry to keep memoization and metrics
+	@Override
+	public <P, F, S> BoundSolver<F, S> bind(P problem, F prototype) {
+		final SolverEntry<P, F, S> entry = lookup(problem, prototype);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		return facts -> {
+			Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+			S solution = run(entry, problem, facts);
+			return Objects.requireNonNull(solution, SOLUTION_IS_A_NULL_POINTER);
+		};
+	}
+
+	// unboxed unless the solve is queued to the scheduler
+	@Override
+	public <P, F> double solveAsDouble(P problem, F facts) {
+		SolverEntry<P, F, Object> entry = lookup(problem, facts);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		SolveScheduler scheduler = this.scheduler;
+		if (null == scheduler || scheduler.isWorker())
+			return entry.solveAsDouble(problem, facts);
+		return SolverEntry.unbox(run(entry, problem, facts));
+	}
+
+	@Override
+	public <P, F> DoubleBoundSolver<F> bindDouble(P problem, F prototype) {
+		final SolverEntry<P, F, Object> entry = lookup(problem, prototype);
+		if (null == entry)
+			throw new IllegalArgumentException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		return facts -> {
+			Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+			SolveScheduler scheduler = this.scheduler;
+			if (null == scheduler || scheduler.isWorker())
+				return entry.solveAsDouble(problem, facts);
+			return SolverEntry.unbox(run(entry, problem, facts));
+		};
+	}
+
+	// single hash lookup, returns null if no solver is registered
+	@SuppressWarnings("unchecked")
+	private <P, F, S> SolverEntry<P, F, S> lookup(P problem, F facts) {
 		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
 		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
 
-		Key hashKey = new Key(problem, facts);
+		Key key = new Key(problem, facts);
+		SolverEntry<?, ?, ?> entry = registeredIrises.get(key);
+		if (null == entry && hasLazyPlugins) {
+			initLazyPlugins();
+			entry = registeredIrises.get(key);
+		}
+		return (SolverEntry<P, F, S>) entry;
+	}
 
-		if (hasSolverFor(problem, facts))
-			return (Iris<P, F, S>) registeredIrises.get(hashKey);
-		else
-			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+	// readable fact signature for the metrics
+	private static String signatureOf(Object facts) {
+		if (facts instanceof FactBase<?, ?>) {
+			FactBase<?, ?> f = (FactBase<?, ?>) facts;
+			return format("FactBase<%s,%s>", f.getFact1().getClass().getSimpleName(),
+					f.getFact2().getClass().getSimpleName());
+		}
+		return facts.getClass().getSimpleName();
 	}
 }
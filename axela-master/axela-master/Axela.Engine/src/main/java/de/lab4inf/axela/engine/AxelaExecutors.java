@@ -0,0 +1,71 @@
+package de.lab4inf.axela.engine;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the executors an AxelaEngine can use for asynchronous solving.
+ */
+public final class AxelaExecutors {
+
+	private AxelaExecutors() {
+	}
+
+	/**
+	 * The JVM wide shared ForkJoinPool.
+	 * 
+	 * @return common pool
+	 */
+	public static Executor shared() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * A pool with a fixed number of daemon threads and a bounded backlog. If the
+	 * backlog is full the submitting thread solves the problem itself, which
+	 * throttles the producer.
+	 * 
+	 * @param threads number of worker threads
+	 * @param backlog maximal number of waiting tasks
+	 * @return bounded executor
+	 */
+	public static ExecutorService bounded(int threads, int backlog) {
+		if (threads < 1 || backlog < 1)
+			throw new IllegalArgumentException("threads and backlog must be positive");
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(backlog), daemonThreads("axela-worker-"),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * An executor starting a virtual thread per task if the JVM supports this
+	 * (JDK 21+), otherwise the shared ForkJoinPool.
+	 * 
+	 * @return virtual thread executor or the common pool
+	 */
+	public static Executor virtual() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return shared();
+		}
+	}
+
+	static ThreadFactory daemonThreads(String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+}
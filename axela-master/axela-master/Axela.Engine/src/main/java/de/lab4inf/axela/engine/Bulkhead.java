@@ -0,0 +1,56 @@
+package de.lab4inf.axela.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Concurrency limit of one solver within the SolveScheduler. Tasks beyond the
+ * limit are parked here instead of occupying a worker and are released one by
+ * one as running tasks finish.
+ */
+final class Bulkhead {
+	private final int limit;
+	private final Deque<SolveScheduler.Task<?>> parked = new ArrayDeque<>();
+	private int running;
+
+	Bulkhead(int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("limit must be positive");
+		this.limit = limit;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	// true if the task may run now, otherwise it is parked
+	synchronized boolean admit(SolveScheduler.Task<?> task) {
+		if (running < limit) {
+			running++;
+			return true;
+		}
+		parked.add(task);
+		return false;
+	}
+
+	// the next parked task takes over the slot of the finished one
+	synchronized SolveScheduler.Task<?> release() {
+		SolveScheduler.Task<?> next = parked.poll();
+		if (null == next)
+			running--;
+		return next;
+	}
+
+	synchronized boolean remove(SolveScheduler.Task<?> task) {
+		return parked.remove(task);
+	}
+
+	// all parked tasks, the running ones keep their slots until they finish
+	synchronized List<SolveScheduler.Task<?>> drain() {
+		List<SolveScheduler.Task<?>> tasks = new ArrayList<>(parked);
+		parked.clear();
+		return tasks;
+	}
+}
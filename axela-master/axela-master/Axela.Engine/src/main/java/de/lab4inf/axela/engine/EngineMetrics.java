@@ -0,0 +1,118 @@
+package de.lab4inf.axela.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per solver metrics of an AxelaEngine. Recording can be switched on and off
+ * at runtime, programmatically or via JMX after registerMBean.
+ */
+public class EngineMetrics implements EngineMetricsMXBean {
+	public static final String DOMAIN = "de.lab4inf.axela";
+
+	private final Queue<SolverMetrics> solvers = new ConcurrentLinkedQueue<>();
+	private final com.sun.management.ThreadMXBean threads;
+	private volatile boolean enabled = true;
+	private volatile boolean allocationTracking;
+	private ObjectName name;
+
+	EngineMetrics() {
+		ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (mx instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) mx).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean) mx;
+			this.allocationTracking = threads.isThreadAllocatedMemoryEnabled();
+		} else {
+			this.threads = null;
+		}
+	}
+
+	SolverMetrics add(String problem, String signature) {
+		SolverMetrics metrics = new SolverMetrics(problem, signature);
+		solvers.add(metrics);
+		return metrics;
+	}
+
+	// bytes allocated so far by the current thread, zero if not tracked
+	long allocatedBytes() {
+		if (!allocationTracking)
+			return 0;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public boolean isAllocationTracking() {
+		return allocationTracking;
+	}
+
+	@Override
+	public void setAllocationTracking(boolean tracking) {
+		if (tracking && null == threads)
+			throw new UnsupportedOperationException("thread allocation counters not supported");
+		this.allocationTracking = tracking;
+	}
+
+	@Override
+	public List<SolverStatistics> getSolverStatistics() {
+		List<SolverStatistics> list = new ArrayList<>();
+		for (SolverMetrics m : solvers)
+			list.add(m.snapshot());
+		return list;
+	}
+
+	@Override
+	public void reset() {
+		for (SolverMetrics m : solvers)
+			m.reset();
+	}
+
+	/**
+	 * Register these metrics at the platform MBeanServer.
+	 * 
+	 * @param engineName to distinguish several engines
+	 * @return the object name used
+	 */
+	public synchronized ObjectName registerMBean(String engineName) {
+		if (null != name)
+			throw new IllegalStateException(name + " already registered");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(String.format("%s:type=EngineMetrics,name=%s", DOMAIN, ObjectName.quote(engineName)));
+			server.registerMBean(this, on);
+			name = on;
+			return on;
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void unregisterMBean() {
+		if (null == name)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			name = null;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package de.lab4inf.axela.engine;
+
+import java.util.List;
+
+/**
+ * JMX view of the solver metrics of an AxelaEngine.
+ */
+public interface EngineMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	boolean isAllocationTracking();
+
+	void setAllocationTracking(boolean tracking);
+
+	List<SolverStatistics> getSolverStatistics();
+
+	void reset();
+}
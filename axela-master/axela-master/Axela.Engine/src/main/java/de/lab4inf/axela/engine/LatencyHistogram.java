@@ -0,0 +1,68 @@
+package de.lab4inf.axela.engine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values are counted in
+ * logarithmic buckets with eight linear sub-buckets each, so percentiles are
+ * accurate to about 12%.
+ */
+final class LatencyHistogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int LINEAR = 2 * SUB_BUCKETS;
+	private static final int BUCKETS = LINEAR + (63 - SUB_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	void record(long nanos) {
+		counts.incrementAndGet(index(Math.max(0, nanos)));
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+	}
+
+	/**
+	 * Upper bound of the bucket containing the given percentile.
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return latency in nanoseconds
+	 */
+	long percentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (0 == total)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100. * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0)
+				return upperBound(i);
+		}
+		return upperBound(BUCKETS - 1);
+	}
+
+	static int index(long v) {
+		if (v < LINEAR)
+			return (int) v;
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exp - SUB_BITS - 1) * SUB_BUCKETS + sub;
+	}
+
+	static long upperBound(int index) {
+		if (index < LINEAR)
+			return index;
+		int exp = (index - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+		int sub = (index - LINEAR) % SUB_BUCKETS;
+		long width = 1L << (exp - SUB_BITS);
+		return (1L << exp) + (sub + 1) * width - 1;
+	}
+}
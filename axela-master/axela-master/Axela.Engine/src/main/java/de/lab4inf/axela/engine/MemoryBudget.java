@@ -0,0 +1,220 @@
+package de.lab4inf.axela.engine;
+
+import static java.lang.String.format;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+
+/**
+ * Global budget of the working memory of the solves of an AxelaEngine.<br>
+ * Solvers with an estimated footprint reserve it before they run and release
+ * it afterwards. A solve which does not fit into the remaining budget waits in
+ * arrival order or is rejected with a SolveRejectedException, depending on
+ * the overload policy. A solve larger than the whole budget is always
+ * rejected. Waiting solves observe the cancellation token of their thread.
+ * 
+ * @see de.lab4inf.axela.engine.AxelaEngine#estimate(Object, Object,
+ *      java.util.function.ToLongFunction)
+ */
+public final class MemoryBudget implements MemoryBudgetMXBean {
+
+	/** What happens to a solve which does not fit into the remaining budget. */
+	public enum Overload {
+		QUEUE, REJECT
+	}
+
+	private final long capacity;
+	private final Overload overload;
+	// waiting solves in arrival order, only the first may reserve
+	private final Deque<Object> waiting = new ArrayDeque<>();
+	private long reserved;
+	private long peak;
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder queued = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private ObjectName name;
+
+	/**
+	 * @param capacity of the budget in bytes
+	 * @param overload policy if a solve does not fit
+	 */
+	public MemoryBudget(long capacity, Overload overload) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		if (null == overload)
+			throw new NullPointerException("overload is a NullPointer!");
+		this.capacity = capacity;
+		this.overload = overload;
+	}
+
+	/**
+	 * Budget of a fraction of the maximal heap of this JVM.
+	 * 
+	 * @param fraction of the heap, within (0, 1]
+	 * @param overload policy if a solve does not fit
+	 * @return new budget
+	 */
+	public static MemoryBudget ofHeap(double fraction, Overload overload) {
+		if (!(fraction > 0 && fraction <= 1))
+			throw new IllegalArgumentException("fraction must be within (0, 1]");
+		return new MemoryBudget((long) (fraction * Runtime.getRuntime().maxMemory()), overload);
+	}
+
+	public Overload getOverload() {
+		return overload;
+	}
+
+	/**
+	 * Reserve memory, waiting for it if the policy allows.
+	 * 
+	 * @param bytes to reserve
+	 * @throws SolveRejectedException  if the bytes do not fit
+	 * @throws SolveCancelledException if the waiting solve is cancelled
+	 */
+	public void acquire(long bytes) {
+		if (bytes <= 0)
+			return;
+		if (bytes > capacity) {
+			rejected.increment();
+			throw new SolveRejectedException(
+					format("%d bytes exceed the memory budget of %d bytes", bytes, capacity));
+		}
+		synchronized (this) {
+			if (waiting.isEmpty() && reserved + bytes <= capacity) {
+				reserve(bytes);
+				return;
+			}
+			if (Overload.REJECT == overload) {
+				rejected.increment();
+				throw new SolveRejectedException(format("memory budget exhausted, %d of %d bytes reserved",
+						reserved, capacity));
+			}
+			queued.increment();
+			Object ticket = new Object();
+			waiting.add(ticket);
+			try {
+				CancellationToken token = CancellationToken.current();
+				while (waiting.peek() != ticket || reserved + bytes > capacity) {
+					if (null != token)
+						token.check();
+					wait(null == token ? 0 : 10);
+				}
+				reserve(bytes);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SolveCancelledException("solve interrupted");
+			} finally {
+				waiting.remove(ticket);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Release memory reserved by acquire.
+	 * 
+	 * @param bytes to release
+	 */
+	public synchronized void release(long bytes) {
+		if (bytes <= 0)
+			return;
+		reserved -= bytes;
+		notifyAll();
+	}
+
+	private void reserve(long bytes) {
+		reserved += bytes;
+		peak = Math.max(peak, reserved);
+		admitted.increment();
+	}
+
+	@Override
+	public long getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public synchronized long getReserved() {
+		return reserved;
+	}
+
+	@Override
+	public synchronized long getAvailable() {
+		return capacity - reserved;
+	}
+
+	@Override
+	public synchronized long getPeakReserved() {
+		return peak;
+	}
+
+	@Override
+	public synchronized int getWaiting() {
+		return waiting.size();
+	}
+
+	@Override
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	@Override
+	public long getQueued() {
+		return queued.sum();
+	}
+
+	@Override
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	@Override
+	public synchronized void reset() {
+		peak = reserved;
+		admitted.reset();
+		queued.reset();
+		rejected.reset();
+	}
+
+	/**
+	 * Register this budget at the platform MBeanServer.
+	 * 
+	 * @param engineName to distinguish several engines
+	 * @return the object name used
+	 */
+	public synchronized ObjectName registerMBean(String engineName) {
+		if (null != name)
+			throw new IllegalStateException(name + " already registered");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(String.format("%s:type=MemoryBudget,name=%s", EngineMetrics.DOMAIN,
+					ObjectName.quote(engineName)));
+			server.registerMBean(this, on);
+			name = on;
+			return on;
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void unregisterMBean() {
+		if (null == name)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			name = null;
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package de.lab4inf.axela.engine;
+
+/**
+ * JMX view of the memory reserved by admitted solves of an AxelaEngine.
+ */
+public interface MemoryBudgetMXBean {
+
+	long getCapacity();
+
+	long getReserved();
+
+	long getAvailable();
+
+	long getPeakReserved();
+
+	int getWaiting();
+
+	long getAdmitted();
+
+	long getQueued();
+
+	long getRejected();
+
+	void reset();
+}
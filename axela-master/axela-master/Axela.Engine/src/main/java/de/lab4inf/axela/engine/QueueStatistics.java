@@ -0,0 +1,78 @@
+package de.lab4inf.axela.engine;
+
+/**
+ * Immutable snapshot of one priority class of a SolveScheduler. Wait times are
+ * given in nanoseconds.
+ */
+public final class QueueStatistics {
+	private final String priority;
+	private final int depth;
+	private final long submitted;
+	private final long rejected;
+	private final long shed;
+	private final long expired;
+	private final long meanWait;
+	private final long p50;
+	private final long p99;
+
+	QueueStatistics(String priority, int depth, long submitted, long rejected, long shed, long expired,
+			long meanWait, long p50, long p99) {
+		this.priority = priority;
+		this.depth = depth;
+		this.submitted = submitted;
+		this.rejected = rejected;
+		this.shed = shed;
+		this.expired = expired;
+		this.meanWait = meanWait;
+		this.p50 = p50;
+		this.p99 = p99;
+	}
+
+	public String getPriority() {
+		return priority;
+	}
+
+	/**
+	 * @return number of queued solves, including those parked by a bulkhead
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getSubmitted() {
+		return submitted;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getShed() {
+		return shed;
+	}
+
+	/**
+	 * @return number of solves cancelled or expired before they started
+	 */
+	public long getExpired() {
+		return expired;
+	}
+
+	public long getMeanWait() {
+		return meanWait;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: depth=%d submitted=%d rejected=%d shed=%d expired=%d wait=%dns p50=%dns p99=%dns",
+				priority, depth, submitted, rejected, shed, expired, meanWait, p50, p99);
+	}
+}
@@ -0,0 +1,198 @@
+package de.lab4inf.axela.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.facts.FactKey;
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Bounded LRU cache of solutions for memoized Iris solvers. The cache is
+ * limited by the number of entries and by the estimated size of facts and
+ * solutions in bytes, entries may also expire after a given time. <br>
+ * The array facts of the keys are copied, so callers may reuse their arrays.
+ * Cached solutions are shared between callers and must not be modified.
+ */
+public class SolutionCache {
+	private static final long NO_EXPIRY = 0L;
+
+	private final int maxEntries;
+	private final long maxWeight;
+	private final long expiryNanos;
+	private final LinkedHashMap<FactKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	private static final class Entry {
+		final Object solution;
+		final long weight;
+		final long created;
+
+		Entry(Object solution, long weight, long created) {
+			this.solution = solution;
+			this.weight = weight;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * Cache without expiry.
+	 * 
+	 * @param maxEntries maximal number of solutions
+	 * @param maxWeight  maximal estimated bytes of facts and solutions
+	 */
+	public SolutionCache(int maxEntries, long maxWeight) {
+		this(maxEntries, maxWeight, NO_EXPIRY, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Cache with expiry of the entries.
+	 * 
+	 * @param maxEntries maximal number of solutions
+	 * @param maxWeight  maximal estimated bytes of facts and solutions
+	 * @param expiry     time after which a solution expires, zero for never
+	 * @param unit       of the expiry time
+	 */
+	public SolutionCache(int maxEntries, long maxWeight, long expiry, TimeUnit unit) {
+		if (maxEntries < 1 || maxWeight < 1 || expiry < 0)
+			throw new IllegalArgumentException("illegal cache bounds");
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.expiryNanos = Objects.requireNonNull(unit, "unit is a NullPointer!").toNanos(expiry);
+	}
+
+	/**
+	 * Get the cached solution.
+	 * 
+	 * @param key of problem and facts
+	 * @return solution or null if not cached
+	 */
+	public synchronized Object get(FactKey key) {
+		Entry e = entries.get(key);
+		if (null != e && isExpired(e, System.nanoTime())) {
+			entries.remove(key);
+			weight -= e.weight;
+			expirations.incrementAndGet();
+			e = null;
+		}
+		if (null == e) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return e.solution;
+	}
+
+	/**
+	 * Cache the solution, evicting the least recently used entries if the bounds
+	 * are exceeded. Solutions heavier than the cache are not stored at all. The
+	 * key is stored with copies of its array facts.
+	 * 
+	 * @param key      of problem and facts
+	 * @param solution to cache
+	 */
+	public void put(FactKey key, Object solution) {
+		Objects.requireNonNull(solution, "solution is a NullPointer!");
+		long w = sizeOf(key.getFacts()) + sizeOf(solution);
+		if (w > maxWeight)
+			return;
+		// copy outside of the lock, the facts may be large
+		FactKey stored = key.copy();
+		synchronized (this) {
+			Entry old = entries.put(stored, new Entry(solution, w, System.nanoTime()));
+			if (null != old)
+				weight -= old.weight;
+			weight += w;
+			Iterator<Map.Entry<FactKey, Entry>> it = entries.entrySet().iterator();
+			while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+				Entry eldest = it.next().getValue();
+				it.remove();
+				weight -= eldest.weight;
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getExpirations() {
+		return expirations.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SolutionCache[size=%d, weight=%d, hits=%d, misses=%d, evictions=%d, expirations=%d]",
+				size(), getWeight(), getHits(), getMisses(), getEvictions(), getExpirations());
+	}
+
+	private boolean isExpired(Entry e, long now) {
+		return expiryNanos != NO_EXPIRY && now - e.created > expiryNanos;
+	}
+
+	/**
+	 * Rough estimate of the heap size of facts or solutions in bytes.
+	 * 
+	 * @param o object to estimate
+	 * @return estimated bytes
+	 */
+	static long sizeOf(Object o) {
+		final long header = 16;
+		if (null == o)
+			return 0;
+		if (o instanceof double[])
+			return header + 8L * ((double[]) o).length;
+		if (o instanceof long[])
+			return header + 8L * ((long[]) o).length;
+		if (o instanceof int[])
+			return header + 4L * ((int[]) o).length;
+		if (o instanceof float[])
+			return header + 4L * ((float[]) o).length;
+		if (o instanceof String)
+			return header + 2L * ((String) o).length();
+		if (o instanceof Object[]) {
+			long size = header + 8L * ((Object[]) o).length;
+			for (Object e : (Object[]) o)
+				size += sizeOf(e);
+			return size;
+		}
+		if (o instanceof FactBase<?, ?>) {
+			FactBase<?, ?> f = (FactBase<?, ?>) o;
+			return header + sizeOf(f.getFact1()) + sizeOf(f.getFact2());
+		}
+		if (o instanceof Weighable)
+			return header + ((Weighable) o).weight();
+		return header;
+	}
+}
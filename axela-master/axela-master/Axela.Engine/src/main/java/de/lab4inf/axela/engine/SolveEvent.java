@@ -0,0 +1,28 @@
+package de.lab4inf.axela.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning one solve call of the AxelaEngine, including
+ * the memoization look-up and the solver itself. The thread is recorded by
+ * the JFR.
+ */
+@Name("de.lab4inf.axela.Solve")
+@Label("Axela Solve")
+@Category({ "Axela", "Engine" })
+@Description("Dispatch and solving of a problem by the AxelaEngine")
+@StackTrace(false)
+final class SolveEvent extends jdk.jfr.Event {
+	@Label("Problem")
+	String problem;
+
+	@Label("Fact Signature")
+	String signature;
+
+	@Label("Memoized")
+	boolean memoized;
+}
@@ -0,0 +1,16 @@
+package de.lab4inf.axela.engine;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown if the SolveScheduler rejects a solve because its backlog is full,
+ * the solve has been shed for a newer one or the scheduler has been closed,
+ * or if a solve does not fit into the MemoryBudget of the engine.
+ */
+public class SolveRejectedException extends RejectedExecutionException {
+	private static final long serialVersionUID = 1L;
+
+	public SolveRejectedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,467 @@
+package de.lab4inf.axela.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+
+/**
+ * Engine level scheduler running solves on a fixed number of worker threads.
+ * <br>
+ * Solves are queued by priority class, interactive solves are preferred but
+ * every few interactive solves a waiting batch solve is taken, so batch work
+ * does not starve. Each priority class has a bounded backlog; when it is full
+ * new solves are rejected or the oldest queued solve is shed. Solvers may be
+ * limited to a number of concurrent solves, solves beyond the limit are parked
+ * without occupying a worker. Solves cancelled or expired while queued never
+ * start.
+ * 
+ * @see AxelaEngine#setScheduler(SolveScheduler)
+ */
+public class SolveScheduler implements SolveSchedulerMXBean, AutoCloseable {
+
+	/** Priority class of a solve. */
+	public enum Priority {
+		INTERACTIVE, BATCH
+	}
+
+	/** Reaction on a full backlog. */
+	public enum Overload {
+		/** reject the new solve */
+		REJECT,
+		/** shed the oldest queued solve of the same class */
+		SHED_OLDEST
+	}
+
+	// interactive solves taken in a row before a waiting batch solve
+	static final int INTERACTIVE_BURST = 8;
+
+	private final int threads;
+	private final int backlog;
+	private final Overload overload;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition ready = lock.newCondition();
+	private final Lane[] lanes = new Lane[Priority.values().length];
+	private final Thread[] workers;
+	private final ThreadLocal<Boolean> worker = new ThreadLocal<>();
+	// bulkheads which have parked a solve, drained on close
+	private final Set<Bulkhead> bulkheads = new HashSet<>();
+	private int burst;
+	private int active;
+	private volatile boolean closed;
+	private ObjectName name;
+
+	/**
+	 * @param threads number of worker threads
+	 * @param backlog maximal number of queued solves per priority class
+	 */
+	public SolveScheduler(int threads, int backlog) {
+		this(threads, backlog, Overload.REJECT);
+	}
+
+	/**
+	 * @param threads  number of worker threads
+	 * @param backlog  maximal number of queued solves per priority class
+	 * @param overload reaction on a full backlog
+	 */
+	public SolveScheduler(int threads, int backlog, Overload overload) {
+		if (threads < 1 || backlog < 1)
+			throw new IllegalArgumentException("threads and backlog must be positive");
+		this.threads = threads;
+		this.backlog = backlog;
+		this.overload = Objects.requireNonNull(overload, "overload is a NullPointer!");
+		for (Priority p : Priority.values())
+			lanes[p.ordinal()] = new Lane(p);
+		ThreadFactory factory = AxelaExecutors.daemonThreads("axela-scheduler-");
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = factory.newThread(this::work);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * A queued solve. The token follows the token of the submitting thread and
+	 * is cancelled if the future is cancelled.
+	 */
+	static final class Task<S> {
+		final Priority priority;
+		final Bulkhead bulkhead;
+		final Supplier<S> work;
+		final CancellationToken token;
+		final CompletableFuture<S> future = new CompletableFuture<>();
+		final long enqueued = System.nanoTime();
+
+		Task(Priority priority, Bulkhead bulkhead, Supplier<S> work, CancellationToken token) {
+			this.priority = priority;
+			this.bulkhead = bulkhead;
+			this.work = work;
+			this.token = token;
+		}
+
+		void run() {
+			try {
+				future.complete(token.call(work));
+			} catch (Throwable error) {
+				future.completeExceptionally(error);
+			}
+		}
+	}
+
+	// queue of ready solves and counters of one priority class
+	private static final class Lane {
+		final Priority priority;
+		final Deque<Task<?>> ready = new ArrayDeque<>();
+		// queued solves including the ones parked in a bulkhead
+		int depth;
+		final LongAdder submitted = new LongAdder();
+		final LongAdder rejected = new LongAdder();
+		final LongAdder shed = new LongAdder();
+		final LongAdder expired = new LongAdder();
+		final LongAdder waited = new LongAdder();
+		final LatencyHistogram waits = new LatencyHistogram();
+
+		Lane(Priority priority) {
+			this.priority = priority;
+		}
+
+		QueueStatistics snapshot(int depth) {
+			long n = submitted.sum() - rejected.sum();
+			return new QueueStatistics(priority.name(), depth, submitted.sum(), rejected.sum(), shed.sum(),
+					expired.sum(), n > 0 ? waited.sum() / n : 0, waits.percentile(50.), waits.percentile(99.));
+		}
+	}
+
+	/**
+	 * Queue the work.
+	 * 
+	 * @param priority class of the solve
+	 * @param bulkhead of the solver, null if unlimited
+	 * @param work     to run
+	 * @return future of the solution
+	 * @throws SolveRejectedException if the backlog is full
+	 */
+	<S> CompletableFuture<S> submit(Priority priority, Bulkhead bulkhead, Supplier<S> work) {
+		CancellationToken current = CancellationToken.current();
+		Task<S> task = new Task<>(priority, bulkhead, work,
+				null == current ? new CancellationToken() : current.child());
+		task.future.whenComplete((s, e) -> {
+			if (task.future.isCancelled()) {
+				task.token.cancel();
+				unpark(task);
+			}
+		});
+		Lane lane = lanes[priority.ordinal()];
+		lane.submitted.increment();
+		Task<?> victim = null;
+		lock.lock();
+		try {
+			if (closed) {
+				lane.rejected.increment();
+				throw new SolveRejectedException("scheduler closed");
+			}
+			if (lane.depth >= backlog) {
+				victim = overload == Overload.SHED_OLDEST ? lane.ready.poll() : null;
+				if (null == victim) {
+					lane.rejected.increment();
+					throw new SolveRejectedException(String.format("%s backlog full", priority));
+				}
+				lane.depth--;
+				lane.shed.increment();
+				if (null != victim.bulkhead)
+					release(victim.bulkhead);
+			}
+			lane.depth++;
+			if (null == bulkhead || bulkhead.admit(task)) {
+				lane.ready.add(task);
+				ready.signal();
+			} else {
+				bulkheads.add(bulkhead);
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (null != victim)
+			victim.future.completeExceptionally(new SolveRejectedException("shed for a newer solve"));
+		return task.future;
+	}
+
+	// a cancelled solve leaves its bulkhead instead of waiting for a slot
+	private void unpark(Task<?> task) {
+		if (null == task.bulkhead)
+			return;
+		lock.lock();
+		try {
+			if (task.bulkhead.remove(task))
+				lanes[task.priority.ordinal()].depth--;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// caller holds the lock, the next parked solve of the bulkhead gets ready
+	private void release(Bulkhead bulkhead) {
+		Task<?> next = bulkhead.release();
+		if (null != next) {
+			lanes[next.priority.ordinal()].ready.add(next);
+			ready.signal();
+		}
+	}
+
+	// the next ready solve, interactive first but not starving batch solves
+	private Task<?> take() throws InterruptedException {
+		Lane interactive = lanes[Priority.INTERACTIVE.ordinal()];
+		Lane batch = lanes[Priority.BATCH.ordinal()];
+		lock.lock();
+		try {
+			while (interactive.ready.isEmpty() && batch.ready.isEmpty()) {
+				if (closed)
+					return null;
+				ready.await();
+			}
+			Lane lane;
+			if (!interactive.ready.isEmpty() && (batch.ready.isEmpty() || burst < INTERACTIVE_BURST)) {
+				lane = interactive;
+				burst++;
+			} else {
+				lane = batch;
+				burst = 0;
+			}
+			lane.depth--;
+			active++;
+			return lane.ready.poll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void work() {
+		worker.set(Boolean.TRUE);
+		Task<?> task;
+		try {
+			while (null != (task = take())) {
+				Lane lane = lanes[task.priority.ordinal()];
+				long wait = System.nanoTime() - task.enqueued;
+				lane.waited.add(wait);
+				lane.waits.record(wait);
+				if (closed) {
+					// parked in a bulkhead when the scheduler was closed
+					task.future.completeExceptionally(new SolveRejectedException("scheduler closed"));
+				} else if (task.future.isDone()) {
+					lane.expired.increment();
+				} else if (task.token.isCancelled() || task.token.isExpired()) {
+					lane.expired.increment();
+					task.run();
+				} else {
+					task.run();
+				}
+				lock.lock();
+				try {
+					active--;
+					if (null != task.bulkhead)
+						release(task.bulkhead);
+				} finally {
+					lock.unlock();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return true if the calling thread is a worker of this scheduler
+	 */
+	boolean isWorker() {
+		return Boolean.TRUE.equals(worker.get());
+	}
+
+	/**
+	 * Wait for a submitted solve. If the calling thread is interrupted or its
+	 * token cancelled or expired the solve is cancelled as well. The token
+	 * cancels the future on its own, the wait lasts until its deadline at most.
+	 * 
+	 * @param future of the solve
+	 * @return solution
+	 */
+	static <S> S join(CompletableFuture<S> future) {
+		CancellationToken token = CancellationToken.current();
+		Runnable unregister = null == token ? null : token.onCancel(() -> future.cancel(false));
+		try {
+			while (true) {
+				long remaining = null == token ? Long.MAX_VALUE : token.remaining();
+				if (remaining <= 0) {
+					future.cancel(false);
+					token.check();
+				}
+				try {
+					if (Long.MAX_VALUE == remaining)
+						return future.get();
+					return future.get(remaining, TimeUnit.NANOSECONDS);
+				} catch (TimeoutException e) {
+					// the deadline has passed
+				}
+			}
+		} catch (CancellationException e) {
+			if (null != token)
+				token.check();
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(false);
+			throw new SolveCancelledException("solve interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (null != unregister)
+				unregister.run();
+		}
+	}
+
+	@Override
+	public int getThreads() {
+		return threads;
+	}
+
+	@Override
+	public int getBacklog() {
+		return backlog;
+	}
+
+	@Override
+	public int getActive() {
+		lock.lock();
+		try {
+			return active;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public List<QueueStatistics> getQueueStatistics() {
+		List<QueueStatistics> list = new ArrayList<>();
+		lock.lock();
+		try {
+			for (Lane lane : lanes)
+				list.add(lane.snapshot(lane.depth));
+		} finally {
+			lock.unlock();
+		}
+		return list;
+	}
+
+	/**
+	 * @param priority class
+	 * @return statistics of the priority class
+	 */
+	public QueueStatistics getQueueStatistics(Priority priority) {
+		return getQueueStatistics().get(priority.ordinal());
+	}
+
+	@Override
+	public void reset() {
+		for (Lane lane : lanes) {
+			lane.submitted.reset();
+			lane.rejected.reset();
+			lane.shed.reset();
+			lane.expired.reset();
+			lane.waited.reset();
+			lane.waits.reset();
+		}
+	}
+
+	/**
+	 * Stop accepting solves and reject all queued ones, also the ones parked by a
+	 * bulkhead. Running solves finish, then the workers terminate.
+	 */
+	@Override
+	public void close() {
+		List<Task<?>> rejected = new ArrayList<>();
+		lock.lock();
+		try {
+			closed = true;
+			// parked solves first, so no ready solve hands its slot on to them
+			for (Bulkhead bulkhead : bulkheads) {
+				for (Task<?> task : bulkhead.drain()) {
+					lanes[task.priority.ordinal()].depth--;
+					rejected.add(task);
+				}
+			}
+			bulkheads.clear();
+			for (Lane lane : lanes) {
+				Task<?> task;
+				while (null != (task = lane.ready.poll())) {
+					lane.depth--;
+					rejected.add(task);
+					if (null != task.bulkhead)
+						release(task.bulkhead);
+				}
+			}
+			ready.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Task<?> task : rejected)
+			task.future.completeExceptionally(new SolveRejectedException("scheduler closed"));
+	}
+
+	/**
+	 * Register this scheduler at the platform MBeanServer.
+	 * 
+	 * @param engineName to distinguish several engines
+	 * @return the object name used
+	 */
+	public synchronized ObjectName registerMBean(String engineName) {
+		if (null != name)
+			throw new IllegalStateException(name + " already registered");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName on = new ObjectName(String.format("%s:type=SolveScheduler,name=%s", EngineMetrics.DOMAIN,
+					ObjectName.quote(engineName)));
+			server.registerMBean(this, on);
+			name = on;
+			return on;
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void unregisterMBean() {
+		if (null == name)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			name = null;
+		}
+	}
+
+}
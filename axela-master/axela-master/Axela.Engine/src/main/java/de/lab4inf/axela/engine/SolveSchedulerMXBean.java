@@ -0,0 +1,19 @@
+package de.lab4inf.axela.engine;
+
+import java.util.List;
+
+/**
+ * JMX view of the queues of a SolveScheduler.
+ */
+public interface SolveSchedulerMXBean {
+
+	int getThreads();
+
+	int getBacklog();
+
+	int getActive();
+
+	List<QueueStatistics> getQueueStatistics();
+
+	void reset();
+}
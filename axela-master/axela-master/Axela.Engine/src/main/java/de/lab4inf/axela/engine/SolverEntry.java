@@ -0,0 +1,294 @@
+package de.lab4inf.axela.engine;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import jdk.jfr.EventType;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.DoubleIris;
+import de.lab4inf.axela.core.Iris;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.facts.FactKey;
+
+/**
+ * Registry entry of one solver within the AxelaEngine. All calls of the engine,
+ * also via bound handles, go through this entry which adds memoization,
+ * single-flight coalescing, memory admission and metrics around the solver. A
+ * lazy entry creates its solver on the first call.
+ */
+final class SolverEntry<P, F, S> {
+	// no event is allocated per solve while no recording is running
+	private static final EventType SOLVE_EVENT = EventType.getEventType(SolveEvent.class);
+
+	private final AxelaEngine engine;
+	private final String signature;
+	private volatile Iris<P, F, S> solver;
+	// factory of a lazy entry, released once the solver is created
+	private Supplier<? extends Iris<P, F, S>> factory;
+	private volatile SolverMetrics metrics;
+	private volatile boolean memoized;
+	private volatile SolveScheduler.Priority priority = SolveScheduler.Priority.INTERACTIVE;
+	private volatile Bulkhead bulkhead;
+	// estimated working set in bytes, null if the solver is not admitted
+	private volatile ToLongFunction<? super F> footprint;
+	// computations in flight of a coalesced solver
+	private volatile ConcurrentMap<FactKey, CompletableFuture<S>> inflight;
+
+	SolverEntry(AxelaEngine engine, Iris<P, F, S> solver, String signature) {
+		this.engine = engine;
+		this.solver = solver;
+		this.signature = signature;
+	}
+
+	SolverEntry(AxelaEngine engine, Supplier<? extends Iris<P, F, S>> factory, String signature) {
+		this.engine = engine;
+		this.factory = factory;
+		this.signature = signature;
+	}
+
+	String getSignature() {
+		return signature;
+	}
+
+	// set once after the entry has been registered
+	void setMetrics(SolverMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	Iris<P, F, S> getSolver() {
+		Iris<P, F, S> s = solver;
+		if (null == s)
+			s = create();
+		return s;
+	}
+
+	boolean isCreated() {
+		return null != solver;
+	}
+
+	private synchronized Iris<P, F, S> create() {
+		if (null == solver) {
+			solver = Objects.requireNonNull(factory.get(), Axela.IRIS_IS_A_NULL_POINTER);
+			factory = null;
+		}
+		return solver;
+	}
+
+	SolveScheduler.Priority getPriority() {
+		return priority;
+	}
+
+	void setPriority(SolveScheduler.Priority priority) {
+		this.priority = priority;
+	}
+
+	// null if the solver is not limited
+	Bulkhead getBulkhead() {
+		return bulkhead;
+	}
+
+	void setBulkhead(Bulkhead bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+
+	void setFootprint(ToLongFunction<? super F> footprint) {
+		this.footprint = footprint;
+	}
+
+	void memoize() {
+		memoized = true;
+	}
+
+	synchronized void coalesce() {
+		if (null == inflight)
+			inflight = new ConcurrentHashMap<>();
+	}
+
+	S solve(P problem, F facts) {
+		if (!SOLVE_EVENT.isEnabled())
+			return measure(problem, facts);
+		SolveEvent event = new SolveEvent();
+		event.begin();
+		try {
+			return measure(problem, facts);
+		} finally {
+			commit(event, problem);
+		}
+	}
+
+	/**
+	 * Solve a scalar problem, a DoubleIris returns its solution unboxed unless
+	 * the solutions are memoized or coalesced.
+	 */
+	@SuppressWarnings("unchecked")
+	double solveAsDouble(P problem, F facts) {
+		Iris<P, F, S> solver = getSolver();
+		if (!(solver instanceof DoubleIris) || memoized || null != inflight)
+			return unbox(solve(problem, facts));
+		if (!SOLVE_EVENT.isEnabled())
+			return measure((DoubleIris<P, F>) solver, problem, facts);
+		SolveEvent event = new SolveEvent();
+		event.begin();
+		try {
+			return measure((DoubleIris<P, F>) solver, problem, facts);
+		} finally {
+			commit(event, problem);
+		}
+	}
+
+	static double unbox(Object solution) {
+		return ((Number) Objects.requireNonNull(solution, Axela.SOLUTION_IS_A_NULL_POINTER)).doubleValue();
+	}
+
+	private void commit(SolveEvent event, P problem) {
+		if (event.shouldCommit()) {
+			event.problem = String.valueOf(problem);
+			event.signature = signature;
+			event.memoized = memoized;
+			event.commit();
+		}
+	}
+
+	private double measure(DoubleIris<P, F> solver, P problem, F facts) {
+		EngineMetrics recorder = engine.getMetrics();
+		SolverMetrics metrics = this.metrics;
+		if (null == metrics || !recorder.isEnabled())
+			return call(solver, problem, facts);
+		long bytes = recorder.allocatedBytes();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			double solution = call(solver, problem, facts);
+			failed = false;
+			return solution;
+		} catch (SolveCancelledException cancelled) {
+			failed = false;
+			metrics.cancelled(cancelled instanceof DeadlineExceededException);
+			throw cancelled;
+		} finally {
+			long latency = System.nanoTime() - start;
+			metrics.record(latency, recorder.allocatedBytes() - bytes, failed);
+		}
+	}
+
+	private S measure(P problem, F facts) {
+		EngineMetrics recorder = engine.getMetrics();
+		SolverMetrics metrics = this.metrics;
+		if (null == metrics || !recorder.isEnabled())
+			return invoke(problem, facts);
+		long bytes = recorder.allocatedBytes();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			S solution = invoke(problem, facts);
+			failed = null == solution;
+			return solution;
+		} catch (SolveCancelledException cancelled) {
+			failed = false;
+			metrics.cancelled(cancelled instanceof DeadlineExceededException);
+			throw cancelled;
+		} finally {
+			long latency = System.nanoTime() - start;
+			metrics.record(latency, recorder.allocatedBytes() - bytes, failed);
+		}
+	}
+
+	private S invoke(P problem, F facts) {
+		ConcurrentMap<FactKey, CompletableFuture<S>> inflight = this.inflight;
+		if (null == inflight || reusesOutput(facts))
+			return compute(problem, facts);
+		FactKey key = new FactKey(problem, facts);
+		while (true) {
+			CompletableFuture<S> flight = new CompletableFuture<>();
+			CompletableFuture<S> leader = inflight.putIfAbsent(key, flight);
+			if (null == leader) {
+				// leave the flight before completing it, so retries start a new one
+				S solution;
+				try {
+					solution = compute(problem, facts);
+				} catch (Throwable error) {
+					inflight.remove(key, flight);
+					flight.completeExceptionally(error);
+					throw error;
+				}
+				inflight.remove(key, flight);
+				flight.complete(solution);
+				return solution;
+			}
+			SolverMetrics metrics = this.metrics;
+			if (null != metrics)
+				metrics.coalesced();
+			try {
+				return await(leader);
+			} catch (SolveCancelledException cancelled) {
+				// the leader was stopped by its own token, not by ours
+				CancellationToken token = CancellationToken.current();
+				if (null != token)
+					token.check();
+			}
+		}
+	}
+
+	// waits for the leader until the token of the calling thread is cancelled,
+	// a copy is cancelled so the leader and the other followers go on
+	private static <S> S await(CompletableFuture<S> leader) {
+		return SolveScheduler.join(leader.copy());
+	}
+
+	@SuppressWarnings("unchecked")
+	private S compute(P problem, F facts) {
+		if (!memoized || reusesOutput(facts))
+			return call(problem, facts);
+		SolutionCache cache = engine.getSolutionCache();
+		FactKey key = new FactKey(problem, facts);
+		S solution = (S) cache.get(key);
+		if (null == solution) {
+			solution = call(problem, facts);
+			if (null != solution)
+				cache.put(key, solution);
+		}
+		return solution;
+	}
+
+	// the solver call itself, admitted to the memory budget of the engine
+	private S call(P problem, F facts) {
+		MemoryBudget budget = engine.getMemoryBudget();
+		ToLongFunction<? super F> footprint = this.footprint;
+		if (null == budget || null == footprint)
+			return getSolver().solve(problem, facts);
+		long bytes = footprint.applyAsLong(facts);
+		budget.acquire(bytes);
+		try {
+			return getSolver().solve(problem, facts);
+		} finally {
+			budget.release(bytes);
+		}
+	}
+
+	private double call(DoubleIris<P, F> solver, P problem, F facts) {
+		MemoryBudget budget = engine.getMemoryBudget();
+		ToLongFunction<? super F> footprint = this.footprint;
+		if (null == budget || null == footprint)
+			return solver.solveAsDouble(problem, facts);
+		long bytes = footprint.applyAsLong(facts);
+		budget.acquire(bytes);
+		try {
+			return solver.solveAsDouble(problem, facts);
+		} finally {
+			budget.release(bytes);
+		}
+	}
+
+	// a solution written into a caller owned buffer must not be shared
+	private static boolean reusesOutput(Object facts) {
+		return facts instanceof FactBase && ((FactBase<?, ?>) facts).getHints().isOutputReused();
+	}
+}
@@ -0,0 +1,65 @@
+package de.lab4inf.axela.engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recorder of calls, errors, cancellations, coalesced calls, latencies and
+ * allocated bytes of one registered solver.
+ */
+final class SolverMetrics {
+	private final String problem;
+	private final String signature;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder cancellations = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	SolverMetrics(String problem, String signature) {
+		this.problem = problem;
+		this.signature = signature;
+	}
+
+	void record(long latency, long allocated, boolean failed) {
+		calls.increment();
+		if (failed)
+			errors.increment();
+		nanos.add(latency);
+		bytes.add(allocated);
+		latencies.record(latency);
+	}
+
+	// cancelled calls are recorded as calls but not as errors
+	void cancelled(boolean expired) {
+		if (expired)
+			timeouts.increment();
+		else
+			cancellations.increment();
+	}
+
+	// counted even if the timing of the calls is disabled
+	void coalesced() {
+		coalesced.increment();
+	}
+
+	void reset() {
+		calls.reset();
+		errors.reset();
+		cancellations.reset();
+		timeouts.reset();
+		coalesced.reset();
+		nanos.reset();
+		bytes.reset();
+		latencies.reset();
+	}
+
+	SolverStatistics snapshot() {
+		long n = calls.sum();
+		return new SolverStatistics(problem, signature, n, errors.sum(), cancellations.sum(), timeouts.sum(),
+				coalesced.sum(), n > 0 ? nanos.sum() / n : 0, latencies.percentile(50.), latencies.percentile(99.),
+				latencies.percentile(99.9), n > 0 ? bytes.sum() / n : 0);
+	}
+}
@@ -0,0 +1,101 @@
+package de.lab4inf.axela.engine;
+
+/**
+ * Immutable snapshot of the metrics of one registered solver. Latencies are
+ * given in nanoseconds.
+ */
+public final class SolverStatistics {
+	private final String problem;
+	private final String signature;
+	private final long calls;
+	private final long errors;
+	private final long cancellations;
+	private final long timeouts;
+	private final long coalesced;
+	private final long meanLatency;
+	private final long p50;
+	private final long p99;
+	private final long p999;
+	private final long allocatedBytesPerCall;
+
+	SolverStatistics(String problem, String signature, long calls, long errors, long cancellations, long timeouts,
+			long coalesced, long meanLatency, long p50, long p99, long p999, long allocatedBytesPerCall) {
+		this.problem = problem;
+		this.signature = signature;
+		this.calls = calls;
+		this.errors = errors;
+		this.cancellations = cancellations;
+		this.timeouts = timeouts;
+		this.coalesced = coalesced;
+		this.meanLatency = meanLatency;
+		this.p50 = p50;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.allocatedBytesPerCall = allocatedBytesPerCall;
+	}
+
+	public String getProblem() {
+		return problem;
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return number of calls stopped by a cancelled token
+	 */
+	public long getCancellations() {
+		return cancellations;
+	}
+
+	/**
+	 * @return number of calls stopped by an exceeded deadline
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * @return number of calls which shared the computation of a concurrent call
+	 */
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public long getMeanLatency() {
+		return meanLatency;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+
+	public long getAllocatedBytesPerCall() {
+		return allocatedBytesPerCall;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s %s: calls=%d errors=%d cancelled=%d timeouts=%d coalesced=%d mean=%dns p50=%dns p99=%dns p999=%dns alloc=%dB",
+				problem, signature, calls, errors, cancellations, timeouts, coalesced, meanLatency, p50, p99, p999,
+				allocatedBytesPerCall);
+	}
+}
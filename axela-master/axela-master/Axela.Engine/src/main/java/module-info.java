@@ -2,6 +2,9 @@ module Axela.Engine {
 	exports de.lab4inf.axela.engine;
 	
 	requires transitive Axela.Core;
+	requires transitive java.management;
+	requires jdk.management;
+	requires jdk.jfr;
 	
 	uses de.lab4inf.axela.core.Axela;
 	
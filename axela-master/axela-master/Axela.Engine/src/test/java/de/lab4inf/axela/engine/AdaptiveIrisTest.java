@@ -0,0 +1,111 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.Iris;
+
+class AdaptiveIrisTest {
+	static final double SMALL = 10, LARGE = 1000;
+
+	// simulated time, the candidates advance it by their cost
+	final AtomicLong clock = new AtomicLong();
+
+	// fixed overhead of 1ms, independent of the size
+	Iris<String, double[], String> parallel = (p, f) -> {
+		clock.addAndGet(1_000_000);
+		return "parallel";
+	};
+
+	// 10µs per unit of size
+	Iris<String, double[], String> serial = (p, f) -> {
+		clock.addAndGet((long) (10_000 * f[0]));
+		return "serial";
+	};
+
+	@Test
+	void testRouteBySize() {
+		AdaptiveIris<String, double[], String> iris = new AdaptiveIris<>(f -> f[0], f -> null, clock::get);
+		iris.addCandidate("serial", serial);
+		iris.addCandidate("parallel", parallel);
+		for (int k = 0; k < 2 * AdaptiveIris.MIN_SAMPLES; k++) {
+			iris.solve("MULT", new double[] { SMALL });
+			iris.solve("MULT", new double[] { LARGE });
+		}
+		assertEquals("serial", iris.solve("MULT", new double[] { SMALL }));
+		assertEquals("parallel", iris.solve("MULT", new double[] { LARGE }));
+		assertEquals("serial", iris.solve("MULT", new double[] { 20 }));
+		assertEquals("parallel", iris.solve("MULT", new double[] { 500 }));
+
+		List<AdaptiveIris.CostModel> models = iris.getCostModels();
+		assertEquals(2, models.size());
+		for (AdaptiveIris.CostModel m : models)
+			assertTrue(m.getSamples() >= AdaptiveIris.MIN_SAMPLES, m.toString());
+		assertTrue(models.get(0).predict(SMALL) < models.get(1).predict(SMALL), models.toString());
+		assertTrue(models.get(0).predict(LARGE) > models.get(1).predict(LARGE), models.toString());
+		assertTrue(iris.getRoutes().size() >= 2, iris.getRoutes().toString());
+	}
+
+	@Test
+	void testPreference() {
+		AdaptiveIris<String, double[], String> iris = new AdaptiveIris<>(f -> f[0],
+				f -> f.length > 1 ? "parallel" : null);
+		iris.addCandidate("serial", serial);
+		iris.addCandidate("parallel", parallel);
+		for (int k = 0; k < 5; k++)
+			assertEquals("parallel", iris.solve("MULT", new double[] { 1., 1. }));
+		AdaptiveIris.Route route = iris.getRoutes().get(0);
+		assertEquals("parallel", route.getCandidate());
+		assertEquals(5, route.getCalls());
+	}
+
+	@Test
+	void testNoCandidate() {
+		AdaptiveIris<String, double[], String> iris = new AdaptiveIris<>(f -> f[0]);
+		try {
+			iris.solve("MULT", new double[] { 1. });
+			fail("no exception without candidates thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("no candidate"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSameCandidate() {
+		AdaptiveIris<String, double[], String> iris = new AdaptiveIris<>(f -> f[0]);
+		iris.addCandidate("serial", serial);
+		try {
+			iris.addCandidate("serial", serial);
+			fail("no exception with same candidate thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("already registered"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testRegisterCandidate() {
+		AxelaEngine engine = new AxelaEngine();
+		AdaptiveIris<String, double[], String> iris = engine.registerCandidate("MULT", new double[0], "serial",
+				serial, f -> f[0]);
+		assertSame(iris, engine.registerCandidate("MULT", new double[0], "parallel", parallel, f -> f[0]));
+		assertSame(iris, engine.findSolverFor("MULT", new double[0]));
+		assertNotNull(engine.solve("MULT", new double[] { SMALL }));
+		assertEquals(2, iris.getCostModels().size());
+
+		engine.registerSolver("PLUS", new double[0], serial);
+		try {
+			engine.registerCandidate("PLUS", new double[0], "parallel", parallel, f -> f[0]);
+			fail("no exception with plain iris registered thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("iris already registered"), error.getMessage());
+		}
+	}
+}
@@ -1,16 +1,47 @@
 package de.lab4inf.axela.engine;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.BoundSolver;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.DoubleBoundSolver;
+import de.lab4inf.axela.core.DoubleIris;
 import de.lab4inf.axela.core.Iris;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.core.SolveProcessor;
 import de.lab4inf.axela.facts.FactBase;
 import de.lab4inf.axela.engine.AxelaEngine.Key;
 
@@ -210,6 +241,699 @@ public class AxelaEngineTest {
 		assertEquals(key.equals("test"), false);
 	}
 
+	@Test
+	void testSharedEngine() {
+		assertSame(axela, Axela.getEngine());
+	}
+
+	@Test
+	void testRegistryPerInstance() {
+		AxelaEngine one = new AxelaEngine();
+		AxelaEngine two = new AxelaEngine();
+		one.registerSolver("LOCAL", new double[0], new TestIris());
+		assertTrue(one.hasSolverFor("LOCAL", doubleArray));
+		assertFalse(two.hasSolverFor("LOCAL", doubleArray));
+		assertFalse(axela.hasSolverFor("LOCAL", doubleArray));
+	}
+
+	@Test
+	void testLazySolver() {
+		AtomicInteger created = new AtomicInteger();
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerLazySolver("DOT", new double[0], () -> {
+			created.incrementAndGet();
+			return (String p, double[] f) -> f[0] * f[1];
+		});
+		assertTrue(engine.hasSolverFor("DOT", doubleArray));
+		assertEquals(0, created.get());
+		assertEquals(6., (Double) engine.solve("DOT", new double[] { 2., 3. }), 0.);
+		assertEquals(2., (Double) engine.solve("DOT", new double[] { 1., 2. }), 0.);
+		assertEquals(1, created.get());
+		assertEquals(2., engine.<String, double[], Double>findSolverFor("DOT", doubleArray).solve("DOT",
+				new double[] { 1., 2. }), 0.);
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	void testLazySolverNullIris() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerLazySolver("DOT", new double[0], () -> (Iris<String, double[], Double>) null);
+		try {
+			engine.solve("DOT", doubleArray);
+			fail("no exception with null iris thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains(IRIS_IS_A_NULL_POINTER), error.getMessage());
+		}
+	}
+
+	@Test
+	void testRegisterPluginOnce() {
+		AxelaEngine engine = new AxelaEngine();
+		CountingPlugin plugin = new CountingPlugin();
+		engine.register(plugin);
+		engine.register(plugin);
+		engine.register(new CountingPlugin());
+		assertEquals(1, plugin.inits.get());
+		assertTrue(engine.hasSolverFor("COUNT", doubleArray));
+	}
+
+	@Test
+	void testLazyPlugins() {
+		AxelaEngine engine = new AxelaEngine();
+		CountingPlugin plugin = new CountingPlugin();
+		engine.registerLazyPlugins(List.of(plugin));
+		assertEquals(0, plugin.inits.get());
+		engine.registerSolver("LOCAL", new double[0], new TestIris());
+		assertTrue(engine.hasSolverFor("LOCAL", doubleArray));
+		assertEquals(0, plugin.inits.get());
+		assertEquals(2., (Double) engine.solve("COUNT", doubleArray), 0.);
+		assertEquals(1, plugin.inits.get());
+		assertFalse(engine.hasSolverFor("UNKNOWN", doubleArray));
+		assertEquals(1, plugin.inits.get());
+	}
+
+	@Test
+	void testConcurrentLazyPlugins() throws Exception {
+		AxelaEngine engine = new AxelaEngine();
+		CountDownLatch started = new CountDownLatch(1);
+		// a slow plugin, the second lookup misses while it is initialized
+		Axela.Plugin slow = new Axela.Plugin() {
+			@Override
+			public void init(Axela axela) {
+				started.countDown();
+				try {
+					Thread.sleep(300);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				assertFalse(axela.hasSolverFor("ECHO", doubleArray));
+				axela.registerSolver("ECHO", new double[0], (String p, double[] f) -> (double) f.length);
+			}
+		};
+		engine.registerLazyPlugins(List.of(slow));
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> first = pool.submit(() -> engine.solve("ECHO", doubleArray));
+			started.await();
+			Future<Object> second = pool.submit(() -> engine.solve("ECHO", doubleArray));
+			assertEquals(2., (Double) first.get(5, TimeUnit.SECONDS), 0.);
+			assertEquals(2., (Double) second.get(5, TimeUnit.SECONDS), 0.);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testConcurrentRegister() throws Exception {
+		final int threads = 8;
+		AxelaEngine engine = new AxelaEngine();
+		AtomicInteger registered = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				for (int k = 0; k < 100; k++) {
+					try {
+						engine.registerSolver("P" + k, new double[0], new TestIris());
+						registered.incrementAndGet();
+					} catch (IllegalStateException e) {
+						// another thread has been faster
+					}
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> f : futures)
+			f.get();
+		pool.shutdown();
+		assertEquals(100, registered.get());
+		for (int k = 0; k < 100; k++)
+			assertTrue(engine.hasSolverFor("P" + k, doubleArray));
+	}
+
+	@Test
+	void testSolveThroughput() throws Exception {
+		final int calls = 200_000;
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		int proc = Runtime.getRuntime().availableProcessors();
+
+		System.out.printf("+---------+-------------+---------+%n");
+		System.out.printf("| threads |   ops[1/s]  | speedUp |%n");
+		System.out.printf("+---------+-------------+---------+%n");
+		double single = 0;
+		for (int threads = 1; threads <= proc; threads *= 2) {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Double>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(pool.submit(() -> {
+					double[] facts = { 1., 2. };
+					double sum = 0;
+					start.await();
+					for (int k = 0; k < calls; k++) {
+						Double d = engine.solve("DOT", facts);
+						sum += d;
+					}
+					return sum;
+				}));
+			}
+			long t0 = System.nanoTime();
+			start.countDown();
+			for (Future<Double> f : futures)
+				assertEquals(2. * calls, f.get(), 0.);
+			long t1 = System.nanoTime();
+			pool.shutdown();
+
+			double ops = 1.E9 * threads * calls / (t1 - t0);
+			if (1 == threads)
+				single = ops;
+			System.out.printf("| %7d | %11.0f | %7.2f |%n", threads, ops, ops / single);
+		}
+		System.out.printf("+---------+-------------+---------+%n");
+	}
+
+	@Test
+	void testBind() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		BoundSolver<double[], Double> dot = engine.bind("DOT", new double[0]);
+		assertEquals(6., dot.solve(new double[] { 2., 3. }), 0.);
+		assertEquals(2., dot.solve(new double[] { 1., 2. }), 0.);
+	}
+
+	@Test
+	void testBindNoIris() {
+		try {
+			axela.bind("ASDASD", doubleArray);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalArgumentException error) {
+			String msg = error.getMessage();
+			assertNotNull(msg, "empty exception is meaningless");
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testBindNullSolution() {
+		BoundSolver<double[], Double> sum = axela.bind("SUM", doubleArray);
+		try {
+			sum.solve(doubleArray);
+			fail("no exception with null solution thrown");
+		} catch (NullPointerException error) {
+			String msg = error.getMessage();
+			assertNotNull(msg, "empty exception is meaningless");
+			assertTrue(error.getMessage().contains(SOLUTION_IS_A_NULL_POINTER), error.getMessage());
+		}
+	}
+
+	@Test
+	void testBindSpeed() {
+		final int calls = 1_000_000;
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new FactBase<>(doubleArray, doubleArray),
+				(String p, FactBase<double[], double[]> f) -> f.getFact1()[0] * f.getFact2()[1]);
+		FactBase<double[], double[]> facts = new FactBase<>(new double[] { 1., 2. }, new double[] { 3., 4. });
+		BoundSolver<FactBase<double[], double[]>, Double> dot = engine.bind("DOT", facts);
+
+		System.out.printf("+-----------+----------+----------+-------+%n");
+		System.out.printf("|   calls   | solve[ns]| bound[ns]|  s/b  |%n");
+		System.out.printf("+-----------+----------+----------+-------+%n");
+		for (int round = 0; round < 3; round++) {
+			double sum = 0;
+			long start1 = System.nanoTime();
+			for (int k = 0; k < calls; k++) {
+				Double d = engine.solve("DOT", facts);
+				sum += d;
+			}
+			long end1 = System.nanoTime();
+			long start2 = System.nanoTime();
+			for (int k = 0; k < calls; k++) {
+				sum += dot.solve(facts);
+			}
+			long end2 = System.nanoTime();
+			assertEquals(2. * 4. * calls, sum, 0.);
+
+			double solve = (double) (end1 - start1) / calls;
+			double bound = (double) (end2 - start2) / calls;
+			System.out.printf("| %9d | %8.1f | %8.1f | %5.2f |%n", calls, solve, bound, solve / bound);
+		}
+		System.out.printf("+-----------+----------+----------+-------+%n");
+	}
+
+	@Test
+	void testMemoryBudget() {
+		AxelaEngine engine = new AxelaEngine();
+		MemoryBudget budget = new MemoryBudget(1000, MemoryBudget.Overload.REJECT);
+		AtomicLong reserved = new AtomicLong();
+		engine.setMemoryBudget(budget);
+		engine.registerSolver("ALLOC", 0, (String p, Integer n) -> {
+			reserved.set(budget.getReserved());
+			return new double[n];
+		});
+		engine.estimate("ALLOC", 0, n -> 8L * n);
+		double[] small = engine.solve("ALLOC", 100);
+		assertEquals(100, small.length);
+		assertEquals(800, reserved.get());
+		assertEquals(0, budget.getReserved());
+		try {
+			engine.solve("ALLOC", 1000);
+			fail("no exception with too large working set thrown");
+		} catch (SolveRejectedException error) {
+			assertEquals(1, budget.getRejected());
+		}
+		engine.setMemoryBudget(null);
+		double[] large = engine.solve("ALLOC", 1000);
+		assertEquals(1000, large.length);
+	}
+
+	@Test
+	void testEstimateNoIris() {
+		AxelaEngine engine = new AxelaEngine();
+		try {
+			engine.estimate("UNKNOWN", 0, n -> 0);
+			fail("no exception for unknown problem thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("UNKNOWN"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSolveAsDouble() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (DoubleIris<String, double[]>) (p, f) -> f[0] * f[1]);
+		engine.registerSolver("BOXED", new double[0], (String p, double[] f) -> f[0] + f[1]);
+		engine.registerSolver("NULL", new double[0], (String p, double[] f) -> (Double) null);
+		assertEquals(6., engine.solveAsDouble("DOT", new double[] { 2., 3. }), 0.);
+		assertEquals(6., (Double) engine.solve("DOT", new double[] { 2., 3. }), 0.);
+		assertEquals(5., engine.solveAsDouble("BOXED", new double[] { 2., 3. }), 0.);
+		try {
+			engine.solveAsDouble("NULL", doubleArray);
+			fail("no exception with null solution thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains(SOLUTION_IS_A_NULL_POINTER), error.getMessage());
+		}
+		try {
+			engine.solveAsDouble("ASDASD", doubleArray);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+		SolverStatistics dot = statistics(engine, "DOT");
+		assertEquals(2, dot.getCalls());
+	}
+
+	@Test
+	void testBindDouble() {
+		AxelaEngine engine = new AxelaEngine();
+		AtomicInteger calls = new AtomicInteger();
+		engine.registerSolver("DOT", new double[0], (DoubleIris<String, double[]>) (p, f) -> {
+			calls.incrementAndGet();
+			return f[0] * f[1];
+		});
+		DoubleBoundSolver<double[]> dot = engine.bindDouble("DOT", new double[0]);
+		assertEquals(6., dot.solveAsDouble(new double[] { 2., 3. }), 0.);
+		// memoized solutions are cached boxed
+		engine.memoize("DOT", new double[0]);
+		assertEquals(2., dot.solveAsDouble(new double[] { 1., 2. }), 0.);
+		assertEquals(2., dot.solveAsDouble(new double[] { 1., 2. }), 0.);
+		assertEquals(2, calls.get());
+		engine.registerSolver("SUM", new double[0], (String p, double[] f) -> f[0] + f[1]);
+		assertEquals(3., engine.bindDouble("SUM", new double[0]).solveAsDouble(new double[] { 1., 2. }), 0.);
+	}
+
+	@Test
+	void testDoubleSpeed() {
+		final int calls = 1_000_000;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("BOXED", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		engine.registerSolver("DOT", new double[0], (DoubleIris<String, double[]>) (p, f) -> f[0] * f[1]);
+		BoundSolver<double[], Double> boxed = engine.bind("BOXED", new double[0]);
+		DoubleBoundSolver<double[]> dot = engine.bindDouble("DOT", new double[0]);
+		double[] facts = { 1.5, 2. };
+
+		System.out.printf("+-----------+----------+----------+-----------+----------+%n");
+		System.out.printf("|   calls   | boxed[ns]|  boxed[B]| double[ns]| double[B]|%n");
+		System.out.printf("+-----------+----------+----------+-----------+----------+%n");
+		for (int round = 0; round < 3; round++) {
+			double sum = 0;
+			long bytes1 = threads.getThreadAllocatedBytes(thread);
+			long start1 = System.nanoTime();
+			for (int k = 0; k < calls; k++) {
+				facts[0] = k;
+				sum += boxed.solve(facts);
+			}
+			long end1 = System.nanoTime();
+			long bytes2 = threads.getThreadAllocatedBytes(thread);
+			long start2 = System.nanoTime();
+			for (int k = 0; k < calls; k++) {
+				facts[0] = k;
+				sum -= dot.solveAsDouble(facts);
+			}
+			long end2 = System.nanoTime();
+			long bytes3 = threads.getThreadAllocatedBytes(thread);
+			assertEquals(0., sum, 0.);
+
+			System.out.printf("| %9d | %8.1f | %8.1f | %9.1f | %8.1f |%n", calls, (double) (end1 - start1) / calls,
+					(double) (bytes2 - bytes1) / calls, (double) (end2 - start2) / calls,
+					(double) (bytes3 - bytes2) / calls);
+		}
+		System.out.printf("+-----------+----------+----------+-----------+----------+%n");
+	}
+
+	@Test
+	void testSolveAsync() throws Exception {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		CompletableFuture<Double> future = engine.solveAsync("DOT", new double[] { 2., 3. });
+		assertEquals(6., future.get(), 0.);
+	}
+
+	@Test
+	void testSolveAsyncNoIris() throws Exception {
+		CompletableFuture<Double> future = axela.solveAsync("ASDASD", doubleArray);
+		try {
+			future.get();
+			fail("no exception with unknown problem thrown");
+		} catch (ExecutionException error) {
+			assertTrue(error.getCause() instanceof IllegalArgumentException, error.getMessage());
+		}
+	}
+
+	@Test
+	void testSolveAll() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.setExecutor(AxelaExecutors.bounded(3, 2));
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		List<double[]> facts = new ArrayList<>();
+		for (int k = 0; k < 100; k++)
+			facts.add(new double[] { k, 2. });
+		List<Double> solutions = engine.solveAll("DOT", facts);
+		assertEquals(facts.size(), solutions.size());
+		for (int k = 0; k < 100; k++)
+			assertEquals(2. * k, solutions.get(k), 0.);
+	}
+
+	@Test
+	void testSolveStream() throws Exception {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		SolveProcessor<double[], Double> processor = engine.solveStream("DOT", new double[0],
+				SolveProcessor.Options.DEFAULT.withConcurrency(2).withBatchSize(8));
+		List<Double> solutions = new ArrayList<>();
+		CompletableFuture<List<Double>> done = new CompletableFuture<>();
+		processor.subscribe(new Flow.Subscriber<Double>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Double solution) {
+				solutions.add(solution);
+			}
+
+			@Override
+			public void onError(Throwable error) {
+				done.completeExceptionally(error);
+			}
+
+			@Override
+			public void onComplete() {
+				done.complete(solutions);
+			}
+		});
+		try (SubmissionPublisher<double[]> facts = new SubmissionPublisher<>()) {
+			facts.subscribe(processor);
+			for (int k = 0; k < 100; k++)
+				facts.submit(new double[] { k, 2. });
+		}
+		List<Double> result = done.get(10, TimeUnit.SECONDS);
+		assertEquals(100, result.size());
+		for (int k = 0; k < 100; k++)
+			assertEquals(2. * k, result.get(k), 0.);
+	}
+
+	@Test
+	void testSolveAllNullSolution() {
+		try {
+			axela.solveAll("SUM", List.of(doubleArray, doubleArray));
+			fail("no exception with null solution thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains(SOLUTION_IS_A_NULL_POINTER), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSolveAllVirtual() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.setExecutor(AxelaExecutors.virtual());
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		List<Double> solutions = engine.solveAll("DOT", List.of(new double[] { 1., 2. }, new double[] { 3., 4. }));
+		assertEquals(List.of(2., 12.), solutions);
+	}
+
+	@Test
+	void testSetNullExecutor() {
+		try {
+			new AxelaEngine().setExecutor(null);
+			fail("no exception with null executor thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains(Axela.EXECUTOR_IS_A_NULL_POINTER), error.getMessage());
+		}
+	}
+
+	@Test
+	void testMemoize() {
+		AtomicInteger calls = new AtomicInteger();
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("MULT", new FactBase<>(new double[0][0], new double[0][0]),
+				(String p, FactBase<double[][], double[][]> f) -> {
+					calls.incrementAndGet();
+					return new double[][] { { f.getFact1()[0][0] * f.getFact2()[0][0] } };
+				});
+		engine.memoize("MULT", new FactBase<>(new double[0][0], new double[0][0]));
+		double[][] a = { { 2. } }, b = { { 3. } };
+		double[][] first = engine.solve("MULT", new FactBase<>(a, b));
+		double[][] second = engine.solve("MULT", new FactBase<>(new double[][] { { 2. } }, new double[][] { { 3. } }));
+		assertEquals(6., first[0][0], 0.);
+		assertSame(first, second);
+		assertEquals(1, calls.get());
+		assertEquals(1, engine.getSolutionCache().getHits());
+		assertEquals(1, engine.getSolutionCache().getMisses());
+	}
+
+	@Test
+	void testMemoizeNoIris() {
+		try {
+			new AxelaEngine().memoize("ASDASD", doubleArray);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+	}
+
+	private SolverStatistics statistics(AxelaEngine engine, String problem) {
+		for (SolverStatistics s : engine.getMetrics().getSolverStatistics())
+			if (s.getProblem().equals(problem))
+				return s;
+		fail("no statistics for " + problem);
+		return null;
+	}
+
+	// waits until the given number of calls joined a flight in progress
+	private void awaitCoalesced(AxelaEngine engine, String problem, long count) throws InterruptedException {
+		long end = System.nanoTime() + 10_000_000_000L;
+		while (statistics(engine, problem).getCoalesced() < count) {
+			assertTrue(System.nanoTime() < end, "calls not coalesced");
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	void testCoalesce() throws Exception {
+		final int n = 8;
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("SLOW", "", (String p, String f) -> {
+			calls.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new StringBuilder(f).reverse().toString();
+		});
+		engine.coalesce("SLOW", "");
+		ExecutorService pool = Executors.newFixedThreadPool(n);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int k = 0; k < n; k++) {
+				// equal but not identical facts
+				String facts = new String("x+y");
+				futures.add(pool.submit(() -> engine.<String, String, String>solve("SLOW", facts)));
+			}
+			awaitCoalesced(engine, "SLOW", n - 1);
+			release.countDown();
+			String first = futures.get(0).get();
+			assertEquals("y+x", first);
+			for (Future<String> future : futures)
+				assertSame(first, future.get());
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, calls.get());
+		assertEquals(n - 1, statistics(engine, "SLOW").getCoalesced());
+		assertEquals(n, statistics(engine, "SLOW").getCalls());
+		// calls after the flight compute again
+		assertEquals("y+x", engine.solve("SLOW", "x+y"));
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	void testCoalesceFollowerCancelled() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("SLOW", "", (String p, String f) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return f;
+		});
+		engine.coalesce("SLOW", "");
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> engine.solve("SLOW", "facts"));
+		CancellationToken token = new CancellationToken();
+		CompletableFuture<String> follower = CompletableFuture
+				.supplyAsync(() -> engine.solve("SLOW", "facts", token));
+		awaitCoalesced(engine, "SLOW", 1);
+		// the token wakes the follower, the leader goes on
+		token.cancel();
+		try {
+			follower.get(10, TimeUnit.SECONDS);
+			fail("no exception for cancelled follower thrown");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SolveCancelledException, e.getCause().toString());
+		}
+		assertFalse(leader.isDone());
+		release.countDown();
+		assertEquals("facts", leader.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testCoalesceLeaderTimeout() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("LOOP", "", (String p, String f) -> {
+			// the first call runs until its token stops it
+			if (calls.incrementAndGet() == 1) {
+				CancellationToken token = CancellationToken.current();
+				while (true)
+					token.check();
+			}
+			return f;
+		});
+		engine.coalesce("LOOP", "");
+		CompletableFuture<String> leader = CompletableFuture
+				.supplyAsync(() -> engine.solve("LOOP", "facts", Duration.ofMillis(200)));
+		while (calls.get() == 0)
+			Thread.sleep(1);
+		// the follower without deadline computes on its own
+		assertEquals("facts", engine.solve("LOOP", "facts"));
+		try {
+			leader.join();
+			fail("no exception with exceeded deadline thrown");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof DeadlineExceededException, e.toString());
+		}
+		assertEquals(2, calls.get());
+		assertEquals(1, statistics(engine, "LOOP").getCoalesced());
+	}
+
+	@Test
+	void testCoalesceError() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("FAIL", "", (String p, String f) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalArgumentException("wrong facts: " + f);
+		});
+		engine.coalesce("FAIL", "");
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> engine.solve("FAIL", "a"), pool);
+			CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> engine.solve("FAIL", "a"), pool);
+			awaitCoalesced(engine, "FAIL", 1);
+			release.countDown();
+			for (CompletableFuture<String> future : List.of(first, second)) {
+				try {
+					future.join();
+					fail("no exception of the solver thrown");
+				} catch (CompletionException e) {
+					assertTrue(e.getCause().getMessage().contains("wrong facts: a"), e.toString());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testCoalesceNoIris() {
+		try {
+			new AxelaEngine().coalesce("ASDASD", doubleArray);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSolveEvent() throws Exception {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		Path dump = Files.createTempFile("axela", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("de.lab4inf.axela.Solve");
+			recording.start();
+			engine.solve("DOT", new double[] { 1., 2. });
+			recording.stop();
+			recording.dump(dump);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+			events.removeIf(e -> !e.getEventType().getName().equals("de.lab4inf.axela.Solve"));
+			assertEquals(1, events.size());
+			assertEquals("DOT", events.get(0).getString("problem"));
+			assertEquals("double[]", events.get(0).getString("signature"));
+			assertEquals(Thread.currentThread().getName(), events.get(0).getThread().getJavaName());
+		} finally {
+			Files.deleteIfExists(dump);
+		}
+	}
+
+	static class CountingPlugin implements Axela.Plugin {
+		final AtomicInteger inits = new AtomicInteger();
+
+		@Override
+		public void init(Axela engine) {
+			inits.incrementAndGet();
+			// plugins may look up their own solvers while they are initialized
+			if (!engine.hasSolverFor("COUNT", new double[0]))
+				engine.registerSolver("COUNT", new double[0], (String p, double[] f) -> (double) f.length);
+		}
+	}
+
 	class TestIris implements Iris<String, double[], Double> {
 
 		@Override
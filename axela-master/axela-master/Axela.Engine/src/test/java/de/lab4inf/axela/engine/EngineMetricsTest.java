@@ -0,0 +1,160 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.BoundSolver;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.facts.FactBase;
+
+class EngineMetricsTest {
+
+	private AxelaEngine createEngine() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> {
+			if (f.length < 2)
+				throw new IllegalArgumentException("dimensions wrong!");
+			return f[0] * f[1];
+		});
+		engine.registerSolver("PLUS", new FactBase<>(new double[0], new double[0]),
+				(String p, FactBase<double[], double[]> f) -> new double[] { f.getFact1()[0] + f.getFact2()[0] });
+		return engine;
+	}
+
+	private SolverStatistics statistics(AxelaEngine engine, String problem) {
+		for (SolverStatistics s : engine.getMetrics().getSolverStatistics())
+			if (s.getProblem().equals(problem))
+				return s;
+		fail("no statistics for " + problem);
+		return null;
+	}
+
+	@Test
+	void testCallsAndErrors() {
+		AxelaEngine engine = createEngine();
+		for (int k = 0; k < 10; k++)
+			engine.solve("DOT", new double[] { k, 2. });
+		try {
+			engine.solve("DOT", new double[] { 1. });
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException e) {
+			// counted as error
+		}
+		SolverStatistics stats = statistics(engine, "DOT");
+		assertEquals(11, stats.getCalls());
+		assertEquals(1, stats.getErrors());
+		assertEquals("double[]", stats.getSignature());
+		assertTrue(stats.getP50() <= stats.getP99() && stats.getP99() <= stats.getP999(), stats.toString());
+	}
+
+	@Test
+	void testCancellations() {
+		AxelaEngine engine = createEngine();
+		// runs until the token of the solve stops it
+		engine.registerSolver("LOOP", new double[0], (String p, double[] f) -> {
+			CancellationToken token = CancellationToken.current();
+			while (true)
+				token.check();
+		});
+		try {
+			engine.solve("LOOP", new double[] { 1. }, Duration.ofMillis(10));
+			fail("no exception with exceeded deadline thrown");
+		} catch (DeadlineExceededException e) {
+			// counted as timeout
+		}
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		try {
+			engine.solve("LOOP", new double[] { 1. }, token);
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException e) {
+			// stopped before calling the solver
+		}
+		// a nested solve is stopped by the deadline of the enclosing one
+		CancellationToken.timeout(Duration.ofMillis(10)).call(() -> {
+			try {
+				engine.solve("LOOP", new double[] { 1. }, new CancellationToken());
+				fail("no exception with exceeded deadline thrown");
+			} catch (DeadlineExceededException e) {
+				// counted as timeout
+			}
+			return null;
+		});
+		SolverStatistics stats = statistics(engine, "LOOP");
+		assertEquals(2, stats.getCalls());
+		assertEquals(2, stats.getTimeouts());
+		assertEquals(0, stats.getCancellations());
+		assertEquals(0, stats.getErrors());
+	}
+
+	@Test
+	void testBoundCalls() {
+		AxelaEngine engine = createEngine();
+		FactBase<double[], double[]> facts = new FactBase<>(new double[] { 1. }, new double[] { 2. });
+		BoundSolver<FactBase<double[], double[]>, double[]> plus = engine.bind("PLUS", facts);
+		for (int k = 0; k < 5; k++)
+			plus.solve(facts);
+		SolverStatistics stats = statistics(engine, "PLUS");
+		assertEquals(5, stats.getCalls());
+		assertEquals("FactBase<double[],double[]>", stats.getSignature());
+		if (engine.getMetrics().isAllocationTracking())
+			assertTrue(stats.getAllocatedBytesPerCall() > 0, stats.toString());
+	}
+
+	@Test
+	void testDisabled() {
+		AxelaEngine engine = createEngine();
+		engine.getMetrics().setEnabled(false);
+		engine.solve("DOT", new double[] { 1., 2. });
+		assertEquals(0, statistics(engine, "DOT").getCalls());
+		engine.getMetrics().setEnabled(true);
+		engine.solve("DOT", new double[] { 1., 2. });
+		assertEquals(1, statistics(engine, "DOT").getCalls());
+		engine.getMetrics().reset();
+		assertEquals(0, statistics(engine, "DOT").getCalls());
+	}
+
+	@Test
+	void testMBean() throws Exception {
+		AxelaEngine engine = createEngine();
+		engine.solve("DOT", new double[] { 1., 2. });
+		ObjectName name = engine.getMetrics().registerMBean("test");
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+			CompositeData[] stats = (CompositeData[]) server.getAttribute(name, "SolverStatistics");
+			assertEquals(2, stats.length);
+			server.invoke(name, "reset", null, null);
+			List<SolverStatistics> list = engine.getMetrics().getSolverStatistics();
+			assertEquals(0, list.get(0).getCalls());
+		} finally {
+			engine.getMetrics().unregisterMBean();
+		}
+	}
+
+	@Test
+	void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long v = 1; v <= 1000; v++)
+			histogram.record(1000 * v);
+		long p50 = histogram.percentile(50.);
+		long p99 = histogram.percentile(99.);
+		assertTrue(Math.abs(p50 - 500_000) < 500_000 / 8, "p50=" + p50);
+		assertTrue(Math.abs(p99 - 990_000) < 990_000 / 8, "p99=" + p99);
+		for (long v : new long[] { 0, 1, 15, 16, 17, 1000, 1L << 40, Long.MAX_VALUE })
+			assertTrue(LatencyHistogram.upperBound(LatencyHistogram.index(v)) >= v, "bucket of " + v);
+	}
+}
@@ -0,0 +1,167 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.engine.MemoryBudget.Overload;
+
+class MemoryBudgetTest {
+
+	@Test
+	void testAcquireRelease() {
+		MemoryBudget budget = new MemoryBudget(100, Overload.REJECT);
+		budget.acquire(60);
+		budget.acquire(40);
+		assertEquals(100, budget.getReserved());
+		assertEquals(0, budget.getAvailable());
+		budget.release(60);
+		assertEquals(40, budget.getReserved());
+		assertEquals(60, budget.getAvailable());
+		assertEquals(100, budget.getPeakReserved());
+		assertEquals(2, budget.getAdmitted());
+		budget.acquire(0);
+		assertEquals(2, budget.getAdmitted());
+	}
+
+	@Test
+	void testReject() {
+		MemoryBudget budget = new MemoryBudget(100, Overload.REJECT);
+		budget.acquire(80);
+		try {
+			budget.acquire(30);
+			fail("no exception with exhausted budget thrown");
+		} catch (SolveRejectedException error) {
+			assertTrue(error.getMessage().contains("exhausted"), error.getMessage());
+		}
+		assertEquals(80, budget.getReserved());
+		assertEquals(1, budget.getRejected());
+	}
+
+	@Test
+	void testTooLarge() {
+		MemoryBudget budget = new MemoryBudget(100, Overload.QUEUE);
+		try {
+			budget.acquire(101);
+			fail("no exception with request larger than the budget thrown");
+		} catch (SolveRejectedException error) {
+			assertTrue(error.getMessage().contains("exceed"), error.getMessage());
+		}
+		assertEquals(0, budget.getReserved());
+	}
+
+	@Test
+	void testQueue() throws Exception {
+		MemoryBudget budget = new MemoryBudget(100, Overload.QUEUE);
+		budget.acquire(80);
+		CountDownLatch admitted = new CountDownLatch(1);
+		Thread waiting = new Thread(() -> {
+			budget.acquire(50);
+			admitted.countDown();
+		});
+		waiting.start();
+		assertFalse(admitted.await(100, TimeUnit.MILLISECONDS), "admitted beyond the budget");
+		assertEquals(1, budget.getWaiting());
+		budget.release(80);
+		assertTrue(admitted.await(5, TimeUnit.SECONDS), "not admitted after release");
+		assertEquals(50, budget.getReserved());
+		assertEquals(1, budget.getQueued());
+		waiting.join();
+	}
+
+	@Test
+	void testArrivalOrder() throws Exception {
+		MemoryBudget budget = new MemoryBudget(100, Overload.QUEUE);
+		budget.acquire(100);
+		List<Long> order = new CopyOnWriteArrayList<>();
+		// 91 and 10 do not fit together, the order is that of the grants
+		Thread large = new Thread(() -> {
+			budget.acquire(91);
+			order.add(91L);
+			budget.release(91);
+		});
+		large.start();
+		while (budget.getWaiting() < 1)
+			Thread.sleep(1);
+		Thread small = new Thread(() -> {
+			budget.acquire(10);
+			order.add(10L);
+			budget.release(10);
+		});
+		small.start();
+		while (budget.getWaiting() < 2)
+			Thread.sleep(1);
+		// the small request fits first, but must not overtake the large one
+		budget.release(15);
+		Thread.sleep(50);
+		assertTrue(order.isEmpty(), "overtaken: " + order);
+		budget.release(85);
+		large.join(5000);
+		small.join(5000);
+		assertEquals(List.of(91L, 10L), order);
+		assertEquals(0, budget.getReserved());
+	}
+
+	@Test
+	void testDeadline() {
+		MemoryBudget budget = new MemoryBudget(100, Overload.QUEUE);
+		budget.acquire(100);
+		CancellationToken token = CancellationToken.timeout(Duration.ofMillis(50));
+		try {
+			token.call(() -> {
+				budget.acquire(10);
+				return null;
+			});
+			fail("no exception with exceeded deadline thrown");
+		} catch (DeadlineExceededException error) {
+			// expected
+		}
+		assertEquals(0, budget.getWaiting());
+		assertEquals(100, budget.getReserved());
+	}
+
+	@Test
+	void testIllegalArguments() {
+		try {
+			new MemoryBudget(0, Overload.QUEUE);
+			fail("no exception with zero capacity thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("capacity"), error.getMessage());
+		}
+		try {
+			MemoryBudget.ofHeap(1.5, Overload.QUEUE);
+			fail("no exception with fraction above one thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("fraction"), error.getMessage());
+		}
+		MemoryBudget budget = MemoryBudget.ofHeap(0.5, Overload.REJECT);
+		assertEquals(Runtime.getRuntime().maxMemory() / 2, budget.getCapacity(), 1.);
+	}
+
+	@Test
+	void testMBean() throws Exception {
+		MemoryBudget budget = new MemoryBudget(1 << 20, Overload.REJECT);
+		budget.acquire(1024);
+		ObjectName name = budget.registerMBean("test");
+		try {
+			assertEquals(1024L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Reserved"));
+			assertEquals((1L << 20) - 1024, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Available"));
+		} finally {
+			budget.unregisterMBean();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.facts.FactKey;
+
+class SolutionCacheTest {
+
+	private FactKey key(double x) {
+		return new FactKey("PLUS", new double[] { x });
+	}
+
+	@Test
+	void testHitAndMiss() {
+		SolutionCache cache = new SolutionCache(10, 1 << 20);
+		Double solution = 2.;
+		assertNull(cache.get(key(1.)));
+		cache.put(key(1.), solution);
+		assertSame(solution, cache.get(key(1.)));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void testLruEviction() {
+		SolutionCache cache = new SolutionCache(2, 1 << 20);
+		cache.put(key(1.), 1.);
+		cache.put(key(2.), 2.);
+		cache.get(key(1.));
+		cache.put(key(3.), 3.);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1., cache.get(key(1.)));
+		assertNull(cache.get(key(2.)));
+	}
+
+	@Test
+	void testWeightEviction() {
+		double[][] big = new double[16][16];
+		long weight = SolutionCache.sizeOf(new FactBase<>(big, big)) + SolutionCache.sizeOf(big);
+		SolutionCache cache = new SolutionCache(100, weight + weight / 2);
+		cache.put(new FactKey("MULT", new FactBase<>(big, big)), big);
+		assertEquals(weight, cache.getWeight());
+		big = new double[16][16];
+		big[0][0] = 1.;
+		cache.put(new FactKey("MULT", new FactBase<>(big, big)), big);
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(cache.getWeight() <= weight + weight / 2);
+	}
+
+	@Test
+	void testTooHeavy() {
+		SolutionCache cache = new SolutionCache(100, 64);
+		cache.put(key(1.), new double[100]);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testExpiry() throws Exception {
+		SolutionCache cache = new SolutionCache(10, 1 << 20, 1, TimeUnit.MILLISECONDS);
+		cache.put(key(1.), 1.);
+		Thread.sleep(5);
+		assertNull(cache.get(key(1.)));
+		assertEquals(1, cache.getExpirations());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	void testIllegalBounds() {
+		try {
+			new SolutionCache(0, 1);
+			fail("no exception with illegal bounds thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("illegal cache bounds"));
+		}
+	}
+
+	@Test
+	void testCallerChangesFacts() {
+		SolutionCache cache = new SolutionCache(10, 1 << 20);
+		double[] facts = { 1. };
+		cache.put(new FactKey("PLUS", facts), 2.);
+		facts[0] = 3.;
+		assertEquals(2., cache.get(key(1.)), "entry lost after the facts changed");
+		assertNull(cache.get(key(3.)));
+	}
+}
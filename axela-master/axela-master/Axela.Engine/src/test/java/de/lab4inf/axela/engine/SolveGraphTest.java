@@ -0,0 +1,235 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.core.SolveGraph;
+import de.lab4inf.axela.core.SolveGraph.Node;
+import de.lab4inf.axela.facts.FactBase;
+
+class SolveGraphTest {
+	private AxelaEngine engine;
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		executor = AxelaExecutors.bounded(4, 64);
+		engine = new AxelaEngine();
+		engine.setExecutor(executor);
+		engine.registerSolver("SQUARE", Double.valueOf(0), (String p, Double x) -> x * x);
+		engine.registerSolver("PLUS", new FactBase<>(0., 0.),
+				(String p, FactBase<Double, Double> f) -> f.getFact1() + f.getFact2());
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testChain() {
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Double> a = graph.add("SQUARE", 3.);
+		Node<Double> b = graph.add("SQUARE", 4.);
+		Node<Double> sum = graph.add("PLUS", a, b, FactBase::new);
+		Node<Double> square = graph.add("SQUARE", sum, x -> x);
+		assertEquals(25., graph.solve(sum), 0.);
+		assertEquals(625., graph.solve(square), 0.);
+	}
+
+	@Test
+	void testAddAll() {
+		engine.registerSolver("SUM", new double[0], (String p, double[] f) -> {
+			double s = 0;
+			for (double x : f)
+				s += x;
+			return s;
+		});
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Double> a = graph.add("SQUARE", 1.);
+		Node<Double> b = graph.add("SQUARE", 2.);
+		Node<Double> c = graph.add("SQUARE", 3.);
+		Node<Double> sum = graph.addAll("SUM", List.of(a, b, c),
+				(List<Double> xs) -> xs.stream().mapToDouble(Double::doubleValue).toArray());
+		assertEquals(14., graph.solve(sum), 0.);
+	}
+
+	@Test
+	void testOnlyNeededNodes() {
+		AtomicInteger calls = new AtomicInteger();
+		engine.registerSolver("COUNT", "", (String p, String f) -> calls.incrementAndGet());
+		SolveGraph graph = new SolveGraph(engine);
+		graph.add("COUNT", "unused");
+		Node<Double> a = graph.add("SQUARE", 2.);
+		assertEquals(4., graph.solve(a), 0.);
+		assertEquals(0, calls.get());
+	}
+
+	@Test
+	void testParallelBranches() {
+		CountDownLatch both = new CountDownLatch(2);
+		engine.registerSolver("MEET", "", (String p, String f) -> {
+			both.countDown();
+			try {
+				return both.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		});
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Boolean> a = graph.add("MEET", "a");
+		Node<Boolean> b = graph.add("MEET", "b");
+		engine.registerSolver("AND", new FactBase<>(true, true),
+				(String p, FactBase<Boolean, Boolean> f) -> f.getFact1() && f.getFact2());
+		Node<Boolean> and = graph.add("AND", a, b, FactBase::new);
+		assertTrue(graph.solve(and), "independent branches not solved in parallel");
+	}
+
+	@Test
+	void testReleaseIntermediates() throws Exception {
+		AtomicReference<WeakReference<double[]>> intermediate = new AtomicReference<>();
+		CountDownLatch hold = new CountDownLatch(1);
+		engine.registerSolver("BIG", 0, (String p, Integer n) -> {
+			double[] big = new double[n];
+			intermediate.set(new WeakReference<>(big));
+			return big;
+		});
+		engine.registerSolver("LENGTH", new double[0], (String p, double[] f) -> (double) f.length);
+		engine.registerSolver("HOLD", "", (String p, String f) -> {
+			try {
+				hold.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 1.;
+		});
+		SolveGraph graph = new SolveGraph(engine);
+		Node<double[]> big = graph.add("BIG", 1 << 20);
+		Node<Double> length = graph.add("LENGTH", big, x -> x);
+		Node<Double> held = graph.add("HOLD", "");
+		Node<Double> sum = graph.add("PLUS", length, held, FactBase::new);
+		CompletableFuture<Double> future = graph.execute(sum);
+		boolean released = false;
+		for (int i = 0; i < 100 && !released; i++) {
+			Thread.sleep(20);
+			System.gc();
+			WeakReference<double[]> ref = intermediate.get();
+			released = null != ref && null == ref.get();
+		}
+		assertFalse(future.isDone());
+		hold.countDown();
+		assertEquals(1. + (1 << 20), future.get(5, TimeUnit.SECONDS), 0.);
+		assertTrue(released, "intermediate solution kept after its consumer finished");
+	}
+
+	@Test
+	void testFailureCancelsBranches() {
+		AtomicBoolean cancelled = new AtomicBoolean();
+		CountDownLatch running = new CountDownLatch(1);
+		engine.registerSolver("SPIN", "", (String p, String f) -> {
+			running.countDown();
+			try {
+				while (true) {
+					CancellationToken.current().check();
+					Thread.onSpinWait();
+				}
+			} catch (SolveCancelledException e) {
+				cancelled.set(true);
+				throw e;
+			}
+		});
+		engine.registerSolver("FAIL", "", (String p, String f) -> {
+			try {
+				running.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IllegalArgumentException("bad facts");
+		});
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Double> spin = graph.add("SPIN", "");
+		Node<Double> bad = graph.add("FAIL", "");
+		Node<Double> sum = graph.add("PLUS", spin, bad, FactBase::new);
+		try {
+			graph.solve(sum);
+			fail("no exception of the failing problem thrown");
+		} catch (IllegalArgumentException error) {
+			assertEquals("bad facts", error.getMessage());
+		}
+		assertTrue(cancelled.get(), "running branch not cancelled");
+	}
+
+	@Test
+	void testCancel() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		engine.registerSolver("SPIN", "", (String p, String f) -> {
+			running.countDown();
+			try {
+				while (true) {
+					CancellationToken.current().check();
+					Thread.onSpinWait();
+				}
+			} finally {
+				stopped.countDown();
+			}
+		});
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Double> spin = graph.add("SPIN", "");
+		Node<Double> square = graph.add("SQUARE", spin, x -> x);
+		CompletableFuture<Double> future = graph.execute(square);
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+		future.cancel(true);
+		assertTrue(stopped.await(5, TimeUnit.SECONDS), "running problem not cancelled");
+	}
+
+	@Test
+	void testNodeOfAnotherGraph() {
+		SolveGraph one = new SolveGraph(engine);
+		SolveGraph two = new SolveGraph(engine);
+		Node<Double> a = one.add("SQUARE", 2.);
+		try {
+			two.add("SQUARE", a, x -> x);
+			fail("no exception with node of another graph thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("another graph"), error.getMessage());
+		}
+		try {
+			two.solve(a);
+			fail("no exception with node of another graph thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("another graph"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testNullFacts() {
+		SolveGraph graph = new SolveGraph(engine);
+		Node<Double> a = graph.add("SQUARE", 2.);
+		Node<Double> b = graph.add("SQUARE", a, x -> null);
+		try {
+			graph.solve(b);
+			fail("no exception with null facts thrown");
+		} catch (NullPointerException error) {
+			assertTrue(error.getMessage().contains("facts are a NullPointer!"), error.getMessage());
+		}
+	}
+}
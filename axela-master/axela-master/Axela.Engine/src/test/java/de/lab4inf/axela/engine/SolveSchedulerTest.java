@@ -0,0 +1,369 @@
+package de.lab4inf.axela.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.engine.SolveScheduler.Overload;
+import de.lab4inf.axela.engine.SolveScheduler.Priority;
+
+class SolveSchedulerTest {
+	private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+	private SolveScheduler scheduler;
+
+	private AxelaEngine createEngine(SolveScheduler scheduler) {
+		this.scheduler = scheduler;
+		AxelaEngine engine = new AxelaEngine();
+		// blocks the worker until released
+		engine.registerSolver("BLOCK", "", (String p, String f) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return f;
+		});
+		engine.registerSolver("LOG", "", (String p, String f) -> {
+			order.add(f);
+			return f;
+		});
+		engine.registerSolver("LIMITED", "", (String p, String f) -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return f;
+		});
+		engine.registerSolver("BATCH", 0, (String p, Integer f) -> {
+			order.add("batch" + f);
+			return f;
+		});
+		engine.prioritize("BATCH", 0, Priority.BATCH);
+		engine.setScheduler(scheduler);
+		return engine;
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		if (null != scheduler)
+			scheduler.close();
+	}
+
+	// waits until the workers are busy with the given number of solves
+	private void awaitActive(int active) throws InterruptedException {
+		long end = System.nanoTime() + 10_000_000_000L;
+		while (scheduler.getActive() < active) {
+			assertTrue(System.nanoTime() < end, "workers not busy");
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	void testInteractiveFirst() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 100));
+		CompletableFuture<String> block = engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		List<CompletableFuture<Object>> futures = new ArrayList<>();
+		for (int k = 0; k < 3; k++)
+			futures.add(engine.solveAsync("BATCH", k));
+		for (int k = 0; k < 3; k++)
+			futures.add(engine.solveAsync("LOG", "interactive" + k));
+		assertEquals(3, scheduler.getQueueStatistics(Priority.BATCH).getDepth());
+		assertEquals(3, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+		release.countDown();
+		block.join();
+		for (CompletableFuture<Object> future : futures)
+			future.join();
+		assertEquals(List.of("interactive0", "interactive1", "interactive2", "batch0", "batch1", "batch2"), order);
+		assertEquals(0, scheduler.getQueueStatistics(Priority.BATCH).getDepth());
+	}
+
+	@Test
+	void testBatchNotStarved() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 100));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		List<CompletableFuture<Object>> futures = new ArrayList<>();
+		futures.add(engine.solveAsync("BATCH", 0));
+		for (int k = 0; k < 3 * SolveScheduler.INTERACTIVE_BURST; k++)
+			futures.add(engine.solveAsync("LOG", "i" + k));
+		release.countDown();
+		for (CompletableFuture<Object> future : futures)
+			future.join();
+		int position = order.indexOf("batch0");
+		assertTrue(position <= SolveScheduler.INTERACTIVE_BURST, "batch solve at " + position);
+	}
+
+	@Test
+	void testExplicitPriority() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 100));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		CompletableFuture<Object> batch = engine.solveAsync("LOG", "batch", Priority.BATCH);
+		CompletableFuture<Object> interactive = engine.solveAsync("LOG", "interactive");
+		release.countDown();
+		batch.join();
+		interactive.join();
+		assertEquals(List.of("interactive", "batch"), order);
+		try {
+			new AxelaEngine().solveAsync("LOG", "", Priority.BATCH);
+			fail("no exception without scheduler thrown");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("no scheduler"));
+		}
+	}
+
+	@Test
+	void testBulkhead() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(4, 100));
+		engine.limit("LIMITED", "", 1);
+		List<CompletableFuture<Object>> limited = new ArrayList<>();
+		for (int k = 0; k < 3; k++)
+			limited.add(engine.solveAsync("LIMITED", "l" + k));
+		awaitActive(1);
+		// the parked solves do not occupy the free workers
+		assertEquals("free", engine.solveAsync("LOG", "free").join());
+		assertEquals(2, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+		assertEquals(1, running.get());
+		release.countDown();
+		for (CompletableFuture<Object> future : limited)
+			future.join();
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	void testBacklogFull() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 2));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		engine.solveAsync("LOG", "a");
+		engine.solveAsync("LOG", "b");
+		try {
+			engine.solveAsync("LOG", "c");
+			fail("no exception with full backlog thrown");
+		} catch (SolveRejectedException e) {
+			assertTrue(e.getMessage().contains("INTERACTIVE backlog full"), e.getMessage());
+		}
+		// the other class has its own backlog
+		engine.solveAsync("BATCH", 1);
+		QueueStatistics stats = scheduler.getQueueStatistics(Priority.INTERACTIVE);
+		assertEquals(1, stats.getRejected());
+		assertEquals(2, stats.getDepth());
+	}
+
+	@Test
+	void testShedOldest() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 2, Overload.SHED_OLDEST));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		CompletableFuture<Object> oldest = engine.solveAsync("LOG", "a");
+		engine.solveAsync("LOG", "b");
+		CompletableFuture<Object> newest = engine.solveAsync("LOG", "c");
+		try {
+			oldest.join();
+			fail("no exception for shed solve thrown");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof SolveRejectedException, e.toString());
+		}
+		release.countDown();
+		assertEquals("c", newest.join());
+		assertEquals(List.of("b", "c"), order);
+		assertEquals(1, scheduler.getQueueStatistics(Priority.INTERACTIVE).getShed());
+	}
+
+	@Test
+	void testExpiredInQueue() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		CompletableFuture<Object> expiring = CancellationToken.timeout(Duration.ofMillis(5))
+				.call(() -> engine.solveAsync("LOG", "late"));
+		CompletableFuture<Object> cancelled = engine.solveAsync("LOG", "cancelled");
+		cancelled.cancel(false);
+		Thread.sleep(20);
+		release.countDown();
+		try {
+			expiring.join();
+			fail("no exception for expired solve thrown");
+		} catch (DeadlineExceededException e) {
+			// a CancellationException is not wrapped by join
+		}
+		assertEquals("ok", engine.solveAsync("LOG", "ok").join());
+		assertEquals(List.of("ok"), order);
+		assertEquals(2, scheduler.getQueueStatistics(Priority.INTERACTIVE).getExpired());
+	}
+
+	@Test
+	void testJoinCancelled() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.solveAsync("BLOCK", "block");
+		awaitActive(1);
+		// the blocking solve waits without polling and is woken by the token
+		CancellationToken token = new CancellationToken();
+		CompletableFuture<Object> waiting = CompletableFuture
+				.supplyAsync(() -> token.call(() -> engine.solve("LOG", "cancelled")));
+		Thread.sleep(20);
+		token.cancel();
+		try {
+			waiting.get(10, TimeUnit.SECONDS);
+			fail("no exception for cancelled solve thrown");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof SolveCancelledException, e.getCause().toString());
+		}
+		try {
+			CancellationToken.timeout(Duration.ofMillis(20)).call(() -> engine.solve("LOG", "late"));
+			fail("no exception for expired solve thrown");
+		} catch (DeadlineExceededException e) {
+			// woken at the deadline
+		}
+		release.countDown();
+		assertEquals("ok", engine.solve("LOG", "ok"));
+		assertEquals(List.of("ok"), order);
+	}
+
+	@Test
+	void testSolveOnWorker() {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.registerSolver("THREAD", 0., (String p, Double f) -> Thread.currentThread().getName());
+		// nested solves run inline instead of waiting for the single worker
+		engine.registerSolver("NESTED", 0L, (String p, Long f) -> engine.solve("THREAD", 1.));
+		String worker = engine.solve("THREAD", 1.);
+		assertTrue(worker.startsWith("axela-scheduler-"), worker);
+		assertEquals(worker, engine.solve("NESTED", 1L));
+		engine.setScheduler(null);
+		assertNotEquals(worker, engine.solve("THREAD", 1.));
+	}
+
+	@Test
+	void testSolveAllOnWorker() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.limit("LOG", "", 1);
+		// the sub-solves of the single worker run inline instead of being queued
+		engine.registerSolver("ALL", 0, (String p, Integer f) -> {
+			List<String> solutions = engine.solveAll("LOG", List.of("a", "b", "c"));
+			return String.join("", solutions) + engine.solveAsync("LOG", "d").join();
+		});
+		assertEquals("abcd", engine.<String, Integer, String>solveAsync("ALL", 0).get(10, TimeUnit.SECONDS));
+		assertEquals(List.of("a", "b", "c", "d"), order);
+		engine.registerSolver("FAIL", "", (String p, String f) -> {
+			throw new IllegalStateException(f);
+		});
+		engine.registerSolver("ALLFAIL", 0, (String p, Integer f) -> {
+			try {
+				engine.solveAll("FAIL", List.of("x"));
+				return "none";
+			} catch (IllegalStateException error) {
+				return error.getMessage();
+			}
+		});
+		assertEquals("x", engine.solve("ALLFAIL", 0));
+	}
+
+	@Test
+	void testClose() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.limit("LIMITED", "", 1);
+		engine.solveAsync("LIMITED", "running");
+		awaitActive(1);
+		CompletableFuture<Object> parked = engine.solveAsync("LIMITED", "parked");
+		CompletableFuture<Object> queued = engine.solveAsync("LOG", "queued");
+		scheduler.close();
+		release.countDown();
+		for (CompletableFuture<Object> future : List.of(parked, queued)) {
+			try {
+				future.join();
+				fail("no exception for closed scheduler thrown");
+			} catch (CompletionException e) {
+				assertTrue(e.getCause() instanceof SolveRejectedException, e.toString());
+			}
+		}
+		try {
+			engine.solve("LOG", "closed");
+			fail("no exception for closed scheduler thrown");
+		} catch (SolveRejectedException e) {
+			assertTrue(e.getMessage().contains("closed"));
+		}
+	}
+
+	@Test
+	void testCloseQueuedSlotHolder() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(1, 10));
+		engine.limit("LIMITED", "", 1);
+		engine.solveAsync("BLOCK", "busy");
+		awaitActive(1);
+		// queued holds the slot of the bulkhead, parked waits for it
+		CompletableFuture<Object> queued = engine.solveAsync("LIMITED", "queued");
+		CompletableFuture<Object> parked = engine.solveAsync("LIMITED", "parked");
+		assertEquals(2, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+		scheduler.close();
+		for (CompletableFuture<Object> future : List.of(queued, parked)) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("no exception for closed scheduler thrown");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof SolveRejectedException, e.toString());
+			}
+		}
+		assertEquals(0, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+	}
+
+	@Test
+	void testCancelParked() throws Exception {
+		AxelaEngine engine = createEngine(new SolveScheduler(2, 10));
+		engine.limit("LIMITED", "", 1);
+		CompletableFuture<Object> first = engine.solveAsync("LIMITED", "first");
+		awaitActive(1);
+		CompletableFuture<Object> parked = engine.solveAsync("LIMITED", "parked");
+		assertEquals(1, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+		// a cancelled solve leaves the bulkhead at once
+		parked.cancel(true);
+		assertEquals(0, scheduler.getQueueStatistics(Priority.INTERACTIVE).getDepth());
+		CompletableFuture<Object> next = engine.solveAsync("LIMITED", "next");
+		release.countDown();
+		assertEquals("first", first.join());
+		assertEquals("next", next.join());
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	void testMBean() throws Exception {
+		createEngine(new SolveScheduler(2, 10));
+		ObjectName name = scheduler.registerMBean("test");
+		try {
+			assertEquals(2, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Threads"));
+			Object[] stats = (Object[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name,
+					"QueueStatistics");
+			assertEquals(2, stats.length);
+		} finally {
+			scheduler.unregisterMBean();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package de.lab4inf.axela.math;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Inner loops of the vector and matrix-vector calculators. Reductions are
+ * split over four independent accumulators, so consecutive multiply-adds do
+ * not wait on each other and the JIT may keep them in SIMD registers. Loops
+ * over contiguous elements are kept free of strides, the remainder of a loop
+ * is done by a scalar tail.
+ * <p>
+ * With single precision the elements are rounded to float and summed in float,
+ * as the former single accumulator did.
+ * <p>
+ * The ByteBuffer variants read the segments of an OffHeapVector by absolute
+ * index, so they never move the position of a buffer and may run concurrently.
+ * <p>
+ * On Java 17 and later with jdk.incubator.vector resolved the contiguous
+ * double precision loops run on VectorKernels instead, these loops are the
+ * fallback everywhere else.
+ */
+final class DenseKernels {
+	/** independent accumulators of a reduction */
+	static final int LANES = 4;
+
+	private DenseKernels() {
+	}
+
+	/**
+	 * @param x      first elements
+	 * @param xi     index of the first element of x
+	 * @param xs     stride of x
+	 * @param y      second elements
+	 * @param yi     index of the first element of y
+	 * @param ys     stride of y
+	 * @param n      number of elements
+	 * @param single true for single precision
+	 * @return sum of x[xi+k*xs]*y[yi+k*ys] for k in [0, n)
+	 */
+	static double dot(double[] x, int xi, int xs, double[] y, int yi, int ys, int n, boolean single) {
+		if (single)
+			return 1 == xs && 1 == ys ? dotSingle(x, xi, y, yi, n) : dotSingle(x, xi, xs, y, yi, ys, n);
+		return 1 == xs && 1 == ys ? dot(x, xi, y, yi, n) : dot(x, xi, xs, y, yi, ys, n);
+	}
+
+	private static double dot(double[] x, int xi, double[] y, int yi, int n) {
+		if (VectorKernels.ENABLED)
+			return VectorKernels.dot(x, xi, y, yi, n);
+		return dotScalar(x, xi, y, yi, n);
+	}
+
+	// the scalar loops of the contiguous double precision kernels, also run by
+	// VectorKernels while it is not enabled
+	static double dotScalar(double[] x, int xi, double[] y, int yi, int n) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int k = 0;
+		for (final int end = n - LANES + 1; k < end; k += LANES) {
+			s0 += x[xi + k] * y[yi + k];
+			s1 += x[xi + k + 1] * y[yi + k + 1];
+			s2 += x[xi + k + 2] * y[yi + k + 2];
+			s3 += x[xi + k + 3] * y[yi + k + 3];
+		}
+		for (; k < n; k++)
+			s0 += x[xi + k] * y[yi + k];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	private static double dot(double[] x, int xi, int xs, double[] y, int yi, int ys, int n) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int k = 0;
+		for (final int end = n - LANES + 1; k < end; k += LANES, xi += LANES * xs, yi += LANES * ys) {
+			s0 += x[xi] * y[yi];
+			s1 += x[xi + xs] * y[yi + ys];
+			s2 += x[xi + 2 * xs] * y[yi + 2 * ys];
+			s3 += x[xi + 3 * xs] * y[yi + 3 * ys];
+		}
+		for (; k < n; k++, xi += xs, yi += ys)
+			s0 += x[xi] * y[yi];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	private static float dotSingle(double[] x, int xi, double[] y, int yi, int n) {
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int k = 0;
+		for (final int end = n - LANES + 1; k < end; k += LANES) {
+			s0 += (float) x[xi + k] * (float) y[yi + k];
+			s1 += (float) x[xi + k + 1] * (float) y[yi + k + 1];
+			s2 += (float) x[xi + k + 2] * (float) y[yi + k + 2];
+			s3 += (float) x[xi + k + 3] * (float) y[yi + k + 3];
+		}
+		for (; k < n; k++)
+			s0 += (float) x[xi + k] * (float) y[yi + k];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	private static float dotSingle(double[] x, int xi, int xs, double[] y, int yi, int ys, int n) {
+		float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int k = 0;
+		for (final int end = n - LANES + 1; k < end; k += LANES, xi += LANES * xs, yi += LANES * ys) {
+			s0 += (float) x[xi] * (float) y[yi];
+			s1 += (float) x[xi + xs] * (float) y[yi + ys];
+			s2 += (float) x[xi + 2 * xs] * (float) y[yi + 2 * ys];
+			s3 += (float) x[xi + 3 * xs] * (float) y[yi + 3 * ys];
+		}
+		for (; k < n; k++, xi += xs, yi += ys)
+			s0 += (float) x[xi] * (float) y[yi];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Four rows times the same vector at once, each element of y is loaded once
+	 * for all of them.
+	 *
+	 * @param a      rows of the matrix, at least i+4 of them
+	 * @param i      first of the four rows
+	 * @param y      vector with the length of the rows
+	 * @param r      result, r[i..i+3] are written
+	 * @param single true for single precision
+	 */
+	static void dot4(double[][] a, int i, double[] y, double[] r, boolean single) {
+		final double[] a0 = a[i], a1 = a[i + 1], a2 = a[i + 2], a3 = a[i + 3];
+		final int n = y.length;
+		if (single) {
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (int k = 0; k < n; k++) {
+				final float v = (float) y[k];
+				s0 += (float) a0[k] * v;
+				s1 += (float) a1[k] * v;
+				s2 += (float) a2[k] * v;
+				s3 += (float) a3[k] * v;
+			}
+			r[i] = s0;
+			r[i + 1] = s1;
+			r[i + 2] = s2;
+			r[i + 3] = s3;
+		} else if (VectorKernels.ENABLED) {
+			VectorKernels.dot4(a0, 0, a1, 0, a2, 0, a3, 0, y, 0, n, r, i, 1);
+		} else {
+			dot4Scalar(a0, 0, a1, 0, a2, 0, a3, 0, y, 0, n, r, i, 1);
+		}
+	}
+
+	static void dot4Scalar(double[] a0, int i0, double[] a1, int i1, double[] a2, int i2, double[] a3, int i3,
+			double[] y, int yi, int n, double[] r, int ri, int rs) {
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		for (int k = 0; k < n; k++) {
+			final double v = y[yi + k];
+			s0 += a0[i0 + k] * v;
+			s1 += a1[i1 + k] * v;
+			s2 += a2[i2 + k] * v;
+			s3 += a3[i3 + k] * v;
+		}
+		r[ri] = s0;
+		r[ri + rs] = s1;
+		r[ri + 2 * rs] = s2;
+		r[ri + 3 * rs] = s3;
+	}
+
+	/**
+	 * Four rows of a matrix stored with rowStride and contiguous columns times a
+	 * contiguous vector.
+	 *
+	 * @param a         elements of the matrix
+	 * @param ai        index of the first element of the first row
+	 * @param rowStride of the matrix
+	 * @param y         elements of the vector
+	 * @param yi        index of the first element of the vector
+	 * @param n         number of columns
+	 * @param r         result
+	 * @param ri        index of the first of the four results
+	 * @param rs        stride of the result
+	 * @param single    true for single precision
+	 */
+	static void dot4(double[] a, int ai, int rowStride, double[] y, int yi, int n, double[] r, int ri, int rs,
+			boolean single) {
+		final int a1 = ai + rowStride, a2 = a1 + rowStride, a3 = a2 + rowStride;
+		if (single) {
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (int k = 0; k < n; k++) {
+				final float v = (float) y[yi + k];
+				s0 += (float) a[ai + k] * v;
+				s1 += (float) a[a1 + k] * v;
+				s2 += (float) a[a2 + k] * v;
+				s3 += (float) a[a3 + k] * v;
+			}
+			r[ri] = s0;
+			r[ri + rs] = s1;
+			r[ri + 2 * rs] = s2;
+			r[ri + 3 * rs] = s3;
+		} else if (VectorKernels.ENABLED) {
+			VectorKernels.dot4(a, ai, a, a1, a, a2, a, a3, y, yi, n, r, ri, rs);
+		} else {
+			dot4Scalar(a, ai, a, a1, a, a2, a, a3, y, yi, n, r, ri, rs);
+		}
+	}
+
+	/**
+	 * r = x + y element by element.
+	 *
+	 * @param x      first elements
+	 * @param xi     index of the first element of x
+	 * @param xs     stride of x
+	 * @param y      second elements
+	 * @param yi     index of the first element of y
+	 * @param ys     stride of y
+	 * @param r      result
+	 * @param ri     index of the first element of r
+	 * @param rs     stride of r
+	 * @param n      number of elements
+	 * @param single true for single precision
+	 */
+	static void add(double[] x, int xi, int xs, double[] y, int yi, int ys, double[] r, int ri, int rs, int n,
+			boolean single) {
+		if (1 == xs && 1 == ys && 1 == rs) {
+			if (single) {
+				for (int k = 0; k < n; k++)
+					r[ri + k] = (float) (x[xi + k] + y[yi + k]);
+			} else if (VectorKernels.ENABLED) {
+				VectorKernels.add(x, xi, y, yi, r, ri, n);
+			} else {
+				addScalar(x, xi, y, yi, r, ri, n);
+			}
+			return;
+		}
+		for (int k = 0; k < n; k++, xi += xs, yi += ys, ri += rs) {
+			double sum = x[xi] + y[yi];
+			r[ri] = single ? (float) sum : sum;
+		}
+	}
+
+	static void addScalar(double[] x, int xi, double[] y, int yi, double[] r, int ri, int n) {
+		for (int k = 0; k < n; k++)
+			r[ri + k] = x[xi + k] + y[yi + k];
+	}
+
+	/**
+	 * r += alpha*x element by element, rounded by the caller if needed.
+	 *
+	 * @param alpha factor of x
+	 * @param x     elements
+	 * @param xi    index of the first element of x
+	 * @param xs    stride of x
+	 * @param r     sums
+	 * @param ri    index of the first element of r
+	 * @param rs    stride of r
+	 * @param n     number of elements
+	 */
+	static void axpy(double alpha, double[] x, int xi, int xs, double[] r, int ri, int rs, int n) {
+		if (1 == xs && 1 == rs) {
+			if (VectorKernels.ENABLED)
+				VectorKernels.axpy(alpha, x, xi, r, ri, n);
+			else
+				axpyScalar(alpha, x, xi, r, ri, n);
+			return;
+		}
+		for (int k = 0; k < n; k++, xi += xs, ri += rs)
+			r[ri] += alpha * x[xi];
+	}
+
+	static void axpyScalar(double alpha, double[] x, int xi, double[] r, int ri, int n) {
+		for (int k = 0; k < n; k++)
+			r[ri + k] += alpha * x[xi + k];
+	}
+
+	/**
+	 * @param x      first segment
+	 * @param xi     index of the first element of x
+	 * @param y      second segment
+	 * @param yi     index of the first element of y
+	 * @param n      number of elements
+	 * @param single true for single precision
+	 * @return sum of x[xi+k]*y[yi+k] for k in [0, n)
+	 */
+	static double dot(ByteBuffer x, int xi, ByteBuffer y, int yi, int n, boolean single) {
+		final int xb = xi * Double.BYTES, yb = yi * Double.BYTES;
+		int k = 0;
+		if (single) {
+			float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+			for (final int end = (n - LANES + 1) * Double.BYTES; k < end; k += LANES * Double.BYTES) {
+				s0 += (float) x.getDouble(xb + k) * (float) y.getDouble(yb + k);
+				s1 += (float) x.getDouble(xb + k + 8) * (float) y.getDouble(yb + k + 8);
+				s2 += (float) x.getDouble(xb + k + 16) * (float) y.getDouble(yb + k + 16);
+				s3 += (float) x.getDouble(xb + k + 24) * (float) y.getDouble(yb + k + 24);
+			}
+			for (; k < n * Double.BYTES; k += Double.BYTES)
+				s0 += (float) x.getDouble(xb + k) * (float) y.getDouble(yb + k);
+			return (s0 + s1) + (s2 + s3);
+		}
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		for (final int end = (n - LANES + 1) * Double.BYTES; k < end; k += LANES * Double.BYTES) {
+			s0 += x.getDouble(xb + k) * y.getDouble(yb + k);
+			s1 += x.getDouble(xb + k + 8) * y.getDouble(yb + k + 8);
+			s2 += x.getDouble(xb + k + 16) * y.getDouble(yb + k + 16);
+			s3 += x.getDouble(xb + k + 24) * y.getDouble(yb + k + 24);
+		}
+		for (; k < n * Double.BYTES; k += Double.BYTES)
+			s0 += x.getDouble(xb + k) * y.getDouble(yb + k);
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * r[ri+k] = x[xi+k] + y[yi+k] for k in [0, n) within segments.
+	 */
+	static void add(ByteBuffer x, int xi, ByteBuffer y, int yi, ByteBuffer r, int ri, int n, boolean single) {
+		final int xb = xi * Double.BYTES, yb = yi * Double.BYTES, rb = ri * Double.BYTES;
+		for (int k = 0; k < n * Double.BYTES; k += Double.BYTES) {
+			double sum = x.getDouble(xb + k) + y.getDouble(yb + k);
+			r.putDouble(rb + k, single ? (float) sum : sum);
+		}
+	}
+}
@@ -0,0 +1,438 @@
+package de.lab4inf.axela.math;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+
+/**
+ * Cache blocked matrix multiplication C = A*B. Panels of at most kc x nc
+ * elements of B and mc x kc elements of A are packed into contiguous buffers,
+ * sized to stay within the L3 and L2 cache. A micro kernel multiplies the
+ * packed panels in tiles of MR x NR elements of C, held in registers across
+ * the inner dimension.
+ * <p>
+ * In parallel C is split recursively into 2D tiles on a ForkJoinPool, idle
+ * threads steal the tiles of busy ones. Products below the cutoff run serially
+ * on the calling thread, where forking would cost more than it gains.
+ * <p>
+ * With single precision the packed elements are rounded to float, their
+ * products are summed in double and every element of C is rounded to float
+ * again.
+ */
+public final class Gemm {
+	/** rows of the register tile of the micro kernel */
+	static final int MR = 4;
+	/** columns of the register tile of the micro kernel */
+	static final int NR = 4;
+
+	/** block sizes for L2 caches of 256 kB and more */
+	public static final Gemm DEFAULT = new Gemm(128, 256, 1024);
+
+	private final int mc;
+	private final int kc;
+	private final int nc;
+	// multiply-adds below which a product or tile is not split
+	private final long cutoff;
+
+	/**
+	 * @param mc rows of the packed panel of A, rounded up to MR
+	 * @param kc inner dimension of the packed panels
+	 * @param nc columns of the packed panel of B, rounded up to NR
+	 */
+	public Gemm(int mc, int kc, int nc) {
+		this(mc, kc, nc, 1L << 21);
+	}
+
+	private Gemm(int mc, int kc, int nc, long cutoff) {
+		if (mc <= 0 || kc <= 0 || nc <= 0)
+			throw new IllegalArgumentException(String.format("block sizes %d, %d, %d must be positive", mc, kc, nc));
+		if (cutoff <= 0)
+			throw new IllegalArgumentException("cutoff must be positive");
+		this.mc = roundUp(mc, MR);
+		this.kc = kc;
+		this.nc = roundUp(nc, NR);
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * @param cutoff multiply-adds below which a product runs serially
+	 * @return these block sizes with the cutoff
+	 */
+	public Gemm withCutoff(long cutoff) {
+		return new Gemm(mc, kc, nc, cutoff);
+	}
+
+	public long getCutoff() {
+		return cutoff;
+	}
+
+	public int getRowBlock() {
+		return mc;
+	}
+
+	public int getInnerBlock() {
+		return kc;
+	}
+
+	public int getColumnBlock() {
+		return nc;
+	}
+
+	private static int roundUp(int n, int block) {
+		return (n + block - 1) / block * block;
+	}
+
+	/**
+	 * Bytes of the packing buffers of one call of mult.
+	 *
+	 * @param rows  of the part of C
+	 * @param inner dimension of A*B
+	 * @param cols  of C
+	 * @return bytes allocated
+	 */
+	long footprint(int rows, int inner, int cols) {
+		int kb = Math.min(kc, inner);
+		return LinearAlgebra.bytes((long) roundUp(Math.min(mc, rows), MR) * kb, 8)
+				+ LinearAlgebra.bytes((long) kb * roundUp(Math.min(nc, cols), NR), 8);
+	}
+
+	/**
+	 * Bytes of the packing buffers of mult on a pool, one set per thread working
+	 * on a tile at the same time.
+	 *
+	 * @param rows        of A and C
+	 * @param inner       dimension of A*B
+	 * @param cols        of B and C
+	 * @param parallelism number of threads the tiles are sized for
+	 * @return bytes allocated
+	 */
+	long footprint(int rows, int inner, int cols, int parallelism) {
+		long work = (long) rows * inner * cols;
+		if (work <= cutoff || parallelism <= 1)
+			return footprint(rows, inner, cols);
+		long tiles = work / Math.max(cutoff, work / (4L * parallelism));
+		return Math.min(parallelism, Math.max(1, tiles)) * footprint(rows, inner, cols);
+	}
+
+	/**
+	 * Calculates C = A*B split into tiles on the pool, or serially below the
+	 * cutoff. The first failing tile cancels the token, so the other tiles stop
+	 * at their next check.
+	 *
+	 * @param a           rows x inner
+	 * @param b           inner x cols
+	 * @param c           rows x cols
+	 * @param rows        of A and C
+	 * @param inner       dimension of A*B
+	 * @param cols        of B and C
+	 * @param single      true for single precision
+	 * @param token       of the solve
+	 * @param pool        running the tiles
+	 * @param parallelism number of threads the tiles are sized for
+	 */
+	void mult(Operand a, Operand b, Operand c, int rows, int inner, int cols, boolean single, CancellationToken token,
+			ForkJoinPool pool, int parallelism) {
+		long work = (long) rows * inner * cols;
+		if (work <= cutoff || parallelism <= 1) {
+			token.check();
+			mult(a, b, c, 0, rows, 0, cols, inner, single, token);
+			return;
+		}
+		// some tiles per thread balance the load, none below the cutoff
+		invoke(pool, new Tile(a, b, c, 0, rows, 0, cols, inner, single, token,
+				Math.max(cutoff, work / (4L * parallelism))), token);
+	}
+
+	/**
+	 * Runs the task on the pool and waits for it, inline if already running on
+	 * the pool. An interrupt of the waiting thread cancels the token.
+	 */
+	static void invoke(ForkJoinPool pool, ForkJoinTask<?> task, CancellationToken token) {
+		if (ForkJoinTask.getPool() == pool) {
+			task.invoke();
+			return;
+		}
+		try {
+			pool.submit(task).get();
+		} catch (InterruptedException e) {
+			// stop the tiles and release the caller without waiting
+			Thread.currentThread().interrupt();
+			token.cancel();
+			throw new SolveCancelledException("solve interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Calculates the tile [rowFrom, rowTo) x [colFrom, colTo) of C = A*B, all
+	 * former values of the tile are overwritten.
+	 *
+	 * @param a       rows x inner
+	 * @param b       inner x cols
+	 * @param c       rows x cols
+	 * @param rowFrom first row of the tile
+	 * @param rowTo   end of the rows of the tile
+	 * @param colFrom first column of the tile
+	 * @param colTo   end of the columns of the tile
+	 * @param inner   dimension of A*B
+	 * @param single  true for single precision
+	 * @param token   checked once per panel of A
+	 */
+	void mult(Operand a, Operand b, Operand c, int rowFrom, int rowTo, int colFrom, int colTo, int inner,
+			boolean single, CancellationToken token) {
+		mult(a, b, c, rowFrom, rowTo, colFrom, colTo, inner, single, false, token);
+	}
+
+	/**
+	 * Calculates the tile [rowFrom, rowTo) x [colFrom, colTo) of C = A*B, or adds
+	 * the product to the former values of the tile.
+	 *
+	 * @param a          rows x inner
+	 * @param b          inner x cols
+	 * @param c          rows x cols
+	 * @param rowFrom    first row of the tile
+	 * @param rowTo      end of the rows of the tile
+	 * @param colFrom    first column of the tile
+	 * @param colTo      end of the columns of the tile
+	 * @param inner      dimension of A*B
+	 * @param single     true for single precision
+	 * @param accumulate true for C += A*B
+	 * @param token      checked once per panel of A
+	 */
+	void mult(Operand a, Operand b, Operand c, int rowFrom, int rowTo, int colFrom, int colTo, int inner,
+			boolean single, boolean accumulate, CancellationToken token) {
+		if (rowFrom >= rowTo || colFrom >= colTo)
+			return;
+		final int kmax = Math.min(kc, inner);
+		final double[] packedA = new double[roundUp(Math.min(mc, rowTo - rowFrom), MR) * kmax];
+		final double[] packedB = new double[kmax * roundUp(Math.min(nc, colTo - colFrom), NR)];
+		for (int jc = colFrom; jc < colTo; jc += nc) {
+			final int nb = Math.min(nc, colTo - jc);
+			for (int pc = 0; pc < inner; pc += kc) {
+				final int kb = Math.min(kc, inner - pc);
+				packB(b, pc, kb, jc, nb, packedB, single);
+				for (int ic = rowFrom; ic < rowTo; ic += mc) {
+					token.check();
+					final int mb = Math.min(mc, rowTo - ic);
+					packA(a, ic, mb, pc, kb, packedA, single);
+					for (int jr = 0; jr < nb; jr += NR) {
+						for (int ir = 0; ir < mb; ir += MR) {
+							kernel(kb, packedA, ir * kb, packedB, jr * kb, c, ic + ir, jc + jr, Math.min(MR, mb - ir),
+									Math.min(NR, nb - jr), accumulate || pc > 0, single);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// rows of A in slivers of MR rows, each sliver column after column
+	private static void packA(Operand a, int ic, int mb, int pc, int kb, double[] packed, boolean single) {
+		final int step = a.step();
+		for (int ir = 0; ir < mb; ir += MR) {
+			final int base = ir * kb;
+			for (int r = 0; r < MR; r++) {
+				if (ir + r < mb) {
+					final double[] row = a.array(ic + ir + r);
+					final int index = a.index(ic + ir + r, pc);
+					for (int p = 0; p < kb; p++) {
+						double v = row[index + p * step];
+						packed[base + p * MR + r] = single ? (float) v : v;
+					}
+				} else {
+					for (int p = 0; p < kb; p++)
+						packed[base + p * MR + r] = 0;
+				}
+			}
+		}
+	}
+
+	// columns of B in slivers of NR columns, each sliver row after row
+	private static void packB(Operand b, int pc, int kb, int jc, int nb, double[] packed, boolean single) {
+		final int step = b.step();
+		for (int p = 0; p < kb; p++) {
+			final double[] row = b.array(pc + p);
+			final int index = b.index(pc + p, jc);
+			for (int jr = 0; jr < nb; jr += NR) {
+				final int base = jr * kb + p * NR;
+				final int nr = Math.min(NR, nb - jr);
+				for (int q = 0; q < nr; q++) {
+					double v = row[index + (jr + q) * step];
+					packed[base + q] = single ? (float) v : v;
+				}
+				for (int q = nr; q < NR; q++)
+					packed[base + q] = 0;
+			}
+		}
+	}
+
+	// MR x NR tile of C from the slivers of A and B, the tile stays in registers
+	private static void kernel(int kb, double[] a, int ai, double[] b, int bi, Operand c, int i, int j, int mr, int nr,
+			boolean accumulate, boolean single) {
+		double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+		double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+		double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+		double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+		for (int p = 0; p < kb; p++, ai += MR, bi += NR) {
+			final double b0 = b[bi], b1 = b[bi + 1], b2 = b[bi + 2], b3 = b[bi + 3];
+			double x = a[ai];
+			c00 += x * b0;
+			c01 += x * b1;
+			c02 += x * b2;
+			c03 += x * b3;
+			x = a[ai + 1];
+			c10 += x * b0;
+			c11 += x * b1;
+			c12 += x * b2;
+			c13 += x * b3;
+			x = a[ai + 2];
+			c20 += x * b0;
+			c21 += x * b1;
+			c22 += x * b2;
+			c23 += x * b3;
+			x = a[ai + 3];
+			c30 += x * b0;
+			c31 += x * b1;
+			c32 += x * b2;
+			c33 += x * b3;
+		}
+		store(c, i, j, nr, c00, c01, c02, c03, accumulate, single);
+		if (mr > 1)
+			store(c, i + 1, j, nr, c10, c11, c12, c13, accumulate, single);
+		if (mr > 2)
+			store(c, i + 2, j, nr, c20, c21, c22, c23, accumulate, single);
+		if (mr > 3)
+			store(c, i + 3, j, nr, c30, c31, c32, c33, accumulate, single);
+	}
+
+	private static void store(Operand c, int i, int j, int nr, double v0, double v1, double v2, double v3,
+			boolean accumulate, boolean single) {
+		final double[] row = c.array(i);
+		final int index = c.index(i, j);
+		final int step = c.step();
+		put(row, index, v0, accumulate, single);
+		if (nr > 1)
+			put(row, index + step, v1, accumulate, single);
+		if (nr > 2)
+			put(row, index + 2 * step, v2, accumulate, single);
+		if (nr > 3)
+			put(row, index + 3 * step, v3, accumulate, single);
+	}
+
+	private static void put(double[] row, int index, double v, boolean accumulate, boolean single) {
+		if (accumulate)
+			v += row[index];
+		row[index] = single ? (float) v : v;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Gemm[mc=%d, kc=%d, nc=%d, cutoff=%d]", mc, kc, nc, cutoff);
+	}
+
+	/**
+	 * Tile of C, split along its longer side until its work is below the grain.
+	 */
+	private final class Tile extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final transient Operand a, b, c;
+		private final int rowFrom, rowTo, colFrom, colTo, inner;
+		private final boolean single;
+		private final transient CancellationToken token;
+		private final long grain;
+
+		Tile(Operand a, Operand b, Operand c, int rowFrom, int rowTo, int colFrom, int colTo, int inner,
+				boolean single, CancellationToken token, long grain) {
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.colFrom = colFrom;
+			this.colTo = colTo;
+			this.inner = inner;
+			this.single = single;
+			this.token = token;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			final int rows = rowTo - rowFrom, cols = colTo - colFrom;
+			if ((long) rows * cols * inner <= grain || (rows <= MR && cols <= NR)) {
+				try {
+					token.check();
+					mult(a, b, c, rowFrom, rowTo, colFrom, colTo, inner, single, token);
+				} catch (RuntimeException | Error error) {
+					// an expired deadline stops the others anyway and stays the reported cause
+					if (!token.isExpired())
+						token.cancel();
+					throw error;
+				}
+				return;
+			}
+			// split at a multiple of the register tile
+			if ((rows >= cols && rows > MR) || cols <= NR) {
+				int mid = rowFrom + roundUp(rows / 2, MR);
+				invokeAll(tile(rowFrom, mid, colFrom, colTo), tile(mid, rowTo, colFrom, colTo));
+			} else {
+				int mid = colFrom + roundUp(cols / 2, NR);
+				invokeAll(tile(rowFrom, rowTo, colFrom, mid), tile(rowFrom, rowTo, mid, colTo));
+			}
+		}
+
+		private Tile tile(int rowFrom, int rowTo, int colFrom, int colTo) {
+			return new Tile(a, b, c, rowFrom, rowTo, colFrom, colTo, inner, single, token, grain);
+		}
+	}
+
+	/**
+	 * Element access of a matrix given as array of rows or as flat Matrix, row i
+	 * starts at index(i, 0) of array(i) with step() between its columns.
+	 */
+	static final class Operand {
+		private final double[][] rows;
+		private final double[] data;
+		private final int offset;
+		private final int rowStride;
+		private final int colStride;
+
+		private Operand(double[][] rows, double[] data, int offset, int rowStride, int colStride) {
+			this.rows = rows;
+			this.data = data;
+			this.offset = offset;
+			this.rowStride = rowStride;
+			this.colStride = colStride;
+		}
+
+		static Operand of(double[][] rows) {
+			return new Operand(Objects.requireNonNull(rows), null, 0, 0, 1);
+		}
+
+		static Operand of(Matrix m) {
+			return new Operand(null, m.data(), m.offset(), m.rowStride(), m.colStride());
+		}
+
+		double[] array(int i) {
+			return null == rows ? data : rows[i];
+		}
+
+		int index(int i, int j) {
+			return null == rows ? offset + i * rowStride + j * colStride : j;
+		}
+
+		int step() {
+			return null == rows ? colStride : 1;
+		}
+	}
+}
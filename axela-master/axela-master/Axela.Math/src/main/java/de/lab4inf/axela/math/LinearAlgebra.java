@@ -1,12 +1,25 @@
 package de.lab4inf.axela.math;
 
+import de.lab4inf.axela.core.CancellationToken;
 import de.lab4inf.axela.core.Iris;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.engine.AxelaExecutors;
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
 import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.math.SparseMatrix.Format;
 
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jdk.jfr.EventType;
 
 import static java.lang.String.format;
 
@@ -23,136 +36,668 @@ public abstract class LinearAlgebra<Solution, F1, F2> implements Iris<String, Fa
 		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
 
 		if (problem.equals("PLUS")) {
-			return add(facts.getFact1(), facts.getFact2());
+			return add(facts.getFact1(), facts.getFact2(), facts.getHints());
 		}
 		if (problem.equals("MULT")) {
-			return mult(facts.getFact1(), facts.getFact2(), facts.getSpeedUp());
+			return mult(facts.getFact1(), facts.getFact2(), facts.getHints());
 		}
 
 		throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
 	}
 
-	protected abstract Solution add(F1 a, F2 b);
+	/**
+	 * Estimated working set of a solve in bytes, the arrays the solver allocates
+	 * for the facts. Used to admit the solve to the MemoryBudget of the engine
+	 * before it runs.
+	 * 
+	 * @param problem to solve
+	 * @param facts   to solve
+	 * @return estimated bytes
+	 */
+	public long footprint(String problem, FactBase<F1, F2> facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+
+		if (problem.equals("PLUS")) {
+			return addFootprint(facts.getFact1(), facts.getFact2(), facts.getHints());
+		}
+		if (problem.equals("MULT")) {
+			return multFootprint(facts.getFact1(), facts.getFact2(), facts.getHints());
+		}
+		return 0;
+	}
+
+	protected long addFootprint(F1 a, F2 b, ExecutionHints hints) {
+		return 0;
+	}
+
+	protected long multFootprint(F1 a, F2 b, ExecutionHints hints) {
+		return 0;
+	}
+
+	// bytes of an array with n elements, header included
+	protected static long bytes(long n, int element) {
+		return 16 + n * element;
+	}
 
-	protected abstract Solution mult(F1 a, F2 b, boolean speedUp);
+	// bytes of a matrix stored as array of rows
+	protected static long bytes(long rows, long cols, int element) {
+		return bytes(rows, 8) + rows * bytes(cols, element);
+	}
+
+	/**
+	 * Kernel of one problem with the facts a and b.
+	 */
+	@FunctionalInterface
+	public interface Kernel<A, B, S> {
+		S apply(A a, B b, ExecutionHints hints);
+	}
+
+	/**
+	 * Solver of PLUS and MULT for further fact types, e.g. by the overloads of
+	 * the calculators for Matrix and Vector.
+	 * 
+	 * @param add  kernel of PLUS
+	 * @param mult kernel of MULT
+	 * @param <A>  type of the first fact
+	 * @param <B>  type of the second fact
+	 * @param <S>  type of the solution
+	 * @return solver dispatching by the problem
+	 */
+	public static <A, B, S> Iris<String, FactBase<A, B>, S> solver(Kernel<? super A, ? super B, ? extends S> add,
+			Kernel<? super A, ? super B, ? extends S> mult) {
+		Objects.requireNonNull(add, "add is a NullPointer!");
+		Objects.requireNonNull(mult, "mult is a NullPointer!");
+		return (problem, facts) -> {
+			Objects.requireNonNull(problem, "problem is a NullPointer!");
+			Objects.requireNonNull(facts, "facts are a NullPointer!");
+			if (problem.equals("PLUS"))
+				return add.apply(facts.getFact1(), facts.getFact2(), facts.getHints());
+			if (problem.equals("MULT"))
+				return mult.apply(facts.getFact1(), facts.getFact2(), facts.getHints());
+			throw new IllegalStateException(format("no Iris for problem: %s found", problem));
+		};
+	}
+
+	protected abstract Solution add(F1 a, F2 b, ExecutionHints hints);
+
+	protected abstract Solution mult(F1 a, F2 b, ExecutionHints hints);
 
 	protected abstract void check(F1 a, F2 b);
 
+	/**
+	 * Part [from, to) of an index range, chunk numbers the parts from 0. Long
+	 * running parts check the token frequently.
+	 */
+	@FunctionalInterface
+	protected interface Range {
+		void run(int chunk, int from, int to, CancellationToken token);
+	}
+
+	/** minimal work of a part, in multiplications or elements */
+	protected static final int GRAIN = 1 << 13;
+
+	/**
+	 * Number of parts an index range of length n is split into, each index a
+	 * part of its own at most. Without an explicit parallelism the kernels run
+	 * single threaded.
+	 */
+	protected int chunks(int n, ExecutionHints hints) {
+		return chunks(n, 1, hints);
+	}
+
+	/**
+	 * Number of parts an index range of length n is split into, each part holds
+	 * at least grain indices. There are never more parts than threads to run
+	 * them, the workers of the executor and the calling thread.
+	 */
+	protected int chunks(int n, int grain, ExecutionHints hints) {
+		final int parts = Math.min(n / Math.max(1, grain), workers(hints) + 1);
+		return Math.max(1, Math.min(hints.getParallelism(), parts));
+	}
+
+	// indices of a part worth cost operations each
+	protected static int grain(long cost) {
+		return (int) Math.max(1, GRAIN / Math.max(1, cost));
+	}
+
+	// threads of the executor, the processors for executors of unknown size
+	protected static int workers(ExecutionHints hints) {
+		Executor executor = executor(hints);
+		if (executor instanceof ForkJoinPool)
+			return ((ForkJoinPool) executor).getParallelism();
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	protected static Executor executor(ExecutionHints hints) {
+		return null == hints.getExecutor() ? AxelaExecutors.shared() : hints.getExecutor();
+	}
+
+	/**
+	 * Runs the body over the index range [0, n) split into
+	 * {@link #chunks(int, ExecutionHints)} parts on the executor of the hints.
+	 */
+	protected void forRange(int n, ExecutionHints hints, Range body) {
+		forRange(n, 1, hints, body);
+	}
+
+	/**
+	 * Runs the body over the index range [0, n) split into
+	 * {@link #chunks(int, int, ExecutionHints)} parts on the executor of the
+	 * hints. The calling thread takes part in the work, so waiting never blocks
+	 * a pool thread on queued tasks. The first failing part, the cancellation or
+	 * the deadline of the solve stop all other parts at their next check.
+	 */
+	protected void forRange(int n, int grain, ExecutionHints hints, Range body) {
+		final int chunks = chunks(n, grain, hints);
+		final CancellationToken token = hints.newToken();
+		if (chunks == 1) {
+			token.check();
+			body.run(0, 0, n, token);
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CountDownLatch done = new CountDownLatch(chunks);
+		Runnable worker = () -> {
+			int chunk;
+			while ((chunk = next.getAndIncrement()) < chunks) {
+				try {
+					if (null == failure.get()) {
+						token.check();
+						body.run(chunk, (int) ((long) n * chunk / chunks), (int) ((long) n * (chunk + 1) / chunks),
+								token);
+					}
+				} catch (Throwable error) {
+					failure.compareAndSet(null, error);
+					token.cancel();
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+		Executor executor = executor(hints);
+		try {
+			for (int i = 1; i < chunks; i++)
+				executor.execute(worker);
+		} catch (RejectedExecutionException e) {
+			// the calling thread does the remaining chunks
+		}
+		worker.run();
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			// stop the other parts and release their threads without waiting
+			Thread.currentThread().interrupt();
+			token.cancel();
+			throw new SolveCancelledException("solve interrupted");
+		}
+		Throwable error = failure.get();
+		if (error instanceof RuntimeException)
+			throw (RuntimeException) error;
+		if (error instanceof Error)
+			throw (Error) error;
+		if (null != error)
+			throw new IllegalStateException(error);
+	}
+
+	/** elements of an off-heap vector streamed between two checks of the token */
+	protected static final int BLOCK = 1 << 16;
+
+	/**
+	 * Part [from, to) of a long index range of off-heap elements, chunk numbers
+	 * the parts of forBlocks from 0.
+	 */
+	@FunctionalInterface
+	protected interface Blocks {
+		void run(int chunk, long from, long to);
+	}
+
+	private static int blocks(long n) {
+		return (int) ((n + BLOCK - 1) / BLOCK);
+	}
+
+	/**
+	 * Runs the body over the long index range [0, n) in blocks of BLOCK elements,
+	 * the blocks are split into {@link #chunks(int, ExecutionHints)} parts like by
+	 * {@link #forRange(int, ExecutionHints, Range)}. The token is checked before
+	 * each block.
+	 */
+	protected void forBlocks(long n, ExecutionHints hints, Blocks body) {
+		forRange(blocks(n), hints, (chunk, from, to, token) -> {
+			for (int block = from; block < to; block++) {
+				token.check();
+				body.run(chunk, (long) block * BLOCK, Math.min(n, (long) (block + 1) * BLOCK));
+			}
+		});
+	}
+
+	protected static double[] output(ExecutionHints hints, int n) {
+		if (fits(hints, n))
+			return (double[]) hints.getOutput();
+		return new double[n];
+	}
+
+	protected static double[][] output(ExecutionHints hints, int rows, int cols) {
+		if (fits(hints, rows, cols))
+			return (double[][]) hints.getOutput();
+		return new double[rows][cols];
+	}
+
+	protected static Vector denseOutput(ExecutionHints hints, int n) {
+		Object output = hints.getOutput();
+		if (output instanceof Vector && ((Vector) output).length() == n)
+			return (Vector) output;
+		return new Vector(n);
+	}
+
+	protected static Matrix denseOutput(ExecutionHints hints, int rows, int cols) {
+		Object output = hints.getOutput();
+		if (output instanceof Matrix && ((Matrix) output).getRows() == rows && ((Matrix) output).getColumns() == cols)
+			return (Matrix) output;
+		return new Matrix(rows, cols);
+	}
+
+	// solutions outside of the heap stay there, the new ones in direct memory
+	protected static OffHeapVector offHeapOutput(ExecutionHints hints, long n) {
+		Object output = hints.getOutput();
+		if (output instanceof OffHeapVector && ((OffHeapVector) output).length() == n)
+			return (OffHeapVector) output;
+		return OffHeapVector.allocate(n);
+	}
+
+	protected static OffHeapMatrix offHeapOutput(ExecutionHints hints, int rows, int cols) {
+		Object output = hints.getOutput();
+		if (output instanceof OffHeapMatrix && ((OffHeapMatrix) output).getRows() == rows
+				&& ((OffHeapMatrix) output).getColumns() == cols)
+			return (OffHeapMatrix) output;
+		return OffHeapMatrix.allocate(rows, cols);
+	}
+
+	// bytes of a dense solution, zero if the output buffer of the hints takes it
+	protected static long denseFootprint(ExecutionHints hints, int rows, int cols) {
+		Object output = hints.getOutput();
+		if (output instanceof Matrix && ((Matrix) output).getRows() == rows && ((Matrix) output).getColumns() == cols)
+			return 0;
+		if (output instanceof Vector && 1 == cols && ((Vector) output).length() == rows)
+			return 0;
+		return bytes((long) rows * cols, 8);
+	}
+
+	// true if the output buffer of the hints takes the solution
+	protected static boolean fits(ExecutionHints hints, int n) {
+		Object output = hints.getOutput();
+		return output instanceof double[] && ((double[]) output).length == n;
+	}
+
+	protected static boolean fits(ExecutionHints hints, int rows, int cols) {
+		Object output = hints.getOutput();
+		if (!(output instanceof double[][]) || ((double[][]) output).length != rows)
+			return false;
+		double[][] buffer = (double[][]) output;
+		for (int i = 0; i < rows; i++)
+			if (null == buffer[i] || buffer[i].length != cols)
+				return false;
+		return true;
+	}
+
 	static public class VectorCalc extends LinearAlgebra<Object, double[], double[]> {
 		@Override
-		protected double[] add(double[] a, double[] b) {
+		protected double[] add(double[] a, double[] b, ExecutionHints hints) {
 			check(a, b);
 			if (a.length != b.length)
 				throw new IllegalArgumentException("dimensions wrong!");
 
-			int len = a.length;
-			double[] result = new double[len];
-			for (int i = 0; i < len; i++) {
-				result[i] = a[i] + b[i];
-			}
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			double[] result = output(hints, a.length);
+			forRange(a.length, GRAIN, hints, (chunk, from, to, token) -> DenseKernels.add(a, from, 1, b, from, 1,
+					result, from, 1, to - from, single));
 			return result;
 		}
 
 		@Override
-		protected Double mult(double[] a, double[] b, boolean speedUp) {
+		protected Double mult(double[] a, double[] b, ExecutionHints hints) {
+			return dot(a, b, hints);
+		}
+
+		@Override
+		protected long addFootprint(double[] a, double[] b, ExecutionHints hints) {
+			return fits(hints, a.length) ? 0 : bytes(a.length, 8);
+		}
+
+		/**
+		 * Unboxed dot product, used by the DoubleIris of the LinearAlgebraPlugin.
+		 * 
+		 * @param a     first vector
+		 * @param b     second vector
+		 * @param hints of the facts
+		 * @return a*b
+		 */
+		public double dot(double[] a, double[] b, ExecutionHints hints) {
 			check(a, b);
 			if (a.length != b.length)
 				throw new IllegalArgumentException("dimensions wrong!");
 
-			int len = a.length;
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			double[] partial = new double[chunks(a.length, GRAIN, hints)];
+			forRange(a.length, GRAIN, hints, (chunk, from, to,
+					token) -> partial[chunk] = DenseKernels.dot(a, from, 1, b, from, 1, to - from, single));
 			double result = 0;
-			for (int i = 0; i < len; i++) {
-				result += a[i] * b[i];
+			for (double sum : partial) {
+				result += sum;
 			}
+			return single ? (float) result : result;
+		}
+
+		public Vector add(Vector a, Vector b, ExecutionHints hints) {
+			check(a, b);
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final Vector result = denseOutput(hints, a.length());
+			final double[] x = a.data(), y = b.data(), r = result.data();
+			final int xo = a.offset(), xs = a.stride(), yo = b.offset(), ys = b.stride();
+			final int ro = result.offset(), rs = result.stride();
+			forRange(a.length(), GRAIN, hints, (chunk, from, to, token) -> DenseKernels.add(x, xo + from * xs, xs, y,
+					yo + from * ys, ys, r, ro + from * rs, rs, to - from, single));
+			return result;
+		}
+
+		public double dot(Vector a, Vector b, ExecutionHints hints) {
+			check(a, b);
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final double[] x = a.data(), y = b.data();
+			final int xo = a.offset(), xs = a.stride(), yo = b.offset(), ys = b.stride();
+			double[] partial = new double[chunks(a.length(), GRAIN, hints)];
+			forRange(a.length(), GRAIN, hints, (chunk, from, to, token) -> partial[chunk] = DenseKernels.dot(x,
+					xo + from * xs, xs, y, yo + from * ys, ys, to - from, single));
+			double result = 0;
+			for (double sum : partial) {
+				result += sum;
+			}
+			return single ? (float) result : result;
+		}
+
+		public OffHeapVector add(OffHeapVector a, OffHeapVector b, ExecutionHints hints) {
+			check(a, b);
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final OffHeapVector result = offHeapOutput(hints, a.length());
+			forBlocks(a.length(), hints,
+					(chunk, from, to) -> OffHeapVector.add(a, from, b, from, result, from, to - from, single));
 			return result;
 		}
 
+		public double dot(OffHeapVector a, OffHeapVector b, ExecutionHints hints) {
+			check(a, b);
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			double[] partial = new double[chunks(blocks(a.length()), hints)];
+			forBlocks(a.length(), hints,
+					(chunk, from, to) -> partial[chunk] += OffHeapVector.dot(a, from, b, from, to - from, single));
+			double result = 0;
+			for (double sum : partial) {
+				result += sum;
+			}
+			return single ? (float) result : result;
+		}
+
 		@Override
 		protected void check(double[] a, double[] b) {
 			if (a.length == 0 || b.length == 0)
 				throw new NullPointerException(ZERO_LENGTH);
 		}
+
+		protected void check(OffHeapVector a, OffHeapVector b) {
+			if (a.length() == 0 || b.length() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+			if (a.length() != b.length())
+				throw new IllegalArgumentException("dimensions wrong!");
+		}
+
+		protected void check(Vector a, Vector b) {
+			if (a.length() == 0 || b.length() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+			if (a.length() != b.length())
+				throw new IllegalArgumentException("dimensions wrong!");
+		}
 	}
 
 	static public class MatrixCalc extends LinearAlgebra<double[][], double[][], double[][]> {
+		// no event is allocated per product while no recording is running
+		private static final EventType MULT_EVENT = EventType.getEventType(MatrixMultEvent.class);
+
+		private final Gemm gemm;
+		private final Strassen strassen;
+		private final OutOfCore outOfCore;
+
+		public MatrixCalc() {
+			this(Strassen.DEFAULT);
+		}
+
+		/**
+		 * @param gemm kernel of the multiplication with its block sizes
+		 */
+		public MatrixCalc(Gemm gemm) {
+			this(new Strassen(Objects.requireNonNull(gemm, "gemm is a NullPointer!"), Strassen.CUTOFF));
+		}
+
+		/**
+		 * @param strassen multiplication if the hints ask for STRASSEN, its Gemm
+		 *                 otherwise
+		 */
+		public MatrixCalc(Strassen strassen) {
+			this(strassen, new OutOfCore(strassen.getGemm(), OutOfCore.TILE));
+		}
+
+		/**
+		 * @param strassen  multiplication if the hints ask for STRASSEN, its Gemm
+		 *                  otherwise
+		 * @param outOfCore multiplication of OffHeapMatrix facts
+		 */
+		public MatrixCalc(Strassen strassen, OutOfCore outOfCore) {
+			this.strassen = Objects.requireNonNull(strassen, "strassen is a NullPointer!");
+			this.outOfCore = Objects.requireNonNull(outOfCore, "outOfCore is a NullPointer!");
+			this.gemm = strassen.getGemm();
+		}
+
+		public Gemm getGemm() {
+			return gemm;
+		}
+
+		public Strassen getStrassen() {
+			return strassen;
+		}
+
+		public OutOfCore getOutOfCore() {
+			return outOfCore;
+		}
+
 		@Override
-		protected double[][] add(double[][] a, double[][] b) {
+		protected double[][] add(double[][] a, double[][] b, ExecutionHints hints) {
 			check(a, b);
 			if (a.length != b.length || a[0].length != b[0].length)
 				throw new IllegalArgumentException("dimensions wrong!"); // Errorhandling illegal addition
 
 			int len_x = a.length;
 			int len_y = a[0].length;
-			double[][] result = new double[len_x][len_y];
-			for (int i = 0; i < len_x; i++) {
-				for (int k = 0; k < len_y; k++) {
-					result[i][k] = a[i][k] + b[i][k];
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			double[][] result = output(hints, len_x, len_y);
+			forRange(len_x, grain(len_y), hints, (chunk, from, to, token) -> {
+				for (int i = from; i < to; i++) {
+					token.check();
+					for (int k = 0; k < len_y; k++) {
+						result[i][k] = single ? (float) (a[i][k] + b[i][k]) : a[i][k] + b[i][k];
+					}
 				}
-			}
+			});
 			return result;
 		}
 
 		@Override
-		protected double[][] mult(double[][] a, double[][] b, boolean speedUp) {
+		protected long addFootprint(double[][] a, double[][] b, ExecutionHints hints) {
+			if (0 == a.length)
+				return 0;
+			return fits(hints, a.length, a[0].length) ? 0 : bytes(a.length, a[0].length, 8);
+		}
+
+		/**
+		 * The result and the packing buffers of each thread, with Strassen its
+		 * temporaries and the dense copies of the arrays.
+		 */
+		@Override
+		protected long multFootprint(double[][] a, double[][] b, ExecutionHints hints) {
+			if (0 == a.length || 0 == b.length)
+				return 0;
+			final int rows = a.length, inner = b.length, cols = b[0].length;
+			long work = workFootprint(rows, inner, cols, hints);
+			if (strassen(rows, inner, cols, hints))
+				work += bytes((long) rows * inner, 8) + bytes((long) inner * cols, 8) + bytes((long) rows * cols, 8);
+			return fits(hints, rows, cols) ? work : work + bytes(rows, cols, 8);
+		}
+
+		public long multFootprint(Matrix a, Matrix b, ExecutionHints hints) {
+			return workFootprint(a.getRows(), b.getRows(), b.getColumns(), hints)
+					+ denseFootprint(hints, a.getRows(), b.getColumns());
+		}
+
+		// each thread of the pool or part of the rows packs its own panels
+		private long workFootprint(int rows, int inner, int cols, ExecutionHints hints) {
+			if (strassen(rows, inner, cols, hints))
+				return strassen.footprint(rows, inner, cols, threads(hints));
+			if (forkJoin(hints))
+				return gemm.footprint(rows, inner, cols, threads(hints));
+			return chunks(rows, grain((long) inner * cols), hints) * gemm.footprint(rows, inner, cols);
+		}
+
+		private boolean strassen(int rows, int inner, int cols, ExecutionHints hints) {
+			return hints.getAlgorithm() == Algorithm.STRASSEN && strassen.recurses(rows, inner, cols);
+		}
+
+		private static boolean forkJoin(ExecutionHints hints) {
+			return hints.getParallelism() > 1 && executor(hints) instanceof ForkJoinPool;
+		}
+
+		// threads of the pool the tiles are sized for, 1 without a pool
+		private static int threads(ExecutionHints hints) {
+			if (!forkJoin(hints))
+				return 1;
+			return Math.min(hints.getParallelism(), ((ForkJoinPool) executor(hints)).getParallelism());
+		}
+
+		@Override
+		protected double[][] mult(double[][] a, double[][] b, ExecutionHints hints) {
 			check(a, b);
 			if (a[0].length != b.length)
 				throw new IllegalArgumentException("dimensions wrong!"); // Zeilenzahl von a muss gleich Spaltenzahl
 																			// von, B sein, ansonsten keine
 																			// multiplikation moeglich
 
-			// Algorithmus 3
-			ThreadPoolExecutor pool;
-			if (speedUp)
-				pool = (ThreadPoolExecutor) Executors.newCachedThreadPool(); // Multithread
-			else
-				pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(1); // Singlethread
-
-			double[][] result = new double[a.length][b[0].length];
-			double[][] transB = transponse(b);
+			final MatrixMultEvent event = begin();
 
-			for (int i = 0; i < a.length; i++) {
-				final int outI = i;
-				Runnable task = new Runnable() {
-					@Override
-					public void run() {
-						matMultInnerLoop(a[outI], result[outI], transB, outI);
-					}
-				};
-				pool.execute(task);
+			final double[][] result = output(hints, a.length, b[0].length);
+			if (strassen(a.length, b.length, b[0].length, hints)) {
+				// the recursion works on views of dense matrices
+				Matrix product = new Matrix(a.length, b[0].length);
+				mult(Matrix.of(a), Matrix.of(b), product, hints);
+				for (int i = 0; i < result.length; i++)
+					System.arraycopy(product.data(), i * result[i].length, result[i], 0, result[i].length);
+			} else {
+				mult(Gemm.Operand.of(a), Gemm.Operand.of(b), Gemm.Operand.of(result), a.length, b.length, b[0].length,
+						hints);
 			}
 
-			pool.shutdown();
+			if (null != event)
+				commit(event, a.length, b.length, b[0].length,
+						chunks(a.length, grain((long) b.length * b[0].length), hints) > 1);
+			return result;
 
-			try {
-				if (!pool.awaitTermination(300, TimeUnit.SECONDS)) {
-					throw new IllegalStateException("Task timed out");
-				}
-			} catch (InterruptedException e) {
-				pool.shutdownNow();
-				e.printStackTrace();
-			}
+		}
+
+		public Matrix add(Matrix a, Matrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getRows() != b.getRows() || a.getColumns() != b.getColumns())
+				throw new IllegalArgumentException("dimensions wrong!");
 
+			final int cols = a.getColumns();
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final Matrix result = denseOutput(hints, a.getRows(), cols);
+			final double[] x = a.data(), y = b.data(), r = result.data();
+			forRange(a.getRows(), grain(cols), hints, (chunk, from, to, token) -> {
+				for (int i = from; i < to; i++) {
+					token.check();
+					int xi = a.offset() + i * a.rowStride(), yi = b.offset() + i * b.rowStride();
+					int ri = result.offset() + i * result.rowStride();
+					for (int k = 0; k < cols; k++) {
+						double sum = x[xi + k * a.colStride()] + y[yi + k * b.colStride()];
+						r[ri + k * result.colStride()] = single ? (float) sum : sum;
+					}
+				}
+			});
 			return result;
+		}
+
+		public Matrix mult(Matrix a, Matrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getColumns() != b.getRows())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final MatrixMultEvent event = begin();
+
+			final int inner = a.getColumns(), cols = b.getColumns();
+			final Matrix result = denseOutput(hints, a.getRows(), cols);
+			if (strassen(a.getRows(), inner, cols, hints))
+				mult(a, b, result, hints);
+			else
+				mult(Gemm.Operand.of(a), Gemm.Operand.of(b), Gemm.Operand.of(result), a.getRows(), inner, cols, hints);
 
+			if (null != event)
+				commit(event, a.getRows(), inner, cols, chunks(a.getRows(), grain((long) inner * cols), hints) > 1);
+			return result;
 		}
 
-		private void matMultInnerLoop(double[] a, double[] result, double[][] transB, int i) {
-			for (int j = 0; j < transB.length; j++) {
-				result[j] = 0;
-				for (int k = 0; k < a.length; k++) {
-					result[j] += a[k] * transB[j][k];
-				}
+		/**
+		 * Tiles of the product run on the ForkJoinPool of the hints or the shared
+		 * one. Other executors get the rows of the result split into parts, each
+		 * part packs its own panels.
+		 */
+		private void mult(Gemm.Operand x, Gemm.Operand y, Gemm.Operand r, int rows, int inner, int cols,
+				ExecutionHints hints) {
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			if (forkJoin(hints)) {
+				gemm.mult(x, y, r, rows, inner, cols, single, hints.newToken(), (ForkJoinPool) executor(hints),
+						threads(hints));
+				return;
 			}
+			forRange(rows, grain((long) inner * cols), hints,
+					(chunk, from, to, token) -> gemm.mult(x, y, r, from, to, 0, cols, inner, single, token));
 		}
 
-		protected double[][] transponse(double[][] a) {
-			double[][] b = new double[a[0].length][a.length];
-			for (int i = 0; i < a.length; i++) {
-				for (int j = 0; j < a[0].length; j++) {
-					b[j][i] = a[i][j];
-				}
+		/**
+		 * The seven products of each level of Strassen run as tasks on the
+		 * ForkJoinPool of the hints or the shared one, serially otherwise.
+		 */
+		private void mult(Matrix a, Matrix b, Matrix r, ExecutionHints hints) {
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			if (forkJoin(hints))
+				strassen.mult(a, b, r, single, hints.newToken(), (ForkJoinPool) executor(hints), threads(hints));
+			else
+				strassen.mult(a, b, r, single, hints.newToken(), null, 1);
+		}
+
+		// null while the event is not recorded
+		private static MatrixMultEvent begin() {
+			if (!MULT_EVENT.isEnabled())
+				return null;
+			MatrixMultEvent event = new MatrixMultEvent();
+			event.begin();
+			return event;
+		}
+
+		private static void commit(MatrixMultEvent event, int rows, int inner, int cols, boolean parallel) {
+			if (event.shouldCommit()) {
+				event.rows = rows;
+				event.inner = inner;
+				event.cols = cols;
+				event.parallel = parallel;
+				event.commit();
 			}
-			return b;
 		}
 
 		@Override
@@ -160,31 +705,144 @@ public abstract class LinearAlgebra<Solution, F1, F2> implements Iris<String, Fa
 			if (a.length == 0 || b.length == 0 || a[0].length == 0 || b[0].length == 0)
 				throw new NullPointerException(ZERO_LENGTH);
 		}
+
+		protected void check(Matrix a, Matrix b) {
+			if (a.getRows() == 0 || b.getRows() == 0 || a.getColumns() == 0 || b.getColumns() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+		}
+
+		public OffHeapMatrix add(OffHeapMatrix a, OffHeapMatrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getRows() != b.getRows() || a.getColumns() != b.getColumns())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final OffHeapMatrix result = offHeapOutput(hints, a.getRows(), a.getColumns());
+			forBlocks(a.elements().length(), hints, (chunk, from, to) -> OffHeapVector.add(a.elements(), from,
+					b.elements(), from, result.elements(), from, to - from, single));
+			return result;
+		}
+
+		/**
+		 * Out-of-core: the tiles of C are split into parts, each part reads the
+		 * tiles of A and B ahead while multiplying the current ones.
+		 */
+		public OffHeapMatrix mult(OffHeapMatrix a, OffHeapMatrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getColumns() != b.getRows())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final MatrixMultEvent event = begin();
+
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final OffHeapMatrix result = offHeapOutput(hints, a.getRows(), b.getColumns());
+			forRange(outOfCore.tiles(a.getRows(), b.getColumns()), hints,
+					(chunk, from, to, token) -> outOfCore.mult(a, b, result, from, to, single, token));
+
+			if (null != event)
+				commit(event, a.getRows(), a.getColumns(), b.getColumns(),
+						chunks(outOfCore.tiles(a.getRows(), b.getColumns()), hints) > 1);
+			return result;
+		}
+
+		// the tiles on the heap, one set per part as split by mult
+		public long multFootprint(OffHeapMatrix a, OffHeapMatrix b, ExecutionHints hints) {
+			return outOfCore.footprint(a.getRows(), a.getColumns(), b.getColumns(),
+					chunks(outOfCore.tiles(a.getRows(), b.getColumns()), hints));
+		}
+
+		protected void check(OffHeapMatrix a, OffHeapMatrix b) {
+			if (a.getRows() == 0 || b.getRows() == 0 || a.getColumns() == 0 || b.getColumns() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+		}
 	}
 
 	static public class MatVecCalc extends LinearAlgebra<double[], double[][], double[]> {
 		@Override
-		protected double[] add(double[][] a, double[] b) {
+		protected double[] add(double[][] a, double[] b, ExecutionHints hints) {
 			throw new IllegalArgumentException("not possible");
 		}
 
 		@Override
-		protected double[] mult(double[][] a, double[] b, boolean speedUp) {
+		protected long multFootprint(double[][] a, double[] b, ExecutionHints hints) {
+			return fits(hints, a.length) ? 0 : bytes(a.length, 8);
+		}
+
+		@Override
+		protected double[] mult(double[][] a, double[] b, ExecutionHints hints) {
 			check(a, b);
 
 			if (a[0].length != b.length)
 				throw new IllegalArgumentException("dimensions wrong!"); // illegal multiplication handling
 
-			double[] result = new double[a.length]; // result placeholder
-			for (int i = 0; i < a.length; i++) { // iterate through lines
-				double temp = 0;
-				for (int k = 0; k < a[0].length; k++) { // iterate through columns
-					temp += a[i][k] * b[k]; // calculate result
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			double[] result = output(hints, a.length); // result placeholder
+			forRange(a.length, grain(b.length), hints, (chunk, from, to, token) -> {
+				int i = from;
+				for (; i + 4 <= to; i += 4) { // four lines at once
+					token.check();
+					DenseKernels.dot4(a, i, b, result, single);
 				}
-				result[i] = temp; // apply result
-				temp = 0; // reset temp
-			}
+				for (; i < to; i++) // remaining lines
+					result[i] = DenseKernels.dot(a[i], 0, 1, b, 0, 1, b.length, single);
+			});
+
+			return result;
+		}
+
+		public Vector add(Matrix a, Vector b, ExecutionHints hints) {
+			throw new IllegalArgumentException("not possible");
+		}
+
+		public Vector mult(Matrix a, Vector b, ExecutionHints hints) {
+			if (a.getRows() == 0 || a.getColumns() == 0 || b.length() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+			if (a.getColumns() != b.length())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final int cols = b.length();
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final Vector result = denseOutput(hints, a.getRows());
+			final double[] x = a.data(), y = b.data(), r = result.data();
+			final int xc = a.colStride(), yo = b.offset(), ys = b.stride();
+			final int xr = a.rowStride(), ro = result.offset(), rs = result.stride();
+			forRange(a.getRows(), grain(cols), hints, (chunk, from, to, token) -> {
+				int i = from;
+				if (1 == xc && 1 == ys) {
+					// contiguous rows, four of them at once
+					for (; i + 4 <= to; i += 4) {
+						token.check();
+						DenseKernels.dot4(x, a.offset() + i * xr, xr, y, yo, cols, r, ro + i * rs, rs, single);
+					}
+				}
+				for (; i < to; i++) {
+					token.check();
+					r[ro + i * rs] = DenseKernels.dot(x, a.offset() + i * xr, xc, y, yo, ys, cols, single);
+				}
+			});
+			return result;
+		}
 
+		public OffHeapVector add(OffHeapMatrix a, OffHeapVector b, ExecutionHints hints) {
+			throw new IllegalArgumentException("not possible");
+		}
+
+		public OffHeapVector mult(OffHeapMatrix a, OffHeapVector b, ExecutionHints hints) {
+			if (a.getRows() == 0 || a.getColumns() == 0 || b.length() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+			if (a.getColumns() != b.length())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final int cols = a.getColumns();
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final OffHeapVector result = offHeapOutput(hints, a.getRows());
+			final OffHeapVector x = a.elements();
+			forRange(a.getRows(), grain(cols), hints, (chunk, from, to, token) -> {
+				for (int i = from; i < to; i++) {
+					token.check();
+					result.set(i, OffHeapVector.dot(x, (long) i * cols, b, 0, cols, single));
+				}
+			});
 			return result;
 		}
 
@@ -194,4 +852,420 @@ public abstract class LinearAlgebra<Solution, F1, F2> implements Iris<String, Fa
 				throw new NullPointerException(ZERO_LENGTH);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Sums and products of SparseMatrix facts with each other, with vectors and
+	 * with flat matrices. The rows of CSR matrices are split into parts of about
+	 * the same number of non-zeros. CSC factors are converted to CSR for the
+	 * products, except that the product of two CSC matrices is the transpose of
+	 * the CSR product of their transposes, and the product of a CSC matrix and
+	 * a vector, which scatters the columns into a partial sum per part.
+	 */
+	static public class SparseCalc extends LinearAlgebra<SparseMatrix, SparseMatrix, SparseMatrix> {
+		@Override
+		protected SparseMatrix add(SparseMatrix a, SparseMatrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getRows() != b.getRows() || a.getColumns() != b.getColumns())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final SparseMatrix y = b.toFormat(a.getFormat());
+			final int majors = a.majors();
+			final int[] ap = a.pointers(), ai = a.indices(), bp = y.pointers(), bi = y.indices();
+			final double[] av = a.values(), bv = y.values();
+			// the union of the indices of each row first, then the sums
+			final int[] pointers = new int[majors + 1];
+			final int grain = grain((2L * a.nonZeros() + b.nonZeros()) / majors + 1);
+			forRange(majors, grain, hints, (chunk, from, to, token) -> {
+				for (int m = from; m < to; m++) {
+					if (0 == (m & 1023))
+						token.check();
+					int q = ap[m], r = bp[m], n = 0;
+					while (q < ap[m + 1] && r < bp[m + 1]) {
+						int d = ai[q] - bi[r];
+						q += d <= 0 ? 1 : 0;
+						r += d >= 0 ? 1 : 0;
+						n++;
+					}
+					pointers[m + 1] = n + ap[m + 1] - q + bp[m + 1] - r;
+				}
+			});
+			final int nnz = prefix(pointers);
+			final int[] indices = new int[nnz];
+			final double[] values = new double[nnz];
+			forRange(majors, grain, hints, (chunk, from, to, token) -> {
+				for (int m = from; m < to; m++) {
+					if (0 == (m & 1023))
+						token.check();
+					int q = ap[m], r = bp[m], n = pointers[m];
+					while (q < ap[m + 1] || r < bp[m + 1]) {
+						double sum;
+						if (r >= bp[m + 1] || (q < ap[m + 1] && ai[q] < bi[r])) {
+							indices[n] = ai[q];
+							sum = av[q++];
+						} else if (q >= ap[m + 1] || bi[r] < ai[q]) {
+							indices[n] = bi[r];
+							sum = bv[r++];
+						} else {
+							indices[n] = ai[q];
+							sum = av[q++] + bv[r++];
+						}
+						values[n++] = single ? (float) sum : sum;
+					}
+				}
+			});
+			return new SparseMatrix(a.getFormat(), a.getRows(), a.getColumns(), pointers, indices, values);
+		}
+
+		/**
+		 * Row by row after Gustavson, the products of the row of A with the rows of
+		 * B are summed up in a dense row, once to count and once to calculate the
+		 * non-zeros of the row of C.
+		 */
+		@Override
+		protected SparseMatrix mult(SparseMatrix a, SparseMatrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getColumns() != b.getRows())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			if (Format.CSC == a.getFormat() && Format.CSC == b.getFormat())
+				return gustavson(b.transpose(), a.transpose(), hints).transpose();
+			return gustavson(a.toFormat(Format.CSR), b.toFormat(Format.CSR), hints);
+		}
+
+		private SparseMatrix gustavson(SparseMatrix a, SparseMatrix b, ExecutionHints hints) {
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final int rows = a.getRows(), cols = b.getColumns();
+			final int[] ap = a.pointers(), ai = a.indices(), bp = b.pointers(), bi = b.indices();
+			final double[] av = a.values(), bv = b.values();
+			final int[] pointers = new int[rows + 1];
+			forNonZeros(ap, rows, hints, (chunk, from, to, token) -> {
+				// columns marked with the last row they occured in
+				final int[] mark = new int[cols];
+				Arrays.fill(mark, -1);
+				for (int i = from; i < to; i++) {
+					token.check();
+					int n = 0;
+					for (int q = ap[i]; q < ap[i + 1]; q++) {
+						for (int s = bp[ai[q]]; s < bp[ai[q] + 1]; s++) {
+							if (mark[bi[s]] != i) {
+								mark[bi[s]] = i;
+								n++;
+							}
+						}
+					}
+					pointers[i + 1] = n;
+				}
+			});
+			final int nnz = prefix(pointers);
+			final int[] indices = new int[nnz];
+			final double[] values = new double[nnz];
+			forNonZeros(ap, rows, hints, (chunk, from, to, token) -> {
+				final int[] mark = new int[cols];
+				final double[] sum = new double[cols];
+				Arrays.fill(mark, -1);
+				for (int i = from; i < to; i++) {
+					token.check();
+					final int first = pointers[i];
+					int n = first;
+					for (int q = ap[i]; q < ap[i + 1]; q++) {
+						final double x = av[q];
+						for (int s = bp[ai[q]]; s < bp[ai[q] + 1]; s++) {
+							final int j = bi[s];
+							if (mark[j] != i) {
+								mark[j] = i;
+								indices[n++] = j;
+								sum[j] = x * bv[s];
+							} else {
+								sum[j] += x * bv[s];
+							}
+						}
+					}
+					Arrays.sort(indices, first, n);
+					for (int q = first; q < n; q++)
+						values[q] = single ? (float) sum[indices[q]] : sum[indices[q]];
+				}
+			});
+			return new SparseMatrix(Format.CSR, rows, cols, pointers, indices, values);
+		}
+
+		// pointers from the counts behind them, the number of non-zeros
+		private static int prefix(int[] pointers) {
+			long sum = 0;
+			for (int m = 1; m < pointers.length; m++) {
+				sum += pointers[m];
+				if (sum > Integer.MAX_VALUE - 8)
+					throw new IllegalArgumentException(String.format("more than %d non-zeros", sum));
+				pointers[m] = (int) sum;
+			}
+			return (int) sum;
+		}
+
+		public double[] add(SparseMatrix a, double[] b, ExecutionHints hints) {
+			throw new IllegalArgumentException("not possible");
+		}
+
+		public double[] mult(SparseMatrix a, double[] b, ExecutionHints hints) {
+			Objects.requireNonNull(b, "vector is a NullPointer!");
+			check(a, b.length);
+			final double[] result = output(hints, a.getRows());
+			mult(a, b, 0, 1, result, 0, 1, hints);
+			return result;
+		}
+
+		public Vector add(SparseMatrix a, Vector b, ExecutionHints hints) {
+			throw new IllegalArgumentException("not possible");
+		}
+
+		public Vector mult(SparseMatrix a, Vector b, ExecutionHints hints) {
+			Objects.requireNonNull(b, "vector is a NullPointer!");
+			check(a, b.length());
+			final Vector result = denseOutput(hints, a.getRows());
+			mult(a, b.data(), b.offset(), b.stride(), result.data(), result.offset(), result.stride(), hints);
+			return result;
+		}
+
+		private void check(SparseMatrix a, int length) {
+			if (a.getRows() == 0 || a.getColumns() == 0 || length == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+			if (a.getColumns() != length)
+				throw new IllegalArgumentException("dimensions wrong!");
+		}
+
+		// r = A*x, a gather per row of CSR or a scatter per column of CSC
+		private void mult(SparseMatrix a, double[] x, int xi, int xs, double[] r, int ri, int rs,
+				ExecutionHints hints) {
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final int[] p = a.pointers(), idx = a.indices();
+			final double[] v = a.values();
+			final int rows = a.getRows();
+			if (Format.CSR == a.getFormat()) {
+				forNonZeros(p, rows, hints, (chunk, from, to, token) -> {
+					for (int i = from, next = 0; i < to; i++) {
+						if (p[i] + i >= next) {
+							token.check();
+							next = p[i] + i + BLOCK;
+						}
+						double sum = 0;
+						for (int q = p[i]; q < p[i + 1]; q++)
+							sum += v[q] * x[xi + idx[q] * xs];
+						r[ri + i * rs] = single ? (float) sum : sum;
+					}
+				});
+				return;
+			}
+			final double[][] partial = new double[parts(a.getColumns(), a.nonZeros(), hints)][];
+			forNonZeros(p, a.getColumns(), hints, (chunk, from, to, token) -> {
+				final double[] sum = partial[chunk] = new double[rows];
+				for (int j = from, next = 0; j < to; j++) {
+					if (p[j] + j >= next) {
+						token.check();
+						next = p[j] + j + BLOCK;
+					}
+					final double xj = x[xi + j * xs];
+					for (int q = p[j]; q < p[j + 1]; q++)
+						sum[idx[q]] += v[q] * xj;
+				}
+			});
+			forRange(rows, grain(partial.length), hints, (chunk, from, to, token) -> {
+				token.check();
+				for (int i = from; i < to; i++) {
+					double sum = 0;
+					for (double[] part : partial)
+						sum += part[i];
+					r[ri + i * rs] = single ? (float) sum : sum;
+				}
+			});
+		}
+
+		/**
+		 * A + B with a flat matrix B, the solution is dense.
+		 */
+		public Matrix add(SparseMatrix a, Matrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getRows() != b.getRows() || a.getColumns() != b.getColumns())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final SparseMatrix x = a.toFormat(Format.CSR);
+			final int[] p = x.pointers(), idx = x.indices();
+			final double[] v = x.values(), y = b.data(), r;
+			final Matrix result = denseOutput(hints, a.getRows(), a.getColumns());
+			final int cols = a.getColumns(), cs = result.colStride();
+			r = result.data();
+			forRange(a.getRows(), hints, (chunk, from, to, token) -> {
+				for (int i = from; i < to; i++) {
+					token.check();
+					final int ro = result.offset() + i * result.rowStride();
+					final int yo = b.offset() + i * b.rowStride();
+					for (int j = 0; j < cols; j++)
+						r[ro + j * cs] = y[yo + j * b.colStride()];
+					for (int q = p[i]; q < p[i + 1]; q++)
+						r[ro + idx[q] * cs] += v[q];
+					if (single)
+						for (int j = 0; j < cols; j++)
+							r[ro + j * cs] = (float) r[ro + j * cs];
+				}
+			});
+			return result;
+		}
+
+		/**
+		 * A*B with a flat matrix B, each row of C sums up the rows of B weighted by
+		 * the non-zeros of the row of A.
+		 */
+		public Matrix mult(SparseMatrix a, Matrix b, ExecutionHints hints) {
+			check(a, b);
+			if (a.getColumns() != b.getRows())
+				throw new IllegalArgumentException("dimensions wrong!");
+
+			final boolean single = hints.getPrecision() == Precision.FLOAT;
+			final SparseMatrix x = a.toFormat(Format.CSR);
+			final int[] p = x.pointers(), idx = x.indices();
+			final double[] v = x.values(), y = b.data();
+			final int cols = b.getColumns();
+			final Matrix result = denseOutput(hints, a.getRows(), cols);
+			final double[] r = result.data();
+			final int cs = result.colStride();
+			forNonZeros(p, a.getRows(), hints, (chunk, from, to, token) -> {
+				for (int i = from; i < to; i++) {
+					token.check();
+					final int ro = result.offset() + i * result.rowStride();
+					for (int j = 0; j < cols; j++)
+						r[ro + j * cs] = 0;
+					for (int q = p[i]; q < p[i + 1]; q++)
+						DenseKernels.axpy(v[q], y, b.offset() + idx[q] * b.rowStride(), b.colStride(), r, ro, cs, cols);
+					if (single)
+						for (int j = 0; j < cols; j++)
+							r[ro + j * cs] = (float) r[ro + j * cs];
+				}
+			});
+			return result;
+		}
+
+		/**
+		 * Runs the body like {@link #forRange(int, ExecutionHints, Range)}, but the
+		 * parts hold about the same number of rows plus non-zeros.
+		 */
+		private void forNonZeros(int[] pointers, int n, ExecutionHints hints, Range body) {
+			final int parts = parts(n, pointers[n], hints);
+			if (1 == parts) {
+				forRange(n, n, hints, body);
+				return;
+			}
+			forRange(parts, hints, (chunk, from, to, token) -> {
+				for (int part = from; part < to; part++)
+					body.run(part, split(pointers, n, part, parts), split(pointers, n, part + 1, parts), token);
+			});
+		}
+
+		/**
+		 * Number of parts of forNonZeros, each part holds at least GRAIN rows plus
+		 * non-zeros and there are no more parts than workers, whatever the
+		 * dimension. The dense rows and partial sums are allocated per part.
+		 */
+		private int parts(int n, long nonZeros, ExecutionHints hints) {
+			return chunks(n, grain((nonZeros + n) / n), hints);
+		}
+
+		// first row of a part, pointers[i] + i increases strictly
+		private static int split(int[] pointers, int n, int part, int parts) {
+			final long target = ((long) pointers[n] + n) * part / parts;
+			int low = 0, high = n;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if ((long) pointers[mid] + mid < target)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		@Override
+		protected long addFootprint(SparseMatrix a, SparseMatrix b, ExecutionHints hints) {
+			long nnz = (long) a.nonZeros() + b.nonZeros();
+			return bytes(a.majors() + 1L, 4) + bytes(nnz, 4) + bytes(nnz, 8) + conversion(b, a.getFormat());
+		}
+
+		/**
+		 * The product has at most one non-zero per multiplication, summed up over
+		 * the inner index, and a dense row with its marks per part.
+		 */
+		@Override
+		protected long multFootprint(SparseMatrix a, SparseMatrix b, ExecutionHints hints) {
+			if (a.getColumns() != b.getRows())
+				return 0;
+			final int[] acount = counts(a, Format.CSC), bcount = counts(b, Format.CSR);
+			long products = 0;
+			for (int k = 0; k < acount.length; k++)
+				products += (long) acount[k] * bcount[k];
+			final long nnz = Math.min(products, (long) a.getRows() * b.getColumns());
+			final boolean transposed = Format.CSC == a.getFormat() && Format.CSC == b.getFormat();
+			final long work = (transposed ? parts(b.getColumns(), b.nonZeros(), hints)
+					: parts(a.getRows(), a.nonZeros(), hints))
+					* (bytes(transposed ? a.getRows() : b.getColumns(), 4)
+							+ bytes(transposed ? a.getRows() : b.getColumns(), 8));
+			final long conversions = transposed ? 0 : conversion(a, Format.CSR) + conversion(b, Format.CSR);
+			return bytes((transposed ? b.getColumns() : a.getRows()) + 1L, 4) + bytes(nnz, 4) + bytes(nnz, 8) + work
+					+ conversions;
+		}
+
+		// non-zeros per row (CSR) or column (CSC)
+		private static int[] counts(SparseMatrix a, Format major) {
+			final int[] p = a.pointers();
+			final int[] counts = new int[Format.CSR == major ? a.getRows() : a.getColumns()];
+			if (a.getFormat() == major) {
+				for (int m = 0; m < counts.length; m++)
+					counts[m] = p[m + 1] - p[m];
+			} else {
+				for (int q = 0; q < a.nonZeros(); q++)
+					counts[a.indices()[q]]++;
+			}
+			return counts;
+		}
+
+		// bytes of the copy in the other format
+		private static long conversion(SparseMatrix a, Format target) {
+			if (a.getFormat() == target)
+				return 0;
+			return bytes((Format.CSR == target ? a.getRows() : a.getColumns()) + 1L, 4) + bytes(a.nonZeros(), 4)
+					+ bytes(a.nonZeros(), 8);
+		}
+
+		public long multFootprint(SparseMatrix a, double[] b, ExecutionHints hints) {
+			return (fits(hints, a.getRows()) ? 0 : bytes(a.getRows(), 8)) + partials(a, hints);
+		}
+
+		public long multFootprint(SparseMatrix a, Vector b, ExecutionHints hints) {
+			return denseFootprint(hints, a.getRows(), 1) + partials(a, hints);
+		}
+
+		// the partial sums of the parts of a CSC matrix times a vector
+		private long partials(SparseMatrix a, ExecutionHints hints) {
+			if (Format.CSR == a.getFormat())
+				return 0;
+			final int parts = parts(a.getColumns(), a.nonZeros(), hints);
+			return bytes(parts, 8) + parts * bytes(a.getRows(), 8);
+		}
+
+		public long addFootprint(SparseMatrix a, Matrix b, ExecutionHints hints) {
+			return denseFootprint(hints, a.getRows(), a.getColumns()) + conversion(a, Format.CSR);
+		}
+
+		public long multFootprint(SparseMatrix a, Matrix b, ExecutionHints hints) {
+			return denseFootprint(hints, a.getRows(), b.getColumns()) + conversion(a, Format.CSR);
+		}
+
+		@Override
+		protected void check(SparseMatrix a, SparseMatrix b) {
+			if (a.getRows() == 0 || b.getRows() == 0 || a.getColumns() == 0 || b.getColumns() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+		}
+
+		protected void check(SparseMatrix a, Matrix b) {
+			if (a.getRows() == 0 || b.getRows() == 0 || a.getColumns() == 0 || b.getColumns() == 0)
+				throw new NullPointerException(ZERO_LENGTH);
+		}
+	}
+}
@@ -3,13 +3,30 @@ package de.lab4inf.axela.math;
 import java.util.Objects;
 
 import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.DoubleIris;
+import de.lab4inf.axela.core.Iris;
+import de.lab4inf.axela.engine.AdaptiveIris;
+import de.lab4inf.axela.engine.AxelaEngine;
+import de.lab4inf.axela.engine.SolveScheduler;
+import de.lab4inf.axela.facts.ExecutionHints;
 import de.lab4inf.axela.facts.FactBase;
 import de.lab4inf.axela.math.LinearAlgebra.MatVecCalc;
 import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+import de.lab4inf.axela.math.LinearAlgebra.SparseCalc;
 import de.lab4inf.axela.math.LinearAlgebra.VectorCalc;
 
+/**
+ * Vector and matrix solvers, found via the ServiceLoader by Axela.getEngine().
+ * The solvers are created on their first use. Next to double[] and double[][]
+ * the solvers take the flat Vector and Matrix types and the OffHeapVector and
+ * OffHeapMatrix types outside of the heap, whose solutions stay outside of the
+ * heap as well, and the SparseMatrix type with vectors, flat matrices and
+ * other sparse matrices.
+ */
 public class LinearAlgebraPlugin implements Axela.Plugin {
-	
+	static final String SERIAL = "serial";
+	static final String PARALLEL = "parallel";
+
 	@Override
 	public void init(Axela engine) {
 		Objects.requireNonNull(engine, "engine is a Nullpointer!");
@@ -18,10 +35,188 @@ public class LinearAlgebraPlugin implements Axela.Plugin {
 		FactBase<double[], double[]> vecvec = new FactBase<>(vector, vector);
 		FactBase<double[][], double[][]> matmat = new FactBase<>(matrix, matrix);
 		FactBase<double[][], double[]> matvec = new FactBase<>(matrix, vector);
-		engine.registerSolver("PLUS", vecvec, new VectorCalc());
-		engine.registerSolver("MULT", vecvec, new VectorCalc());
-		engine.registerSolver("PLUS", matmat, new MatrixCalc());
-		engine.registerSolver("MULT", matmat, new MatrixCalc());
-		engine.registerSolver("MULT", matvec, new MatVecCalc());
+		engine.registerLazySolver("PLUS", vecvec, VectorCalc::new);
+		engine.registerLazySolver("MULT", vecvec, LinearAlgebraPlugin::dotProduct);
+		engine.registerLazySolver("PLUS", matmat, MatrixCalc::new);
+		engine.registerLazySolver("MULT", matmat, LinearAlgebraPlugin::matrixMult);
+		engine.registerLazySolver("MULT", matvec, MatVecCalc::new);
+		FactBase<Vector, Vector> densevec = new FactBase<>(new Vector(0), new Vector(0));
+		FactBase<Matrix, Matrix> densemat = new FactBase<>(new Matrix(0, 0), new Matrix(0, 0));
+		FactBase<Matrix, Vector> densematvec = new FactBase<>(new Matrix(0, 0), new Vector(0));
+		engine.registerLazySolver("PLUS", densevec, LinearAlgebraPlugin::denseVectors);
+		engine.registerLazySolver("MULT", densevec, LinearAlgebraPlugin::denseDotProduct);
+		engine.registerLazySolver("PLUS", densemat, LinearAlgebraPlugin::denseMatrices);
+		engine.registerLazySolver("MULT", densemat, LinearAlgebraPlugin::denseMatrices);
+		engine.registerLazySolver("MULT", densematvec, LinearAlgebraPlugin::denseMatVec);
+		FactBase<OffHeapVector, OffHeapVector> offheapvec = new FactBase<>(OffHeapVector.allocate(0),
+				OffHeapVector.allocate(0));
+		FactBase<OffHeapMatrix, OffHeapMatrix> offheapmat = new FactBase<>(OffHeapMatrix.allocate(0, 0),
+				OffHeapMatrix.allocate(0, 0));
+		FactBase<OffHeapMatrix, OffHeapVector> offheapmatvec = new FactBase<>(OffHeapMatrix.allocate(0, 0),
+				OffHeapVector.allocate(0));
+		engine.registerLazySolver("PLUS", offheapvec, LinearAlgebraPlugin::offHeapVectors);
+		engine.registerLazySolver("MULT", offheapvec, LinearAlgebraPlugin::offHeapDotProduct);
+		engine.registerLazySolver("PLUS", offheapmat, LinearAlgebraPlugin::offHeapMatrices);
+		engine.registerLazySolver("MULT", offheapmat, LinearAlgebraPlugin::offHeapMatrices);
+		engine.registerLazySolver("MULT", offheapmatvec, LinearAlgebraPlugin::offHeapMatVec);
+		SparseMatrix sparse = new SparseMatrix(0, 0);
+		FactBase<SparseMatrix, SparseMatrix> sparsemat = new FactBase<>(sparse, sparse);
+		FactBase<SparseMatrix, double[]> sparsevec = new FactBase<>(sparse, vector);
+		FactBase<SparseMatrix, Vector> sparsedensevec = new FactBase<>(sparse, new Vector(0));
+		FactBase<SparseMatrix, Matrix> sparsedensemat = new FactBase<>(sparse, new Matrix(0, 0));
+		engine.registerLazySolver("PLUS", sparsemat, SparseCalc::new);
+		engine.registerLazySolver("MULT", sparsemat, SparseCalc::new);
+		engine.registerLazySolver("MULT", sparsevec, LinearAlgebraPlugin::sparseMatVec);
+		engine.registerLazySolver("MULT", sparsedensevec, LinearAlgebraPlugin::sparseDenseMatVec);
+		engine.registerLazySolver("PLUS", sparsedensemat, LinearAlgebraPlugin::sparseDenseMatrices);
+		engine.registerLazySolver("MULT", sparsedensemat, LinearAlgebraPlugin::sparseDenseMatrices);
+		if (engine instanceof AxelaEngine) {
+			AxelaEngine axela = (AxelaEngine) engine;
+			// large products must not delay interactive solves on a scheduler
+			axela.prioritize("MULT", matmat, SolveScheduler.Priority.BATCH);
+			axela.prioritize("MULT", densemat, SolveScheduler.Priority.BATCH);
+			axela.prioritize("MULT", offheapmat, SolveScheduler.Priority.BATCH);
+			axela.prioritize("MULT", sparsemat, SolveScheduler.Priority.BATCH);
+			axela.prioritize("MULT", sparsedensemat, SolveScheduler.Priority.BATCH);
+			// working sets admitted to the memory budget of the engine, if any
+			VectorCalc vectors = new VectorCalc();
+			MatrixCalc matrices = new MatrixCalc();
+			MatVecCalc products = new MatVecCalc();
+			axela.estimate("PLUS", vecvec, f -> vectors.footprint("PLUS", f));
+			axela.estimate("PLUS", matmat, f -> matrices.footprint("PLUS", f));
+			axela.estimate("MULT", matmat, f -> matrices.footprint("MULT", f));
+			axela.estimate("MULT", matvec, f -> products.footprint("MULT", f));
+			axela.estimate("MULT", densemat, f -> matrices.multFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+			// the other flat kernels allocate nothing but the solution
+			axela.estimate("PLUS", densevec, f -> LinearAlgebra.denseFootprint(f.getHints(), f.getFact1().length(), 1));
+			axela.estimate("PLUS", densemat, f -> LinearAlgebra.denseFootprint(f.getHints(), f.getFact1().getRows(),
+					f.getFact1().getColumns()));
+			axela.estimate("MULT", densematvec,
+					f -> LinearAlgebra.denseFootprint(f.getHints(), f.getFact1().getRows(), 1));
+			// off-heap kernels stream, only the tiles of a product are on the heap
+			axela.estimate("MULT", offheapmat, f -> matrices.multFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+			// sparse solutions are bounded by the multiplications of their non-zeros
+			SparseCalc sparses = new SparseCalc();
+			axela.estimate("PLUS", sparsemat, f -> sparses.footprint("PLUS", f));
+			axela.estimate("MULT", sparsemat, f -> sparses.footprint("MULT", f));
+			axela.estimate("MULT", sparsevec, f -> sparses.multFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+			axela.estimate("MULT", sparsedensevec,
+					f -> sparses.multFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+			axela.estimate("PLUS", sparsedensemat, f -> sparses.addFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+			axela.estimate("MULT", sparsedensemat,
+					f -> sparses.multFootprint(f.getFact1(), f.getFact2(), f.getHints()));
+		}
+	}
+
+	/**
+	 * Dot product of two vectors, solved without boxing by solveAsDouble.
+	 * 
+	 * @return scalar solver
+	 */
+	static DoubleIris<String, FactBase<double[], double[]>> dotProduct() {
+		final VectorCalc calc = new VectorCalc();
+		return (p, f) -> {
+			Objects.requireNonNull(f, "facts are a NullPointer!");
+			return calc.dot(f.getFact1(), f.getFact2(), f.getHints());
+		};
+	}
+
+	static Iris<String, FactBase<Vector, Vector>, Object> denseVectors() {
+		final VectorCalc calc = new VectorCalc();
+		return LinearAlgebra.solver(calc::add, calc::dot);
+	}
+
+	static DoubleIris<String, FactBase<Vector, Vector>> denseDotProduct() {
+		final VectorCalc calc = new VectorCalc();
+		return (p, f) -> {
+			Objects.requireNonNull(f, "facts are a NullPointer!");
+			return calc.dot(f.getFact1(), f.getFact2(), f.getHints());
+		};
+	}
+
+	static Iris<String, FactBase<Matrix, Matrix>, Matrix> denseMatrices() {
+		final MatrixCalc calc = new MatrixCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<Matrix, Vector>, Vector> denseMatVec() {
+		final MatVecCalc calc = new MatVecCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<OffHeapVector, OffHeapVector>, Object> offHeapVectors() {
+		final VectorCalc calc = new VectorCalc();
+		return LinearAlgebra.solver(calc::add, calc::dot);
+	}
+
+	static DoubleIris<String, FactBase<OffHeapVector, OffHeapVector>> offHeapDotProduct() {
+		final VectorCalc calc = new VectorCalc();
+		return (p, f) -> {
+			Objects.requireNonNull(f, "facts are a NullPointer!");
+			return calc.dot(f.getFact1(), f.getFact2(), f.getHints());
+		};
+	}
+
+	static Iris<String, FactBase<OffHeapMatrix, OffHeapMatrix>, OffHeapMatrix> offHeapMatrices() {
+		final MatrixCalc calc = new MatrixCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<OffHeapMatrix, OffHeapVector>, OffHeapVector> offHeapMatVec() {
+		final MatVecCalc calc = new MatVecCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<SparseMatrix, double[]>, double[]> sparseMatVec() {
+		final SparseCalc calc = new SparseCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<SparseMatrix, Vector>, Vector> sparseDenseMatVec() {
+		final SparseCalc calc = new SparseCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	static Iris<String, FactBase<SparseMatrix, Matrix>, Matrix> sparseDenseMatrices() {
+		final SparseCalc calc = new SparseCalc();
+		return LinearAlgebra.solver(calc::add, calc::mult);
+	}
+
+	/**
+	 * Matrix multiplication choosing between the serial and the parallel kernel
+	 * by measured cost, unless the hints of the facts fix the parallelism.
+	 * 
+	 * @return adaptive solver
+	 */
+	static AdaptiveIris<String, FactBase<double[][], double[][]>, double[][]> matrixMult() {
+		final MatrixCalc calc = new MatrixCalc();
+		AdaptiveIris<String, FactBase<double[][], double[][]>, double[][]> mult = new AdaptiveIris<>(
+				f -> work(f.getFact1(), f.getFact2()),
+				f -> preference(f.getHints()));
+		mult.addCandidate(SERIAL, (p, f) -> calc.mult(f.getFact1(), f.getFact2(), f.getHints().withParallelism(1)));
+		mult.addCandidate(PARALLEL, (p, f) -> calc.mult(f.getFact1(), f.getFact2(), parallel(f.getHints())));
+		return mult;
+	}
+
+	static String preference(ExecutionHints hints) {
+		if (hints.getParallelism() == 1)
+			return SERIAL;
+		if (hints.getParallelism() > 1)
+			return PARALLEL;
+		return null;
+	}
+
+	// the parallel candidate uses all processors unless the hints limit it
+	static ExecutionHints parallel(ExecutionHints hints) {
+		if (hints.getParallelism() > 1)
+			return hints;
+		return hints.withParallelism(Runtime.getRuntime().availableProcessors());
+	}
+
+	// number of multiplications of a*b, the solver checks the dimensions
+	static double work(double[][] a, double[][] b) {
+		if (0 == b.length)
+			return 0;
+		return (double) a.length * b.length * b[0].length;
 	}
 }
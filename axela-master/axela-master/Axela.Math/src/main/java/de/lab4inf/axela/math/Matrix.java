@@ -0,0 +1,252 @@
+package de.lab4inf.axela.math;
+
+import java.util.Objects;
+
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Dense matrix backed by one contiguous double array. Elements are addressed by
+ * an offset and a row and column stride, so sub-blocks, transposes, rows and
+ * columns are views sharing the elements without copying. Writes to a view
+ * are visible in the matrix it was taken from.
+ */
+public final class Matrix implements Weighable {
+	private final double[] data;
+	private final int offset;
+	private final int rows;
+	private final int cols;
+	private final int rowStride;
+	private final int colStride;
+
+	/**
+	 * New zero matrix with row major layout.
+	 * 
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 */
+	public Matrix(int rows, int cols) {
+		this(new double[checkedSize(rows, cols)], 0, rows, cols, cols, 1);
+	}
+
+	Matrix(double[] data, int offset, int rows, int cols, int rowStride, int colStride) {
+		this.data = data;
+		this.offset = offset;
+		this.rows = rows;
+		this.cols = cols;
+		this.rowStride = rowStride;
+		this.colStride = colStride;
+	}
+
+	private static int checkedSize(int rows, int cols) {
+		if (rows < 0 || cols < 0)
+			throw new IllegalArgumentException("negative dimension");
+		long size = (long) rows * cols;
+		if (size > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException(String.format("%dx%d matrix too large", rows, cols));
+		return (int) size;
+	}
+
+	/**
+	 * Matrix using the row major elements of the array without copying.
+	 * 
+	 * @param data elements, row after row
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 * @return matrix backed by the array
+	 */
+	public static Matrix wrap(double[] data, int rows, int cols) {
+		Objects.requireNonNull(data, "data is a NullPointer!");
+		if (checkedSize(rows, cols) != data.length)
+			throw new IllegalArgumentException("dimensions wrong!");
+		return new Matrix(data, 0, rows, cols, cols, 1);
+	}
+
+	/**
+	 * Contiguous copy of a matrix stored as array of rows.
+	 * 
+	 * @param a rectangular matrix
+	 * @return row major copy
+	 */
+	public static Matrix of(double[][] a) {
+		Objects.requireNonNull(a, "matrix is a NullPointer!");
+		int cols = 0 == a.length ? 0 : a[0].length;
+		Matrix m = new Matrix(a.length, cols);
+		for (int i = 0; i < a.length; i++) {
+			if (a[i].length != cols)
+				throw new IllegalArgumentException("dimensions wrong!");
+			System.arraycopy(a[i], 0, m.data, i * cols, cols);
+		}
+		return m;
+	}
+
+	/**
+	 * @return copy as array of rows
+	 */
+	public double[][] toArray() {
+		double[][] a = new double[rows][cols];
+		for (int i = 0; i < rows; i++) {
+			if (1 == colStride) {
+				System.arraycopy(data, offset + i * rowStride, a[i], 0, cols);
+			} else {
+				for (int j = 0; j < cols; j++)
+					a[i][j] = data[offset + i * rowStride + j * colStride];
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * @return contiguous row major copy
+	 */
+	public Matrix copy() {
+		Matrix m = new Matrix(rows, cols);
+		m.assign(this);
+		return m;
+	}
+
+	/**
+	 * Copy the elements of the other matrix into this one.
+	 * 
+	 * @param other matrix with the same dimensions
+	 */
+	public void assign(Matrix other) {
+		if (rows != other.rows || cols != other.cols)
+			throw new IllegalArgumentException("dimensions wrong!");
+		for (int i = 0; i < rows; i++) {
+			int src = other.offset + i * other.rowStride;
+			int dst = offset + i * rowStride;
+			if (1 == colStride && 1 == other.colStride) {
+				System.arraycopy(other.data, src, data, dst, cols);
+			} else {
+				for (int j = 0; j < cols; j++)
+					data[dst + j * colStride] = other.data[src + j * other.colStride];
+			}
+		}
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return cols;
+	}
+
+	// elements of this matrix, a view weighs as a copy would
+	@Override
+	public long weight() {
+		return 8L * rows * cols;
+	}
+
+	public double get(int i, int j) {
+		return data[index(i, j)];
+	}
+
+	public void set(int i, int j, double value) {
+		data[index(i, j)] = value;
+	}
+
+	private int index(int i, int j) {
+		Objects.checkIndex(i, rows);
+		Objects.checkIndex(j, cols);
+		return offset + i * rowStride + j * colStride;
+	}
+
+	/**
+	 * View of a sub-block.
+	 * 
+	 * @param row  first row of the block
+	 * @param col  first column of the block
+	 * @param rows number of rows of the block
+	 * @param cols number of columns of the block
+	 * @return view sharing the elements
+	 */
+	public Matrix view(int row, int col, int rows, int cols) {
+		Objects.checkFromIndexSize(row, rows, this.rows);
+		Objects.checkFromIndexSize(col, cols, this.cols);
+		return new Matrix(data, offset + row * rowStride + col * colStride, rows, cols, rowStride, colStride);
+	}
+
+	/**
+	 * @return transposed view sharing the elements
+	 */
+	public Matrix transpose() {
+		return new Matrix(data, offset, cols, rows, colStride, rowStride);
+	}
+
+	/**
+	 * @param i index of the row
+	 * @return view of the row
+	 */
+	public Vector row(int i) {
+		Objects.checkIndex(i, rows);
+		return new Vector(data, offset + i * rowStride, cols, colStride);
+	}
+
+	/**
+	 * @param j index of the column
+	 * @return view of the column
+	 */
+	public Vector column(int j) {
+		Objects.checkIndex(j, cols);
+		return new Vector(data, offset + j * colStride, rows, rowStride);
+	}
+
+	/**
+	 * @return true if the rows are stored without gaps one after another
+	 */
+	public boolean isContiguous() {
+		return 1 == colStride && (cols == rowStride || rows <= 1);
+	}
+
+	// raw layout for the kernels of this package
+	double[] data() {
+		return data;
+	}
+
+	int offset() {
+		return offset;
+	}
+
+	int rowStride() {
+		return rowStride;
+	}
+
+	int colStride() {
+		return colStride;
+	}
+
+	// element based, views and copies with equal elements are equal
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Matrix))
+			return false;
+		Matrix other = (Matrix) obj;
+		if (rows != other.rows || cols != other.cols)
+			return false;
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				if (Double.doubleToLongBits(data[offset + i * rowStride + j * colStride]) != Double
+						.doubleToLongBits(other.data[other.offset + i * other.rowStride + j * other.colStride]))
+					return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 31 * rows + cols;
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++) {
+				long bits = Double.doubleToLongBits(data[offset + i * rowStride + j * colStride]);
+				hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+			}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Matrix[%dx%d]", rows, cols);
+	}
+}
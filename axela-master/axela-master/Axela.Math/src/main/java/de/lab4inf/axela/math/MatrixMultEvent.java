@@ -0,0 +1,30 @@
+package de.lab4inf.axela.math;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning one matrix multiplication C = A*B of the
+ * dimensions (rows x inner) * (inner x cols).
+ */
+@Name("de.lab4inf.axela.MatrixMult")
+@Label("Axela Matrix Multiplication")
+@Category({ "Axela", "Math" })
+@Description("Kernel time of LinearAlgebra.MatrixCalc.mult")
+@StackTrace(false)
+final class MatrixMultEvent extends jdk.jfr.Event {
+	@Label("Rows")
+	int rows;
+
+	@Label("Inner Dimension")
+	int inner;
+
+	@Label("Columns")
+	int cols;
+
+	@Label("Parallel")
+	boolean parallel;
+}
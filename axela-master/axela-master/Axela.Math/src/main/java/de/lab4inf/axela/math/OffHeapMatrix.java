@@ -0,0 +1,169 @@
+package de.lab4inf.axela.math;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Row major matrix of doubles outside of the heap, its elements are an
+ * OffHeapVector within direct memory or mapped from a file. Rows and columns
+ * are ints, the number of elements may exceed an array.
+ * <p>
+ * Like their elements, matrices are only equal to themselves.
+ */
+public final class OffHeapMatrix implements Weighable {
+	private final OffHeapVector elements;
+	private final int rows;
+	private final int cols;
+
+	private OffHeapMatrix(OffHeapVector elements, int rows, int cols) {
+		this.elements = elements;
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	private static long size(int rows, int cols) {
+		if (rows < 0 || cols < 0)
+			throw new IllegalArgumentException("negative dimension");
+		return (long) rows * cols;
+	}
+
+	/**
+	 * New zero matrix in direct memory.
+	 *
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 * @return matrix outside of the heap
+	 */
+	public static OffHeapMatrix allocate(int rows, int cols) {
+		return new OffHeapMatrix(OffHeapVector.allocate(size(rows, cols)), rows, cols);
+	}
+
+	/**
+	 * Matrix of the row major elements of the vector without copying.
+	 *
+	 * @param elements row after row
+	 * @param rows     number of rows
+	 * @param cols     number of columns
+	 * @return matrix backed by the vector
+	 */
+	public static OffHeapMatrix wrap(OffHeapVector elements, int rows, int cols) {
+		Objects.requireNonNull(elements, "elements are a NullPointer!");
+		if (size(rows, cols) != elements.length())
+			throw new IllegalArgumentException("dimensions wrong!");
+		return new OffHeapMatrix(elements, rows, cols);
+	}
+
+	/**
+	 * Copy of the array in direct memory.
+	 *
+	 * @param a rows of the matrix
+	 * @return matrix outside of the heap
+	 */
+	public static OffHeapMatrix of(double[][] a) {
+		Objects.requireNonNull(a, "array is a NullPointer!");
+		int cols = 0 == a.length ? 0 : a[0].length;
+		OffHeapMatrix m = allocate(a.length, cols);
+		for (int i = 0; i < a.length; i++) {
+			if (a[i].length != cols)
+				throw new IllegalArgumentException("dimensions wrong!");
+			m.elements.put((long) i * cols, a[i], 0, cols);
+		}
+		return m;
+	}
+
+	/**
+	 * Matrix of the row major doubles of a file in the native byte order.
+	 *
+	 * @param file     to map
+	 * @param position of the first element in bytes
+	 * @param rows     number of rows
+	 * @param cols     number of columns
+	 * @param writable true to write into the file, which is created or extended
+	 *                 if needed
+	 * @return matrix backed by the file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static OffHeapMatrix map(Path file, long position, int rows, int cols, boolean writable)
+			throws IOException {
+		return map(file, position, rows, cols, writable, ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Matrix of the row major doubles of a file.
+	 *
+	 * @param file     to map
+	 * @param position of the first element in bytes
+	 * @param rows     number of rows
+	 * @param cols     number of columns
+	 * @param writable true to write into the file, which is created or extended
+	 *                 if needed
+	 * @param order    byte order of the file
+	 * @return matrix backed by the file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static OffHeapMatrix map(Path file, long position, int rows, int cols, boolean writable,
+			ByteOrder order) throws IOException {
+		return new OffHeapMatrix(OffHeapVector.map(file, position, size(rows, cols), writable, order), rows, cols);
+	}
+
+	/**
+	 * @return copy of the elements on the heap
+	 */
+	public double[][] toArray() {
+		double[][] a = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			elements.get((long) i * cols, a[i], 0, cols);
+		return a;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return cols;
+	}
+
+	@Override
+	public long weight() {
+		return elements.weight();
+	}
+
+	public double get(int i, int j) {
+		return elements.get(index(i, j));
+	}
+
+	public void set(int i, int j, double value) {
+		elements.set(index(i, j), value);
+	}
+
+	private long index(int i, int j) {
+		Objects.checkIndex(i, rows);
+		Objects.checkIndex(j, cols);
+		return (long) i * cols + j;
+	}
+
+	/**
+	 * @return the row major elements, shared with this matrix
+	 */
+	public OffHeapVector elements() {
+		return elements;
+	}
+
+	/**
+	 * Writes the changes of a mapped matrix to its file, without effect
+	 * otherwise.
+	 */
+	public void force() {
+		elements.force();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("OffHeapMatrix[%dx%d%s]", rows, cols, elements.isMapped() ? ", mapped" : "");
+	}
+}
@@ -0,0 +1,288 @@
+package de.lab4inf.axela.math;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Vector of doubles outside of the heap, within direct ByteBuffers or mapped
+ * from a file. The elements are split into segments of at most 2^27 elements,
+ * since one buffer holds at most 2 GB, so vectors are as long as the file or
+ * the direct memory allows. The kernels of the calculators stream over the
+ * segments without copying the elements onto the heap.
+ * <p>
+ * A mapped vector is a window onto its file, writes change the file and
+ * changes of the file are visible. Therefore vectors are only equal to
+ * themselves.
+ */
+public final class OffHeapVector implements Weighable {
+	/** elements of a segment, 1 GB */
+	static final int SEGMENT = 1 << 27;
+
+	private final ByteBuffer[] segments;
+	private final long length;
+	private final int segment;
+	private final boolean mapped;
+
+	private OffHeapVector(ByteBuffer[] segments, long length, int segment, boolean mapped) {
+		this.segments = segments;
+		this.length = length;
+		this.segment = segment;
+		this.mapped = mapped;
+	}
+
+	/**
+	 * New zero vector in direct memory with the native byte order.
+	 *
+	 * @param length number of elements
+	 * @return vector outside of the heap
+	 */
+	public static OffHeapVector allocate(long length) {
+		return allocate(length, SEGMENT);
+	}
+
+	static OffHeapVector allocate(long length, int segment) {
+		ByteBuffer[] segments = new ByteBuffer[segments(length, segment)];
+		for (int s = 0; s < segments.length; s++) {
+			int n = (int) Math.min(segment, length - (long) s * segment);
+			segments[s] = ByteBuffer.allocateDirect(n * Double.BYTES).order(ByteOrder.nativeOrder());
+		}
+		return new OffHeapVector(segments, length, segment, false);
+	}
+
+	/**
+	 * Copy of the array in direct memory.
+	 *
+	 * @param a elements
+	 * @return vector outside of the heap
+	 */
+	public static OffHeapVector of(double[] a) {
+		Objects.requireNonNull(a, "array is a NullPointer!");
+		OffHeapVector v = allocate(a.length);
+		v.put(0, a, 0, a.length);
+		return v;
+	}
+
+	/**
+	 * Vector of the doubles of a file in the native byte order.
+	 *
+	 * @param file     to map
+	 * @param position of the first element in bytes
+	 * @param length   number of elements
+	 * @param writable true to write into the file, which is created or extended
+	 *                 if needed
+	 * @return vector backed by the file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static OffHeapVector map(Path file, long position, long length, boolean writable) throws IOException {
+		return map(file, position, length, writable, ByteOrder.nativeOrder(), SEGMENT);
+	}
+
+	/**
+	 * Vector of the doubles of a file.
+	 *
+	 * @param file     to map
+	 * @param position of the first element in bytes
+	 * @param length   number of elements
+	 * @param writable true to write into the file, which is created or extended
+	 *                 if needed
+	 * @param order    byte order of the file
+	 * @return vector backed by the file
+	 * @throws IOException if the file can not be mapped
+	 */
+	public static OffHeapVector map(Path file, long position, long length, boolean writable, ByteOrder order)
+			throws IOException {
+		return map(file, position, length, writable, order, SEGMENT);
+	}
+
+	static OffHeapVector map(Path file, long position, long length, boolean writable, ByteOrder order, int segment)
+			throws IOException {
+		Objects.requireNonNull(file, "file is a NullPointer!");
+		Objects.requireNonNull(order, "order is a NullPointer!");
+		if (position < 0)
+			throw new IllegalArgumentException("negative position");
+		ByteBuffer[] segments = new ByteBuffer[segments(length, segment)];
+		// the mappings stay valid after the channel is closed
+		try (FileChannel channel = writable
+				? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)
+				: FileChannel.open(file, StandardOpenOption.READ)) {
+			if (!writable && position + length * Double.BYTES > channel.size())
+				throw new IllegalArgumentException(String.format("%s holds less than %d elements", file, length));
+			FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+			for (int s = 0; s < segments.length; s++) {
+				long n = Math.min(segment, length - (long) s * segment);
+				segments[s] = channel.map(mode, position + (long) s * segment * Double.BYTES, n * Double.BYTES)
+						.order(order);
+			}
+		}
+		return new OffHeapVector(segments, length, segment, true);
+	}
+
+	private static int segments(long length, int segment) {
+		if (length < 0)
+			throw new IllegalArgumentException("negative length");
+		long n = (length + segment - 1) / segment;
+		if (n > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format("vector of %d elements too large", length));
+		return (int) n;
+	}
+
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public long weight() {
+		return 8L * length;
+	}
+
+	public double get(long i) {
+		check(i, 1);
+		return segments[(int) (i / segment)].getDouble((int) (i % segment) * Double.BYTES);
+	}
+
+	public void set(long i, double value) {
+		check(i, 1);
+		segments[(int) (i / segment)].putDouble((int) (i % segment) * Double.BYTES, value);
+	}
+
+	/**
+	 * Copy elements of this vector into an array.
+	 *
+	 * @param from  first element of this vector
+	 * @param dst   array
+	 * @param index within the array
+	 * @param n     number of elements
+	 */
+	public void get(long from, double[] dst, int index, int n) {
+		check(from, n);
+		Objects.checkFromIndexSize(index, n, dst.length);
+		for (long i = from; n > 0;) {
+			ByteBuffer s = segment(i);
+			int o = index(i), len = Math.min(n, remaining(i));
+			for (int k = 0; k < len; k++)
+				dst[index + k] = s.getDouble((o + k) * Double.BYTES);
+			i += len;
+			index += len;
+			n -= len;
+		}
+	}
+
+	/**
+	 * Copy elements of an array into this vector.
+	 *
+	 * @param from  first element of this vector
+	 * @param src   array
+	 * @param index within the array
+	 * @param n     number of elements
+	 */
+	public void put(long from, double[] src, int index, int n) {
+		check(from, n);
+		Objects.checkFromIndexSize(index, n, src.length);
+		for (long i = from; n > 0;) {
+			ByteBuffer s = segment(i);
+			int o = index(i), len = Math.min(n, remaining(i));
+			for (int k = 0; k < len; k++)
+				s.putDouble((o + k) * Double.BYTES, src[index + k]);
+			i += len;
+			index += len;
+			n -= len;
+		}
+	}
+
+	// Objects.checkFromIndexSize of long indices needs Java 16
+	private void check(long from, long n) {
+		if (from < 0 || n < 0 || from > length - n)
+			throw new IndexOutOfBoundsException(
+					String.format("range [%d, %d) out of bounds for length %d", from, from + n, length));
+	}
+
+	/**
+	 * @return copy of the elements on the heap
+	 */
+	public double[] toArray() {
+		if (length > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException(String.format("vector of %d elements too large", length));
+		double[] a = new double[(int) length];
+		get(0, a, 0, a.length);
+		return a;
+	}
+
+	/**
+	 * @return true if backed by a file
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * Writes the changes of a mapped vector to its file, without effect
+	 * otherwise.
+	 */
+	public void force() {
+		if (!mapped)
+			return;
+		for (ByteBuffer s : segments)
+			if (!s.isReadOnly())
+				((MappedByteBuffer) s).force();
+	}
+
+	// segment and index of element i for the kernels of this package
+	ByteBuffer segment(long i) {
+		return segments[(int) (i / segment)];
+	}
+
+	int index(long i) {
+		return (int) (i % segment);
+	}
+
+	// elements from i to the end of its segment
+	int remaining(long i) {
+		return (int) Math.min(segment - i % segment, length - i);
+	}
+
+	/**
+	 * Streams over n elements of x and y segment by segment.
+	 *
+	 * @return sum of x[xi+k]*y[yi+k] for k in [0, n)
+	 */
+	static double dot(OffHeapVector x, long xi, OffHeapVector y, long yi, long n, boolean single) {
+		double sum = 0;
+		while (n > 0) {
+			int len = (int) Math.min(n, Math.min(x.remaining(xi), y.remaining(yi)));
+			sum += DenseKernels.dot(x.segment(xi), x.index(xi), y.segment(yi), y.index(yi), len, single);
+			xi += len;
+			yi += len;
+			n -= len;
+		}
+		return single ? (float) sum : sum;
+	}
+
+	/**
+	 * Streams r[ri+k] = x[xi+k] + y[yi+k] for k in [0, n) segment by segment.
+	 */
+	static void add(OffHeapVector x, long xi, OffHeapVector y, long yi, OffHeapVector r, long ri, long n,
+			boolean single) {
+		while (n > 0) {
+			int len = (int) Math.min(n, Math.min(Math.min(x.remaining(xi), y.remaining(yi)), r.remaining(ri)));
+			DenseKernels.add(x.segment(xi), x.index(xi), y.segment(yi), y.index(yi), r.segment(ri), r.index(ri), len,
+					single);
+			xi += len;
+			yi += len;
+			ri += len;
+			n -= len;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("OffHeapVector[%d%s]", length, mapped ? ", mapped" : "");
+	}
+}
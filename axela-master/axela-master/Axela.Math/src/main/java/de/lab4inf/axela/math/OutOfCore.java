@@ -0,0 +1,229 @@
+package de.lab4inf.axela.math;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+
+/**
+ * Out-of-core matrix multiplication C = A*B of OffHeapMatrix facts, which may
+ * be larger than the heap or the physical memory if mapped from files. C is
+ * split into tiles of at most tile x tile elements. Each tile of C is summed
+ * up on the heap from the products of the tiles along a row of A and a column
+ * of B, which are copied from their off-heap elements and multiplied by Gemm,
+ * and then written back once.
+ * <p>
+ * While one pair of tiles is multiplied the next pair is read on the prefetch
+ * executor, so the page faults of a mapped file overlap the arithmetic. A
+ * prefetch not yet started when its tiles are needed is run by the worker
+ * itself, therefore any executor works and none is waited for idly.
+ * <p>
+ * Each worker holds one tile of C and two pairs of tiles of A and B, the heap
+ * used is bounded by the tile size and the parallelism, not by the matrices.
+ */
+public final class OutOfCore {
+	/** dimension of the tiles, one tile of doubles takes 8 MB */
+	public static final int TILE = 1024;
+
+	/** largest dimension of the tiles, so a tile fits into an array */
+	public static final int MAX_TILE = 1 << 14;
+
+	/** Gemm with its default block sizes on tiles of the default dimension */
+	public static final OutOfCore DEFAULT = new OutOfCore(Gemm.DEFAULT, TILE);
+
+	private final Gemm gemm;
+	private final int tile;
+	private final Executor prefetch;
+
+	/**
+	 * Reads the tiles ahead on daemon threads shared by all instances.
+	 *
+	 * @param gemm kernel of the products of the tiles
+	 * @param tile maximal rows and columns of a tile
+	 */
+	public OutOfCore(Gemm gemm, int tile) {
+		this(gemm, tile, Readers.POOL);
+	}
+
+	/**
+	 * @param gemm     kernel of the products of the tiles
+	 * @param tile     maximal rows and columns of a tile
+	 * @param prefetch executor reading the next tiles
+	 */
+	public OutOfCore(Gemm gemm, int tile, Executor prefetch) {
+		this.gemm = Objects.requireNonNull(gemm, "gemm is a NullPointer!");
+		this.prefetch = Objects.requireNonNull(prefetch, "prefetch is a NullPointer!");
+		if (tile <= 0 || tile > MAX_TILE)
+			throw new IllegalArgumentException(String.format("tile must be in [1, %d]", MAX_TILE));
+		this.tile = tile;
+	}
+
+	/**
+	 * Largest tile dimension, a multiple of 64, whose workers fit into a budget.
+	 *
+	 * @param bytes       of the heap granted to the multiplication
+	 * @param parallelism number of workers
+	 * @return tile dimension, at least 64
+	 */
+	public static int tileFor(long bytes, int parallelism) {
+		if (bytes <= 0 || parallelism <= 0)
+			throw new IllegalArgumentException("bytes and parallelism must be positive");
+		// five tiles and the packing buffers, which are below two tiles
+		long side = (long) Math.sqrt(bytes / (7. * Double.BYTES * parallelism));
+		return (int) Math.max(64, Math.min(MAX_TILE, side / 64 * 64));
+	}
+
+	public Gemm getGemm() {
+		return gemm;
+	}
+
+	public int getTile() {
+		return tile;
+	}
+
+	/**
+	 * @param rows of C
+	 * @param cols of C
+	 * @return number of tiles of C
+	 */
+	public int tiles(int rows, int cols) {
+		long n = (long) count(rows) * count(cols);
+		if (n > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format("%dx%d tiles too many", count(rows), count(cols)));
+		return (int) n;
+	}
+
+	private int count(int n) {
+		return (int) (((long) n + tile - 1) / tile);
+	}
+
+	/**
+	 * Bytes of the tiles and packing buffers of all workers.
+	 *
+	 * @param rows    of A and C
+	 * @param inner   dimension of A*B
+	 * @param cols    of B and C
+	 * @param workers number of workers, the calling thread is one at least
+	 * @return bytes allocated
+	 */
+	long footprint(int rows, int inner, int cols, int workers) {
+		if (0 == rows || 0 == inner || 0 == cols)
+			return 0;
+		long mb = Math.min(tile, rows), kb = Math.min(tile, inner), nb = Math.min(tile, cols);
+		long worker = LinearAlgebra.bytes(mb * nb, 8) + 2 * LinearAlgebra.bytes(mb * kb, 8)
+				+ 2 * LinearAlgebra.bytes(kb * nb, 8) + gemm.footprint((int) mb, (int) kb, (int) nb);
+		return Math.max(1, Math.min(workers, tiles(rows, cols))) * worker;
+	}
+
+	/**
+	 * Calculates the tiles [from, to) of C = A*B, numbered row after row. The
+	 * tiles of A and B are read one step ahead, across the tiles of C.
+	 *
+	 * @param a      rows x inner
+	 * @param b      inner x cols
+	 * @param c      rows x cols
+	 * @param from   first tile of C
+	 * @param to     end of the tiles of C
+	 * @param single true for single precision
+	 * @param token  checked before each pair of tiles
+	 */
+	void mult(OffHeapMatrix a, OffHeapMatrix b, OffHeapMatrix c, int from, int to, boolean single,
+			CancellationToken token) {
+		if (from >= to)
+			return;
+		final int rows = c.getRows(), inner = a.getColumns(), cols = c.getColumns();
+		final int panels = count(inner), steps = (to - from) * panels;
+		final int mmax = Math.min(tile, rows), kmax = Math.min(tile, inner), nmax = Math.min(tile, cols);
+		final double[][] as = { new double[mmax * kmax], new double[mmax * kmax] };
+		final double[][] bs = { new double[kmax * nmax], new double[kmax * nmax] };
+		final double[] cs = new double[mmax * nmax];
+		FutureTask<Void> next = read(a, b, from, 0, as[0], bs[0]);
+		try {
+			for (int step = 0; step < steps; step++) {
+				final FutureTask<Void> current = next;
+				next = null;
+				await(current, token);
+				token.check();
+				if (step + 1 < steps)
+					next = read(a, b, from + (step + 1) / panels, (step + 1) % panels, as[(step + 1) & 1],
+							bs[(step + 1) & 1]);
+				final int t = from + step / panels, p = step % panels;
+				final int i = t / count(cols) * tile, j = t % count(cols) * tile, k = p * tile;
+				final int mb = Math.min(tile, rows - i), kb = Math.min(tile, inner - k), nb = Math.min(tile, cols - j);
+				gemm.mult(Gemm.Operand.of(new Matrix(as[step & 1], 0, mb, kb, kb, 1)),
+						Gemm.Operand.of(new Matrix(bs[step & 1], 0, kb, nb, nb, 1)),
+						Gemm.Operand.of(new Matrix(cs, 0, mb, nb, nb, 1)), 0, mb, 0, nb, kb, single, p > 0, token);
+				if (p + 1 == panels)
+					for (int r = 0; r < mb; r++)
+						c.elements().put((long) (i + r) * cols + j, cs, r * nb, nb);
+			}
+		} finally {
+			// nobody waits for the tiles read ahead of a failed step
+			if (null != next)
+				next.cancel(false);
+		}
+	}
+
+	// the tiles (t, p) of A and (p, t) of B for the tile t of C and the panel p
+	private FutureTask<Void> read(OffHeapMatrix a, OffHeapMatrix b, int t, int p, double[] at, double[] bt) {
+		final int i = t / count(b.getColumns()) * tile, j = t % count(b.getColumns()) * tile, k = p * tile;
+		final FutureTask<Void> task = new FutureTask<>(() -> {
+			copy(a, i, k, Math.min(tile, a.getRows() - i), Math.min(tile, a.getColumns() - k), at);
+			copy(b, k, j, Math.min(tile, b.getRows() - k), Math.min(tile, b.getColumns() - j), bt);
+		}, null);
+		try {
+			prefetch.execute(task);
+		} catch (RejectedExecutionException e) {
+			// read by the worker when needed
+		}
+		return task;
+	}
+
+	// rows x cols elements of m from (row, col) into a row major tile
+	private static void copy(OffHeapMatrix m, int row, int col, int rows, int cols, double[] tile) {
+		for (int r = 0; r < rows; r++)
+			m.elements().get((long) (row + r) * m.getColumns() + col, tile, r * cols, cols);
+	}
+
+	// runs a read not yet started, waits for a running one
+	private static void await(FutureTask<Void> task, CancellationToken token) {
+		task.run();
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			token.cancel();
+			throw new SolveCancelledException("solve interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("OutOfCore[tile=%d, %s]", tile, gemm);
+	}
+
+	/**
+	 * Daemon threads reading tiles, created on first use and ended when idle.
+	 */
+	private static final class Readers {
+		private static final AtomicInteger COUNT = new AtomicInteger();
+		static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "axela-prefetch-" + COUNT.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+}
@@ -0,0 +1,453 @@
+package de.lab4inf.axela.math;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) or compressed sparse column
+ * (CSC) format. The non-zeros of each row (CSR) or column (CSC) are stored one
+ * after another sorted by their column (row) index, a pointer per row (column)
+ * marks the first of them. Memory and the work of the products grow with the
+ * number of non-zeros instead of rows x cols.
+ * <p>
+ * Sparse matrices are immutable. The transpose shares the arrays, the
+ * transpose of a CSR matrix is a CSC matrix and vice versa. Matrices with equal
+ * elements are equal regardless of their format.
+ */
+public final class SparseMatrix implements Weighable {
+	/**
+	 * Major order of the compressed storage.
+	 */
+	public enum Format {
+		/** compressed sparse rows */
+		CSR,
+		/** compressed sparse columns */
+		CSC
+	}
+
+	private final Format format;
+	private final int rows;
+	private final int cols;
+	private final int[] pointers;
+	private final int[] indices;
+	private final double[] values;
+
+	/**
+	 * New zero matrix in CSR format.
+	 *
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 */
+	public SparseMatrix(int rows, int cols) {
+		this(Format.CSR, checked(rows, cols), cols, new int[rows + 1], new int[0], new double[0]);
+	}
+
+	SparseMatrix(Format format, int rows, int cols, int[] pointers, int[] indices, double[] values) {
+		this.format = format;
+		this.rows = rows;
+		this.cols = cols;
+		this.pointers = pointers;
+		this.indices = indices;
+		this.values = values;
+	}
+
+	private static int checked(int rows, int cols) {
+		if (rows < 0 || cols < 0)
+			throw new IllegalArgumentException("negative dimension");
+		return rows;
+	}
+
+	/**
+	 * Matrix of compressed arrays without copying, they must not be changed
+	 * afterwards.
+	 *
+	 * @param format   of the arrays
+	 * @param rows     number of rows
+	 * @param cols     number of columns
+	 * @param pointers first non-zero of each row (column) and the number of
+	 *                 non-zeros at the end
+	 * @param indices  column (row) of each non-zero, increasing within a row
+	 *                 (column)
+	 * @param values   of the non-zeros
+	 * @return sparse matrix backed by the arrays
+	 */
+	public static SparseMatrix wrap(Format format, int rows, int cols, int[] pointers, int[] indices,
+			double[] values) {
+		Objects.requireNonNull(format, "format is a NullPointer!");
+		Objects.requireNonNull(pointers, "pointers are a NullPointer!");
+		Objects.requireNonNull(indices, "indices are a NullPointer!");
+		Objects.requireNonNull(values, "values are a NullPointer!");
+		checked(rows, cols);
+		int major = Format.CSR == format ? rows : cols, minor = Format.CSR == format ? cols : rows;
+		if (pointers.length != major + 1 || 0 != pointers[0] || pointers[major] != indices.length
+				|| indices.length != values.length)
+			throw new IllegalArgumentException("dimensions wrong!");
+		for (int m = 0; m < major; m++) {
+			if (pointers[m] > pointers[m + 1])
+				throw new IllegalArgumentException(String.format("pointers decrease at %d", m));
+			for (int q = pointers[m]; q < pointers[m + 1]; q++) {
+				Objects.checkIndex(indices[q], minor);
+				if (q > pointers[m] && indices[q - 1] >= indices[q])
+					throw new IllegalArgumentException(String.format("indices of %d not increasing", m));
+			}
+		}
+		return new SparseMatrix(format, rows, cols, pointers, indices, values);
+	}
+
+	/**
+	 * Non-zeros of a dense matrix in CSR format.
+	 *
+	 * @param a rectangular matrix
+	 * @return sparse copy
+	 */
+	public static SparseMatrix of(double[][] a) {
+		return of(a, Format.CSR);
+	}
+
+	/**
+	 * Non-zeros of a dense matrix.
+	 *
+	 * @param a      rectangular matrix
+	 * @param format of the copy
+	 * @return sparse copy
+	 */
+	public static SparseMatrix of(double[][] a, Format format) {
+		Objects.requireNonNull(a, "matrix is a NullPointer!");
+		Objects.requireNonNull(format, "format is a NullPointer!");
+		final int rows = a.length, cols = 0 == rows ? 0 : a[0].length;
+		int nnz = 0;
+		for (double[] row : a) {
+			if (row.length != cols)
+				throw new IllegalArgumentException("dimensions wrong!");
+			for (double x : row)
+				if (0 != x)
+					nnz++;
+		}
+		final int[] pointers = new int[(Format.CSR == format ? rows : cols) + 1];
+		final int[] indices = new int[nnz];
+		final double[] values = new double[nnz];
+		if (Format.CSR == format) {
+			int q = 0;
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					if (0 != a[i][j]) {
+						indices[q] = j;
+						values[q++] = a[i][j];
+					}
+				}
+				pointers[i + 1] = q;
+			}
+		} else {
+			for (double[] row : a)
+				for (int j = 0; j < cols; j++)
+					if (0 != row[j])
+						pointers[j + 1]++;
+			for (int j = 0; j < cols; j++)
+				pointers[j + 1] += pointers[j];
+			final int[] next = Arrays.copyOf(pointers, cols);
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < cols; j++) {
+					if (0 != a[i][j]) {
+						int q = next[j]++;
+						indices[q] = i;
+						values[q] = a[i][j];
+					}
+				}
+			}
+		}
+		return new SparseMatrix(format, rows, cols, pointers, indices, values);
+	}
+
+	/**
+	 * Matrix of coordinate triples (row[k], col[k], value[k]), the values of
+	 * equal coordinates are summed up.
+	 *
+	 * @param rows   number of rows
+	 * @param cols   number of columns
+	 * @param row    of each triple
+	 * @param col    of each triple
+	 * @param value  of each triple
+	 * @param format of the matrix
+	 * @return sparse matrix
+	 */
+	public static SparseMatrix of(int rows, int cols, int[] row, int[] col, double[] value, Format format) {
+		Objects.requireNonNull(row, "rows are a NullPointer!");
+		Objects.requireNonNull(col, "columns are a NullPointer!");
+		Objects.requireNonNull(value, "values are a NullPointer!");
+		if (row.length != value.length || col.length != value.length)
+			throw new IllegalArgumentException("dimensions wrong!");
+		return triples(rows, cols, row, col, value, value.length, format);
+	}
+
+	// counting sort by the minor and then stable by the major index, O(n)
+	private static SparseMatrix triples(int rows, int cols, int[] row, int[] col, double[] value, int n,
+			Format format) {
+		Objects.requireNonNull(format, "format is a NullPointer!");
+		checked(rows, cols);
+		final int[] major = Format.CSR == format ? row : col, minor = Format.CSR == format ? col : row;
+		final int majors = Format.CSR == format ? rows : cols, minors = Format.CSR == format ? cols : rows;
+		final int[] start = new int[minors + 1];
+		for (int k = 0; k < n; k++) {
+			Objects.checkIndex(row[k], rows);
+			Objects.checkIndex(col[k], cols);
+			start[minor[k] + 1]++;
+		}
+		for (int m = 0; m < minors; m++)
+			start[m + 1] += start[m];
+		final int[] byMinor = new int[n];
+		for (int k = 0; k < n; k++)
+			byMinor[start[minor[k]]++] = k;
+		final int[] pointers = new int[majors + 1];
+		for (int k = 0; k < n; k++)
+			pointers[major[k] + 1]++;
+		for (int m = 0; m < majors; m++)
+			pointers[m + 1] += pointers[m];
+		final int[] next = Arrays.copyOf(pointers, majors);
+		int[] indices = new int[n];
+		double[] values = new double[n];
+		for (int k : byMinor) {
+			int q = next[major[k]]++;
+			indices[q] = minor[k];
+			values[q] = value[k];
+		}
+		// sum up the duplicates, which are neighbours now
+		int nnz = 0;
+		for (int m = 0; m < majors; m++) {
+			final int first = nnz;
+			for (int q = pointers[m]; q < pointers[m + 1]; q++) {
+				if (nnz > first && indices[nnz - 1] == indices[q]) {
+					values[nnz - 1] += values[q];
+				} else {
+					indices[nnz] = indices[q];
+					values[nnz++] = values[q];
+				}
+			}
+			pointers[m] = first;
+		}
+		pointers[majors] = nnz;
+		if (nnz < n) {
+			indices = Arrays.copyOf(indices, nnz);
+			values = Arrays.copyOf(values, nnz);
+		}
+		return new SparseMatrix(format, rows, cols, pointers, indices, values);
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getColumns() {
+		return cols;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return number of stored elements
+	 */
+	public int nonZeros() {
+		return pointers[pointers.length - 1];
+	}
+
+	// values and indices of the stored elements and the pointers
+	@Override
+	public long weight() {
+		return 12L * nonZeros() + 4L * pointers.length;
+	}
+
+	/**
+	 * @return fraction of the stored elements
+	 */
+	public double density() {
+		return 0 == rows || 0 == cols ? 0 : nonZeros() / ((double) rows * cols);
+	}
+
+	public double get(int i, int j) {
+		Objects.checkIndex(i, rows);
+		Objects.checkIndex(j, cols);
+		final int m = Format.CSR == format ? i : j;
+		final int q = Arrays.binarySearch(indices, pointers[m], pointers[m + 1], Format.CSR == format ? j : i);
+		return q < 0 ? 0 : values[q];
+	}
+
+	/**
+	 * @return transpose sharing the arrays, in the other format
+	 */
+	public SparseMatrix transpose() {
+		return new SparseMatrix(Format.CSR == format ? Format.CSC : Format.CSR, cols, rows, pointers, indices,
+				values);
+	}
+
+	/**
+	 * @param target format
+	 * @return this matrix if in the format already, a converted copy otherwise
+	 */
+	public SparseMatrix toFormat(Format target) {
+		Objects.requireNonNull(target, "format is a NullPointer!");
+		if (target == format)
+			return this;
+		// compressed along the minor index, visiting the majors in order keeps the
+		// new indices sorted
+		final int majors = majors(), minors = Format.CSR == format ? cols : rows, nnz = nonZeros();
+		final int[] p = new int[minors + 1];
+		for (int q = 0; q < nnz; q++)
+			p[indices[q] + 1]++;
+		for (int m = 0; m < minors; m++)
+			p[m + 1] += p[m];
+		final int[] next = Arrays.copyOf(p, minors);
+		final int[] idx = new int[nnz];
+		final double[] val = new double[nnz];
+		for (int m = 0; m < majors; m++) {
+			for (int q = pointers[m]; q < pointers[m + 1]; q++) {
+				int d = next[indices[q]]++;
+				idx[d] = m;
+				val[d] = values[q];
+			}
+		}
+		return new SparseMatrix(target, rows, cols, p, idx, val);
+	}
+
+	/**
+	 * @return dense copy as array of rows
+	 */
+	public double[][] toArray() {
+		final double[][] a = new double[rows][cols];
+		for (int m = 0; m < majors(); m++)
+			for (int q = pointers[m]; q < pointers[m + 1]; q++)
+				if (Format.CSR == format)
+					a[m][indices[q]] = values[q];
+				else
+					a[indices[q]][m] = values[q];
+		return a;
+	}
+
+	// raw layout for the kernels of this package
+	int majors() {
+		return Format.CSR == format ? rows : cols;
+	}
+
+	int[] pointers() {
+		return pointers;
+	}
+
+	int[] indices() {
+		return indices;
+	}
+
+	double[] values() {
+		return values;
+	}
+
+	// element based, stored zeros and the format do not matter
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SparseMatrix))
+			return false;
+		SparseMatrix other = ((SparseMatrix) obj).toFormat(format);
+		if (rows != other.rows || cols != other.cols)
+			return false;
+		for (int m = 0; m < majors(); m++) {
+			int q = pointers[m], r = other.pointers[m];
+			final int qe = pointers[m + 1], re = other.pointers[m + 1];
+			while (q < qe || r < re) {
+				double x = 0, y = 0;
+				if (r >= re || (q < qe && indices[q] < other.indices[r])) {
+					x = values[q++];
+				} else if (q >= qe || other.indices[r] < indices[q]) {
+					y = other.values[r++];
+				} else {
+					x = values[q++];
+					y = other.values[r++];
+				}
+				if (Double.doubleToLongBits(x) != Double.doubleToLongBits(y))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	// a sum over the non-zeros, which does not depend on their order
+	@Override
+	public int hashCode() {
+		int hash = 31 * rows + cols;
+		for (int m = 0; m < majors(); m++) {
+			for (int q = pointers[m]; q < pointers[m + 1]; q++) {
+				long bits = Double.doubleToLongBits(values[q]);
+				if (0 == bits)
+					continue;
+				int i = Format.CSR == format ? m : indices[q], j = Format.CSR == format ? indices[q] : m;
+				hash += (31 * (31 * i + j)) ^ (int) (bits ^ (bits >>> 32));
+			}
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("SparseMatrix[%dx%d, %d non-zeros, %s]", rows, cols, nonZeros(), format);
+	}
+
+	/**
+	 * Collects coordinate triples, e.g. element by element while assembling a
+	 * system of equations. The values of equal coordinates are summed up.
+	 */
+	public static final class Builder {
+		private final int rows;
+		private final int cols;
+		private int[] row = new int[16];
+		private int[] col = new int[16];
+		private double[] value = new double[16];
+		private int size;
+
+		/**
+		 * @param rows number of rows
+		 * @param cols number of columns
+		 */
+		public Builder(int rows, int cols) {
+			this.rows = checked(rows, cols);
+			this.cols = cols;
+		}
+
+		/**
+		 * @param i     row
+		 * @param j     column
+		 * @param value added to the element (i, j)
+		 * @return this builder
+		 */
+		public Builder add(int i, int j, double value) {
+			Objects.checkIndex(i, rows);
+			Objects.checkIndex(j, cols);
+			if (size == this.value.length) {
+				int capacity = size + (size >> 1);
+				row = Arrays.copyOf(row, capacity);
+				col = Arrays.copyOf(col, capacity);
+				this.value = Arrays.copyOf(this.value, capacity);
+			}
+			row[size] = i;
+			col[size] = j;
+			this.value[size++] = value;
+			return this;
+		}
+
+		/**
+		 * @return matrix of the triples added so far in CSR format
+		 */
+		public SparseMatrix build() {
+			return build(Format.CSR);
+		}
+
+		/**
+		 * @param format of the matrix
+		 * @return matrix of the triples added so far
+		 */
+		public SparseMatrix build(Format format) {
+			return triples(rows, cols, row, col, value, size, format);
+		}
+	}
+}
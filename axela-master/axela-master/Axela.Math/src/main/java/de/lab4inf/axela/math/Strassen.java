@@ -0,0 +1,230 @@
+package de.lab4inf.axela.math;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.lab4inf.axela.core.CancellationToken;
+
+/**
+ * Matrix multiplication C = A*B by the Strassen-Winograd recursion, seven
+ * products of half the size and fifteen additions per level instead of eight
+ * products. Products with a dimension at or below the cutoff are multiplied
+ * by the cache blocked Gemm, odd dimensions are peeled off and multiplied
+ * classically.
+ * <p>
+ * The additions cost some accuracy, the error grows with the depth of the
+ * recursion instead of the inner dimension. Therefore Strassen is only used if
+ * the ExecutionHints ask for it.
+ * <p>
+ * In parallel the seven products of each level run as tasks on a ForkJoinPool.
+ */
+public final class Strassen {
+	/** dimension below which Gemm is faster than a further level of recursion */
+	public static final int CUTOFF = 512;
+
+	/** Gemm with its default block sizes below the default cutoff */
+	public static final Strassen DEFAULT = new Strassen(Gemm.DEFAULT, CUTOFF);
+
+	private final Gemm gemm;
+	private final int cutoff;
+
+	/**
+	 * @param gemm   kernel of the products at and below the cutoff
+	 * @param cutoff dimension at and below which the recursion stops
+	 */
+	public Strassen(Gemm gemm, int cutoff) {
+		this.gemm = Objects.requireNonNull(gemm, "gemm is a NullPointer!");
+		if (cutoff <= 0)
+			throw new IllegalArgumentException("cutoff must be positive");
+		this.cutoff = cutoff;
+	}
+
+	public Gemm getGemm() {
+		return gemm;
+	}
+
+	public int getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * @param rows  of A and C
+	 * @param inner dimension of A*B
+	 * @param cols  of B and C
+	 * @return true if at least one level of recursion is done
+	 */
+	public boolean recurses(int rows, int inner, int cols) {
+		return Math.min(rows, Math.min(inner, cols)) > cutoff;
+	}
+
+	/**
+	 * Bytes of the temporaries of one call of mult, the sums of the quadrants and
+	 * the products not stored within C on each level and the packing buffers of
+	 * the products below the cutoff.
+	 *
+	 * @param rows        of A and C
+	 * @param inner       dimension of A*B
+	 * @param cols        of B and C
+	 * @param parallelism number of threads running the products
+	 * @return bytes allocated
+	 */
+	long footprint(int rows, int inner, int cols, int parallelism) {
+		if (!recurses(rows, inner, cols))
+			return gemm.footprint(rows, inner, cols);
+		long m = rows / 2, k = inner / 2, n = cols / 2;
+		long level = 4 * LinearAlgebra.bytes(m * k, 8) + 4 * LinearAlgebra.bytes(k * n, 8)
+				+ 3 * LinearAlgebra.bytes(m * n, 8);
+		if (parallelism <= 1)
+			return level + footprint((int) m, (int) k, (int) n, 1);
+		int branches = Math.min(7, parallelism);
+		return level + branches * footprint((int) m, (int) k, (int) n, (parallelism + 6) / 7);
+	}
+
+	/**
+	 * Calculates C = A*B, all former values of C are overwritten. The first
+	 * failing product cancels the token, so the other products stop at their
+	 * next check.
+	 *
+	 * @param a           rows x inner
+	 * @param b           inner x cols
+	 * @param c           rows x cols
+	 * @param single      true for single precision
+	 * @param token       of the solve
+	 * @param pool        running the products, null to run them serially
+	 * @param parallelism number of threads the products run on
+	 */
+	void mult(Matrix a, Matrix b, Matrix c, boolean single, CancellationToken token, ForkJoinPool pool,
+			int parallelism) {
+		if (null == pool || parallelism <= 1) {
+			multiply(a, b, c, single, token, false);
+			return;
+		}
+		Gemm.invoke(pool, new Product(a, b, c, single, token), token);
+	}
+
+	private void multiply(Matrix a, Matrix b, Matrix c, boolean single, CancellationToken token, boolean fork) {
+		token.check();
+		final int rows = a.getRows(), inner = a.getColumns(), cols = b.getColumns();
+		if (!recurses(rows, inner, cols)) {
+			gemm.mult(Gemm.Operand.of(a), Gemm.Operand.of(b), Gemm.Operand.of(c), 0, rows, 0, cols, inner, single,
+					token);
+			return;
+		}
+		final int m = rows / 2, k = inner / 2, n = cols / 2;
+		Matrix a11 = a.view(0, 0, m, k), a12 = a.view(0, k, m, k);
+		Matrix a21 = a.view(m, 0, m, k), a22 = a.view(m, k, m, k);
+		Matrix b11 = b.view(0, 0, k, n), b12 = b.view(0, n, k, n);
+		Matrix b21 = b.view(k, 0, k, n), b22 = b.view(k, n, k, n);
+		Matrix c11 = c.view(0, 0, m, n), c12 = c.view(0, n, m, n);
+		Matrix c21 = c.view(m, 0, m, n), c22 = c.view(m, n, m, n);
+
+		Matrix s1 = new Matrix(m, k), s2 = new Matrix(m, k), s3 = new Matrix(m, k), s4 = new Matrix(m, k);
+		combine(s1, a21, a22, 1, single);
+		combine(s2, s1, a11, -1, single);
+		combine(s3, a11, a21, -1, single);
+		combine(s4, a12, s2, -1, single);
+		Matrix t1 = new Matrix(k, n), t2 = new Matrix(k, n), t3 = new Matrix(k, n), t4 = new Matrix(k, n);
+		combine(t1, b12, b11, -1, single);
+		combine(t2, b22, t1, -1, single);
+		combine(t3, b22, b12, -1, single);
+		combine(t4, t2, b21, -1, single);
+
+		// P2..P5 are stored within the quadrants of C they end up in
+		Matrix p1 = new Matrix(m, n), p6 = new Matrix(m, n), p7 = new Matrix(m, n);
+		if (fork) {
+			RecursiveAction.invokeAll(new Product(a11, b11, p1, single, token),
+					new Product(a12, b21, c11, single, token), new Product(s4, b22, c12, single, token),
+					new Product(a22, t4, c21, single, token), new Product(s1, t1, c22, single, token),
+					new Product(s2, t2, p6, single, token), new Product(s3, t3, p7, single, token));
+		} else {
+			multiply(a11, b11, p1, single, token, false);
+			multiply(a12, b21, c11, single, token, false);
+			multiply(s4, b22, c12, single, token, false);
+			multiply(a22, t4, c21, single, token, false);
+			multiply(s1, t1, c22, single, token, false);
+			multiply(s2, t2, p6, single, token, false);
+			multiply(s3, t3, p7, single, token, false);
+		}
+
+		combine(c11, c11, p1, 1, single); // C11 = P1 + P2
+		combine(p6, p6, p1, 1, single); // U2 = P1 + P6
+		combine(p7, p7, p6, 1, single); // U3 = U2 + P7
+		combine(p1, p6, c22, 1, single); // U4 = U2 + P5
+		combine(c12, c12, p1, 1, single); // C12 = U4 + P3
+		combine(c21, p7, c21, -1, single); // C21 = U3 - P4
+		combine(c22, c22, p7, 1, single); // C22 = U3 + P5
+
+		peel(a, b, c, 2 * m, 2 * k, 2 * n, single, token);
+	}
+
+	// the last row, column or inner index left over by odd dimensions
+	private void peel(Matrix a, Matrix b, Matrix c, int m, int k, int n, boolean single, CancellationToken token) {
+		final int rows = a.getRows(), inner = a.getColumns(), cols = b.getColumns();
+		if (k < inner) {
+			token.check();
+			for (int i = 0; i < m; i++) {
+				final double x = single ? (float) a.get(i, k) : a.get(i, k);
+				for (int j = 0; j < n; j++) {
+					double y = single ? (float) b.get(k, j) : b.get(k, j);
+					double v = c.get(i, j) + x * y;
+					c.set(i, j, single ? (float) v : v);
+				}
+			}
+		}
+		if (n < cols)
+			gemm.mult(Gemm.Operand.of(a), Gemm.Operand.of(b.view(0, n, inner, 1)),
+					Gemm.Operand.of(c.view(0, n, rows, 1)), 0, rows, 0, 1, inner, single, token);
+		if (m < rows)
+			gemm.mult(Gemm.Operand.of(a.view(m, 0, 1, inner)), Gemm.Operand.of(b.view(0, 0, inner, n)),
+					Gemm.Operand.of(c.view(m, 0, 1, n)), 0, 1, 0, n, inner, single, token);
+	}
+
+	// z = x + sign*y element by element, z may be x or y
+	private static void combine(Matrix z, Matrix x, Matrix y, int sign, boolean single) {
+		final int rows = z.getRows(), cols = z.getColumns();
+		final double[] zd = z.data(), xd = x.data(), yd = y.data();
+		final int zs = z.colStride(), xs = x.colStride(), ys = y.colStride();
+		for (int i = 0; i < rows; i++) {
+			int zi = z.offset() + i * z.rowStride();
+			int xi = x.offset() + i * x.rowStride();
+			int yi = y.offset() + i * y.rowStride();
+			for (int j = 0; j < cols; j++, zi += zs, xi += xs, yi += ys) {
+				double v = xd[xi] + sign * yd[yi];
+				zd[zi] = single ? (float) v : v;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Strassen[cutoff=%d, %s]", cutoff, gemm);
+	}
+
+	private final class Product extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final transient Matrix a, b, c;
+		private final boolean single;
+		private final transient CancellationToken token;
+
+		Product(Matrix a, Matrix b, Matrix c, boolean single, CancellationToken token) {
+			this.a = a;
+			this.b = b;
+			this.c = c;
+			this.single = single;
+			this.token = token;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				multiply(a, b, c, single, token, true);
+			} catch (RuntimeException | Error error) {
+				// an expired deadline stops the others anyway and stays the reported cause
+				if (!token.isExpired())
+					token.cancel();
+				throw error;
+			}
+		}
+	}
+}
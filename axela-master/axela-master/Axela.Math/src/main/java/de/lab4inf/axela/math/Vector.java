@@ -0,0 +1,130 @@
+package de.lab4inf.axela.math;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import de.lab4inf.axela.facts.Weighable;
+
+/**
+ * Dense vector within a double array, addressed by an offset and a stride. Rows
+ * and columns of a Matrix are vectors sharing its elements.
+ */
+public final class Vector implements Weighable {
+	private final double[] data;
+	private final int offset;
+	private final int length;
+	private final int stride;
+
+	/**
+	 * New zero vector.
+	 * 
+	 * @param length number of elements
+	 */
+	public Vector(int length) {
+		this(new double[length], 0, length, 1);
+	}
+
+	Vector(double[] data, int offset, int length, int stride) {
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		this.stride = stride;
+	}
+
+	/**
+	 * Vector using the elements of the array without copying.
+	 * 
+	 * @param data elements
+	 * @return vector backed by the array
+	 */
+	public static Vector wrap(double[] data) {
+		Objects.requireNonNull(data, "data is a NullPointer!");
+		return new Vector(data, 0, data.length, 1);
+	}
+
+	/**
+	 * @return copy of the elements
+	 */
+	public double[] toArray() {
+		if (1 == stride)
+			return Arrays.copyOfRange(data, offset, offset + length);
+		double[] a = new double[length];
+		for (int i = 0; i < length; i++)
+			a[i] = data[offset + i * stride];
+		return a;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public long weight() {
+		return 8L * length;
+	}
+
+	public double get(int i) {
+		return data[offset + Objects.checkIndex(i, length) * stride];
+	}
+
+	public void set(int i, double value) {
+		data[offset + Objects.checkIndex(i, length) * stride] = value;
+	}
+
+	/**
+	 * View of a part of this vector.
+	 * 
+	 * @param from   first element of the part
+	 * @param length number of elements of the part
+	 * @return view sharing the elements
+	 */
+	public Vector view(int from, int length) {
+		Objects.checkFromIndexSize(from, length, this.length);
+		return new Vector(data, offset + from * stride, length, stride);
+	}
+
+	// raw layout for the kernels of this package
+	double[] data() {
+		return data;
+	}
+
+	int offset() {
+		return offset;
+	}
+
+	int stride() {
+		return stride;
+	}
+
+	// element based, views and copies with equal elements are equal
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Vector))
+			return false;
+		Vector other = (Vector) obj;
+		if (length != other.length)
+			return false;
+		for (int i = 0; i < length; i++)
+			if (Double.doubleToLongBits(data[offset + i * stride]) != Double
+					.doubleToLongBits(other.data[other.offset + i * other.stride]))
+				return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < length; i++) {
+			long bits = Double.doubleToLongBits(data[offset + i * stride]);
+			hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Vector[%d]", length);
+	}
+}
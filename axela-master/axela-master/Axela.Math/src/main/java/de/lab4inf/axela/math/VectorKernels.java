@@ -0,0 +1,46 @@
+package de.lab4inf.axela.math;
+
+/**
+ * Vector API variants of the contiguous double precision loops of
+ * DenseKernels. This Java 11 class is never enabled and runs the scalar loops
+ * of DenseKernels. The multi-release jar replaces it for Java 17 and later by
+ * a class in META-INF/versions/17 using jdk.incubator.vector, which is enabled
+ * if the module is resolved, e.g. by --add-modules jdk.incubator.vector.
+ */
+final class VectorKernels {
+	/** true if the kernels of this class may be called */
+	static final boolean ENABLED = enabled();
+
+	private VectorKernels() {
+	}
+
+	// not a constant, javac would fold it into DenseKernels and the versioned
+	// class could never enable its kernels
+	private static boolean enabled() {
+		return false;
+	}
+
+	/**
+	 * @return description of the kernels in use
+	 */
+	static String describe() {
+		return "scalar";
+	}
+
+	static double dot(double[] x, int xi, double[] y, int yi, int n) {
+		return DenseKernels.dotScalar(x, xi, y, yi, n);
+	}
+
+	static void dot4(double[] a0, int i0, double[] a1, int i1, double[] a2, int i2, double[] a3, int i3,
+			double[] y, int yi, int n, double[] r, int ri, int rs) {
+		DenseKernels.dot4Scalar(a0, i0, a1, i1, a2, i2, a3, i3, y, yi, n, r, ri, rs);
+	}
+
+	static void add(double[] x, int xi, double[] y, int yi, double[] r, int ri, int n) {
+		DenseKernels.addScalar(x, xi, y, yi, r, ri, n);
+	}
+
+	static void axpy(double alpha, double[] x, int xi, double[] r, int ri, int n) {
+		DenseKernels.axpyScalar(alpha, x, xi, r, ri, n);
+	}
+}
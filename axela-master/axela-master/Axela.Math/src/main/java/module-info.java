@@ -2,4 +2,7 @@ module Axela.Math {
 	exports de.lab4inf.axela.math;
 
 	requires transitive Axela.Engine;
+	requires jdk.jfr;
+
+	provides de.lab4inf.axela.core.Axela.Plugin with de.lab4inf.axela.math.LinearAlgebraPlugin;
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+package de.lab4inf.axela.math;
+
+import java.util.Optional;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API variants of the contiguous double precision loops of
+ * DenseKernels, placed in META-INF/versions/17 of the multi-release jar. The
+ * loops run over whole vectors of the preferred species, the remainder is done
+ * by one masked vector instead of a scalar tail. Reductions sum into two
+ * vector accumulators and reduce their lanes once at the end.
+ * <p>
+ * The kernels are enabled if jdk.incubator.vector is resolved at run time,
+ * e.g. by --add-modules jdk.incubator.vector, and the system property
+ * axela.math.scalar is not true. Otherwise DenseKernels runs its scalar loops,
+ * which also do all strided and single precision loops.
+ */
+final class VectorKernels {
+	private static final String MODULE = "jdk.incubator.vector";
+
+	/** true if the kernels of this class may be called */
+	static final boolean ENABLED = enabled();
+
+	private VectorKernels() {
+	}
+
+	// the vector types are only linked if the module is readable
+	private static boolean enabled() {
+		if (Boolean.getBoolean("axela.math.scalar"))
+			return false;
+		Optional<Module> vector = ModuleLayer.boot().findModule(MODULE);
+		if (vector.isEmpty())
+			return false;
+		VectorKernels.class.getModule().addReads(vector.get());
+		try {
+			return Simd.SPECIES.length() > 1;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return description of the kernels in use
+	 */
+	static String describe() {
+		return ENABLED ? Simd.SPECIES.toString() : "scalar";
+	}
+
+	// the scalar loops of DenseKernels while not enabled
+
+	static double dot(double[] x, int xi, double[] y, int yi, int n) {
+		if (ENABLED)
+			return Simd.dot(x, xi, y, yi, n);
+		return DenseKernels.dotScalar(x, xi, y, yi, n);
+	}
+
+	static void dot4(double[] a0, int i0, double[] a1, int i1, double[] a2, int i2, double[] a3, int i3,
+			double[] y, int yi, int n, double[] r, int ri, int rs) {
+		if (ENABLED)
+			Simd.dot4(a0, i0, a1, i1, a2, i2, a3, i3, y, yi, n, r, ri, rs);
+		else
+			DenseKernels.dot4Scalar(a0, i0, a1, i1, a2, i2, a3, i3, y, yi, n, r, ri, rs);
+	}
+
+	static void add(double[] x, int xi, double[] y, int yi, double[] r, int ri, int n) {
+		if (ENABLED)
+			Simd.add(x, xi, y, yi, r, ri, n);
+		else
+			DenseKernels.addScalar(x, xi, y, yi, r, ri, n);
+	}
+
+	static void axpy(double alpha, double[] x, int xi, double[] r, int ri, int n) {
+		if (ENABLED)
+			Simd.axpy(alpha, x, xi, r, ri, n);
+		else
+			DenseKernels.axpyScalar(alpha, x, xi, r, ri, n);
+	}
+
+	/**
+	 * The loops, a class of their own so the vector types are loaded only once
+	 * the kernels are enabled.
+	 */
+	private static final class Simd {
+		static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+		static double dot(double[] x, int xi, double[] y, int yi, int n) {
+			final int lanes = SPECIES.length();
+			DoubleVector s0 = DoubleVector.zero(SPECIES), s1 = DoubleVector.zero(SPECIES);
+			int k = 0;
+			for (final int end = n - 2 * lanes; k <= end; k += 2 * lanes) {
+				s0 = s0.add(DoubleVector.fromArray(SPECIES, x, xi + k).mul(DoubleVector.fromArray(SPECIES, y, yi + k)));
+				s1 = s1.add(DoubleVector.fromArray(SPECIES, x, xi + k + lanes)
+						.mul(DoubleVector.fromArray(SPECIES, y, yi + k + lanes)));
+			}
+			for (final int end = n - lanes; k <= end; k += lanes)
+				s0 = s0.add(DoubleVector.fromArray(SPECIES, x, xi + k).mul(DoubleVector.fromArray(SPECIES, y, yi + k)));
+			if (k < n) {
+				// the masked lanes are read as zero
+				VectorMask<Double> m = SPECIES.indexInRange(k, n);
+				s1 = s1.add(DoubleVector.fromArray(SPECIES, x, xi + k, m)
+						.mul(DoubleVector.fromArray(SPECIES, y, yi + k, m)));
+			}
+			return s0.add(s1).reduceLanes(VectorOperators.ADD);
+		}
+
+		static void dot4(double[] a0, int i0, double[] a1, int i1, double[] a2, int i2, double[] a3, int i3,
+				double[] y, int yi, int n, double[] r, int ri, int rs) {
+			final int lanes = SPECIES.length();
+			DoubleVector s0 = DoubleVector.zero(SPECIES), s1 = s0, s2 = s0, s3 = s0;
+			int k = 0;
+			for (final int end = n - lanes; k <= end; k += lanes) {
+				final DoubleVector v = DoubleVector.fromArray(SPECIES, y, yi + k);
+				s0 = s0.add(DoubleVector.fromArray(SPECIES, a0, i0 + k).mul(v));
+				s1 = s1.add(DoubleVector.fromArray(SPECIES, a1, i1 + k).mul(v));
+				s2 = s2.add(DoubleVector.fromArray(SPECIES, a2, i2 + k).mul(v));
+				s3 = s3.add(DoubleVector.fromArray(SPECIES, a3, i3 + k).mul(v));
+			}
+			if (k < n) {
+				VectorMask<Double> m = SPECIES.indexInRange(k, n);
+				final DoubleVector v = DoubleVector.fromArray(SPECIES, y, yi + k, m);
+				s0 = s0.add(DoubleVector.fromArray(SPECIES, a0, i0 + k, m).mul(v));
+				s1 = s1.add(DoubleVector.fromArray(SPECIES, a1, i1 + k, m).mul(v));
+				s2 = s2.add(DoubleVector.fromArray(SPECIES, a2, i2 + k, m).mul(v));
+				s3 = s3.add(DoubleVector.fromArray(SPECIES, a3, i3 + k, m).mul(v));
+			}
+			r[ri] = s0.reduceLanes(VectorOperators.ADD);
+			r[ri + rs] = s1.reduceLanes(VectorOperators.ADD);
+			r[ri + 2 * rs] = s2.reduceLanes(VectorOperators.ADD);
+			r[ri + 3 * rs] = s3.reduceLanes(VectorOperators.ADD);
+		}
+
+		static void add(double[] x, int xi, double[] y, int yi, double[] r, int ri, int n) {
+			final int lanes = SPECIES.length();
+			int k = 0;
+			for (final int end = n - lanes; k <= end; k += lanes)
+				DoubleVector.fromArray(SPECIES, x, xi + k).add(DoubleVector.fromArray(SPECIES, y, yi + k))
+						.intoArray(r, ri + k);
+			if (k < n) {
+				VectorMask<Double> m = SPECIES.indexInRange(k, n);
+				DoubleVector.fromArray(SPECIES, x, xi + k, m).add(DoubleVector.fromArray(SPECIES, y, yi + k, m))
+						.intoArray(r, ri + k, m);
+			}
+		}
+
+		static void axpy(double alpha, double[] x, int xi, double[] r, int ri, int n) {
+			final int lanes = SPECIES.length();
+			int k = 0;
+			for (final int end = n - lanes; k <= end; k += lanes)
+				DoubleVector.fromArray(SPECIES, x, xi + k).mul(alpha).add(DoubleVector.fromArray(SPECIES, r, ri + k))
+						.intoArray(r, ri + k);
+			if (k < n) {
+				VectorMask<Double> m = SPECIES.indexInRange(k, n);
+				DoubleVector.fromArray(SPECIES, x, xi + k, m).mul(alpha)
+						.add(DoubleVector.fromArray(SPECIES, r, ri + k, m)).intoArray(r, ri + k, m);
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.math.LinearAlgebra.MatVecCalc;
+import de.lab4inf.axela.math.LinearAlgebra.VectorCalc;
+
+class DenseKernelsTest {
+	final double tolerance = 1.E-12;
+	final Random rd = new Random(42);
+
+	@Test
+	void testDotTails() {
+		double[] x = createRndVec(40), y = createRndVec(40);
+		for (int n = 0; n <= 17; n++) {
+			for (int offset = 0; offset < 3; offset++) {
+				assertEquals(scalarDot(x, offset, 1, y, offset, 1, n), DenseKernels.dot(x, offset, 1, y, offset, 1, n,
+						false), tolerance);
+				assertEquals(scalarDot(x, offset, 2, y, 39 - offset, -2, n), DenseKernels.dot(x, offset, 2, y,
+						39 - offset, -2, n, false), tolerance);
+			}
+		}
+	}
+
+	@Test
+	void testDotSingle() {
+		double[] x = createRndVec(1001), y = createRndVec(1001);
+		double dot = DenseKernels.dot(x, 0, 1, y, 0, 1, x.length, true);
+		assertEquals((float) dot, dot);
+		assertEquals(scalarDot(x, 0, 1, y, 0, 1, x.length), dot, 1.E-4 * dot);
+		double strided = DenseKernels.dot(x, 0, 3, y, 0, 3, 334, true);
+		assertEquals((float) strided, strided);
+		assertEquals(scalarDot(x, 0, 3, y, 0, 3, 334), strided, 1.E-4 * strided);
+	}
+
+	@Test
+	void testDot4() {
+		double[][] a = createRndMat(9, 13);
+		double[] y = createRndVec(13);
+		double[] r = new double[9];
+		DenseKernels.dot4(a, 5, y, r, false);
+		for (int i = 5; i < 9; i++)
+			assertEquals(scalarDot(a[i], 0, 1, y, 0, 1, 13), r[i], tolerance);
+		assertEquals(0., r[4], 0.);
+		// the same rows within a larger row major array, results strided
+		Matrix m = Matrix.of(createRndMat(10, 20)).view(1, 3, 8, 13);
+		double[] s = new double[12];
+		DenseKernels.dot4(m.data(), m.offset(), m.rowStride(), y, 0, 13, s, 1, 3, true);
+		for (int i = 0; i < 4; i++) {
+			double expected = 0;
+			for (int k = 0; k < 13; k++)
+				expected += m.get(i, k) * y[k];
+			assertEquals(expected, s[1 + 3 * i], 1.E-5);
+			assertEquals((float) s[1 + 3 * i], s[1 + 3 * i]);
+		}
+	}
+
+	@Test
+	void testAdd() {
+		double[] x = createRndVec(30), y = createRndVec(30);
+		double[] r = new double[30];
+		DenseKernels.add(x, 1, 1, y, 2, 1, r, 3, 1, 11, false);
+		for (int k = 0; k < 11; k++)
+			assertEquals(x[1 + k] + y[2 + k], r[3 + k], 0.);
+		DenseKernels.add(x, 0, 2, y, 29, -1, r, 0, 3, 10, true);
+		for (int k = 0; k < 10; k++)
+			assertEquals((float) (x[2 * k] + y[29 - k]), r[3 * k], 0.);
+	}
+
+	@Test
+	void testContiguousTails() {
+		// whole vectors, two of them and masked tails of any species up to 512 bit
+		double[] x = createRndVec(50), y = createRndVec(50), a = createRndVec(170);
+		for (int n = 0; n <= 40; n++) {
+			for (int offset = 0; offset < 3; offset++) {
+				double[] r = new double[50], s = createRndVec(50), t = s.clone();
+				DenseKernels.add(x, offset, 1, y, 2 * offset, 1, r, 1, 1, n, false);
+				DenseKernels.axpy(0.5, x, offset, 1, s, 2, 1, n);
+				for (int k = 0; k < 50; k++) {
+					boolean inside = k >= 1 && k < 1 + n;
+					assertEquals(inside ? x[offset + k - 1] + y[2 * offset + k - 1] : 0., r[k], 0.);
+					inside = k >= 2 && k < 2 + n;
+					assertEquals(inside ? t[k] + 0.5 * x[offset + k - 2] : t[k], s[k], tolerance);
+				}
+				double[] d = new double[9];
+				DenseKernels.dot4(a, offset, 41, x, offset, n, d, 1, 2, false);
+				for (int i = 0; i < 4; i++)
+					assertEquals(scalarDot(a, offset + 41 * i, 1, x, offset, 1, n), d[1 + 2 * i], tolerance);
+			}
+		}
+	}
+
+	@Test
+	void testVectorKernels() {
+		// callable whether enabled or not, the scalar loops otherwise
+		double[] x = createRndVec(50), y = createRndVec(50);
+		for (int n = 0; n <= 40; n += 7) {
+			assertEquals(DenseKernels.dotScalar(x, 1, y, 2, n), VectorKernels.dot(x, 1, y, 2, n), tolerance);
+			double[] r = new double[50], s = new double[50];
+			VectorKernels.add(x, 1, y, 2, r, 3, n);
+			DenseKernels.addScalar(x, 1, y, 2, s, 3, n);
+			VectorKernels.axpy(0.5, x, 0, r, 0, n);
+			DenseKernels.axpyScalar(0.5, x, 0, s, 0, n);
+			double[] d = new double[4], e = new double[4];
+			VectorKernels.dot4(x, 0, y, 1, x, 2, y, 3, x, 4, n, d, 0, 1);
+			DenseKernels.dot4Scalar(x, 0, y, 1, x, 2, y, 3, x, 4, n, e, 0, 1);
+			for (int k = 0; k < 50; k++)
+				assertEquals(s[k], r[k], tolerance);
+			for (int i = 0; i < 4; i++)
+				assertEquals(e[i], d[i], tolerance);
+		}
+	}
+
+	@Test
+	void testMatVecRemainders() {
+		MatVecCalc calc = new MatVecCalc();
+		for (int rows = 1; rows <= 9; rows++) {
+			double[][] a = createRndMat(rows, 7);
+			double[] b = createRndVec(7);
+			double[] c = calc.mult(a, b, ExecutionHints.DEFAULT.withParallelism(2));
+			Vector v = calc.mult(Matrix.of(a), Vector.wrap(b), ExecutionHints.DEFAULT);
+			Vector t = calc.mult(Matrix.of(a).transpose().copy().transpose(), Vector.wrap(b), ExecutionHints.DEFAULT);
+			for (int i = 0; i < rows; i++) {
+				double expected = scalarDot(a[i], 0, 1, b, 0, 1, 7);
+				assertEquals(expected, c[i], tolerance);
+				assertEquals(expected, v.get(i), tolerance);
+				assertEquals(expected, t.get(i), tolerance);
+			}
+		}
+	}
+
+	/**
+	 * Single accumulator loops against the kernels up to 10^6 elements, run main
+	 * for the lengths up to 10^8. The kernels are the Vector API ones on Java 17
+	 * with --add-modules jdk.incubator.vector and the multi-release classes,
+	 * the scalar ones otherwise or with -Daxela.math.scalar=true.
+	 */
+	@Test
+	void testKernelSpeed() {
+		benchmark(1_000_000);
+	}
+
+	/**
+	 * @param args optional largest length, 10^8 by default
+	 */
+	public static void main(String[] args) {
+		new DenseKernelsTest().benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 100_000_000);
+	}
+
+	void benchmark(int max) {
+		VectorCalc vectors = new VectorCalc();
+		MatVecCalc matvec = new MatVecCalc();
+		ExecutionHints serial = ExecutionHints.DEFAULT.withParallelism(1);
+		ExecutionHints single = serial.withPrecision(Precision.FLOAT);
+		System.out.printf("kernels: %s%n", VectorKernels.describe());
+		System.out.printf("+-----------+----------+----------+-------+----------+----------+----------+-------+%n");
+		System.out.printf("|         n | dot1[ns] | dot4[ns] | d1/d4 |  f32[ns] | add1[ns] | addk[ns] | a1/ak |%n");
+		System.out.printf("+-----------+----------+----------+-------+----------+----------+----------+-------+%n");
+		for (long length = 16; length <= max; length *= 10) {
+			final int n = (int) length;
+			double[] x = createRndVec(n), y = createRndVec(n), r = new double[n];
+			// more repetitions of the short vectors, so each measurement takes some ms
+			int reps = Math.max(1, 10_000_000 / n);
+			double[] sink = new double[1];
+			long dot1 = best(5, reps, () -> sink[0] += scalarDot(x, 0, 1, y, 0, 1, n));
+			long dot4 = best(5, reps, () -> sink[0] += vectors.dot(x, y, serial));
+			long f32 = best(5, reps, () -> sink[0] += vectors.dot(x, y, single));
+			long add1 = best(5, reps, () -> scalarAdd(x, y, r));
+			long addk = best(5, reps, () -> vectors.add(x, y, serial.withOutput(r)));
+			assertEquals(scalarDot(x, 0, 1, y, 0, 1, n), vectors.dot(x, y, serial), 1.E-10 * n);
+			System.out.printf("| %9d | %8.1f | %8.1f | %5.2f | %8.1f | %8.1f | %8.1f | %5.2f |%n", n, dot1 * 1. / reps,
+					dot4 * 1. / reps, (double) dot1 / dot4, f32 * 1. / reps, add1 * 1. / reps, addk * 1. / reps,
+					(double) add1 / addk);
+		}
+		System.out.printf("+-----------+----------+----------+-------+----------+----------+----------+-------+%n");
+		System.out.printf("+------+-------------+-------------+-------+%n");
+		System.out.printf("|    n | mv loop[us] | mv dot4[us] |  l/k  |%n");
+		System.out.printf("+------+-------------+-------------+-------+%n");
+		for (int n = 16; n * (long) n <= max && n <= 8192; n *= 2) {
+			final int reps = Math.max(1, 10_000_000 / (n * n));
+			double[][] a = createRndMat(n, n);
+			double[] b = createRndVec(n), r = new double[n];
+			long loop = best(5, reps, () -> scalarMatVec(a, b, r));
+			long kernel = best(5, reps, () -> matvec.mult(a, b, serial.withOutput(r)));
+			System.out.printf("| %4d | %11.2f | %11.2f | %5.2f |%n", n, loop * 1.E-3 / reps, kernel * 1.E-3 / reps,
+					(double) loop / kernel);
+		}
+		System.out.printf("+------+-------------+-------------+-------+%n");
+	}
+
+	// fastest of some runs of reps repetitions in ns
+	private static long best(int runs, int reps, Runnable run) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			for (int j = 0; j < reps; j++)
+				run.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * The former loops with a single accumulator.
+	 */
+	static double scalarDot(double[] x, int xi, int xs, double[] y, int yi, int ys, int n) {
+		double sum = 0;
+		for (int k = 0; k < n; k++)
+			sum += x[xi + k * xs] * y[yi + k * ys];
+		return sum;
+	}
+
+	static void scalarAdd(double[] x, double[] y, double[] r) {
+		for (int i = 0; i < r.length; i++)
+			r[i] = x[i] + y[i];
+	}
+
+	static void scalarMatVec(double[][] a, double[] b, double[] r) {
+		for (int i = 0; i < a.length; i++) {
+			double temp = 0;
+			for (int k = 0; k < b.length; k++)
+				temp += a[i][k] * b[k];
+			r[i] = temp;
+		}
+	}
+
+	private double[] createRndVec(int n) {
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++)
+			v[i] = rd.nextDouble();
+		return v;
+	}
+
+	private double[][] createRndMat(int rows, int cols) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				m[i][j] = rd.nextDouble();
+		return m;
+	}
+}
@@ -0,0 +1,308 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+
+class GemmTest {
+	final double tolerance = 5.E-12;
+	final Random rd = new Random(42);
+	// small blocks, so every loop of the kernel runs several times and has edges
+	final Gemm small = new Gemm(8, 16, 12).withCutoff(256);
+
+	@Test
+	void testShapes() {
+		int[][] shapes = { { 1, 1, 1 }, { 3, 5, 7 }, { 4, 4, 4 }, { 17, 33, 9 }, { 9, 40, 130 }, { 130, 257, 70 } };
+		for (Gemm gemm : new Gemm[] { small, Gemm.DEFAULT }) {
+			MatrixCalc calc = new MatrixCalc(gemm);
+			for (int[] shape : shapes) {
+				double[][] a = createRndMat(shape[0], shape[1]);
+				double[][] b = createRndMat(shape[1], shape[2]);
+				assertMatrixEquals(naive(a, b), calc.mult(a, b, ExecutionHints.DEFAULT), tolerance);
+				assertMatrixEquals(naive(a, b), calc.mult(a, b, ExecutionHints.DEFAULT.withParallelism(3)), tolerance);
+			}
+		}
+	}
+
+	@Test
+	void testParallelTiles() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			MatrixCalc calc = new MatrixCalc(small);
+			ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(4).withExecutor(pool);
+			int[][] shapes = { { 3, 50, 200 }, { 200, 50, 3 }, { 37, 41, 43 }, { 130, 257, 70 } };
+			for (int[] shape : shapes) {
+				double[][] a = createRndMat(shape[0], shape[1]);
+				double[][] b = createRndMat(shape[1], shape[2]);
+				assertMatrixEquals(naive(a, b), calc.mult(a, b, hints), tolerance);
+				Matrix c = calc.mult(Matrix.of(a), Matrix.of(b).transpose().copy().transpose(), hints);
+				assertMatrixEquals(naive(a, b), c.toArray(), tolerance);
+			}
+			assertTrue(pool.getStealCount() > 0 || pool.getPoolSize() > 0, "no tiles forked");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testCutoff() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			MatrixCalc calc = new MatrixCalc(Gemm.DEFAULT.withCutoff(64 * 64 * 64));
+			double[][] a = createRndMat(64, 64);
+			// below the cutoff the calling thread does all the work
+			calc.mult(a, a, ExecutionHints.DEFAULT.withParallelism(4).withExecutor(pool));
+			assertEquals(0, pool.getPoolSize());
+			double[][] b = createRndMat(64, 65);
+			calc.mult(a, b, ExecutionHints.DEFAULT.withParallelism(4).withExecutor(pool));
+			assertTrue(pool.getPoolSize() > 0, "product above the cutoff not forked");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testConcurrentProducts() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		try {
+			MatrixCalc calc = new MatrixCalc(small);
+			ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(4).withExecutor(pool);
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				double[][] a = createRndMat(40 + i, 60);
+				double[][] b = createRndMat(60, 50 - i);
+				results.add(callers.submit(() -> {
+					// nested products on the same pool, as a solver running on it would do
+					double[][] c = pool.submit(() -> calc.mult(a, b, hints)).get();
+					assertMatrixEquals(naive(a, b), c, tolerance);
+					assertMatrixEquals(naive(a, b), calc.mult(a, b, hints), tolerance);
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results)
+				assertTrue(result.get(30, TimeUnit.SECONDS));
+		} finally {
+			callers.shutdownNow();
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testStridedOperands() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(21, 30);
+		double[][] b = createRndMat(30, 19);
+		// a and b stored column major and seen through transposed views
+		Matrix at = Matrix.of(a).transpose().copy().transpose();
+		Matrix bt = Matrix.of(b).transpose().copy().transpose();
+		Matrix c = calc.mult(at, bt, ExecutionHints.DEFAULT);
+		assertMatrixEquals(naive(a, b), c.toArray(), tolerance);
+		// the result written into a transposed view
+		Matrix ct = new Matrix(19, 21);
+		calc.mult(at, bt, ExecutionHints.DEFAULT.withOutput(ct.transpose()));
+		assertMatrixEquals(naive(a, b), ct.transpose().toArray(), tolerance);
+		// a sub-block of a larger matrix
+		Matrix block = calc.mult(Matrix.of(a).view(3, 5, 10, 20), Matrix.of(b).view(5, 2, 20, 11),
+				ExecutionHints.DEFAULT);
+		for (int i = 0; i < 10; i++)
+			for (int j = 0; j < 11; j++) {
+				double expected = 0;
+				for (int k = 0; k < 20; k++)
+					expected += a[3 + i][5 + k] * b[5 + k][2 + j];
+				assertEquals(expected, block.get(i, j), tolerance);
+			}
+	}
+
+	@Test
+	void testOutputOverwritten() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(13, 50);
+		double[][] b = createRndMat(50, 14);
+		double[][] output = createRndMat(13, 14);
+		double[][] c = calc.mult(a, b, ExecutionHints.DEFAULT.withOutput(output));
+		assertTrue(c == output, "output not reused");
+		assertMatrixEquals(naive(a, b), c, tolerance);
+	}
+
+	@Test
+	void testSingle() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(20, 40);
+		double[][] b = createRndMat(40, 20);
+		double[][] c = calc.mult(a, b, ExecutionHints.DEFAULT.withPrecision(Precision.FLOAT));
+		assertMatrixEquals(naive(a, b), c, 1.E-4);
+		for (double[] row : c)
+			for (double value : row)
+				assertEquals((float) value, value);
+	}
+
+	@Test
+	void testCancel() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(64, 64);
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		try {
+			calc.mult(a, a, ExecutionHints.DEFAULT.withCancellation(token));
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException error) {
+			// expected
+		}
+	}
+
+	@Test
+	void testCancelTiles() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(64, 64);
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		try {
+			calc.mult(a, a, ExecutionHints.DEFAULT.withParallelism(4).withCancellation(token));
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException error) {
+			// expected
+		}
+	}
+
+	@Test
+	void testBlockSizes() {
+		Gemm gemm = new Gemm(10, 100, 30);
+		assertEquals(12, gemm.getRowBlock());
+		assertEquals(100, gemm.getInnerBlock());
+		assertEquals(32, gemm.getColumnBlock());
+		try {
+			new Gemm(0, 100, 30);
+			fail("no exception with zero block size thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("positive"), error.getMessage());
+		}
+		assertEquals(1000, gemm.withCutoff(1000).getCutoff());
+		assertEquals(32, gemm.withCutoff(1000).getColumnBlock());
+		try {
+			gemm.withCutoff(0);
+			fail("no exception with zero cutoff thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("cutoff"), error.getMessage());
+		}
+	}
+
+	/**
+	 * Former kernel against the blocked one up to n=1024, run main for the
+	 * sizes up to 4096.
+	 */
+	@Test
+	void testGemmSpeed() {
+		benchmark(1024);
+	}
+
+	/**
+	 * @param args optional largest size, 4096 by default
+	 */
+	public static void main(String[] args) {
+		new GemmTest().benchmark(args.length > 0 ? Integer.parseInt(args[0]) : 4096);
+	}
+
+	void benchmark(int max) {
+		int[][] shapes = { { 128, 128, 128 }, { 256, 256, 256 }, { 500, 500, 500 }, { 512, 512, 512 },
+				{ 1000, 1000, 1000 }, { 1024, 1024, 1024 }, { 1024, 256, 2048 }, { 2048, 2048, 2048 },
+				{ 3000, 3000, 3000 }, { 4000, 300, 4000 }, { 4096, 4096, 4096 } };
+		MatrixCalc calc = new MatrixCalc();
+		ExecutionHints serial = ExecutionHints.DEFAULT.withParallelism(1);
+		ExecutionHints parallel = ExecutionHints.DEFAULT.withParallelism(Runtime.getRuntime().availableProcessors());
+		System.out.printf("+------------------+-----------+-----------+-------+-----------+-------+--------+%n");
+		System.out.printf("|      m x k x n   | former[ms]|  gemm[ms] |  f/g  |  par.[ms] |  f/p  | GFLOPS |%n");
+		System.out.printf("+------------------+-----------+-----------+-------+-----------+-------+--------+%n");
+		for (int[] shape : shapes) {
+			if (Math.max(shape[0], Math.max(shape[1], shape[2])) > max)
+				continue;
+			double[][] a = createRndMat(shape[0], shape[1]);
+			double[][] b = createRndMat(shape[1], shape[2]);
+			int runs = shape[0] * (long) shape[1] * shape[2] <= (1L << 27) ? 3 : 1;
+			double[][][] c = new double[1][][];
+			long former = best(runs, () -> c[0] = transposed(a, b));
+			long gemm = best(runs, () -> assertMatrixEquals(c[0], calc.mult(a, b, serial), 1.E-9));
+			long par = best(runs, () -> assertMatrixEquals(c[0], calc.mult(a, b, parallel), 1.E-9));
+			double flops = 2. * shape[0] * shape[1] * shape[2];
+			System.out.printf("| %4d x%4d x%4d | %9.1f | %9.1f | %5.1f | %9.1f | %5.1f | %6.2f |%n", shape[0], shape[1],
+					shape[2], former * 1.E-6, gemm * 1.E-6, (double) former / gemm, par * 1.E-6, (double) former / par,
+					flops / gemm);
+		}
+		System.out.printf("+------------------+-----------+-----------+-------+-----------+-------+--------+%n");
+	}
+
+	// fastest of some runs in ns, the assertions are timed as well but are cheap
+	private static long best(int runs, Runnable run) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			run.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	/**
+	 * The former kernel of MatrixCalc.mult, rows of a times the rows of the
+	 * transposed copy of b.
+	 */
+	static double[][] transposed(double[][] a, double[][] b) {
+		double[][] t = new double[b[0].length][b.length];
+		for (int i = 0; i < b.length; i++)
+			for (int j = 0; j < b[0].length; j++)
+				t[j][i] = b[i][j];
+		double[][] c = new double[a.length][t.length];
+		for (int i = 0; i < a.length; i++) {
+			for (int j = 0; j < t.length; j++) {
+				double sum = 0;
+				for (int k = 0; k < a[i].length; k++)
+					sum += a[i][k] * t[j][k];
+				c[i][j] = sum;
+			}
+		}
+		return c;
+	}
+
+	private static double[][] naive(double[][] a, double[][] b) {
+		double[][] c = new double[a.length][b[0].length];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < b[0].length; j++)
+				for (int k = 0; k < b.length; k++)
+					c[i][j] += a[i][k] * b[k][j];
+		return c;
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] returned, double delta) {
+		assertEquals(expected.length, returned.length, "matrix dimensions differ");
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, returned[i].length, "matrix dimensions differ");
+			for (int j = 0; j < expected[i].length; j++)
+				assertEquals(expected[i][j], returned[i][j], delta * Math.max(1, Math.abs(expected[i][j])));
+		}
+	}
+
+	private double[][] createRndMat(int rows, int cols) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				m[i][j] = rd.nextDouble();
+		return m;
+	}
+}
@@ -0,0 +1,101 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ServiceLoader;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.engine.AxelaEngine;
+import de.lab4inf.axela.facts.FactBase;
+
+class LinearAlgebraPluginTest {
+	static final String LAZY = "lazy";
+	static final String EAGER = "eager";
+
+	@Test
+	void testDiscoveredPlugin() {
+		AxelaEngine engine = new AxelaEngine();
+		engine.registerLazyPlugins(ServiceLoader.load(Axela.Plugin.class));
+		FactBase<double[], double[]> facts = new FactBase<>(new double[] { 1., 2. }, new double[] { 3., 4. });
+		assertTrue(engine.hasSolverFor("MULT", new FactBase<>(new double[0][0], new double[0][0])));
+		double[] sum = engine.solve("PLUS", facts);
+		assertEquals(4., sum[0], 0.);
+		assertEquals(6., sum[1], 0.);
+	}
+
+	/**
+	 * Time to the first solution of a fresh JVM, with the plugins and their
+	 * solvers initialized lazily or all of them up front.
+	 */
+	@Test
+	void testTimeToFirstSolve() throws Exception {
+		final int runs = 3;
+		// the fresh JVMs run on the class path, also if the tests run as modules
+		String classpath = System.getProperty("java.class.path");
+		String modulepath = System.getProperty("jdk.module.path");
+		if (null != modulepath)
+			classpath = classpath + File.pathSeparator + modulepath;
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		System.out.printf("+-------+-------+------------+-----------+------------+%n");
+		System.out.printf("|  mode |  run  | engine[ms] | solve[ms] | uptime[ms] |%n");
+		System.out.printf("+-------+-------+------------+-----------+------------+%n");
+		for (int run = 1; run <= runs; run++) {
+			for (String mode : new String[] { EAGER, LAZY }) {
+				Process process = new ProcessBuilder(java, "-cp", classpath, LinearAlgebraPluginTest.class.getName(),
+						mode).redirectErrorStream(true).start();
+				String line;
+				try (BufferedReader in = new BufferedReader(
+						new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+					line = in.readLine();
+					while (null != in.readLine()) {
+						// drain the output of the JVM
+					}
+				}
+				assertEquals(0, process.waitFor(), line);
+				String[] times = line.trim().split("\\s+");
+				System.out.printf("| %5s | %5d | %10s | %9s | %10s |%n", mode, run, times[0], times[1], times[2]);
+			}
+		}
+		System.out.printf("+-------+-------+------------+-----------+------------+%n");
+	}
+
+	/**
+	 * Measures one bootstrap within a fresh JVM, prints the milliseconds to get
+	 * the engine, to solve the first problem and since the start of the JVM.
+	 *
+	 * @param args lazy or eager
+	 */
+	public static void main(String[] args) {
+		boolean eager = EAGER.equals(args[0]);
+		long start = System.nanoTime();
+		Axela engine = Axela.getEngine();
+		FactBase<double[], double[]> facts = new FactBase<>(new double[] { 1., 2. }, new double[] { 3., 4. });
+		if (eager) {
+			// the former bootstrap, all plugins and their solvers are created up front
+			for (Axela.Plugin plugin : ServiceLoader.load(Axela.Plugin.class)) {
+				engine.register(plugin);
+			}
+			FactBase<double[][], double[][]> matmat = new FactBase<>(new double[0][0], new double[0][0]);
+			engine.findSolverFor("PLUS", facts);
+			engine.findSolverFor("MULT", facts);
+			engine.findSolverFor("PLUS", matmat);
+			engine.findSolverFor("MULT", matmat);
+			engine.findSolverFor("MULT", new FactBase<>(new double[0][0], new double[0]));
+		}
+		long located = System.nanoTime();
+		double[] sum = engine.solve("PLUS", facts);
+		long solved = System.nanoTime();
+		if (4. != sum[0])
+			throw new IllegalStateException("wrong solution");
+		System.out.printf("%.2f %.2f %d%n", (located - start) * 1.E-6, (solved - located) * 1.E-6,
+				ManagementFactory.getRuntimeMXBean().getUptime());
+	}
+}
@@ -5,15 +5,38 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.Math;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.engine.AdaptiveIris;
+import de.lab4inf.axela.engine.AxelaEngine;
+import de.lab4inf.axela.engine.MemoryBudget;
+import de.lab4inf.axela.engine.SolveRejectedException;
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
 import de.lab4inf.axela.facts.FactBase;
 import de.lab4inf.axela.math.LinearAlgebra.MatVecCalc;
+import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+import de.lab4inf.axela.math.LinearAlgebra.VectorCalc;
 
 class LinearAlgebraTest {
 	final int size = 10;
@@ -46,6 +69,243 @@ class LinearAlgebraTest {
 		engine.register(new LinearAlgebraPlugin());
 	}
 
+	@Test
+	void testDotAsDouble() {
+		FactBase<double[], double[]> facts = new FactBase<>(vec1, vec2);
+		double expected = 0;
+		for (int i = 0; i < vec1.length; i++)
+			expected += vec1[i] * vec2[i];
+		assertEquals(expected, engine.solveAsDouble("MULT", facts), tolerance);
+		assertEquals(expected, (Double) engine.solve("MULT", facts), tolerance);
+		assertEquals(expected, engine.bindDouble("MULT", facts).solveAsDouble(facts), tolerance);
+	}
+
+	@Test
+	void testFootprint() {
+		MatrixCalc calc = new MatrixCalc();
+		FactBase<double[][], double[][]> facts = new FactBase<>(mat3, mat4);
+		// result 50x70 and the panels of a and b packed in slivers of four
+		long result = 16 + 50 * 8 + 50 * (16 + 70 * 8);
+		long packed = 16 + 52 * 100 * 8 + 16 + 100 * 72 * 8;
+		assertEquals(result + packed, calc.footprint("MULT", facts));
+		ExecutionHints reused = ExecutionHints.DEFAULT.withOutput(new double[50][70]);
+		assertEquals(packed, calc.footprint("MULT", new FactBase<>(mat3, mat4, reused)));
+		// each thread of the pool packs its own panels, the rows share them
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			MatrixCalc tiled = new MatrixCalc(Gemm.DEFAULT.withCutoff(1));
+			ExecutionHints parallel = ExecutionHints.parallel().withExecutor(pool);
+			assertEquals(result + 2 * packed, tiled.footprint("MULT", new FactBase<>(mat3, mat4, parallel)));
+			assertEquals(result + packed, calc.footprint("MULT", new FactBase<>(mat3, mat4, parallel)));
+		} finally {
+			pool.shutdown();
+		}
+		Matrix square = new Matrix(2048, 2048);
+		int threads = ForkJoinPool.commonPool().getParallelism();
+		long footprint = calc.multFootprint(square, square, ExecutionHints.parallel());
+		assertEquals(calc.multFootprint(square, square, ExecutionHints.DEFAULT.withParallelism(threads)), footprint);
+		assertTrue(footprint < (33L + 2 * threads) << 20, "footprint " + footprint);
+		assertEquals(16 + 100 * 8, new VectorCalc().footprint("PLUS", new FactBase<>(vec1, vec2)));
+		assertEquals(0, new VectorCalc().footprint("MULT", new FactBase<>(vec1, vec2)));
+		assertEquals(16 + 100 * 8, new MatVecCalc().footprint("MULT", new FactBase<>(mat5, vec3)));
+	}
+
+	@Test
+	void testMemoryBudget() {
+		AxelaEngine axela = new AxelaEngine();
+		axela.register(new LinearAlgebraPlugin());
+		MemoryBudget budget = new MemoryBudget(1L << 30, MemoryBudget.Overload.REJECT);
+		axela.setMemoryBudget(budget);
+		// 20000x20000 with one shared row, the solve needs 6.4 GB
+		double[] row = new double[20000];
+		double[][] huge = new double[20000][];
+		Arrays.fill(huge, row);
+		try {
+			axela.solve("MULT", new FactBase<double[][], double[][]>(huge, huge));
+			fail("no exception with working set beyond the budget thrown");
+		} catch (SolveRejectedException error) {
+			assertTrue(error.getMessage().contains("exceed"), error.getMessage());
+		}
+		double[][] product = axela.solve("MULT", new FactBase<double[][], double[][]>(mat1, mat2));
+		assertMatrixEquals(mult(mat1, mat2), product, tolerance);
+		assertEquals(1, budget.getRejected());
+		assertEquals(1, budget.getAdmitted());
+		assertEquals(0, budget.getReserved());
+		assertTrue(budget.getPeakReserved() > 2 * 100 * 100 * 8, "peak " + budget.getPeakReserved());
+	}
+
+	@Test
+	void testDenseMultMatMat() {
+		Matrix returned = engine.solve("MULT", new FactBase<>(Matrix.of(mat3), Matrix.of(mat4)));
+		assertMatrixEquals(mult(mat3, mat4), returned.toArray(), tolerance);
+		// b stored column major, used as transposed view of its contiguous copy
+		Matrix columnMajor = Matrix.of(mat4).transpose().copy().transpose();
+		assertEquals(returned, engine.solve("MULT", new FactBase<>(Matrix.of(mat3), columnMajor)));
+		ExecutionHints parallel = ExecutionHints.DEFAULT.withParallelism(4);
+		assertMatrixEquals(mult(mat3, mat4),
+				engine.<String, FactBase<Matrix, Matrix>, Matrix>solve("MULT",
+						new FactBase<>(Matrix.of(mat3), Matrix.of(mat4), parallel)).toArray(),
+				tolerance);
+	}
+
+	@Test
+	void testDenseMultBlocks() {
+		Matrix a = Matrix.of(mat1);
+		Matrix b = Matrix.of(mat2);
+		Matrix block = engine.solve("MULT", new FactBase<>(a.view(0, 0, 10, 20), b.view(0, 10, 20, 30)));
+		for (int i = 0; i < 10; i++)
+			for (int j = 0; j < 30; j++) {
+				double expected = 0;
+				for (int k = 0; k < 20; k++)
+					expected += mat1[i][k] * mat2[k][10 + j];
+				assertEquals(expected, block.get(i, j), tolerance);
+			}
+	}
+
+	@Test
+	void testDenseOutputReused() {
+		Matrix output = new Matrix(50, 70);
+		ExecutionHints hints = ExecutionHints.DEFAULT.withOutput(output);
+		Matrix first = engine.solve("MULT", new FactBase<>(Matrix.of(mat3), Matrix.of(mat4), hints));
+		Matrix second = engine.solve("MULT", new FactBase<>(Matrix.of(mat3), Matrix.of(mat4), hints));
+		assertTrue(first == output && second == output, "output not reused");
+		assertMatrixEquals(mult(mat3, mat4), output.toArray(), tolerance);
+	}
+
+	@Test
+	void testDensePlus() {
+		Matrix sum = engine.solve("PLUS", new FactBase<>(Matrix.of(mat1), Matrix.of(mat2)));
+		assertMatrixEquals(add(mat1, mat2), sum.toArray(), tolerance);
+		Vector vsum = engine.solve("PLUS", new FactBase<>(Vector.wrap(vec1), Vector.wrap(vec2)));
+		assertVectorEquals(add(vec1, vec2), vsum.toArray(), tolerance);
+		try {
+			engine.solve("PLUS", new FactBase<>(Matrix.of(mat1), Matrix.of(mat3)));
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testDenseDotAndMatVec() {
+		FactBase<double[], double[]> facts = new FactBase<>(vec1, vec2);
+		double expected = engine.solveAsDouble("MULT", facts);
+		assertEquals(expected, engine.solveAsDouble("MULT", new FactBase<>(Vector.wrap(vec1), Vector.wrap(vec2))),
+				tolerance);
+		// a column of a matrix is a strided vector
+		Matrix columns = Matrix.of(new double[][] { vec1, vec2 }).transpose();
+		assertEquals(expected, engine.solveAsDouble("MULT", new FactBase<>(columns.column(0), columns.column(1))),
+				tolerance);
+		double[] product = engine.solve("MULT", new FactBase<double[][], double[]>(mat5, vec3));
+		Vector dense = engine.solve("MULT", new FactBase<>(Matrix.of(mat5), Vector.wrap(vec3)));
+		assertVectorEquals(product, dense.toArray(), tolerance);
+	}
+
+	@Test
+	void testDenseZeroLength() {
+		try {
+			engine.solve("MULT", new FactBase<>(new Matrix(0, 3), new Matrix(3, 2)));
+			fail("no exception with empty matrix thrown");
+		} catch (NullPointerException error) {
+			assertEquals("length is zero", error.getMessage());
+		}
+	}
+
+	@Test
+	void testOffHeapVectors() {
+		// longer than a block, so the elements are streamed in several of them
+		double[] a = createRndVec(3 * LinearAlgebra.BLOCK + 17);
+		double[] b = createRndVec(a.length);
+		OffHeapVector x = OffHeapVector.of(a), y = OffHeapVector.of(b);
+		double expected = 0;
+		for (int i = 0; i < a.length; i++)
+			expected += a[i] * b[i];
+		assertEquals(expected, engine.solveAsDouble("MULT", new FactBase<>(x, y)), 1.E-12 * a.length);
+		ExecutionHints parallel = ExecutionHints.DEFAULT.withParallelism(3);
+		assertEquals(expected, engine.solveAsDouble("MULT", new FactBase<>(x, y, parallel)), 1.E-12 * a.length);
+		OffHeapVector sum = engine.solve("PLUS", new FactBase<>(x, y, parallel));
+		assertVectorEquals(add(a, b), sum.toArray(), 0.);
+		OffHeapVector output = OffHeapVector.allocate(a.length);
+		assertTrue(output == engine.solve("PLUS", new FactBase<>(x, y, ExecutionHints.DEFAULT.withOutput(output))),
+				"output not reused");
+		try {
+			engine.solve("PLUS", new FactBase<>(x, OffHeapVector.allocate(3)));
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testOffHeapMatrices() {
+		OffHeapMatrix a = OffHeapMatrix.of(mat3), b = OffHeapMatrix.of(mat4);
+		OffHeapMatrix product = engine.solve("MULT", new FactBase<>(a, b));
+		assertMatrixEquals(mult(mat3, mat4), product.toArray(), tolerance);
+		ExecutionHints parallel = ExecutionHints.DEFAULT.withParallelism(4);
+		product = engine.solve("MULT", new FactBase<>(a, b, parallel));
+		assertMatrixEquals(mult(mat3, mat4), product.toArray(), tolerance);
+		OffHeapMatrix sum = engine.solve("PLUS", new FactBase<>(OffHeapMatrix.of(mat1), OffHeapMatrix.of(mat2)));
+		assertMatrixEquals(add(mat1, mat2), sum.toArray(), tolerance);
+		OffHeapVector mv = engine.solve("MULT", new FactBase<>(OffHeapMatrix.of(mat5), OffHeapVector.of(vec3)));
+		double[] expected = engine.solve("MULT", new FactBase<double[][], double[]>(mat5, vec3));
+		assertVectorEquals(expected, mv.toArray(), tolerance);
+		try {
+			engine.solve("MULT", new FactBase<>(b, a));
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testOffHeapMappedFiles() throws Exception {
+		Path in = Files.createTempFile("axela", ".bin");
+		Path out = Files.createTempFile("axela", ".bin");
+		try {
+			OffHeapMatrix a = OffHeapMatrix.map(in, 0, mat3.length, mat3[0].length, true);
+			for (int i = 0; i < mat3.length; i++)
+				a.elements().put((long) i * mat3[0].length, mat3[i], 0, mat3[i].length);
+			a.force();
+			// the product is written into a mapped file, nothing on the heap but a row
+			OffHeapMatrix c = OffHeapMatrix.map(out, 0, mat3.length, mat4[0].length, true);
+			OffHeapMatrix returned = engine.solve("MULT",
+					new FactBase<>(OffHeapMatrix.map(in, 0, mat3.length, mat3[0].length, false),
+							OffHeapMatrix.of(mat4), ExecutionHints.DEFAULT.withOutput(c)));
+			assertTrue(returned == c, "output not reused");
+			c.force();
+			assertMatrixEquals(mult(mat3, mat4),
+					OffHeapMatrix.map(out, 0, mat3.length, mat4[0].length, false).toArray(), tolerance);
+			MatrixCalc calc = new MatrixCalc();
+			// a single tile, so a single set of tiles on the heap
+			long tiles = calc.getOutOfCore().footprint(mat3.length, mat4.length, mat4[0].length, 1);
+			assertTrue(tiles > 0, "no tiles");
+			assertEquals(tiles,
+					calc.multFootprint(a, OffHeapMatrix.of(mat4), ExecutionHints.DEFAULT.withParallelism(2)));
+			// a single worker without a parallelism
+			assertEquals(tiles, calc.multFootprint(a, OffHeapMatrix.of(mat4), ExecutionHints.DEFAULT));
+		} finally {
+			Files.delete(in);
+			Files.delete(out);
+		}
+	}
+
+	@Test
+	void testSparseSolvers() {
+		SparseMatrix s1 = SparseMatrix.of(mat1), s3 = SparseMatrix.of(mat3, SparseMatrix.Format.CSC);
+		SparseMatrix product = engine.solve("MULT", new FactBase<>(s3, s1, ExecutionHints.DEFAULT.withParallelism(3)));
+		assertMatrixEquals(mult(mat3, mat1), product.toArray(), tolerance);
+		SparseMatrix sum = engine.solve("PLUS", new FactBase<>(s1, SparseMatrix.of(mat2)));
+		assertMatrixEquals(add(mat1, mat2), sum.toArray(), tolerance);
+		double[] mv = engine.solve("MULT", new FactBase<>(s3, vec1));
+		assertVectorEquals(mult(mat3, vec1), mv, tolerance);
+		Vector dense = engine.solve("MULT", new FactBase<>(s3, Vector.wrap(vec1)));
+		assertVectorEquals(mult(mat3, vec1), dense.toArray(), tolerance);
+		Matrix mm = engine.solve("MULT", new FactBase<>(s3, Matrix.of(mat4)));
+		assertMatrixEquals(mult(mat3, mat4), mm.toArray(), tolerance);
+		Matrix plus = engine.solve("PLUS", new FactBase<>(s1, Matrix.of(mat2)));
+		assertMatrixEquals(add(mat1, mat2), plus.toArray(), tolerance);
+	}
+
 	@Test
 	void testSolvePlusVecVec() {
 		double[] expected = add(vec1, vec2);
@@ -349,6 +609,191 @@ class LinearAlgebraTest {
 		}
 	}
 
+	@Test
+	void testAdaptiveMult() {
+		AdaptiveIris<String, FactBase<double[][], double[][]>, double[][]> mult = LinearAlgebraPlugin.matrixMult();
+		double[][] expected = mult(mat3, mat4);
+		for (int k = 0; k < 10; k++) {
+			double[][] returned = mult.solve("MULT", new FactBase<double[][], double[][]>(mat3, mat4));
+			assertMatrixEquals(expected, returned, tolerance);
+		}
+		assertEquals(2, mult.getCostModels().size());
+		long calls = 0;
+		for (AdaptiveIris.Route route : mult.getRoutes()) {
+			assertTrue(route.getMinSize() <= 50 * 100 * 70 && 50 * 100 * 70 <= route.getMaxSize(), route.toString());
+			calls += route.getCalls();
+		}
+		assertEquals(10, calls);
+		mult.solve("MULT", new FactBase<double[][], double[][]>(mat10, mat11, true));
+		assertTrue(mult.getRoutes().toString().contains(LinearAlgebraPlugin.PARALLEL));
+	}
+
+	@Test
+	void testHintsExecutor() {
+		AtomicInteger tasks = new AtomicInteger();
+		Executor tenant = task -> {
+			tasks.incrementAndGet();
+			new Thread(task).start();
+		};
+		ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(4).withExecutor(tenant);
+		// a part per processor of the unknown executor, the caller runs one
+		final int parts = Math.min(4, Runtime.getRuntime().availableProcessors() + 1);
+		double[][] returned = engine.solve("MULT", new FactBase<double[][], double[][]>(mat1, mat2, hints));
+		assertMatrixEquals(mult(mat1, mat2), returned, tolerance);
+		assertEquals(parts - 1, tasks.get());
+		// below the grain the kernels run on the calling thread
+		double[] vector = engine.solve("MULT", new FactBase<double[][], double[]>(mat1, vec1, hints));
+		assertVectorEquals(mult(mat1, vec1), vector, tolerance);
+		double dot = engine.solve("MULT", new FactBase<double[], double[]>(vec1, vec2, hints));
+		assertEqualsDelta(mult(vec1, vec2), dot, tolerance);
+		double[][] sum = engine.solve("PLUS", new FactBase<double[][], double[][]>(mat1, mat2, hints));
+		assertMatrixEquals(add(mat1, mat2), sum, tolerance);
+		assertEquals(parts - 1, tasks.get());
+		double[] x = createRndVec(4 * LinearAlgebra.GRAIN), y = createRndVec(4 * LinearAlgebra.GRAIN);
+		dot = engine.solve("MULT", new FactBase<double[], double[]>(x, y, hints));
+		assertEqualsDelta(mult(x, y), dot, tolerance);
+		assertEquals(2 * (parts - 1), tasks.get());
+
+		ExecutionHints serial = ExecutionHints.serial().withExecutor(tenant);
+		engine.solve("MULT", new FactBase<double[][], double[][]>(mat1, mat2, serial));
+		assertEquals(2 * (parts - 1), tasks.get());
+	}
+
+	@Test
+	void testChunks() {
+		VectorCalc calc = new VectorCalc();
+		ExecutionHints parallel = ExecutionHints.parallel();
+		// one part per worker of the pool and the caller, not per element
+		int workers = ForkJoinPool.commonPool().getParallelism() + 1;
+		assertEquals(Math.min(workers, 4_000_000 / LinearAlgebra.GRAIN),
+				calc.chunks(4_000_000, LinearAlgebra.GRAIN, parallel));
+		assertEquals(1, calc.chunks(LinearAlgebra.GRAIN + 1, LinearAlgebra.GRAIN, parallel));
+		assertEquals(Math.min(workers, 3), calc.chunks(3, parallel));
+		assertEquals(1, calc.chunks(4_000_000, LinearAlgebra.GRAIN, ExecutionHints.DEFAULT));
+		ForkJoinPool pool = new ForkJoinPool(7);
+		try {
+			assertEquals(8, calc.chunks(4_000_000, LinearAlgebra.GRAIN, parallel.withExecutor(pool)));
+			ExecutionHints three = parallel.withExecutor(pool).withParallelism(3);
+			assertEquals(3, calc.chunks(4_000_000, LinearAlgebra.GRAIN, three));
+		} finally {
+			pool.shutdown();
+		}
+		double[] x = createRndVec(4 * LinearAlgebra.GRAIN + 3), y = createRndVec(4 * LinearAlgebra.GRAIN + 3);
+		assertEqualsDelta(mult(x, y), calc.dot(x, y, parallel), tolerance);
+	}
+
+	@Test
+	void testHintsFloat() {
+		ExecutionHints hints = ExecutionHints.DEFAULT.withPrecision(Precision.FLOAT);
+		double[][] returned = engine.solve("MULT", new FactBase<double[][], double[][]>(mat1, mat2, hints));
+		assertMatrixEquals(mult(mat1, mat2), returned, 1.E-4);
+		for (double[] row : returned)
+			for (double value : row)
+				assertEquals((float) value, value);
+		double dot = engine.solve("MULT", new FactBase<double[], double[]>(vec1, vec2, hints));
+		assertEqualsDelta(mult(vec1, vec2), dot, 1.E-4);
+		double[] vector = engine.solve("MULT", new FactBase<double[][], double[]>(mat1, vec1, hints.withParallelism(3)));
+		assertVectorEquals(mult(mat1, vec1), vector, 1.E-4);
+	}
+
+	@Test
+	void testHintsOutput() {
+		double[][] buffer = new double[mat3.length][mat4[0].length];
+		ExecutionHints hints = ExecutionHints.DEFAULT.withOutput(buffer);
+		for (int k = 0; k < 3; k++) {
+			double[][] returned = engine.solve("MULT", new FactBase<double[][], double[][]>(mat3, mat4, hints));
+			assertTrue(buffer == returned);
+			assertMatrixEquals(mult(mat3, mat4), returned, tolerance);
+		}
+		// a buffer not fitting is not used
+		double[][] returned = engine.solve("MULT", new FactBase<double[][], double[][]>(mat10, mat11, hints));
+		assertTrue(buffer != returned);
+		double[] vector = new double[vec1.length];
+		assertTrue(vector == engine.solve("PLUS",
+				new FactBase<double[], double[]>(vec1, vec2, ExecutionHints.DEFAULT.withOutput(vector))));
+	}
+
+	@Test
+	void testHintsDeadline() {
+		ExecutionHints hints = ExecutionHints.DEFAULT.withDeadline(System.nanoTime() - 1);
+		try {
+			engine.solve("MULT", new FactBase<double[][], double[][]>(mat1, mat2, hints.withParallelism(4)));
+			fail("no exception with expired deadline thrown");
+		} catch (DeadlineExceededException error) {
+			assertTrue(error.getMessage().contains("deadline exceeded"), error.getMessage());
+		}
+		try {
+			engine.solve("MULT", new FactBase<double[][], double[]>(mat1, vec1, hints));
+			fail("no exception with expired deadline thrown");
+		} catch (DeadlineExceededException error) {
+			assertTrue(error.getMessage().contains("deadline exceeded"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testTimeoutRunaway() {
+		double[][] a = createRndMat(1000, 1000);
+		for (int parallelism : new int[] { 1, 4 }) {
+			FactBase<double[][], double[][]> facts = new FactBase<>(a, a,
+					ExecutionHints.DEFAULT.withParallelism(parallelism));
+			long start = System.nanoTime();
+			try {
+				engine.solve("MULT", facts, Duration.ofMillis(20));
+				fail("no exception with exceeded deadline thrown");
+			} catch (DeadlineExceededException error) {
+				long millis = (System.nanoTime() - start) / 1_000_000;
+				assertTrue(millis < 200, "stopped after " + millis + "ms");
+			}
+		}
+	}
+
+	@Test
+	void testCancelRunaway() throws Exception {
+		double[][] a = createRndMat(1000, 1000);
+		CancellationToken token = new CancellationToken();
+		ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(4).withCancellation(token);
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				return;
+			}
+			token.cancel();
+		});
+		canceller.start();
+		try {
+			engine.solve("MULT", new FactBase<double[][], double[][]>(a, a, hints));
+			fail("no exception with cancelled token thrown");
+		} catch (DeadlineExceededException error) {
+			fail("token has no deadline");
+		} catch (SolveCancelledException error) {
+			assertTrue(error.getMessage().contains("cancelled"), error.getMessage());
+		}
+		canceller.join();
+	}
+
+	@Test
+	void testMultEvent() throws Exception {
+		Path dump = Files.createTempFile("axela", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("de.lab4inf.axela.MatrixMult");
+			recording.start();
+			engine.solve("MULT", new FactBase<double[][], double[][]>(mat3, mat4, true));
+			recording.stop();
+			recording.dump(dump);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+			events.removeIf(e -> !e.getEventType().getName().equals("de.lab4inf.axela.MatrixMult"));
+			assertEquals(1, events.size());
+			RecordedEvent event = events.get(0);
+			assertEquals(mat3.length, event.getInt("rows"));
+			assertEquals(mat4.length, event.getInt("inner"));
+			assertEquals(mat4[0].length, event.getInt("cols"));
+			assertTrue(event.getBoolean("parallel"));
+		} finally {
+			Files.deleteIfExists(dump);
+		}
+	}
+
 	@Test
 	void testSolveMultMatSpeed() {
 		System.out.printf("+------+-----------+------------------+------------------+---------+--------+%n");
@@ -0,0 +1,142 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.engine.SolutionCache;
+import de.lab4inf.axela.facts.FactKey;
+
+class MatrixTest {
+	final double[][] array = { { 1., 2., 3. }, { 4., 5., 6. } };
+
+	@Test
+	void testConversion() {
+		Matrix m = Matrix.of(array);
+		assertEquals(2, m.getRows());
+		assertEquals(3, m.getColumns());
+		assertEquals(6., m.get(1, 2), 0.);
+		assertTrue(m.isContiguous());
+		double[][] back = m.toArray();
+		for (int i = 0; i < array.length; i++)
+			assertArrayEquals(array[i], back[i], 0.);
+	}
+
+	@Test
+	void testWrap() {
+		double[] data = { 1., 2., 3., 4., 5., 6. };
+		Matrix m = Matrix.wrap(data, 2, 3);
+		assertEquals(Matrix.of(array), m);
+		m.set(0, 0, 7.);
+		assertEquals(7., data[0], 0.);
+		try {
+			Matrix.wrap(data, 4, 2);
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+		assertArrayEquals(data, Vector.wrap(data).toArray(), 0.);
+	}
+
+	@Test
+	void testTranspose() {
+		Matrix m = Matrix.of(array);
+		Matrix t = m.transpose();
+		assertEquals(3, t.getRows());
+		assertEquals(2, t.getColumns());
+		assertEquals(4., t.get(0, 1), 0.);
+		assertFalse(t.isContiguous());
+		t.set(2, 0, 9.);
+		assertEquals(9., m.get(0, 2), 0.);
+		assertEquals(m, t.transpose());
+		assertTrue(t.copy().isContiguous());
+		assertEquals(t, t.copy());
+	}
+
+	@Test
+	void testView() {
+		Matrix m = Matrix.of(new double[][] { { 1., 2., 3. }, { 4., 5., 6. }, { 7., 8., 9. } });
+		Matrix block = m.view(1, 1, 2, 2);
+		assertEquals(Matrix.of(new double[][] { { 5., 6. }, { 8., 9. } }), block);
+		assertFalse(block.isContiguous());
+		block.set(0, 0, 0.);
+		assertEquals(0., m.get(1, 1), 0.);
+		assertArrayEquals(new double[] { 6., 9. }, block.transpose().row(1).toArray(), 0.);
+		try {
+			m.view(2, 0, 2, 1);
+			fail("no exception with block outside the matrix thrown");
+		} catch (IndexOutOfBoundsException error) {
+			// expected
+		}
+	}
+
+	@Test
+	void testRowsAndColumns() {
+		Matrix m = Matrix.of(array);
+		assertArrayEquals(array[1], m.row(1).toArray(), 0.);
+		Vector column = m.column(1);
+		assertArrayEquals(new double[] { 2., 5. }, column.toArray(), 0.);
+		column.set(1, 0.);
+		assertEquals(0., m.get(1, 1), 0.);
+		assertArrayEquals(new double[] { 0., 6. }, m.row(1).view(1, 2).toArray(), 0.);
+		try {
+			m.row(2);
+			fail("no exception with row outside the matrix thrown");
+		} catch (IndexOutOfBoundsException error) {
+			// expected
+		}
+	}
+
+	@Test
+	void testAssign() {
+		Matrix m = new Matrix(3, 2);
+		m.assign(Matrix.of(array).transpose());
+		assertEquals(Matrix.of(new double[][] { { 1., 4. }, { 2., 5. }, { 3., 6. } }), m);
+		try {
+			m.assign(Matrix.of(array));
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testEquals() {
+		Matrix m = Matrix.of(array);
+		Matrix t = Matrix.of(new double[][] { { 1., 4. }, { 2., 5. }, { 3., 6. } }).transpose();
+		assertEquals(m, t);
+		assertEquals(m.hashCode(), t.hashCode());
+		assertNotEquals(m, m.transpose());
+		assertEquals(m.column(0), Vector.wrap(new double[] { 1., 4. }));
+		assertEquals(m.column(0).hashCode(), Vector.wrap(new double[] { 1., 4. }).hashCode());
+	}
+
+	@Test
+	void testTooLarge() {
+		try {
+			new Matrix(1 << 16, 1 << 16);
+			fail("no exception with too large matrix thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("too large"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testWeight() {
+		Matrix m = new Matrix(64, 32);
+		assertEquals(8L * 64 * 32, m.weight());
+		assertEquals(8L * 64, m.column(0).weight());
+		// a matrix solution counts by its elements towards the cache bound
+		SolutionCache cache = new SolutionCache(10, 8 * 1024);
+		cache.put(new FactKey("MULT", new double[] { 1. }), m);
+		assertEquals(0, cache.size(), "matrix heavier than the cache stored");
+		cache.put(new FactKey("MULT", new double[] { 2. }), new Matrix(8, 8));
+		assertEquals(1, cache.size());
+		assertTrue(cache.getWeight() > 8 * 64, "weight " + cache.getWeight());
+	}
+}
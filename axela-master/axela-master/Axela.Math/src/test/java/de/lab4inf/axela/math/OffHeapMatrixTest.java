@@ -0,0 +1,79 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapMatrixTest {
+
+	@Test
+	void testConversion() {
+		double[][] a = { { 1, 2, 3 }, { 4, 5, 6 } };
+		OffHeapMatrix m = OffHeapMatrix.of(a);
+		assertEquals(2, m.getRows());
+		assertEquals(3, m.getColumns());
+		assertEquals(6, m.get(1, 2), 0.);
+		m.set(0, 1, 7);
+		assertEquals(7, m.elements().get(1), 0.);
+		double[][] b = m.toArray();
+		assertEquals(7, b[0][1], 0.);
+		assertEquals(4, b[1][0], 0.);
+		try {
+			m.get(2, 0);
+			fail("no exception with index out of bounds thrown");
+		} catch (IndexOutOfBoundsException error) {
+			// expected
+		}
+		try {
+			OffHeapMatrix.of(new double[][] { { 1, 2 }, { 3 } });
+			fail("no exception with ragged rows thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testWrap() {
+		OffHeapVector v = OffHeapVector.allocate(12);
+		OffHeapMatrix m = OffHeapMatrix.wrap(v, 3, 4);
+		m.set(2, 3, 5);
+		assertEquals(5, v.get(11), 0.);
+		try {
+			OffHeapMatrix.wrap(v, 5, 4);
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testMapFile() throws IOException {
+		Path file = Files.createTempFile("axela", ".bin");
+		try {
+			OffHeapMatrix m = OffHeapMatrix.map(file, 0, 20, 30, true);
+			for (int i = 0; i < 20; i++)
+				for (int j = 0; j < 30; j++)
+					m.set(i, j, i * 100 + j);
+			m.force();
+			assertEquals(20 * 30 * Double.BYTES, Files.size(file));
+			OffHeapMatrix n = OffHeapMatrix.map(file, 0, 20, 30, false);
+			assertEquals(1929, n.get(19, 29), 0.);
+			assertTrue(n.toString().contains("mapped"), n.toString());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testWeight() {
+		OffHeapMatrix m = OffHeapMatrix.allocate(40, 25);
+		assertEquals(8L * 40 * 25, m.weight());
+		assertEquals(m.elements().weight(), m.weight());
+	}
+}
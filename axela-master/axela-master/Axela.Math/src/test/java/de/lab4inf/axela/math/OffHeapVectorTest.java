@@ -0,0 +1,164 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapVectorTest {
+	final double tolerance = 1.E-12;
+	final Random rd = new Random(42);
+
+	@Test
+	void testSegments() {
+		// small segments, so the vectors cross several of them
+		OffHeapVector v = OffHeapVector.allocate(37, 10);
+		assertEquals(37, v.length());
+		assertFalse(v.isMapped());
+		for (long i = 0; i < 37; i++)
+			v.set(i, i + 0.5);
+		for (long i = 0; i < 37; i++)
+			assertEquals(i + 0.5, v.get(i), 0.);
+		double[] part = new double[25];
+		v.get(7, part, 2, 23);
+		for (int k = 0; k < 23; k++)
+			assertEquals(7 + k + 0.5, part[2 + k], 0.);
+		double[] src = createRndVec(30);
+		v.put(5, src, 0, 30);
+		double[] a = v.toArray();
+		for (int k = 0; k < 30; k++)
+			assertEquals(src[k], a[5 + k], 0.);
+		assertEquals(4.5, a[4], 0.);
+	}
+
+	@Test
+	void testBounds() {
+		OffHeapVector v = OffHeapVector.allocate(5);
+		try {
+			v.get(5);
+			fail("no exception with index out of bounds thrown");
+		} catch (IndexOutOfBoundsException error) {
+			assertTrue(error.getMessage().contains("5"), error.getMessage());
+		}
+		try {
+			v.put(3, new double[3], 0, 3);
+			fail("no exception with range out of bounds thrown");
+		} catch (IndexOutOfBoundsException error) {
+			// expected
+		}
+		try {
+			OffHeapVector.allocate(-1);
+			fail("no exception with negative length thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("negative"), error.getMessage());
+		}
+		assertEquals(0, OffHeapVector.allocate(0).toArray().length);
+	}
+
+	@Test
+	void testMapFile() throws IOException {
+		Path file = Files.createTempFile("axela", ".bin");
+		try {
+			double[] a = createRndVec(100);
+			// written big endian by Java, read at an offset of one double
+			try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+				out.writeDouble(-1);
+				for (double x : a)
+					out.writeDouble(x);
+			}
+			OffHeapVector v = OffHeapVector.map(file, Double.BYTES, 100, false, ByteOrder.BIG_ENDIAN, 16);
+			assertTrue(v.isMapped());
+			for (int i = 0; i < 100; i++)
+				assertEquals(a[i], v.get(i), 0.);
+			try {
+				v.set(0, 1.);
+				fail("no exception with read only file thrown");
+			} catch (ReadOnlyBufferException error) {
+				// expected
+			}
+			try {
+				OffHeapVector.map(file, 0, 102, false);
+				fail("no exception with too short file thrown");
+			} catch (IllegalArgumentException error) {
+				assertTrue(error.getMessage().contains("less than"), error.getMessage());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testWriteFile() throws IOException {
+		Path file = Files.createTempFile("axela", ".bin");
+		try {
+			OffHeapVector v = OffHeapVector.map(file, 0, 50, true, ByteOrder.LITTLE_ENDIAN, 16);
+			assertEquals(50 * Double.BYTES, Files.size(file));
+			for (int i = 0; i < 50; i++)
+				v.set(i, i * 2.);
+			v.force();
+			ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < 50; i++)
+				assertEquals(i * 2., bytes.getDouble(i * Double.BYTES), 0.);
+			// a second mapping sees the elements of the first
+			OffHeapVector w = OffHeapVector.map(file, 0, 50, false, ByteOrder.LITTLE_ENDIAN);
+			assertEquals(98., w.get(49), 0.);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	void testKernels() {
+		double[] a = createRndVec(53), b = createRndVec(53);
+		OffHeapVector x = OffHeapVector.allocate(53, 10);
+		OffHeapVector y = OffHeapVector.allocate(53, 7);
+		x.put(0, a, 0, 53);
+		y.put(0, b, 0, 53);
+		// the segments of x and y end at different elements
+		for (int n : new int[] { 0, 1, 3, 4, 9, 17, 40 }) {
+			double expected = 0;
+			for (int k = 0; k < n; k++)
+				expected += a[3 + k] * b[11 + k];
+			assertEquals(expected, OffHeapVector.dot(x, 3, y, 11, n, false), tolerance);
+			double single = OffHeapVector.dot(x, 3, y, 11, n, true);
+			assertEquals((float) single, single);
+			assertEquals(expected, single, 1.E-5);
+		}
+		OffHeapVector r = OffHeapVector.allocate(53, 13);
+		OffHeapVector.add(x, 2, y, 5, r, 1, 45, false);
+		for (int k = 0; k < 45; k++)
+			assertEquals(a[2 + k] + b[5 + k], r.get(1 + k), 0.);
+		assertEquals(0., r.get(0), 0.);
+	}
+
+	@Test
+	void testCopy() {
+		double[] a = createRndVec(20);
+		OffHeapVector v = OffHeapVector.of(a);
+		assertEquals(20, v.length());
+		double[] b = v.toArray();
+		for (int i = 0; i < a.length; i++)
+			assertEquals(a[i], b[i], 0.);
+		// identity, the elements may change underneath
+		assertFalse(v.equals(OffHeapVector.of(a)));
+		assertTrue(v.equals(v));
+	}
+
+	private double[] createRndVec(int n) {
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++)
+			v[i] = rd.nextDouble();
+		return v;
+	}
+}
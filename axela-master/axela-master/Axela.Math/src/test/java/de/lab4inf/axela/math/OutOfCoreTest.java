@@ -0,0 +1,198 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+
+class OutOfCoreTest {
+	final double tolerance = 1.E-10;
+	final Random rd = new Random(42);
+
+	@Test
+	void testTiles() {
+		// ragged tiles in every dimension
+		double[][] a = createRndMat(37, 29), b = createRndMat(29, 41);
+		double[][] expected = mult(a, b);
+		MatrixCalc calc = new MatrixCalc(Strassen.DEFAULT, new OutOfCore(Gemm.DEFAULT, 8));
+		for (int parallelism = 1; parallelism <= 3; parallelism++) {
+			OffHeapMatrix c = calc.mult(OffHeapMatrix.of(a), OffHeapMatrix.of(b),
+					ExecutionHints.DEFAULT.withParallelism(parallelism));
+			assertMatrixEquals(expected, c.toArray(), tolerance);
+		}
+		OffHeapMatrix single = calc.mult(OffHeapMatrix.of(a), OffHeapMatrix.of(b),
+				ExecutionHints.DEFAULT.withPrecision(Precision.FLOAT));
+		assertMatrixEquals(expected, single.toArray(), 1.E-4);
+		assertEquals((float) single.get(3, 5), single.get(3, 5), 0.);
+	}
+
+	@Test
+	void testPrefetch() {
+		double[][] a = createRndMat(20, 30), b = createRndMat(30, 10);
+		OffHeapMatrix c = OffHeapMatrix.allocate(20, 10);
+		// 3x2 tiles of C with 4 panels each, all but the first read ahead
+		AtomicInteger reads = new AtomicInteger();
+		Executor counting = task -> {
+			reads.incrementAndGet();
+			new Thread(task).start();
+		};
+		new OutOfCore(Gemm.DEFAULT, 8, counting).mult(OffHeapMatrix.of(a), OffHeapMatrix.of(b), c, 0, 6, false,
+				new CancellationToken());
+		assertEquals(24, reads.get());
+		assertMatrixEquals(mult(a, b), c.toArray(), tolerance);
+		// without prefetching the workers read the tiles themselves
+		Executor rejecting = task -> {
+			throw new RejectedExecutionException();
+		};
+		OffHeapMatrix d = OffHeapMatrix.allocate(20, 10);
+		new OutOfCore(Gemm.DEFAULT, 8, rejecting).mult(OffHeapMatrix.of(a), OffHeapMatrix.of(b), d, 0, 6, false,
+				new CancellationToken());
+		assertMatrixEquals(mult(a, b), d.toArray(), tolerance);
+	}
+
+	@Test
+	void testCancel() {
+		OutOfCore outOfCore = new OutOfCore(Gemm.DEFAULT, 8, Runnable::run);
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		try {
+			outOfCore.mult(OffHeapMatrix.allocate(16, 16), OffHeapMatrix.allocate(16, 16),
+					OffHeapMatrix.allocate(16, 16), 0, 4, false, token);
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException error) {
+			// expected
+		}
+	}
+
+	@Test
+	void testFootprint() {
+		OutOfCore outOfCore = new OutOfCore(Gemm.DEFAULT, 1024);
+		long tile = 16 + 1024 * 1024 * 8L;
+		long footprint = outOfCore.footprint(100_000, 100_000, 100_000, 4);
+		// bounded by the tiles, not by the 80 GB of each matrix
+		assertEquals(footprint, outOfCore.footprint(10_000, 10_000, 10_000, 4));
+		assertTrue(footprint >= 4 * 5 * tile, "footprint " + footprint);
+		assertTrue(footprint < 4 * 7 * tile, "footprint " + footprint);
+		assertEquals(footprint / 4, outOfCore.footprint(100_000, 100_000, 100_000, 1));
+		// at most one worker per tile of C
+		assertEquals(outOfCore.footprint(1000, 100_000, 1000, 1), outOfCore.footprint(1000, 100_000, 1000, 4));
+		long budget = 256L << 20;
+		int side = OutOfCore.tileFor(budget, 4);
+		assertEquals(0, side % 64);
+		assertTrue(new OutOfCore(Gemm.DEFAULT, side).footprint(100_000, 100_000, 100_000, 4) <= budget);
+		assertTrue(new OutOfCore(Gemm.DEFAULT, side + 64).footprint(100_000, 100_000, 100_000, 4) > budget / 2);
+		assertEquals(64, OutOfCore.tileFor(1, 1));
+		try {
+			new OutOfCore(Gemm.DEFAULT, 0);
+			fail("no exception with empty tiles thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("tile"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testMappedFiles() throws IOException {
+		benchmark(300, 64, 2);
+	}
+
+	/**
+	 * Multiplies two random n x n matrices from files, to be run with a heap
+	 * smaller than the files, e.g. -Xmx256m for n = 8192 with 512 MB per file.
+	 *
+	 * @param args n, the tile and the parallelism, by default 8192, 1024 and the
+	 *             number of processors
+	 * @throws IOException if the files can not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 8192;
+		int tile = args.length > 1 ? Integer.parseInt(args[1]) : OutOfCore.TILE;
+		int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		new OutOfCoreTest().benchmark(n, tile, parallelism);
+	}
+
+	void benchmark(int n, int tile, int parallelism) throws IOException {
+		Path fa = Files.createTempFile("axela", ".a"), fb = Files.createTempFile("axela", ".b");
+		Path fc = Files.createTempFile("axela", ".c");
+		try {
+			// written row by row, never more than a row on the heap
+			OffHeapMatrix a = OffHeapMatrix.map(fa, 0, n, n, true), b = OffHeapMatrix.map(fb, 0, n, n, true);
+			for (int i = 0; i < n; i++) {
+				a.elements().put((long) i * n, createRndVec(n), 0, n);
+				b.elements().put((long) i * n, createRndVec(n), 0, n);
+			}
+			a.force();
+			b.force();
+			OffHeapMatrix c = OffHeapMatrix.map(fc, 0, n, n, true);
+			MatrixCalc calc = new MatrixCalc(Strassen.DEFAULT, new OutOfCore(Gemm.DEFAULT, tile));
+			ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(parallelism).withOutput(c);
+			long start = System.nanoTime();
+			OffHeapMatrix product = calc.mult(OffHeapMatrix.map(fa, 0, n, n, false),
+					OffHeapMatrix.map(fb, 0, n, n, false), hints);
+			product.force();
+			long time = System.nanoTime() - start;
+			assertTrue(product == c, "output not reused");
+			System.out.printf("out-of-core %dx%d tile %d: %.2f s, %.2f GFlop/s, heap %d MB, files %d MB%n", n, n, tile,
+					time * 1.E-9, 2. * n * n * n / time, calc.multFootprint(a, b, hints) >> 20,
+					3L * n * n * Double.BYTES >> 20);
+			// some rows and columns of the product
+			for (int i = 0; i < n; i += Math.max(1, n / 7)) {
+				for (int j = 0; j < n; j += Math.max(1, n / 5)) {
+					double expected = 0;
+					for (int k = 0; k < n; k++)
+						expected += a.get(i, k) * b.get(k, j);
+					assertEquals(expected, product.get(i, j), tolerance * n);
+				}
+			}
+		} finally {
+			Files.delete(fa);
+			Files.delete(fb);
+			Files.delete(fc);
+		}
+	}
+
+	private static double[][] mult(double[][] a, double[][] b) {
+		double[][] c = new double[a.length][b[0].length];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < b[0].length; j++)
+				for (int k = 0; k < b.length; k++)
+					c[i][j] += a[i][k] * b[k][j];
+		return c;
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] actual, double delta) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			for (int j = 0; j < expected[i].length; j++)
+				assertEquals(expected[i][j], actual[i][j], delta);
+	}
+
+	private double[] createRndVec(int n) {
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++)
+			v[i] = rd.nextDouble();
+		return v;
+	}
+
+	private double[][] createRndMat(int rows, int cols) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				m[i][j] = rd.nextDouble();
+		return m;
+	}
+}
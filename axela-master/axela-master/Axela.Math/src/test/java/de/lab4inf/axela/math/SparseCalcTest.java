@@ -0,0 +1,318 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.math.LinearAlgebra.MatVecCalc;
+import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+import de.lab4inf.axela.math.LinearAlgebra.SparseCalc;
+import de.lab4inf.axela.math.SparseMatrix.Format;
+
+class SparseCalcTest {
+	final double tolerance = 1.E-12;
+	final Random rd = new Random(42);
+	final SparseCalc calc = new SparseCalc();
+
+	@Test
+	void testMatVec() {
+		double[][] a = createRndMat(53, 41, 0.1);
+		double[] x = createRndVec(41);
+		double[] expected = mult(a, x);
+		for (Format format : Format.values()) {
+			SparseMatrix s = SparseMatrix.of(a, format);
+			for (int parallelism = 1; parallelism <= 4; parallelism++) {
+				ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(parallelism);
+				assertVectorEquals(expected, calc.mult(s, x, hints), tolerance);
+				// a column is a strided view
+				Matrix m = new Matrix(41, 2);
+				for (int k = 0; k < 41; k++)
+					m.set(k, 1, x[k]);
+				Vector product = calc.mult(s, m.column(1), hints);
+				assertVectorEquals(expected, product.toArray(), tolerance);
+			}
+			double[] single = calc.mult(s, x, ExecutionHints.DEFAULT.withPrecision(Precision.FLOAT));
+			assertVectorEquals(expected, single, 1.E-5);
+			assertEquals((float) single[7], single[7], 0.);
+		}
+		double[] output = new double[53];
+		assertTrue(output == calc.mult(SparseMatrix.of(a), x, ExecutionHints.DEFAULT.withOutput(output)),
+				"output not reused");
+		try {
+			calc.mult(SparseMatrix.of(a), new double[40], ExecutionHints.DEFAULT);
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSkewedRows() {
+		// one dense row and many empty ones, the parts split the non-zeros
+		double[][] a = new double[1000][300];
+		for (int j = 0; j < 300; j++)
+			a[500][j] = j;
+		a[999][0] = 1;
+		double[] x = createRndVec(300);
+		SparseMatrix s = SparseMatrix.of(a);
+		assertVectorEquals(mult(a, x), calc.mult(s, x, ExecutionHints.DEFAULT.withParallelism(4)), tolerance);
+		SparseMatrix product = calc.mult(s, s.transpose(), ExecutionHints.DEFAULT.withParallelism(3));
+		assertMatrixEquals(mult(a, transpose(a)), product.toArray(), 1.E-8);
+	}
+
+	@Test
+	void testSparseSparse() {
+		double[][] a = createRndMat(37, 29, 0.15), b = createRndMat(29, 31, 0.2);
+		double[][] expected = mult(a, b);
+		for (Format fa : Format.values()) {
+			for (Format fb : Format.values()) {
+				SparseMatrix x = SparseMatrix.of(a, fa), y = SparseMatrix.of(b, fb);
+				for (int parallelism = 1; parallelism <= 3; parallelism += 2) {
+					SparseMatrix c = calc.mult(x, y, ExecutionHints.DEFAULT.withParallelism(parallelism));
+					assertMatrixEquals(expected, c.toArray(), tolerance);
+					SparseMatrixTest.assertIndicesIncrease(c);
+					// two CSC factors keep their format
+					assertEquals(Format.CSC == fa && Format.CSC == fb ? Format.CSC : Format.CSR, c.getFormat());
+				}
+			}
+		}
+		SparseMatrix c = calc.mult(SparseMatrix.of(a), SparseMatrix.of(b),
+				ExecutionHints.DEFAULT.withPrecision(Precision.FLOAT));
+		assertMatrixEquals(expected, c.toArray(), 1.E-5);
+		try {
+			calc.mult(SparseMatrix.of(a), SparseMatrix.of(a), ExecutionHints.DEFAULT);
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testSparseAdd() {
+		double[][] a = createRndMat(23, 19, 0.2), b = createRndMat(23, 19, 0.2);
+		// some elements cancel, they stay stored
+		b[3][4] = -a[3][4];
+		double[][] expected = add(a, b);
+		for (Format fa : Format.values()) {
+			for (Format fb : Format.values()) {
+				SparseMatrix c = calc.add(SparseMatrix.of(a, fa), SparseMatrix.of(b, fb),
+						ExecutionHints.DEFAULT.withParallelism(2));
+				assertEquals(fa, c.getFormat());
+				assertMatrixEquals(expected, c.toArray(), 0.);
+				SparseMatrixTest.assertIndicesIncrease(c);
+			}
+		}
+		SparseMatrix sum = calc.add(SparseMatrix.of(a), new SparseMatrix(23, 19), ExecutionHints.DEFAULT);
+		assertEquals(SparseMatrix.of(a), sum);
+	}
+
+	@Test
+	void testSparseDense() {
+		double[][] a = createRndMat(27, 33, 0.1), b = createRndMat(33, 15, 1.), d = createRndMat(27, 33, 1.);
+		for (Format format : Format.values()) {
+			SparseMatrix s = SparseMatrix.of(a, format);
+			Matrix product = calc.mult(s, Matrix.of(b), ExecutionHints.DEFAULT.withParallelism(3));
+			assertMatrixEquals(mult(a, b), product.toArray(), tolerance);
+			// a transposed view as dense factor
+			Matrix bt = Matrix.of(transpose(b)).transpose();
+			assertMatrixEquals(mult(a, b), calc.mult(s, bt, ExecutionHints.DEFAULT).toArray(), tolerance);
+			Matrix sum = calc.add(s, Matrix.of(d), ExecutionHints.DEFAULT.withParallelism(2));
+			assertMatrixEquals(add(a, d), sum.toArray(), 0.);
+		}
+		Matrix output = new Matrix(27, 15);
+		assertTrue(output == calc.mult(SparseMatrix.of(a), Matrix.of(b), ExecutionHints.DEFAULT.withOutput(output)),
+				"output not reused");
+	}
+
+	@Test
+	void testFootprint() {
+		double[][] a = createRndMat(40, 40, 0.1);
+		SparseMatrix s = SparseMatrix.of(a);
+		long nnz = s.nonZeros();
+		// twice the non-zeros at most in the sum
+		assertEquals(16 + 41 * 4 + 16 + 2 * nnz * 4 + 16 + 2 * nnz * 8,
+				calc.footprint("PLUS", new FactBase<>(s, s)));
+		long product = calc.footprint("MULT", new FactBase<>(s, s));
+		long result = calc.mult(s, s, ExecutionHints.DEFAULT).nonZeros();
+		assertTrue(product >= 16 + 41 * 4 + 16 + result * 12, "footprint " + product);
+		// the dense rows of the parts
+		long serial = calc.footprint("MULT", new FactBase<>(s, s, ExecutionHints.DEFAULT.withParallelism(1)));
+		// below the grain there is a single part
+		ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(3);
+		assertEquals(serial, calc.footprint("MULT", new FactBase<>(s, s, hints)));
+		assertEquals(0, calc.multFootprint(s, new double[40], ExecutionHints.DEFAULT.withOutput(new double[40])));
+		SparseMatrix csc = s.toFormat(Format.CSC);
+		assertEquals(16 + 40 * 8 + 16 + 8 + 16 + 40 * 8, calc.multFootprint(csc, new double[40], hints));
+	}
+
+	@Test
+	void testPartsPerWorker() {
+		final int n = 20000;
+		SparseMatrix.Builder builder = new SparseMatrix.Builder(n, n);
+		for (int i = 0; i < n; i++)
+			builder.add(i, i, i + 1.);
+		SparseMatrix diagonal = builder.build(Format.CSC);
+		double[] x = new double[n];
+		Arrays.fill(x, 1.);
+		ExecutionHints parallel = ExecutionHints.parallel();
+		// a dense partial sum or row per worker, not per column
+		long parts = ForkJoinPool.commonPool().getParallelism() + 1;
+		long partials = calc.multFootprint(diagonal, x, parallel);
+		assertTrue(partials <= (1 + parts) * (16 + n * 8L) + 16 + parts * 8, "footprint " + partials);
+		long product = calc.footprint("MULT", new FactBase<>(diagonal, diagonal, parallel));
+		assertTrue(product <= 3 * (16 + (n + 1) * 12L) + parts * (32 + n * 12L), "footprint " + product);
+		double[] r = calc.mult(diagonal, x, parallel);
+		SparseMatrix square = calc.mult(diagonal, diagonal, parallel);
+		assertEquals(n, square.nonZeros());
+		for (int i = 0; i < n; i++) {
+			assertEquals(i + 1., r[i], 0.);
+			assertEquals((i + 1.) * (i + 1.), square.get(i, i), 0.);
+		}
+	}
+
+	/**
+	 * Sparse against dense kernels over densities, to be run by main for larger
+	 * dimensions.
+	 */
+	@Test
+	void testCrossover() {
+		benchmark(400, 120);
+	}
+
+	/**
+	 * @param args dimension of the mat-vec and of the matrix products, 4000 and
+	 *             800 by default
+	 */
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+		int m = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+		new SparseCalcTest().benchmark(n, m);
+	}
+
+	void benchmark(int n, int m) {
+		final double[] densities = { 0.001, 0.005, 0.01, 0.02, 0.05, 0.1, 0.2, 0.3, 0.5 };
+		final ExecutionHints serial = ExecutionHints.DEFAULT.withParallelism(1);
+		final MatVecCalc matvec = new MatVecCalc();
+		final MatrixCalc matrices = new MatrixCalc();
+		System.out.printf("mat-vec %dx%d, products %dx%d%n", n, n, m, m);
+		System.out.printf("+---------+-----------+-----------+-------+-----------+-----------+-------+-----------+-------+%n");
+		System.out.printf("| density |  mv d[us] |  mv s[us] |  d/s  |  mm d[ms] | sxd  [ms] |  d/s  | sxs  [ms] |  d/s  |%n");
+		System.out.printf("+---------+-----------+-----------+-------+-----------+-----------+-------+-----------+-------+%n");
+		double spmv = Double.NaN, spmm = Double.NaN, spgemm = Double.NaN;
+		for (double density : densities) {
+			final double[][] a = createRndMat(n, n, density);
+			final Matrix dense = Matrix.of(a);
+			final SparseMatrix sparse = SparseMatrix.of(a);
+			final Vector x = Vector.wrap(createRndVec(n)), y = new Vector(n);
+			final int reps = Math.max(1, (int) (2_000_000L / n / n));
+			long mvd = best(5, reps, () -> matvec.mult(dense, x, serial.withOutput(y)));
+			long mvs = best(5, reps, () -> calc.mult(sparse, x, serial.withOutput(y)));
+			final double[][] b = createRndMat(m, m, density);
+			final Matrix bd = Matrix.of(b), cd = new Matrix(m, m);
+			final SparseMatrix bs = SparseMatrix.of(b);
+			long mmd = best(3, 1, () -> matrices.mult(bd, bd, serial.withOutput(cd)));
+			long sxd = best(3, 1, () -> calc.mult(bs, bd, serial.withOutput(cd)));
+			long sxs = best(3, 1, () -> calc.mult(bs, bs, serial));
+			System.out.printf("| %7.3f | %9.1f | %9.1f | %5.2f | %9.2f | %9.2f | %5.2f | %9.2f | %5.2f |%n", density,
+					mvd * 1.E-3 / reps, mvs * 1.E-3 / reps, (double) mvd / mvs, mmd * 1.E-6, sxd * 1.E-6,
+					(double) mmd / sxd, sxs * 1.E-6, (double) mmd / sxs);
+			// the first density at which the dense kernel is faster
+			if (Double.isNaN(spmv) && mvd < mvs)
+				spmv = density;
+			if (Double.isNaN(spmm) && mmd < sxd)
+				spmm = density;
+			if (Double.isNaN(spgemm) && mmd < sxs)
+				spgemm = density;
+		}
+		System.out.printf("+---------+-----------+-----------+-------+-----------+-----------+-------+-----------+-------+%n");
+		System.out.printf("dense faster from density: mat-vec %s, sparse x dense %s, sparse x sparse %s%n",
+				crossover(spmv), crossover(spmm), crossover(spgemm));
+	}
+
+	private static String crossover(double density) {
+		return Double.isNaN(density) ? "never" : String.valueOf(density);
+	}
+
+	// fastest of some runs of reps repetitions in ns
+	private static long best(int runs, int reps, Runnable run) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			for (int j = 0; j < reps; j++)
+				run.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static double[] mult(double[][] a, double[] x) {
+		double[] r = new double[a.length];
+		for (int i = 0; i < a.length; i++)
+			for (int k = 0; k < x.length; k++)
+				r[i] += a[i][k] * x[k];
+		return r;
+	}
+
+	private static double[][] mult(double[][] a, double[][] b) {
+		double[][] c = new double[a.length][b[0].length];
+		for (int i = 0; i < a.length; i++)
+			for (int k = 0; k < b.length; k++)
+				for (int j = 0; j < b[0].length; j++)
+					c[i][j] += a[i][k] * b[k][j];
+		return c;
+	}
+
+	private static double[][] add(double[][] a, double[][] b) {
+		double[][] c = new double[a.length][a[0].length];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < a[0].length; j++)
+				c[i][j] = a[i][j] + b[i][j];
+		return c;
+	}
+
+	private static double[][] transpose(double[][] a) {
+		double[][] t = new double[a[0].length][a.length];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < a[0].length; j++)
+				t[j][i] = a[i][j];
+		return t;
+	}
+
+	private static void assertVectorEquals(double[] expected, double[] actual, double delta) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], actual[i], delta);
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] actual, double delta) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			for (int j = 0; j < expected[i].length; j++)
+				assertEquals(expected[i][j], actual[i][j], delta);
+	}
+
+	private double[] createRndVec(int n) {
+		double[] v = new double[n];
+		for (int i = 0; i < n; i++)
+			v[i] = rd.nextDouble();
+		return v;
+	}
+
+	private double[][] createRndMat(int rows, int cols, double density) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				if (density >= 1 || rd.nextDouble() < density)
+					m[i][j] = rd.nextDouble() + 0.5;
+		return m;
+	}
+}
@@ -0,0 +1,181 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.math.SparseMatrix.Format;
+
+class SparseMatrixTest {
+	final Random rd = new Random(42);
+
+	@Test
+	void testDense() {
+		double[][] a = { { 0, 2, 0, 1 }, { 0, 0, 0, 0 }, { 3, 0, 4, 0 } };
+		for (Format format : Format.values()) {
+			SparseMatrix s = SparseMatrix.of(a, format);
+			assertEquals(format, s.getFormat());
+			assertEquals(3, s.getRows());
+			assertEquals(4, s.getColumns());
+			assertEquals(4, s.nonZeros());
+			assertEquals(4 / 12., s.density(), 0.);
+			assertEquals(4., s.get(2, 2), 0.);
+			assertEquals(0., s.get(1, 3), 0.);
+			assertArrayEquals(a, s.toArray());
+		}
+		int[] pointers = SparseMatrix.of(a).pointers();
+		assertEquals(0, pointers[0]);
+		assertEquals(2, pointers[1]);
+		assertEquals(2, pointers[2]);
+		assertEquals(4, pointers[3]);
+		try {
+			SparseMatrix.of(new double[][] { { 1, 2 }, { 3 } });
+			fail("no exception with ragged rows thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testTriples() {
+		int[] row = { 2, 0, 2, 0, 1, 2 };
+		int[] col = { 1, 3, 0, 3, 2, 1 };
+		double[] value = { 1, 2, 3, 4, 5, 6 };
+		for (Format format : Format.values()) {
+			SparseMatrix s = SparseMatrix.of(3, 4, row, col, value, format);
+			// the duplicates (0, 3) and (2, 1) are summed up
+			assertEquals(4, s.nonZeros());
+			assertEquals(6., s.get(0, 3), 0.);
+			assertEquals(7., s.get(2, 1), 0.);
+			assertEquals(3., s.get(2, 0), 0.);
+			assertEquals(5., s.get(1, 2), 0.);
+			assertIndicesIncrease(s);
+		}
+		SparseMatrix.Builder builder = new SparseMatrix.Builder(3, 4);
+		for (int k = 0; k < row.length; k++)
+			builder.add(row[k], col[k], value[k]);
+		assertEquals(SparseMatrix.of(3, 4, row, col, value, Format.CSR), builder.build());
+		assertEquals(SparseMatrix.of(3, 4, row, col, value, Format.CSC), builder.build(Format.CSC));
+		try {
+			builder.add(3, 0, 1.);
+			fail("no exception with index out of bounds thrown");
+		} catch (IndexOutOfBoundsException error) {
+			// expected
+		}
+		try {
+			SparseMatrix.of(3, 4, row, new int[2], value, Format.CSR);
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testBuilderGrows() {
+		double[][] a = createRndMat(30, 40, 0.2);
+		SparseMatrix.Builder builder = new SparseMatrix.Builder(30, 40);
+		// backwards and split into two halves, which are summed up again
+		for (int i = 29; i >= 0; i--)
+			for (int j = 39; j >= 0; j--)
+				if (0 != a[i][j])
+					builder.add(i, j, a[i][j] / 2).add(i, j, a[i][j] / 2);
+		SparseMatrix s = builder.build();
+		assertEquals(SparseMatrix.of(a).nonZeros(), s.nonZeros());
+		assertArrayEquals(a, s.toArray());
+	}
+
+	@Test
+	void testFormats() {
+		double[][] a = createRndMat(17, 23, 0.1);
+		SparseMatrix csr = SparseMatrix.of(a);
+		SparseMatrix csc = csr.toFormat(Format.CSC);
+		assertTrue(csr == csr.toFormat(Format.CSR), "converted without need");
+		assertEquals(Format.CSC, csc.getFormat());
+		assertIndicesIncrease(csc);
+		assertArrayEquals(a, csc.toArray());
+		assertArrayEquals(a, csc.toFormat(Format.CSR).toArray());
+		// the transpose shares the arrays
+		SparseMatrix t = csr.transpose();
+		assertEquals(Format.CSC, t.getFormat());
+		assertTrue(csr.values() == t.values(), "transpose copied");
+		assertEquals(23, t.getRows());
+		for (int i = 0; i < 17; i++)
+			for (int j = 0; j < 23; j++)
+				assertEquals(a[i][j], t.get(j, i), 0.);
+	}
+
+	@Test
+	void testWrap() {
+		SparseMatrix s = SparseMatrix.wrap(Format.CSR, 2, 3, new int[] { 0, 1, 3 }, new int[] { 2, 0, 1 },
+				new double[] { 1, 2, 3 });
+		assertEquals(3., s.get(1, 1), 0.);
+		try {
+			SparseMatrix.wrap(Format.CSR, 2, 3, new int[] { 0, 1, 3 }, new int[] { 2, 1, 0 },
+					new double[] { 1, 2, 3 });
+			fail("no exception with unsorted indices thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("increasing"), error.getMessage());
+		}
+		try {
+			SparseMatrix.wrap(Format.CSC, 2, 3, new int[] { 0, 1, 3 }, new int[] { 1, 0, 1 },
+					new double[] { 1, 2, 3 });
+			fail("no exception with wrong dimensions thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("dimensions"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testEquals() {
+		double[][] a = createRndMat(9, 7, 0.3);
+		SparseMatrix csr = SparseMatrix.of(a), csc = SparseMatrix.of(a, Format.CSC);
+		assertEquals(csr, csc);
+		assertEquals(csr.hashCode(), csc.hashCode());
+		// a stored zero is no element
+		SparseMatrix zero = SparseMatrix.of(9, 7, new int[] { 0, 4 }, new int[] { 0, 4 }, new double[] { 1, -1 },
+				Format.CSR);
+		SparseMatrix stored = SparseMatrix.of(9, 7, new int[] { 0, 4, 4 }, new int[] { 0, 4, 4 },
+				new double[] { 1, -1, 1 }, Format.CSC);
+		assertEquals(2, stored.nonZeros());
+		assertEquals(new SparseMatrix(9, 7), SparseMatrix.of(9, 7, new int[] { 2 }, new int[] { 3 },
+				new double[] { 0 }, Format.CSR));
+		assertFalse(zero.equals(stored));
+		assertFalse(csr.equals(csr.transpose()));
+		assertTrue(csr.toString().contains("CSR"), csr.toString());
+	}
+
+	static void assertIndicesIncrease(SparseMatrix s) {
+		int[] p = s.pointers(), idx = s.indices();
+		for (int m = 0; m < s.majors(); m++)
+			for (int q = p[m] + 1; q < p[m + 1]; q++)
+				assertTrue(idx[q - 1] < idx[q], "indices of " + m + " not increasing");
+	}
+
+	static void assertArrayEquals(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+			for (int j = 0; j < expected[i].length; j++)
+				assertEquals(expected[i][j], actual[i][j], 0.);
+	}
+
+	private double[][] createRndMat(int rows, int cols, double density) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				if (rd.nextDouble() < density)
+					m[i][j] = rd.nextDouble() + 0.5;
+		return m;
+	}
+
+	@Test
+	void testWeight() {
+		SparseMatrix csr = SparseMatrix.of(createRndMat(100, 50, 0.1));
+		assertEquals(12L * csr.nonZeros() + 4L * 101, csr.weight());
+		assertEquals(4L * 51, new SparseMatrix(100, 50).toFormat(Format.CSC).weight());
+	}
+}
@@ -0,0 +1,258 @@
+package de.lab4inf.axela.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.math.LinearAlgebra.MatrixCalc;
+
+class StrassenTest {
+	final double tolerance = 1.E-11;
+	final Random rd = new Random(42);
+	// a low cutoff, so the small matrices recurse several levels deep
+	final Strassen small = new Strassen(new Gemm(8, 16, 12), 8);
+	final ExecutionHints strassen = ExecutionHints.DEFAULT.withAlgorithm(Algorithm.STRASSEN);
+
+	@Test
+	void testShapes() {
+		int[][] shapes = { { 9, 9, 9 }, { 16, 16, 16 }, { 17, 33, 19 }, { 64, 64, 64 }, { 65, 63, 67 },
+				{ 40, 130, 50 }, { 100, 20, 90 }, { 129, 129, 129 } };
+		MatrixCalc calc = new MatrixCalc(small);
+		for (int[] shape : shapes) {
+			double[][] a = createRndMat(shape[0], shape[1]);
+			double[][] b = createRndMat(shape[1], shape[2]);
+			assertMatrixEquals(naive(a, b), calc.mult(a, b, strassen), tolerance);
+			Matrix c = calc.mult(Matrix.of(a), Matrix.of(b), strassen);
+			assertMatrixEquals(naive(a, b), c.toArray(), tolerance);
+		}
+	}
+
+	@Test
+	void testParallel() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			MatrixCalc calc = new MatrixCalc(small);
+			ExecutionHints hints = strassen.withParallelism(4).withExecutor(pool);
+			int[][] shapes = { { 64, 64, 64 }, { 77, 90, 55 }, { 129, 64, 33 } };
+			for (int[] shape : shapes) {
+				double[][] a = createRndMat(shape[0], shape[1]);
+				double[][] b = createRndMat(shape[1], shape[2]);
+				assertMatrixEquals(naive(a, b), calc.mult(a, b, hints), tolerance);
+				// transposed operands and a result within a larger matrix
+				Matrix out = new Matrix(shape[0] + 3, shape[2] + 5);
+				Matrix view = out.view(1, 2, shape[0], shape[2]);
+				calc.mult(Matrix.of(a).transpose().copy().transpose(), Matrix.of(b).transpose().copy().transpose(),
+						hints.withOutput(view));
+				assertMatrixEquals(naive(a, b), view.toArray(), tolerance);
+				assertEquals(0., out.get(0, 0), 0.);
+			}
+			assertTrue(pool.getPoolSize() > 0, "products not forked");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testSingle() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(40, 50);
+		double[][] b = createRndMat(50, 30);
+		double[][] c = calc.mult(a, b, strassen.withPrecision(Precision.FLOAT));
+		assertMatrixEquals(naive(a, b), c, 1.E-4);
+		for (double[] row : c)
+			for (double value : row)
+				assertEquals((float) value, value);
+	}
+
+	@Test
+	void testClassicalByDefault() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(64, 64);
+		double[][] b = createRndMat(64, 64);
+		double[][] classical = calc.mult(a, b, ExecutionHints.DEFAULT);
+		double[][] recursive = calc.mult(a, b, strassen);
+		// the same solution up to rounding, but computed differently
+		assertMatrixEquals(classical, recursive, tolerance);
+		boolean differs = false;
+		for (int i = 0; i < classical.length; i++)
+			for (int j = 0; j < classical[i].length; j++)
+				differs |= classical[i][j] != recursive[i][j];
+		assertTrue(differs, "Strassen not used");
+		// the algorithm changes the solution, so the facts are not equal
+		assertFalse(new FactBase<>(a, b, ExecutionHints.DEFAULT).equals(new FactBase<>(a, b, strassen)));
+	}
+
+	@Test
+	void testBelowCutoff() {
+		MatrixCalc calc = new MatrixCalc(new Strassen(Gemm.DEFAULT, 64));
+		assertFalse(calc.getStrassen().recurses(64, 200, 200));
+		assertTrue(calc.getStrassen().recurses(65, 65, 65));
+		double[][] a = createRndMat(64, 200);
+		double[][] b = createRndMat(200, 200);
+		double[][] classical = calc.mult(a, b, ExecutionHints.DEFAULT);
+		double[][] c = calc.mult(a, b, strassen);
+		for (int i = 0; i < c.length; i++)
+			for (int j = 0; j < c[i].length; j++)
+				assertEquals(classical[i][j], c[i][j], 0.);
+	}
+
+	@Test
+	void testCancel() {
+		MatrixCalc calc = new MatrixCalc(small);
+		double[][] a = createRndMat(64, 64);
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		for (ExecutionHints hints : new ExecutionHints[] { strassen, strassen.withParallelism(4) }) {
+			try {
+				calc.mult(a, a, hints.withCancellation(token));
+				fail("no exception with cancelled token thrown");
+			} catch (SolveCancelledException error) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	void testFootprint() {
+		MatrixCalc calc = new MatrixCalc(new Strassen(Gemm.DEFAULT, 64));
+		double[][] a = new double[256][256];
+		long classical = calc.footprint("MULT", new FactBase<>(a, a));
+		long serial = calc.footprint("MULT", new FactBase<>(a, a, strassen.withParallelism(1)));
+		// the copies of a, b and c and the temporaries of two levels
+		assertTrue(serial > 3 * 256 * 256 * 8L + 11 * (128 * 128 + 64 * 64) * 8L, classical + " " + serial);
+		assertTrue(serial > classical, classical + " " + serial);
+		// the temporaries of the threads of the pool
+		ForkJoinPool pool = new ForkJoinPool(8);
+		try {
+			long parallel = calc.footprint("MULT",
+					new FactBase<>(a, a, strassen.withParallelism(ExecutionHints.MAX_PARALLELISM).withExecutor(pool)));
+			assertTrue(parallel > serial, serial + " " + parallel);
+			assertEquals(parallel,
+					calc.footprint("MULT", new FactBase<>(a, a, strassen.withParallelism(8).withExecutor(pool))));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testCutoff() {
+		Strassen strassen = new Strassen(Gemm.DEFAULT, 100);
+		assertEquals(100, strassen.getCutoff());
+		assertTrue(Gemm.DEFAULT == strassen.getGemm());
+		assertTrue(Gemm.DEFAULT == new MatrixCalc(strassen).getGemm());
+		assertEquals(Strassen.CUTOFF, new MatrixCalc().getStrassen().getCutoff());
+		try {
+			new Strassen(Gemm.DEFAULT, 0);
+			fail("no exception with zero cutoff thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("cutoff"), error.getMessage());
+		}
+	}
+
+	/**
+	 * Gemm against Strassen up to n=1024, run main for the sizes up to 4096.
+	 */
+	@Test
+	void testStrassenSpeed() {
+		benchmark(1024, Strassen.CUTOFF);
+	}
+
+	/**
+	 * @param args optional largest size, 4096 by default, and the cutoffs to
+	 *             compare
+	 */
+	public static void main(String[] args) {
+		int max = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+		if (args.length < 2)
+			new StrassenTest().benchmark(max, Strassen.CUTOFF);
+		for (int i = 1; i < args.length; i++)
+			new StrassenTest().benchmark(max, Integer.parseInt(args[i]));
+	}
+
+	void benchmark(int max, int cutoff) {
+		int[] sizes = { 512, 1000, 1024, 2048, 3000, 4096 };
+		MatrixCalc calc = new MatrixCalc(new Strassen(Gemm.DEFAULT, cutoff));
+		ExecutionHints serial = ExecutionHints.DEFAULT.withParallelism(1);
+		ExecutionHints parallel = ExecutionHints.DEFAULT.withParallelism(Runtime.getRuntime().availableProcessors());
+		System.out.printf("cutoff %d%n", cutoff);
+		System.out.printf("+------+-----------+-----------+-------+-----------+-------+-----------+%n");
+		System.out.printf("|    n |  gemm[ms] | strs.[ms] |  g/s  |  par.[ms] |  g/p  | rel.error |%n");
+		System.out.printf("+------+-----------+-----------+-------+-----------+-------+-----------+%n");
+		for (int n : sizes) {
+			if (n > max)
+				continue;
+			double[][] a = createRndMat(n, n);
+			double[][] b = createRndMat(n, n);
+			int runs = n <= 1024 ? 3 : 1;
+			double[][][] c = new double[2][][];
+			long gemm = best(runs, () -> c[0] = calc.mult(a, b, serial));
+			long recursive = best(runs, () -> c[1] = calc.mult(a, b, serial.withAlgorithm(Algorithm.STRASSEN)));
+			long par = best(runs, () -> calc.mult(a, b, parallel.withAlgorithm(Algorithm.STRASSEN)));
+			double error = relativeError(c[0], c[1]);
+			assertTrue(error < 1.E-12, "relative error " + error);
+			System.out.printf("| %4d | %9.1f | %9.1f | %5.2f | %9.1f | %5.2f | %9.2e |%n", n, gemm * 1.E-6,
+					recursive * 1.E-6, (double) gemm / recursive, par * 1.E-6, (double) gemm / par, error);
+		}
+		System.out.printf("+------+-----------+-----------+-------+-----------+-------+-----------+%n");
+	}
+
+	// largest deviation relative to the largest element of the expected matrix
+	private static double relativeError(double[][] expected, double[][] returned) {
+		double max = 0, deviation = 0;
+		for (int i = 0; i < expected.length; i++)
+			for (int j = 0; j < expected[i].length; j++) {
+				max = Math.max(max, Math.abs(expected[i][j]));
+				deviation = Math.max(deviation, Math.abs(expected[i][j] - returned[i][j]));
+			}
+		return deviation / max;
+	}
+
+	// fastest of some runs in ns
+	private static long best(int runs, Runnable run) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			run.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static double[][] naive(double[][] a, double[][] b) {
+		double[][] c = new double[a.length][b[0].length];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < b[0].length; j++)
+				for (int k = 0; k < b.length; k++)
+					c[i][j] += a[i][k] * b[k][j];
+		return c;
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] returned, double delta) {
+		assertEquals(expected.length, returned.length, "matrix dimensions differ");
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i].length, returned[i].length, "matrix dimensions differ");
+			for (int j = 0; j < expected[i].length; j++)
+				assertEquals(expected[i][j], returned[i][j], delta * Math.max(1, Math.abs(expected[i][j])));
+		}
+	}
+
+	private double[][] createRndMat(int rows, int cols) {
+		double[][] m = new double[rows][cols];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				m[i][j] = rd.nextDouble();
+		return m;
+	}
+}
@@ -25,7 +25,10 @@ import java.util.*;
 
 import javax.script.*;
 
+import jdk.jfr.EventType;
+
 import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.DoubleIris;
 import de.lab4inf.axela.core.Iris;
 import de.lab4inf.axela.math.ast.FunctionCall;
 import de.lab4inf.axela.math.ast.SymbolNode;
@@ -42,6 +45,9 @@ public class AxelaScriptEngine extends AbstractAxelaScriptEngine implements Axel
 	final static String PARSE = "Parse";
 	final static String SCRIPT = "Script";
 	final static String FCT = "Function";
+	// no event is allocated per script while no recording is running
+	private static final EventType PARSE_EVENT = EventType.getEventType(ParseEvent.class);
+	private static final EventType EVALUATE_EVENT = EventType.getEventType(EvaluateEvent.class);
 	final AxelaParser parser;
 	final AxelaScriptEngine self;
 
@@ -76,8 +82,9 @@ public class AxelaScriptEngine extends AbstractAxelaScriptEngine implements Axel
 		if (!engine.hasSolverFor(PARSE, factSignature)) {
 			engine.registerSolver(PARSE, factSignature, astIris);
 		}
-		// Solver using a visitor to extract Double from the statements.
-		Iris<String, String[], Double> valueIris = (p, f) -> useVisitor(new ValueVisitor(), f);
+		// Solver evaluating the statements to a primitive double, unboxed from the
+		// nodes to callers of solveAsDouble.
+		DoubleIris<String, String[]> valueIris = (p, f) -> evaluate(f);
 		if (!engine.hasSolverFor(SCRIPT, factSignature)) {
 			engine.registerSolver(SCRIPT, factSignature, valueIris);
 		}
@@ -104,7 +111,52 @@ public class AxelaScriptEngine extends AbstractAxelaScriptEngine implements Axel
 
 	<T> T useVisitor(NodeVisitor<T> visitor, String[] facts) {
 		List<Node<?>> nodes = astIris(facts);
-		return useVisitor(visitor, nodes);
+		EvaluateEvent event = begin();
+		T ret = useVisitor(visitor, nodes);
+		if (null != event)
+			commit(event, visitor, facts, nodes);
+		return ret;
+	}
+
+	// null while the event is not recorded
+	private static EvaluateEvent begin() {
+		if (!EVALUATE_EVENT.isEnabled())
+			return null;
+		EvaluateEvent event = new EvaluateEvent();
+		event.begin();
+		return event;
+	}
+
+	private void commit(EvaluateEvent event, NodeVisitor<?> visitor, String[] facts, List<Node<?>> nodes) {
+		if (event.shouldCommit()) {
+			event.visitor = visitor.getClass().getSimpleName();
+			event.scriptLength = asString(facts).length();
+			event.statements = nodes.size();
+			event.commit();
+		}
+	}
+
+	/**
+	 * Evaluate the statements with the primitive path of a ValueVisitor, no
+	 * intermediate or final value is boxed.
+	 * 
+	 * @param facts script statements
+	 * @return value of the last statement
+	 */
+	double evaluate(String[] facts) {
+		List<Node<?>> nodes = astIris(facts);
+		ValueVisitor visitor = new ValueVisitor();
+		EvaluateEvent event = begin();
+		if (nodes.isEmpty())
+			throw new NullPointerException("no statements");
+		double ret = 0;
+		for (Node<?> n : nodes) {
+			Objects.requireNonNull(n, "nullpointer within nodes list");
+			ret = visitor.valueOf(n);
+		}
+		if (null != event)
+			commit(event, visitor, facts, nodes);
+		return ret;
 	}
 
 	<T> T useVisitor(NodeVisitor<T> visitor, List<Node<?>> nodes) {
@@ -152,7 +204,17 @@ public class AxelaScriptEngine extends AbstractAxelaScriptEngine implements Axel
 	@Override
 	public Object eval(String script, Bindings n) throws ScriptException {
 		// first prototype of a ScriptEngine returning AST.
+		if (!PARSE_EVENT.isEnabled())
+			return parser.parse(script);
+		ParseEvent event = new ParseEvent();
+		event.begin();
 		List<Node<?>> nodes = parser.parse(script);
+		if (event.shouldCommit()) {
+			event.parser = parser.getClass().getSimpleName();
+			event.scriptLength = script.length();
+			event.statements = nodes.size();
+			event.commit();
+		}
 		return nodes;
 	}
 
@@ -0,0 +1,27 @@
+package de.lab4inf.axela.script;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the evaluation of a parsed script by a node
+ * visitor.
+ */
+@Name("de.lab4inf.axela.Evaluate")
+@Label("Axela Evaluate")
+@Category({ "Axela", "Script" })
+@Description("Evaluation of the AST of a script by a NodeVisitor")
+@StackTrace(false)
+final class EvaluateEvent extends jdk.jfr.Event {
+	@Label("Visitor")
+	String visitor;
+
+	@Label("Script Length")
+	int scriptLength;
+
+	@Label("Statements")
+	int statements;
+}
@@ -0,0 +1,26 @@
+package de.lab4inf.axela.script;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the parsing of a script into an AST.
+ */
+@Name("de.lab4inf.axela.Parse")
+@Label("Axela Parse")
+@Category({ "Axela", "Script" })
+@Description("Parsing of a script by the AxelaParser")
+@StackTrace(false)
+final class ParseEvent extends jdk.jfr.Event {
+	@Label("Parser")
+	String parser;
+
+	@Label("Script Length")
+	int scriptLength;
+
+	@Label("Statements")
+	int statements;
+}
@@ -41,17 +41,12 @@ public class ValueVisitor extends BaseVisitor<Double> {
 
 	@Override
 	public Double visit(NumericNode<?> nn) {
-		Number n = nn.getPayload();
-		Double d = n.doubleValue();
-		log("number node %s ", nn);
-		return d;
+		return valueOf(nn);
 	}
 
 	@Override
 	public Double visit(SymbolNode sn) {
-		if (vars.containsKey(sn))
-			return vars.get(sn).accept(this);
-		return 0.;
+		return valueOf(sn);
 	}
 
 	@Override
@@ -62,6 +57,46 @@ public class ValueVisitor extends BaseVisitor<Double> {
 
 	@Override
 	public Double visit(FunctionCall fc) {
+		return valueOf(fc);
+	}
+
+	@Override
+	public Double visit(MathOperatorNode opNode) {
+		return valueOf(opNode);
+	}
+
+	/**
+	 * Primitive evaluation of a node (hierarchy). Numbers, symbols, function
+	 * calls and operators are evaluated without boxing their intermediate
+	 * results, other nodes are visited.
+	 * 
+	 * @param node to evaluate
+	 * @return value of the node
+	 */
+	public double valueOf(Node<?> node) {
+		if (node instanceof NumericNode)
+			return valueOf((NumericNode<?>) node);
+		if (node instanceof MathOperatorNode)
+			return valueOf((MathOperatorNode) node);
+		if (node instanceof SymbolNode)
+			return valueOf((SymbolNode) node);
+		if (node instanceof FunctionCall)
+			return valueOf((FunctionCall) node);
+		return node.accept(this);
+	}
+
+	private double valueOf(NumericNode<?> nn) {
+		if (loggingEnabled)
+			log("number node %s ", nn);
+		return nn.getNumber().doubleValue();
+	}
+
+	private double valueOf(SymbolNode sn) {
+		Node<?> value = vars.get(sn);
+		return null == value ? 0. : valueOf(value);
+	}
+
+	private double valueOf(FunctionCall fc) {
 		double ret = 0.0;
 
 		AxelaFunction func = funcVisit.visit(fc);
@@ -69,7 +104,7 @@ public class ValueVisitor extends BaseVisitor<Double> {
 			List<Node<?>> args = fc.getPayload();
 			double[] argsDouble = new double[args.size()];
 			for (int i = 0; i < argsDouble.length; i++) {
-				argsDouble[i] = args.get(i).accept(this);
+				argsDouble[i] = valueOf(args.get(i));
 			}
 			ret = func.apply(argsDouble);
 		}
@@ -77,13 +112,13 @@ public class ValueVisitor extends BaseVisitor<Double> {
 		return ret;
 	}
 
-	@Override
-	public Double visit(MathOperatorNode opNode) {
-		log("operator node %s ", opNode);
+	private double valueOf(MathOperatorNode opNode) {
+		if (loggingEnabled)
+			log("operator node %s ", opNode);
 		Node<?> lhs = opNode.getLeft();
 		Node<?> rhs = opNode.getRight();
-		double l = lhs.accept(this);
-		double r = rhs.accept(this);
+		double l = valueOf(lhs);
+		double r = valueOf(rhs);
 		double ret = 0.0;
 
 		switch (opNode.getPayload()) {
@@ -111,7 +146,8 @@ public class ValueVisitor extends BaseVisitor<Double> {
 		default:
 			throw new IllegalArgumentException(format("unknown op %s", opNode.getPayload()));
 		}
-		log("operator node %s returns %s", opNode, ret);
+		if (loggingEnabled)
+			log("operator node %s returns %s", opNode, ret);
 		return ret;
 	}
 }
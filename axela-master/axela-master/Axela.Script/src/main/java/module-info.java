@@ -4,6 +4,7 @@ module Axela.Script {
 
 	requires transitive Axela.Math;
 	requires transitive java.scripting;
+	requires jdk.jfr;
 	
 	uses javax.script.ScriptEngineFactory;
 	
@@ -209,6 +209,19 @@ public class ValueVisitorTest {
 		assertEquals(expected, returned, tolerance);
 	}
 
+	@Test
+	protected void valueOfPrimitive() throws Exception {
+		double x = 0.8, y = 1.3;
+		Node<?> node = new AssignNode(new SymbolNode("z"),
+				new TimesNode(new PlusNode(new AssignNode(new SymbolNode("x"), visitor.node(x)), visitor.node(3L)),
+						new PowerNode(new AssignNode(new SymbolNode("y"), visitor.node(y)), visitor.node(2.))));
+		double expected = (x + 3) * Math.pow(y, 2);
+		assertEquals(expected, visitor.valueOf(node), tolerance);
+		assertEquals(visitor.visit((MathOperatorNode) node), visitor.valueOf(node), 0.);
+		assertEquals(y, visitor.valueOf(new SymbolNode("y")), 0.);
+		assertEquals(0., visitor.valueOf(new SymbolNode("unknown")), 0.);
+	}
+
 	@Test
 	protected void visitFunctionNode() throws Exception {
 		try {
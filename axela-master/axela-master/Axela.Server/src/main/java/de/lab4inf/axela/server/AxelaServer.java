@@ -0,0 +1,376 @@
+package de.lab4inf.axela.server;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.CancellationToken;
+
+/**
+ * Serves an Axela engine to other processes of the host, see RemoteAxela.<br>
+ * One selector thread accepts connections, reads the requests and writes the
+ * responses. The problems are solved on the executor of the engine, so a
+ * client may pipeline requests on one connection and gets the responses as
+ * soon as they are solved, not in the order of the requests. A cancel request
+ * or a closed connection cancels the running solves of the client.<br>
+ * The read buffer of a connection grows with the bytes actually received up
+ * to the maximal frame size, a larger frame closes the connection. A client
+ * with the maximal number of solves in flight is not read any further until
+ * one of them is solved.
+ */
+public final class AxelaServer implements AutoCloseable {
+	/** default maximal size of a request frame in bytes */
+	public static final int MAX_FRAME = 64 << 20;
+	/** default maximal number of solves in flight per connection */
+	public static final int MAX_IN_FLIGHT = 256;
+
+	private static final int BUFFER = 8192;
+
+	private final Axela engine;
+	private final int maxFrame;
+	private final int maxInFlight;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final Thread loop;
+	// connections with responses to write, registered by the selector thread
+	private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+	private volatile boolean closed;
+
+	// state of one client connection
+	private final class Connection {
+		final SocketChannel channel;
+		final SelectionKey key;
+		final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+		final ConcurrentMap<Long, CancellationToken> running = new ConcurrentHashMap<>();
+		ByteBuffer requests = ByteBuffer.allocate(BUFFER);
+		// not read while the solves in flight reach the limit
+		boolean throttled;
+
+		Connection(SocketChannel channel) throws IOException {
+			this.channel = channel;
+			this.key = channel.register(selector, SelectionKey.OP_READ, this);
+		}
+
+		void respond(ByteBuffer response) {
+			responses.add(response);
+			writable.add(this);
+			selector.wakeup();
+		}
+
+		int interest() {
+			return throttled ? 0 : SelectionKey.OP_READ;
+		}
+
+		void close() {
+			key.cancel();
+			for (CancellationToken token : running.values()) {
+				token.cancel();
+			}
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// the connection is dropped anyway
+			}
+		}
+	}
+
+	private AxelaServer(Axela engine, InetSocketAddress address, int maxFrame, int maxInFlight) throws IOException {
+		this.engine = engine;
+		this.maxFrame = maxFrame;
+		this.maxInFlight = maxInFlight;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		try {
+			server.bind(address);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException e) {
+			server.close();
+			selector.close();
+			throw e;
+		}
+		this.loop = new Thread(this::serve, "axela-server");
+		loop.setDaemon(true);
+		loop.start();
+	}
+
+	/**
+	 * Serve the engine on the loopback interface with a free port.
+	 * 
+	 * @param engine to serve
+	 * @return running server
+	 * @throws IOException if the socket can not be bound
+	 */
+	public static AxelaServer start(final Axela engine) throws IOException {
+		return start(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+	}
+
+	/**
+	 * Serve the engine on the given address.
+	 * 
+	 * @param engine  to serve
+	 * @param address to bind
+	 * @return running server
+	 * @throws IOException if the socket can not be bound
+	 */
+	public static AxelaServer start(final Axela engine, final InetSocketAddress address) throws IOException {
+		return start(engine, address, MAX_FRAME, MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Serve the engine on the given address with limits per connection.
+	 * 
+	 * @param engine      to serve
+	 * @param address     to bind
+	 * @param maxFrame    maximal size of a request frame in bytes
+	 * @param maxInFlight maximal number of solves in flight per connection
+	 * @return running server
+	 * @throws IOException if the socket can not be bound
+	 */
+	public static AxelaServer start(final Axela engine, final InetSocketAddress address, int maxFrame,
+			int maxInFlight) throws IOException {
+		Objects.requireNonNull(engine, "engine is a NullPointer!");
+		Objects.requireNonNull(address, "address is a NullPointer!");
+		if (maxFrame < Protocol.HEADER || maxFrame > Protocol.MAX_FRAME)
+			throw new IllegalArgumentException(format("maximal frame not in [%d, %d]", Protocol.HEADER,
+					Protocol.MAX_FRAME));
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maximal solves in flight not positive");
+		return new AxelaServer(engine, address, maxFrame, maxInFlight);
+	}
+
+	public int getMaxFrame() {
+		return maxFrame;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return the bound address, with the actual port
+	 */
+	public InetSocketAddress getAddress() {
+		try {
+			return (InetSocketAddress) server.getLocalAddress();
+		} catch (IOException e) {
+			throw new IllegalStateException("server closed", e);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+		try {
+			loop.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void serve() {
+		try {
+			while (!closed) {
+				selector.select();
+				Connection connection;
+				while (null != (connection = writable.poll())) {
+					if (!connection.key.isValid())
+						continue;
+					try {
+						// a solved request may resume a throttled connection
+						if (connection.throttled && connection.running.size() < maxInFlight) {
+							connection.throttled = false;
+							parse(connection);
+						}
+						if (connection.key.isValid())
+							connection.key.interestOps(connection.interest() | SelectionKey.OP_WRITE);
+					} catch (RuntimeException e) {
+						connection.close();
+					}
+				}
+				for (SelectionKey key : selector.selectedKeys()) {
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable())
+							read(connection);
+						if (key.isValid() && key.isWritable())
+							write(connection);
+					} catch (IOException | RuntimeException e) {
+						connection.close();
+					}
+				}
+				selector.selectedKeys().clear();
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			closed = true;
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Connection)
+					((Connection) key.attachment()).close();
+			}
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (null == channel)
+			return;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		new Connection(channel);
+	}
+
+	private void read(Connection connection) throws IOException {
+		if (connection.channel.read(connection.requests) < 0) {
+			connection.close();
+			return;
+		}
+		parse(connection);
+	}
+
+	// handles the complete frames received, the buffer grows with the bytes read
+	private void parse(Connection connection) {
+		ByteBuffer requests = connection.requests.flip();
+		while (requests.remaining() >= Integer.BYTES) {
+			int length = requests.getInt(requests.position());
+			if (length < Protocol.HEADER - Integer.BYTES || length > maxFrame - Integer.BYTES)
+				throw new IllegalArgumentException(format("invalid frame length: %d", length));
+			if (requests.remaining() < Integer.BYTES + length) {
+				if (requests.remaining() == requests.capacity()) {
+					// full but the frame is incomplete, at most doubled
+					int capacity = (int) Math.min(Integer.BYTES + length, 2L * requests.capacity());
+					connection.requests = ByteBuffer.allocate(capacity).put(requests);
+					return;
+				}
+				break;
+			}
+			if (Protocol.SOLVE == requests.get(requests.position() + Protocol.HEADER - 1)
+					&& connection.running.size() >= maxInFlight) {
+				connection.throttled = true;
+				break;
+			}
+			int end = requests.position() + Integer.BYTES + length;
+			ByteBuffer frame = requests.duplicate().limit(end);
+			frame.position(frame.position() + Integer.BYTES);
+			requests.position(end);
+			handle(connection, frame);
+		}
+		if (requests.capacity() > BUFFER && requests.remaining() <= BUFFER / 2) {
+			// a large frame is done, keep the small buffer
+			connection.requests = ByteBuffer.allocate(BUFFER).put(requests);
+		} else {
+			requests.compact();
+		}
+		if (connection.throttled)
+			connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+	}
+
+	private void write(Connection connection) throws IOException {
+		ByteBuffer response;
+		while (null != (response = connection.responses.peek())) {
+			connection.channel.write(response);
+			if (response.hasRemaining())
+				return;
+			connection.responses.poll();
+		}
+		connection.key.interestOps(connection.interest());
+		// a response queued meanwhile registers the connection again
+		if (!connection.responses.isEmpty())
+			writable.add(connection);
+	}
+
+	private void handle(Connection connection, ByteBuffer frame) {
+		long id = frame.getLong();
+		byte opcode = frame.get();
+		try {
+			switch (opcode) {
+			case Protocol.SOLVE:
+				solve(connection, id, Protocol.read(frame), Protocol.read(frame));
+				break;
+			case Protocol.HAS_SOLVER:
+				boolean found = engine.hasSolverFor(Protocol.read(frame), Protocol.read(frame));
+				connection.respond(Protocol.frame(id, Protocol.SOLUTION, found));
+				break;
+			case Protocol.CANCEL:
+				CancellationToken token = connection.running.get(id);
+				if (null != token)
+					token.cancel();
+				break;
+			default:
+				throw new IllegalArgumentException(format("unknown opcode: %d", opcode));
+			}
+		} catch (RuntimeException error) {
+			connection.respond(error(id, error));
+		}
+	}
+
+	private void solve(Connection connection, long id, Object problem, Object facts) {
+		CancellationToken token = new CancellationToken();
+		connection.running.put(id, token);
+		CompletableFuture.supplyAsync(() -> token.call(() -> engine.solve(problem, facts)), engine.getExecutor())
+				.whenComplete((solution, error) -> {
+					connection.running.remove(id);
+					ByteBuffer response;
+					try {
+						response = null == error ? Protocol.frame(id, Protocol.SOLUTION, solution) : error(id, error);
+					} catch (RuntimeException e) {
+						response = error(id, e);
+					}
+					connection.respond(response);
+				});
+	}
+
+	private static ByteBuffer error(long id, Throwable error) {
+		if (error instanceof CompletionException && null != error.getCause())
+			error = error.getCause();
+		String message = Objects.toString(error.getMessage(), "");
+		return Protocol.frame(id, Protocol.ERROR, error.getClass().getName(), message);
+	}
+
+	/**
+	 * Serve the engine found via the ServiceLoader on the loopback interface.
+	 * 
+	 * @param args the port, 0 or none for a free port
+	 * @throws Exception if the server fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		AxelaServer server = start(Axela.getEngine(), new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		System.out.printf("Axela server listening on %s%n", server.getAddress());
+		server.loop.join();
+	}
+}
@@ -0,0 +1,225 @@
+package de.lab4inf.axela.server;
+
+import static java.lang.String.format;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.facts.FactBase;
+
+/**
+ * Binary protocol between RemoteAxela and AxelaServer.<br>
+ * A frame is the int length of the rest, the long id of the request, an
+ * opcode and the values of the request or response. Responses carry the id of
+ * their request, so a client may send many requests before reading the first
+ * response. Values are tagged, numeric arrays are copied in bulk in big-endian
+ * order without any text conversion. Hints of a FactBase are reduced to the
+ * parallelism, the precision, the algorithm and the remaining time.
+ */
+final class Protocol {
+	static final byte SOLVE = 1;
+	static final byte HAS_SOLVER = 2;
+	static final byte CANCEL = 3;
+	static final byte SOLUTION = 16;
+	static final byte ERROR = 17;
+
+	static final int HEADER = Integer.BYTES + Long.BYTES + 1;
+	static final int MAX_FRAME = 1 << 30;
+
+	private static final byte NULL = 0;
+	private static final byte DOUBLE = 1;
+	private static final byte DOUBLE_ARRAY = 2;
+	private static final byte DOUBLE_MATRIX = 3;
+	private static final byte STRING = 4;
+	private static final byte FACT_BASE = 5;
+	private static final byte INTEGER = 6;
+	private static final byte LONG = 7;
+	private static final byte BOOLEAN = 8;
+	private static final byte STRING_ARRAY = 9;
+
+	private Protocol() {
+	}
+
+	/**
+	 * Encode a complete frame.
+	 * 
+	 * @param id     of the request
+	 * @param opcode of the frame
+	 * @param values of the frame
+	 * @return buffer ready to be written
+	 */
+	static ByteBuffer frame(long id, byte opcode, Object... values) {
+		int size = HEADER;
+		for (Object value : values) {
+			size += sizeOf(value);
+		}
+		if (size < 0 || size > MAX_FRAME)
+			throw new IllegalArgumentException("frame too large");
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(size - Integer.BYTES).putLong(id).put(opcode);
+		for (Object value : values) {
+			write(buffer, value);
+		}
+		return buffer.flip();
+	}
+
+	static int sizeOf(Object value) {
+		if (null == value)
+			return 1;
+		if (value instanceof Double)
+			return 1 + Double.BYTES;
+		if (value instanceof double[])
+			return 1 + Integer.BYTES + Double.BYTES * ((double[]) value).length;
+		if (value instanceof double[][]) {
+			int size = 1 + Integer.BYTES;
+			for (double[] row : (double[][]) value) {
+				size += Integer.BYTES + Double.BYTES * row.length;
+			}
+			return size;
+		}
+		if (value instanceof String)
+			return 1 + Integer.BYTES + utf8((String) value).length;
+		if (value instanceof FactBase) {
+			FactBase<?, ?> facts = (FactBase<?, ?>) value;
+			return 1 + sizeOf(facts.getFact1()) + sizeOf(facts.getFact2()) + 2 + Integer.BYTES + Long.BYTES;
+		}
+		if (value instanceof Integer)
+			return 1 + Integer.BYTES;
+		if (value instanceof Long)
+			return 1 + Long.BYTES;
+		if (value instanceof Boolean)
+			return 2;
+		if (value instanceof String[]) {
+			int size = 1 + Integer.BYTES;
+			for (String s : (String[]) value) {
+				size += Integer.BYTES + utf8(s).length;
+			}
+			return size;
+		}
+		throw new IllegalArgumentException(format("unsupported type: %s", value.getClass().getName()));
+	}
+
+	static void write(ByteBuffer buffer, Object value) {
+		if (null == value) {
+			buffer.put(NULL);
+		} else if (value instanceof Double) {
+			buffer.put(DOUBLE).putDouble((Double) value);
+		} else if (value instanceof double[]) {
+			writeDoubles(buffer.put(DOUBLE_ARRAY), (double[]) value);
+		} else if (value instanceof double[][]) {
+			double[][] matrix = (double[][]) value;
+			buffer.put(DOUBLE_MATRIX).putInt(matrix.length);
+			for (double[] row : matrix) {
+				writeDoubles(buffer, row);
+			}
+		} else if (value instanceof String) {
+			writeString(buffer.put(STRING), (String) value);
+		} else if (value instanceof FactBase) {
+			FactBase<?, ?> facts = (FactBase<?, ?>) value;
+			ExecutionHints hints = facts.getHints();
+			buffer.put(FACT_BASE);
+			write(buffer, facts.getFact1());
+			write(buffer, facts.getFact2());
+			buffer.put((byte) hints.getPrecision().ordinal()).put((byte) hints.getAlgorithm().ordinal());
+			buffer.putInt(hints.getParallelism());
+			buffer.putLong(hints.hasDeadline() ? Math.max(0, hints.getDeadline() - System.nanoTime()) : -1);
+		} else if (value instanceof Integer) {
+			buffer.put(INTEGER).putInt((Integer) value);
+		} else if (value instanceof Long) {
+			buffer.put(LONG).putLong((Long) value);
+		} else if (value instanceof Boolean) {
+			buffer.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+		} else if (value instanceof String[]) {
+			String[] strings = (String[]) value;
+			buffer.put(STRING_ARRAY).putInt(strings.length);
+			for (String s : strings) {
+				writeString(buffer, s);
+			}
+		} else {
+			throw new IllegalArgumentException(format("unsupported type: %s", value.getClass().getName()));
+		}
+	}
+
+	static Object read(ByteBuffer buffer) {
+		byte tag = buffer.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case DOUBLE:
+			return buffer.getDouble();
+		case DOUBLE_ARRAY:
+			return readDoubles(buffer);
+		case DOUBLE_MATRIX:
+			double[][] matrix = new double[length(buffer, Integer.BYTES)][];
+			for (int i = 0; i < matrix.length; i++) {
+				matrix[i] = readDoubles(buffer);
+			}
+			return matrix;
+		case STRING:
+			return readString(buffer);
+		case FACT_BASE:
+			Object fact1 = read(buffer);
+			Object fact2 = read(buffer);
+			ExecutionHints hints = ExecutionHints.DEFAULT.withPrecision(Precision.values()[buffer.get()])
+					.withAlgorithm(Algorithm.values()[buffer.get()]).withParallelism(buffer.getInt());
+			long remaining = buffer.getLong();
+			if (remaining >= 0)
+				hints = hints.withTimeout(Duration.ofNanos(remaining));
+			return new FactBase<>(fact1, fact2, hints);
+		case INTEGER:
+			return buffer.getInt();
+		case LONG:
+			return buffer.getLong();
+		case BOOLEAN:
+			return 0 != buffer.get();
+		case STRING_ARRAY:
+			String[] strings = new String[length(buffer, Integer.BYTES)];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString(buffer);
+			}
+			return strings;
+		default:
+			throw new IllegalArgumentException(format("unknown tag: %d", tag));
+		}
+	}
+
+	private static void writeDoubles(ByteBuffer buffer, double[] values) {
+		buffer.putInt(values.length);
+		buffer.asDoubleBuffer().put(values);
+		buffer.position(buffer.position() + Double.BYTES * values.length);
+	}
+
+	private static double[] readDoubles(ByteBuffer buffer) {
+		double[] values = new double[length(buffer, Double.BYTES)];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + Double.BYTES * values.length);
+		return values;
+	}
+
+	private static void writeString(ByteBuffer buffer, String value) {
+		byte[] bytes = utf8(value);
+		buffer.putInt(bytes.length).put(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[length(buffer, 1)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// a corrupt length must not allocate more than the frame holds
+	private static int length(ByteBuffer buffer, int bytes) {
+		int length = buffer.getInt();
+		if (length < 0 || (long) length * bytes > buffer.remaining())
+			throw new IllegalArgumentException(format("invalid length: %d", length));
+		return length;
+	}
+
+	private static byte[] utf8(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,264 @@
+package de.lab4inf.axela.server;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.Iris;
+import de.lab4inf.axela.core.SolveCancelledException;
+
+/**
+ * Axela engine solving all problems within an AxelaServer.<br>
+ * Code using the Axela interface switches to a shared server by using this
+ * client instead of its own engine. Solvers are only registered at the server.
+ * Requests are pipelined over one connection, solveAsync does not block a
+ * thread of the client. The facts and solutions are limited to the types of
+ * the binary protocol: numbers, strings, double vectors and matrices, string
+ * arrays and FactBases of these.
+ */
+public final class RemoteAxela implements Axela, AutoCloseable {
+	private final SocketChannel channel;
+	private final Thread reader;
+	private final AtomicLong ids = new AtomicLong();
+	private final ConcurrentMap<Long, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+	private final Object writing = new Object();
+	private volatile boolean closed;
+
+	private RemoteAxela(SocketChannel channel) {
+		this.channel = channel;
+		this.reader = new Thread(this::receive, "axela-client");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Connect to the server at the given address.
+	 * 
+	 * @param address of the server
+	 * @return connected client
+	 * @throws IOException if the server is not reachable
+	 */
+	public static RemoteAxela connect(final InetSocketAddress address) throws IOException {
+		Objects.requireNonNull(address, "address is a NullPointer!");
+		SocketChannel channel = SocketChannel.open(address);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		return new RemoteAxela(channel);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P, F, S> CompletableFuture<S> solveAsync(P problem, F facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		return (CompletableFuture<S>) send(Protocol.SOLVE, problem, facts);
+	}
+
+	/**
+	 * Solve the problem at the server, a cancelled token of the calling thread
+	 * cancels the solve at the server as well.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <P, F, S> S solve(P problem, F facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		long id = ids.incrementAndGet();
+		CompletableFuture<Object> response = send(id, Protocol.SOLVE, problem, facts);
+		CancellationToken token = CancellationToken.current();
+		try {
+			if (null == token)
+				return (S) response.get();
+			while (true) {
+				try {
+					token.check();
+				} catch (SolveCancelledException cancelled) {
+					cancel(id);
+					throw cancelled;
+				}
+				try {
+					return (S) response.get(1, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// check the token again
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel(id);
+			Thread.currentThread().interrupt();
+			throw new SolveCancelledException("solve interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Solvers are registered at the server only.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public <P, F, S> void registerSolver(P problem, F facts, Iris<P, F, S> solver) {
+		throw new UnsupportedOperationException("solvers are registered at the server");
+	}
+
+	@Override
+	public <P, F, S> boolean hasSolverFor(P problem, F facts) {
+		Objects.requireNonNull(problem, PROBLEM_IS_A_NULL_POINTER);
+		Objects.requireNonNull(facts, FACTS_ARE_A_NULL_POINTER);
+		try {
+			return (Boolean) send(Protocol.HAS_SOLVER, problem, facts).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * The returned solver solves at the server.
+	 */
+	@Override
+	public <P, F, S> Iris<P, F, S> findSolverFor(P problem, F facts) {
+		if (!hasSolverFor(problem, facts))
+			throw new IllegalStateException(format(NO_IRIS_FOR_PROBLEM_FOUND, problem));
+		return (p, f) -> solve(p, f);
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the server drops the connection anyway
+		}
+		try {
+			reader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private CompletableFuture<Object> send(byte opcode, Object... values) {
+		return send(ids.incrementAndGet(), opcode, values);
+	}
+
+	private CompletableFuture<Object> send(long id, byte opcode, Object... values) {
+		ByteBuffer request = Protocol.frame(id, opcode, values);
+		CompletableFuture<Object> response = new CompletableFuture<>();
+		pending.put(id, response);
+		try {
+			write(request);
+		} catch (IOException e) {
+			pending.remove(id);
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			pending.remove(id);
+			throw e;
+		}
+		return response;
+	}
+
+	// best effort, the solution of a cancelled solve is dropped
+	private void cancel(long id) {
+		pending.remove(id);
+		try {
+			write(Protocol.frame(id, Protocol.CANCEL));
+		} catch (IOException e) {
+			// a closed connection cancels the solves at the server
+		}
+	}
+
+	private void write(ByteBuffer request) throws IOException {
+		if (closed)
+			throw new IllegalStateException("connection closed");
+		synchronized (writing) {
+			while (request.hasRemaining()) {
+				channel.write(request);
+			}
+		}
+	}
+
+	private void receive() {
+		ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+		try {
+			while (true) {
+				readFully(header.clear());
+				int length = header.flip().getInt();
+				if (length < Protocol.HEADER - Integer.BYTES || length > Protocol.MAX_FRAME)
+					throw new IOException(format("invalid frame length: %d", length));
+				ByteBuffer frame = ByteBuffer.allocate(length);
+				readFully(frame);
+				frame.flip();
+				long id = frame.getLong();
+				byte opcode = frame.get();
+				CompletableFuture<Object> response = pending.remove(id);
+				if (null == response)
+					continue;
+				if (Protocol.SOLUTION == opcode)
+					response.complete(Protocol.read(frame));
+				else
+					response.completeExceptionally(error((String) Protocol.read(frame), (String) Protocol.read(frame)));
+			}
+		} catch (IOException | RuntimeException e) {
+			closed = true;
+			IllegalStateException error = new IllegalStateException("connection closed", e);
+			for (Long id : pending.keySet()) {
+				CompletableFuture<Object> response = pending.remove(id);
+				if (null != response)
+					response.completeExceptionally(error);
+			}
+		}
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0)
+				throw new IOException("connection closed by the server");
+		}
+	}
+
+	// the exceptions of the Axela contract are thrown as at a local engine
+	private static RuntimeException error(String type, String message) {
+		switch (type) {
+		case "java.lang.IllegalArgumentException":
+			return new IllegalArgumentException(message);
+		case "java.lang.IllegalStateException":
+			return new IllegalStateException(message);
+		case "java.lang.NullPointerException":
+			return new NullPointerException(message);
+		case "java.lang.UnsupportedOperationException":
+			return new UnsupportedOperationException(message);
+		case "java.lang.ArithmeticException":
+			return new ArithmeticException(message);
+		case "de.lab4inf.axela.core.DeadlineExceededException":
+			return new DeadlineExceededException(message);
+		case "de.lab4inf.axela.core.SolveCancelledException":
+			return new SolveCancelledException(message);
+		default:
+			return new IllegalStateException(format("%s: %s", type, message));
+		}
+	}
+}
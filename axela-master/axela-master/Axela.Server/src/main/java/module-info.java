@@ -0,0 +1,5 @@
+module Axela.Server {
+	exports de.lab4inf.axela.server;
+
+	requires transitive Axela.Core;
+}
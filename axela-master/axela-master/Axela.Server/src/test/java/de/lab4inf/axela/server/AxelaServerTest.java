@@ -0,0 +1,272 @@
+package de.lab4inf.axela.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.core.Axela;
+import de.lab4inf.axela.core.BoundSolver;
+import de.lab4inf.axela.core.CancellationToken;
+import de.lab4inf.axela.core.DeadlineExceededException;
+import de.lab4inf.axela.core.SolveCancelledException;
+import de.lab4inf.axela.engine.AxelaEngine;
+import de.lab4inf.axela.facts.FactBase;
+import de.lab4inf.axela.math.LinearAlgebraPlugin;
+
+class AxelaServerTest {
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private AxelaEngine engine;
+	private AxelaServer server;
+	private RemoteAxela client;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		engine = new AxelaEngine();
+		engine.register(new LinearAlgebraPlugin());
+		engine.registerSolver("DOT", new double[0], (String p, double[] f) -> f[0] * f[1]);
+		engine.registerSolver("SPIN", "", (String p, String f) -> {
+			try {
+				while (true) {
+					CancellationToken.current().check();
+					Thread.onSpinWait();
+				}
+			} finally {
+				stopped.countDown();
+			}
+		});
+		server = AxelaServer.start(engine);
+		client = RemoteAxela.connect(server.getAddress());
+	}
+
+	@AfterEach
+	void tearDown() {
+		client.close();
+		server.close();
+	}
+
+	@Test
+	void testSolve() {
+		assertEquals(6., (Double) client.solve("DOT", new double[] { 2., 3. }), 0.);
+		double[][] a = { { 1., 2. }, { 3., 4. } };
+		double[][] b = { { 5., 6. }, { 7., 8. } };
+		double[][] product = client.solve("MULT", new FactBase<>(a, b));
+		assertArrayEquals(new double[] { 19., 22. }, product[0], 0.);
+		assertArrayEquals(new double[] { 43., 50. }, product[1], 0.);
+		double[] sum = client.solve("PLUS", new FactBase<>(new double[] { 1., 2. }, new double[] { 3., 4. }));
+		assertArrayEquals(new double[] { 4., 6. }, sum, 0.);
+	}
+
+	@Test
+	void testAxelaContract() {
+		Axela axela = client;
+		assertTrue(axela.hasSolverFor("DOT", new double[0]));
+		assertFalse(axela.hasSolverFor("DOT", new double[0][0]));
+		BoundSolver<double[], Double> dot = axela.bind("DOT", new double[0]);
+		assertEquals(2., dot.solve(new double[] { 1., 2. }), 0.);
+		assertEquals(12., (Double) axela.findSolverFor("DOT", new double[0]).solve("DOT", new double[] { 3., 4. }),
+				0.);
+		assertEquals(List.of(2., 12.),
+				axela.solveAll("DOT", List.of(new double[] { 1., 2. }, new double[] { 3., 4. })));
+	}
+
+	@Test
+	void testNoIris() {
+		try {
+			client.solve("ASDASD", new double[0]);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+		try {
+			client.findSolverFor("ASDASD", new double[0]);
+			fail("no exception with unknown problem thrown");
+		} catch (IllegalStateException error) {
+			assertTrue(error.getMessage().contains("no Iris for problem"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testRegisterSolver() {
+		try {
+			client.registerSolver("DOT", new double[0], (String p, double[] f) -> 0.);
+			fail("no exception with remote registration thrown");
+		} catch (UnsupportedOperationException error) {
+			assertTrue(error.getMessage().contains("server"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testUnsupportedFacts() {
+		try {
+			client.solve("DOT", new int[0]);
+			fail("no exception with unsupported facts thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("unsupported type"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testPipelining() throws Exception {
+		final int requests = 1000;
+		List<CompletableFuture<Double>> solutions = new ArrayList<>(requests);
+		for (int k = 0; k < requests; k++)
+			solutions.add(client.solveAsync("DOT", new double[] { k, 2. }));
+		for (int k = 0; k < requests; k++)
+			assertEquals(2. * k, solutions.get(k).get(10, TimeUnit.SECONDS), 0.);
+	}
+
+	@Test
+	void testLargeMatrix() {
+		final int n = 300;
+		double[][] a = new double[n][n];
+		double[][] identity = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			identity[i][i] = 1.;
+			for (int j = 0; j < n; j++)
+				a[i][j] = i * n + j;
+		}
+		double[][] product = client.solve("MULT", new FactBase<>(a, identity));
+		for (int i = 0; i < n; i++)
+			assertArrayEquals(a[i], product[i], 0.);
+	}
+
+	@Test
+	void testMaxFrame() throws Exception {
+		try (AxelaServer limited = AxelaServer.start(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				4096, 4)) {
+			try (RemoteAxela remote = RemoteAxela.connect(limited.getAddress())) {
+				assertEquals(6., (Double) remote.solve("DOT", new double[] { 2., 3. }), 0.);
+				try {
+					remote.solve("DOT", new double[1000]);
+					fail("no exception with frame too large thrown");
+				} catch (IllegalStateException | UncheckedIOException error) {
+					// connection closed by the server
+				}
+			}
+			// only the header of a huge frame, the server drops the connection
+			try (SocketChannel raw = SocketChannel.open(limited.getAddress())) {
+				raw.write(ByteBuffer.allocate(Protocol.HEADER).putInt(Protocol.MAX_FRAME - Integer.BYTES).flip());
+				assertEquals(-1, raw.read(ByteBuffer.allocate(16)));
+			}
+		}
+		try {
+			AxelaServer.start(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024, 0);
+			fail("no exception without solves in flight thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("flight"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testMaxInFlight() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger entered = new AtomicInteger();
+		engine.registerSolver("WAIT", 0, (String p, Integer f) -> {
+			entered.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return f;
+		});
+		try (AxelaServer limited = AxelaServer.start(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				AxelaServer.MAX_FRAME, 2); RemoteAxela remote = RemoteAxela.connect(limited.getAddress())) {
+			List<CompletableFuture<Integer>> solutions = new ArrayList<>();
+			for (int k = 0; k < 10; k++)
+				solutions.add(remote.solveAsync("WAIT", k));
+			Thread.sleep(200);
+			// the other requests are not read until a solve is done
+			assertEquals(2, entered.get());
+			release.countDown();
+			for (int k = 0; k < 10; k++)
+				assertEquals(k, (int) solutions.get(k).get(10, TimeUnit.SECONDS));
+			assertEquals(10, entered.get());
+		}
+	}
+
+	@Test
+	void testTimeout() throws Exception {
+		try {
+			client.solve("SPIN", "", Duration.ofMillis(50));
+			fail("no exception with exceeded deadline thrown");
+		} catch (DeadlineExceededException error) {
+			assertTrue(error.getMessage().contains("deadline"), error.getMessage());
+		}
+		assertTrue(stopped.await(5, TimeUnit.SECONDS), "solve at the server not cancelled");
+	}
+
+	@Test
+	void testCancelOnClose() throws Exception {
+		CompletableFuture<Object> spin = client.solveAsync("SPIN", "");
+		Thread.sleep(50);
+		client.close();
+		assertTrue(stopped.await(5, TimeUnit.SECONDS), "solve of a closed connection not cancelled");
+		try {
+			spin.join();
+			fail("no exception with closed connection thrown");
+		} catch (RuntimeException error) {
+			assertTrue(client.isClosed());
+		}
+	}
+
+	@Test
+	void testServerClosed() throws Exception {
+		server.close();
+		assertTrue(server.isClosed());
+		try {
+			client.solve("DOT", new double[] { 1., 2. });
+			fail("no exception with closed server thrown");
+		} catch (IllegalStateException | UncheckedIOException error) {
+			// connection closed
+		}
+	}
+
+	@Test
+	void testClients() throws Exception {
+		List<RemoteAxela> clients = new ArrayList<>();
+		try {
+			for (int c = 0; c < 4; c++)
+				clients.add(RemoteAxela.connect(server.getAddress()));
+			List<CompletableFuture<Double>> solutions = new ArrayList<>();
+			for (int k = 0; k < 100; k++)
+				solutions.add(clients.get(k % 4).solveAsync("DOT", new double[] { k, 3. }));
+			for (int k = 0; k < 100; k++)
+				assertEquals(3. * k, solutions.get(k).get(10, TimeUnit.SECONDS), 0.);
+		} finally {
+			for (RemoteAxela c : clients)
+				c.close();
+		}
+	}
+
+	@Test
+	void testCancelledToken() {
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		try {
+			client.solve("DOT", new double[] { 1., 2. }, token);
+			fail("no exception with cancelled token thrown");
+		} catch (SolveCancelledException error) {
+			assertTrue(error.getMessage().contains("cancelled"), error.getMessage());
+		}
+	}
+}
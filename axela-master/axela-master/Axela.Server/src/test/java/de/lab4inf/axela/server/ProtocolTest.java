@@ -0,0 +1,91 @@
+package de.lab4inf.axela.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import de.lab4inf.axela.facts.ExecutionHints;
+import de.lab4inf.axela.facts.ExecutionHints.Algorithm;
+import de.lab4inf.axela.facts.ExecutionHints.Precision;
+import de.lab4inf.axela.facts.FactBase;
+
+class ProtocolTest {
+
+	private static Object roundTrip(Object value) {
+		ByteBuffer frame = Protocol.frame(42, Protocol.SOLUTION, value);
+		assertEquals(frame.remaining() - Integer.BYTES, frame.getInt());
+		assertEquals(42, frame.getLong());
+		assertEquals(Protocol.SOLUTION, frame.get());
+		Object decoded = Protocol.read(frame);
+		assertEquals(0, frame.remaining());
+		return decoded;
+	}
+
+	@Test
+	void testScalars() {
+		assertNull(roundTrip(null));
+		assertEquals(Math.PI, roundTrip(Math.PI));
+		assertEquals(7, roundTrip(7));
+		assertEquals(7L, roundTrip(7L));
+		assertEquals(true, roundTrip(true));
+		assertEquals("MULT äöü", roundTrip("MULT äöü"));
+	}
+
+	@Test
+	void testArrays() {
+		double[] vector = { 1., -2.5, Double.NaN, Double.MAX_VALUE };
+		assertArrayEquals(vector, (double[]) roundTrip(vector), 0.);
+		double[][] matrix = { { 1., 2. }, {}, { 3. } };
+		double[][] decoded = (double[][]) roundTrip(matrix);
+		assertEquals(3, decoded.length);
+		for (int i = 0; i < matrix.length; i++)
+			assertArrayEquals(matrix[i], decoded[i], 0.);
+		assertEquals(0, ((double[][]) roundTrip(new double[0][0])).length);
+		assertArrayEquals(new String[] { "x=1", "y" }, (String[]) roundTrip(new String[] { "x=1", "y" }));
+	}
+
+	@Test
+	void testFactBase() {
+		ExecutionHints hints = ExecutionHints.DEFAULT.withParallelism(3).withPrecision(Precision.FLOAT)
+				.withAlgorithm(Algorithm.STRASSEN).withTimeout(Duration.ofSeconds(10));
+		FactBase<double[], double[][]> facts = new FactBase<>(new double[] { 1. }, new double[][] { { 2. } }, hints);
+		FactBase<?, ?> decoded = (FactBase<?, ?>) roundTrip(facts);
+		assertArrayEquals(facts.getFact1(), (double[]) decoded.getFact1(), 0.);
+		assertArrayEquals(facts.getFact2()[0], ((double[][]) decoded.getFact2())[0], 0.);
+		assertEquals(3, decoded.getHints().getParallelism());
+		assertEquals(Precision.FLOAT, decoded.getHints().getPrecision());
+		assertEquals(Algorithm.STRASSEN, decoded.getHints().getAlgorithm());
+		assertTrue(decoded.getHints().hasDeadline());
+		assertTrue(decoded.getHints().getDeadline() <= hints.getDeadline() + Duration.ofSeconds(1).toNanos());
+		assertEquals(facts.getSignature(), decoded.getSignature());
+	}
+
+	@Test
+	void testUnsupportedType() {
+		try {
+			Protocol.frame(1, Protocol.SOLVE, new Object());
+			fail("no exception with unsupported type thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("unsupported type"), error.getMessage());
+		}
+	}
+
+	@Test
+	void testInvalidLength() {
+		ByteBuffer corrupt = ByteBuffer.allocate(16);
+		corrupt.put((byte) 2).putInt(1 << 20).flip();
+		try {
+			Protocol.read(corrupt);
+			fail("no exception with invalid length thrown");
+		} catch (IllegalArgumentException error) {
+			assertTrue(error.getMessage().contains("invalid length"), error.getMessage());
+		}
+	}
+}